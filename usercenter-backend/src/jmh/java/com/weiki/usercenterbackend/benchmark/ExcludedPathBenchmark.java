@@ -0,0 +1,64 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.utils.PathPrefixTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT认证过滤器排除路径匹配基准测试
+ * streamAnyMatch 为改造前的做法：每次请求对前缀列表执行stream().anyMatch()，作为对照
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcludedPathBenchmark {
+
+    private static final List<String> EXCLUDED_PATHS = Arrays.asList(
+            "/api/auth/login",
+            "/api/auth/register",
+            "/api/auth/refresh",
+            "/swagger-ui.html",
+            "/swagger-ui/",
+            "/v3/api-docs",
+            "/doc.html"
+    );
+
+    /**
+     * 需要认证的普通接口和排除列表中的登录接口
+     */
+    @Param({"/api/orders/123", "/api/auth/login"})
+    private String path;
+
+    private PathPrefixTrie trie;
+
+    @Setup
+    public void setUp() {
+        trie = PathPrefixTrie.compile(EXCLUDED_PATHS);
+    }
+
+    @Benchmark
+    public boolean streamAnyMatch() {
+        return EXCLUDED_PATHS.stream().anyMatch(path::startsWith);
+    }
+
+    @Benchmark
+    public boolean trie() {
+        return trie.matches(path);
+    }
+}
@@ -0,0 +1,63 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guava RateLimiter 多线程竞争基准测试
+ * 所有线程共享一个限流器，与全局限流器和接口级别限流器的使用方式相同。
+ * RateLimiter内部用synchronized保护令牌状态，线程数增加时单次获取的耗时反映锁竞争的代价
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GuavaRateLimiterBenchmark {
+
+    private static final double UNLIMITED_QPS = 1.0E9;
+
+    private RateLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        limiter = RateLimiter.create(UNLIMITED_QPS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean tryAcquire1Thread() {
+        return limiter.tryAcquire();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tryAcquire4Threads() {
+        return limiter.tryAcquire();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean tryAcquire16Threads() {
+        return limiter.tryAcquire();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean tryAcquire64Threads() {
+        return limiter.tryAcquire();
+    }
+}
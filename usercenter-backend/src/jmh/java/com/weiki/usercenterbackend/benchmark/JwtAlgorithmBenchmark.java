@@ -0,0 +1,57 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT签名算法基准测试
+ * 比较对称（HS256）和非对称（ES256、RS256）算法签发和验签单个令牌的开销，不经过已验证令牌缓存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAlgorithmBenchmark {
+
+    @Param({"HS256", "ES256", "RS256"})
+    private String algorithm;
+
+    private JwtUtils jwtUtils;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "benchmarkSecretKeyWithAtLeast256BitsForHmacSha");
+        ReflectionTestUtils.setField(jwtUtils, "algorithm", algorithm);
+        jwtUtils.init();
+        accessToken = jwtUtils.generateAccessToken(10001L);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtils.generateAccessToken(10001L);
+    }
+
+    @Benchmark
+    public Optional<VerifiedToken> verify() {
+        return jwtUtils.parseToken(accessToken);
+    }
+}
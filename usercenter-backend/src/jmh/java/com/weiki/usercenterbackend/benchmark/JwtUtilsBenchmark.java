@@ -0,0 +1,80 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtUtils 令牌解析开销基准测试
+ * 过滤器通过parseToken对每个请求验签解析一次，这里测量单次验签解析的耗时和内存分配；
+ * parseTokenCached 测量命中已验证令牌缓存时的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+    private JwtUtils cachedJwtUtils;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "benchmarkSecretKeyWithAtLeast256BitsForHmacSha");
+        jwtUtils.init();
+        accessToken = jwtUtils.generateAccessToken(10001L);
+
+        cachedJwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(cachedJwtUtils, "jwtSecret", "benchmarkSecretKeyWithAtLeast256BitsForHmacSha");
+        ReflectionTestUtils.setField(cachedJwtUtils, "cacheMaximumSize", 10000L);
+        ReflectionTestUtils.setField(cachedJwtUtils, "cacheExpireSeconds", 300L);
+        cachedJwtUtils.init();
+    }
+
+    @Benchmark
+    public Optional<String> getUserIdFromToken() {
+        return jwtUtils.getUserIdFromToken(accessToken);
+    }
+
+    @Benchmark
+    public Optional<VerifiedToken> parseToken() {
+        return jwtUtils.parseToken(accessToken);
+    }
+
+    @Benchmark
+    public Optional<VerifiedToken> parseTokenCached() {
+        return cachedJwtUtils.parseToken(accessToken);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtUtils.validateToken(accessToken);
+    }
+
+    @Benchmark
+    public boolean isAccessToken() {
+        return jwtUtils.isAccessToken(accessToken);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtUtils.generateAccessToken(10001L);
+    }
+}
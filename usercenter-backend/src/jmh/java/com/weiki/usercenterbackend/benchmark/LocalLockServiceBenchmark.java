@@ -0,0 +1,74 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.service.impl.LocalLockServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LocalLockServiceImpl tryLock/unlock 吞吐量基准测试
+ * 分别测量每个线程使用独立锁键（无竞争）和所有线程争抢同一个锁键两种场景，
+ * 不设置租期，避免每次加锁都创建自动释放线程
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalLockServiceBenchmark {
+
+    private static final String SHARED_KEY = "lock:benchmark:shared";
+
+    /**
+     * 所有线程共享的锁服务
+     */
+    @State(Scope.Benchmark)
+    public static class LockState {
+        final LocalLockServiceImpl lockService = new LocalLockServiceImpl();
+        final AtomicInteger threadIndex = new AtomicInteger();
+    }
+
+    /**
+     * 每个线程独立的锁键
+     */
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        String key;
+
+        @Setup
+        public void setUp(LockState lockState) {
+            key = "lock:benchmark:" + lockState.threadIndex.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean uncontended(LockState lockState, ThreadKey threadKey) {
+        return lockAndUnlock(lockState.lockService, threadKey.key);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean contended(LockState lockState) {
+        return lockAndUnlock(lockState.lockService, SHARED_KEY);
+    }
+
+    private static boolean lockAndUnlock(LocalLockServiceImpl lockService, String key) {
+        if (lockService.tryLock(key, 0, -1, TimeUnit.MILLISECONDS, false)) {
+            lockService.unlock(key);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.annotation.DistributedLock;
+import com.weiki.usercenterbackend.aop.LockKeyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁键构建基准测试
+ * interpretedPerCall 为改造前的做法：每次调用都解析表达式并通过反射读取参数名，作为对照
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LockKeyResolverBenchmark {
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private Method registerMethod;
+    private LockKeyResolver templateResolver;
+    private LockKeyResolver compiledResolver;
+    private Object[] args;
+
+    @Setup
+    public void setUp() throws Exception {
+        registerMethod = Endpoints.class.getMethod("register", String.class, String.class);
+        templateResolver = LockKeyResolver.forMethod(registerMethod);
+        compiledResolver = LockKeyResolver.forMethod(Endpoints.class.getMethod("update", String.class, String.class));
+        args = new Object[]{"weiki886", "12345678"};
+    }
+
+    @Benchmark
+    public String interpretedPerCall() {
+        DistributedLock annotation = registerMethod.getAnnotation(DistributedLock.class);
+        Parameter[] parameters = registerMethod.getParameters();
+        EvaluationContext context = new StandardEvaluationContext();
+        for (int i = 0; i < parameters.length; i++) {
+            context.setVariable(parameters[i].getName(), args[i]);
+        }
+        return annotation.lockPrefix() + parser.parseExpression(annotation.lockKey()).getValue(context, String.class);
+    }
+
+    @Benchmark
+    public String template() {
+        return templateResolver.resolve(args);
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiledResolver.resolve(args);
+    }
+
+    public static class Endpoints {
+
+        @DistributedLock(lockKey = "'userRegister:' + #userAccount")
+        public void register(String userAccount, String userPassword) {
+        }
+
+        @DistributedLock(lockKey = "'updatePassword:' + #userAccount.toLowerCase()")
+        public void update(String userAccount, String userPassword) {
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.metrics.RateLimitMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitMetrics 指标记录开销基准测试
+ * 覆盖切面中每次请求都会执行的等待时间记录，以及被拒绝时的计数（接口级别和按热点用户统计的用户级别）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimitMetricsBenchmark {
+
+    private static final String INTERFACE_TYPE = "INTERFACE";
+    private static final String TARGET = "com.weiki.usercenterbackend.controller.UserController.login";
+
+    /**
+     * 模拟的用户数，远大于导出的热点用户数
+     */
+    private static final int USER_COUNT = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class MetricsState {
+        RateLimitMetrics metrics;
+        Timer waitTimer;
+        String[] userIds;
+
+        @Setup
+        public void setUp() {
+            RateLimitConfig config = RateLimiterAspectBenchmark.unlimitedConfig();
+            metrics = new RateLimitMetrics(new SimpleMeterRegistry(), config);
+            waitTimer = metrics.getWaitTimeTimer(INTERFACE_TYPE, TARGET);
+            userIds = new String[USER_COUNT];
+            for (int i = 0; i < USER_COUNT; i++) {
+                userIds[i] = String.valueOf(10_000 + i);
+            }
+        }
+    }
+
+    /**
+     * 每个线程依次轮换用户ID
+     */
+    @State(Scope.Thread)
+    public static class UserCursor {
+        int index;
+
+        String next(String[] userIds) {
+            index = (index + 1) % userIds.length;
+            return userIds[index];
+        }
+    }
+
+    @Benchmark
+    public void recordWaitTime(MetricsState state) {
+        state.waitTimer.record(100, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void incrementInterfaceRejected(MetricsState state) {
+        state.metrics.incrementRejectedCount(INTERFACE_TYPE, TARGET);
+    }
+
+    @Benchmark
+    public void incrementUserRejected(MetricsState state, UserCursor cursor) {
+        state.metrics.incrementRejectedCount(RateLimitMetrics.USER_TYPE, cursor.next(state.userIds));
+    }
+}
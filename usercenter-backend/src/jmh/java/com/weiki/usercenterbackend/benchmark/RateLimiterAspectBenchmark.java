@@ -0,0 +1,127 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import com.weiki.usercenterbackend.annotation.RateLimit;
+import com.weiki.usercenterbackend.aop.RateLimiterAspect;
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.metrics.RateLimitMetrics;
+import com.weiki.usercenterbackend.ratelimit.AdaptiveLimiterRegistry;
+import com.weiki.usercenterbackend.ratelimit.ClusterMembership;
+import com.weiki.usercenterbackend.ratelimit.PriorityAdmissionController;
+import com.weiki.usercenterbackend.service.DistributedRateLimiter;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimiterAspect.rateLimit 单次调用开销基准测试
+ * 限流器QPS设置得足够大，保证每次都能拿到令牌，只测量成功路径上切面本身的耗时和内存分配
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterAspectBenchmark {
+
+    private static final double UNLIMITED_QPS = 1.0E9;
+
+    private RateLimiterAspect aspect;
+
+    private StubJoinPoint interfaceJoinPoint;
+    private RateLimit interfaceRateLimit;
+
+    private StubJoinPoint globalJoinPoint;
+    private RateLimit globalRateLimit;
+
+    @Setup
+    public void setUp() throws Exception {
+        RateLimitConfig config = unlimitedConfig();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // 成员注册不启动心跳，节点数固定为1
+        ClusterMembership membership = new ClusterMembership(new StringRedisTemplate(), config, meterRegistry);
+        aspect = new RateLimiterAspect(config, new RateLimitMetrics(meterRegistry, config), new JwtUtils(),
+                new PriorityAdmissionController(config, meterRegistry),
+                new AdaptiveLimiterRegistry(config, meterRegistry),
+                new DistributedRateLimiter(new RedisTemplate<>(), config, meterRegistry, membership),
+                membership);
+
+        Method interfaceMethod = Endpoints.class.getMethod("interfaceEndpoint");
+        interfaceJoinPoint = new StubJoinPoint(interfaceMethod, "ok");
+        interfaceRateLimit = interfaceMethod.getAnnotation(RateLimit.class);
+
+        Method globalMethod = Endpoints.class.getMethod("globalEndpoint");
+        globalJoinPoint = new StubJoinPoint(globalMethod, "ok");
+        globalRateLimit = globalMethod.getAnnotation(RateLimit.class);
+    }
+
+    @Benchmark
+    public Object interfaceLimit() throws Throwable {
+        return aspect.rateLimit(interfaceJoinPoint, interfaceRateLimit);
+    }
+
+    @Benchmark
+    public Object globalLimit() throws Throwable {
+        return aspect.rateLimit(globalJoinPoint, globalRateLimit);
+    }
+
+    /**
+     * 构造不会触发限流的配置
+     */
+    static RateLimitConfig unlimitedConfig() {
+        RateLimitConfig config = new RateLimitConfig();
+        ReflectionTestUtils.setField(config, "globalQps", UNLIMITED_QPS);
+        ReflectionTestUtils.setField(config, "userQps", UNLIMITED_QPS);
+        ReflectionTestUtils.setField(config, "cacheExpireAfterAccess", 30L);
+        ReflectionTestUtils.setField(config, "cacheMaximumSize", 1000L);
+        ReflectionTestUtils.setField(config, "admissionEnabled", true);
+        ReflectionTestUtils.setField(config, "admissionMaxConcurrency", Integer.MAX_VALUE / 2);
+        ReflectionTestUtils.setField(config, "admissionQps", Integer.MAX_VALUE / 2);
+        ReflectionTestUtils.setField(config, "admissionReservedRatio", 0.3);
+        ReflectionTestUtils.setField(config, "admissionProtectedPriority", 8);
+        ReflectionTestUtils.setField(config, "admissionCodelTarget", 5L);
+        ReflectionTestUtils.setField(config, "admissionCodelInterval", 100L);
+        ReflectionTestUtils.setField(config, "adaptiveInitialLimit", 20);
+        ReflectionTestUtils.setField(config, "adaptiveMinLimit", 5);
+        ReflectionTestUtils.setField(config, "adaptiveMaxLimit", 200);
+        ReflectionTestUtils.setField(config, "adaptiveGlobalMaxLimit", 1000);
+        ReflectionTestUtils.setField(config, "adaptiveRttTolerance", 1.5);
+        ReflectionTestUtils.setField(config, "adaptiveWindow", 1000L);
+        ReflectionTestUtils.setField(config, "adaptiveMinWindowSamples", 10);
+        ReflectionTestUtils.setField(config, "metricsTopK", 20);
+        ReflectionTestUtils.setField(config, "metricsWindow", 60000L);
+        return config;
+    }
+
+    /**
+     * 被限流的示例接口
+     */
+    public static class Endpoints {
+
+        @RateLimit(qps = UNLIMITED_QPS, limitType = RateLimit.LimitType.INTERFACE)
+        public String interfaceEndpoint() {
+            return "ok";
+        }
+
+        @RateLimit(limitType = RateLimit.LimitType.DEFAULT)
+        public String globalEndpoint() {
+            return "ok";
+        }
+    }
+}
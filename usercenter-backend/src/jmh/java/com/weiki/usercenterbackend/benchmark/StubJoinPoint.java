@@ -0,0 +1,152 @@
+package com.weiki.usercenterbackend.benchmark;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.lang.reflect.SourceLocation;
+import org.aspectj.runtime.internal.AroundClosure;
+
+import java.lang.reflect.Method;
+
+/**
+ * 基准测试用的切点桩
+ * 模拟Spring AOP传入切面的ProceedingJoinPoint，proceed()直接返回固定结果，只测量切面自身的开销
+ */
+public class StubJoinPoint implements ProceedingJoinPoint {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Object result;
+    private final MethodSignature signature;
+
+    public StubJoinPoint(Method method, Object result) {
+        this.result = result;
+        this.signature = new StubMethodSignature(method);
+    }
+
+    @Override
+    public void set$AroundClosure(AroundClosure arc) {
+    }
+
+    @Override
+    public Object proceed() {
+        return result;
+    }
+
+    @Override
+    public Object proceed(Object[] args) {
+        return result;
+    }
+
+    @Override
+    public String toShortString() {
+        return signature.toShortString();
+    }
+
+    @Override
+    public String toLongString() {
+        return signature.toLongString();
+    }
+
+    @Override
+    public Object getThis() {
+        return null;
+    }
+
+    @Override
+    public Object getTarget() {
+        return null;
+    }
+
+    @Override
+    public Object[] getArgs() {
+        return NO_ARGS;
+    }
+
+    @Override
+    public Signature getSignature() {
+        return signature;
+    }
+
+    @Override
+    public SourceLocation getSourceLocation() {
+        return null;
+    }
+
+    @Override
+    public String getKind() {
+        return METHOD_EXECUTION;
+    }
+
+    @Override
+    public StaticPart getStaticPart() {
+        return null;
+    }
+
+    /**
+     * 方法签名桩，getMethod()始终返回同一个Method实例，与Spring代理的行为一致
+     */
+    private static class StubMethodSignature implements MethodSignature {
+
+        private final Method method;
+
+        StubMethodSignature(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Class getReturnType() {
+            return method.getReturnType();
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Class[] getParameterTypes() {
+            return method.getParameterTypes();
+        }
+
+        @Override
+        public String[] getParameterNames() {
+            return new String[0];
+        }
+
+        @Override
+        public Class[] getExceptionTypes() {
+            return method.getExceptionTypes();
+        }
+
+        @Override
+        public String toShortString() {
+            return method.getName();
+        }
+
+        @Override
+        public String toLongString() {
+            return method.toString();
+        }
+
+        @Override
+        public String getName() {
+            return method.getName();
+        }
+
+        @Override
+        public int getModifiers() {
+            return method.getModifiers();
+        }
+
+        @Override
+        public Class getDeclaringType() {
+            return method.getDeclaringClass();
+        }
+
+        @Override
+        public String getDeclaringTypeName() {
+            return method.getDeclaringClass().getName();
+        }
+    }
+}
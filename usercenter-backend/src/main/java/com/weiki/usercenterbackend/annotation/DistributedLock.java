@@ -28,10 +28,11 @@ public @interface DistributedLock {
     long waitTime() default 3000L;
 
     /**
-     * 锁的持有时间，默认30秒。
-     * 超时后自动释放锁
+     * 锁的持有时间，默认-1。
+     * 大于0时超时后自动释放锁；小于等于0时不设置固定租期，由看门狗在持有期间自动续期，
+     * 持有者宕机后在看门狗超时时间后释放
      */
-    long leaseTime() default 30000L;
+    long leaseTime() default -1L;
 
     /**
      * 时间单位，默认为毫秒
@@ -39,7 +40,19 @@ public @interface DistributedLock {
     TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
 
     /**
-     * 是否公平锁，默认为非公平锁
+     * 是否公平锁，默认为非公平锁，只对互斥锁生效
      */
     boolean isFair() default false;
+
+    /**
+     * 锁模式，默认为互斥锁。
+     * 同一个锁键只能使用一种模式：读写锁和信号量在Redis中的数据结构与互斥锁不同，混用会导致加锁失败
+     */
+    LockMode mode() default LockMode.EXCLUSIVE;
+
+    /**
+     * 信号量的许可数量，只对SEMAPHORE模式生效。
+     * 许可数量在信号量第一次创建时设置，之后修改需要先删除Redis中的信号量
+     */
+    int permits() default 1;
 } 
\ No newline at end of file
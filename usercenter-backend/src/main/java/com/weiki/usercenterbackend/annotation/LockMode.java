@@ -0,0 +1,27 @@
+package com.weiki.usercenterbackend.annotation;
+
+/**
+ * 分布式锁模式
+ */
+public enum LockMode {
+
+    /**
+     * 互斥锁，同一时间只有一个线程持有
+     */
+    EXCLUSIVE,
+
+    /**
+     * 读锁，多个线程可以同时持有，与写锁互斥
+     */
+    READ,
+
+    /**
+     * 写锁，与读锁和其他写锁互斥；持有写锁的线程可以再获取读锁
+     */
+    WRITE,
+
+    /**
+     * 信号量，最多permits个线程同时持有
+     */
+    SEMAPHORE
+}
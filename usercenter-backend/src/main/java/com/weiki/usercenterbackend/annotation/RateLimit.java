@@ -71,7 +71,13 @@ public @interface RateLimit {
         /**
          * 基于用户的限流
          */
-        USER
+        USER,
+        
+        /**
+         * 自适应并发限流
+         * 忽略qps配置，根据请求RTT自动计算接口级别和全局的并发上限
+         */
+        ADAPTIVE
     }
     
     /**
@@ -83,7 +89,8 @@ public @interface RateLimit {
     
     /**
      * 限流优先级，数值越高优先级越高
-     * 在多级限流同时触发的情况下，高优先级接口可获得更多资源
+     * 所有接口共享全局并发和QPS预算，系统过载时优先丢弃低优先级请求，
+     * 高优先级请求可使用为其预留的余量
      * @return 优先级权重(1-10)
      */
     int priority() default 5;
@@ -4,6 +4,7 @@ import com.weiki.usercenterbackend.annotation.AuthCheck;
 import com.weiki.usercenterbackend.common.ErrorCode;
 import com.weiki.usercenterbackend.exception.BusinessException;
 import com.weiki.usercenterbackend.model.domain.User;
+import com.weiki.usercenterbackend.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -13,10 +14,9 @@ import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 
-import static com.weiki.usercenterbackend.constant.UserConstant.USER_LOGIN_STATE;
-
 /**
  * 权限校验 AOP
  */
@@ -25,6 +25,9 @@ import static com.weiki.usercenterbackend.constant.UserConstant.USER_LOGIN_STATE
 @Slf4j
 public class AuthInterceptor {
 
+    @Resource
+    private UserService userService;
+
     /**
      * 执行拦截
      *
@@ -40,23 +43,14 @@ public class AuthInterceptor {
         // 获取当前请求的 request
         RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
         HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
-        // 当前登录用户
-        User loginUser = (User) request.getSession().getAttribute(USER_LOGIN_STATE);
-        
-        // 如果未登录，抛出异常
-        if (loginUser == null) {
-            throw new BusinessException(ErrorCode.NOT_LOGIN);
-        }
-        
-        // 如果用户被禁用，不允许操作
-        if (loginUser.getUserStatus() != 0) {
-            throw new BusinessException(ErrorCode.NO_AUTH, "用户状态异常");
-        }
+        // 当前登录用户，未登录、被禁用或封禁时抛出异常
+        // 角色和状态取自短期缓存的数据库数据，不使用令牌中可能已过时的值
+        User loginUser = userService.getLoginUser(request);
         
         // 必须有对应权限才能通过
         Integer userRole = loginUser.getUserRole();
         // 如果需要管理员权限而当前用户不是管理员，则抛出异常
-        if (mustRole == 1 && userRole != 1) {
+        if (mustRole == 1 && (userRole == null || userRole != 1)) {
             throw new BusinessException(ErrorCode.NO_AUTH, "无管理员权限");
         }
         
@@ -0,0 +1,209 @@
+package com.weiki.usercenterbackend.aop;
+
+import com.weiki.usercenterbackend.annotation.DistributedLock;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 分布式锁键解析器，每个方法创建一次
+ * 注解、参数名和表达式在创建时解析完毕，调用时只根据参数值拼接锁键：
+ * 1. 未使用表达式：锁键为常量
+ * 2. 表达式只由字符串常量和 #参数名 通过 + 拼接（如 'userRegister:' + #userAccount）：直接拼接参数值，不经过SpEL
+ * 3. 其他表达式：预先解析并以IMMEDIATE模式编译为字节码
+ */
+@Slf4j
+public final class LockKeyResolver {
+
+    /**
+     * 编译模式的SpEL解析器，第一次求值后生成字节码
+     */
+    private static final ExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, LockKeyResolver.class.getClassLoader()));
+
+    /**
+     * 先读取 -parameters 生成的参数名，没有时读取调试信息中的局部变量表
+     */
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private static final Pattern PARAM_REFERENCE = Pattern.compile("#[A-Za-z_$][A-Za-z0-9_$]*");
+
+    private final DistributedLock annotation;
+
+    /**
+     * 解析失败时使用的锁键：前缀 + 类名:方法名
+     */
+    private final String defaultKey;
+
+    /**
+     * 常量锁键，不为null时直接返回
+     */
+    private final String constantKey;
+
+    /**
+     * 拼接模板：String为字符串常量，Integer为参数下标
+     */
+    private final Object[] template;
+
+    /**
+     * 编译后的表达式和参数名
+     */
+    private final Expression expression;
+    private final String[] parameterNames;
+
+    private LockKeyResolver(DistributedLock annotation, String defaultKey, String constantKey,
+                            Object[] template, Expression expression, String[] parameterNames) {
+        this.annotation = annotation;
+        this.defaultKey = defaultKey;
+        this.constantKey = constantKey;
+        this.template = template;
+        this.expression = expression;
+        this.parameterNames = parameterNames;
+    }
+
+    /**
+     * 为带有@DistributedLock注解的方法创建解析器
+     */
+    public static LockKeyResolver forMethod(Method method) {
+        DistributedLock annotation = method.getAnnotation(DistributedLock.class);
+        String prefix = annotation.lockPrefix();
+        String defaultKey = prefix + method.getDeclaringClass().getSimpleName() + ":" + method.getName();
+        String key = annotation.lockKey();
+
+        // 如果没有指定key，则使用类名+方法名
+        if (StringUtils.isBlank(key)) {
+            return new LockKeyResolver(annotation, defaultKey, defaultKey, null, null, null);
+        }
+        // 不是SpEL表达式，直接作为锁键
+        if (!key.contains("#") && !key.contains("'")) {
+            return new LockKeyResolver(annotation, defaultKey, prefix + key, null, null, null);
+        }
+
+        String[] parameterNames = resolveParameterNames(method);
+        Object[] template = parseTemplate(prefix, key, parameterNames);
+        if (template != null) {
+            return new LockKeyResolver(annotation, defaultKey, null, template, null, null);
+        }
+        try {
+            Expression expression = PARSER.parseExpression(key);
+            return new LockKeyResolver(annotation, defaultKey, null, null, expression, parameterNames);
+        } catch (Exception e) {
+            log.error("SpEL表达式解析错误: {}", key, e);
+            // 解析失败时使用默认key
+            return new LockKeyResolver(annotation, defaultKey, defaultKey, null, null, null);
+        }
+    }
+
+    /**
+     * 方法上的锁注解
+     */
+    public DistributedLock getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * 根据参数值构建完整的锁键（包含前缀）
+     *
+     * @param args 方法参数
+     * @return 锁键
+     */
+    public String resolve(Object[] args) {
+        if (constantKey != null) {
+            return constantKey;
+        }
+        if (template != null) {
+            StringBuilder builder = new StringBuilder(64);
+            for (Object part : template) {
+                if (part instanceof Integer) {
+                    builder.append(args[(Integer) part]);
+                } else {
+                    builder.append((String) part);
+                }
+            }
+            return builder.toString();
+        }
+        try {
+            EvaluationContext context = new StandardEvaluationContext();
+            // 将方法参数添加到表达式上下文
+            for (int i = 0; i < parameterNames.length; i++) {
+                context.setVariable(parameterNames[i], args[i]);
+            }
+            return annotation.lockPrefix() + expression.getValue(context, String.class);
+        } catch (Exception e) {
+            log.error("SpEL表达式求值错误: {}", annotation.lockKey(), e);
+            return defaultKey;
+        }
+    }
+
+    private static String[] resolveParameterNames(Method method) {
+        String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+        if (names != null) {
+            return names;
+        }
+        // 没有参数名信息时按位置命名为 p0、p1...
+        names = new String[method.getParameterCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "p" + i;
+        }
+        return names;
+    }
+
+    /**
+     * 把只由字符串常量和参数引用拼接而成的表达式解析为模板，前缀作为模板的第一个常量
+     *
+     * @return 模板，表达式包含其他语法时返回null
+     */
+    static Object[] parseTemplate(String prefix, String spEL, String[] parameterNames) {
+        List<Object> parts = new ArrayList<>();
+        parts.add(prefix);
+        for (String token : splitConcatenation(spEL)) {
+            if (token.length() >= 2 && token.startsWith("'") && token.endsWith("'")
+                    && token.indexOf('\'', 1) == token.length() - 1) {
+                parts.add(token.substring(1, token.length() - 1));
+            } else if (PARAM_REFERENCE.matcher(token).matches()) {
+                int index = Arrays.asList(parameterNames).indexOf(token.substring(1));
+                if (index < 0) {
+                    return null;
+                }
+                parts.add(index);
+            } else {
+                return null;
+            }
+        }
+        return parts.toArray();
+    }
+
+    /**
+     * 按字符串常量之外的 + 拆分表达式
+     */
+    private static List<String> splitConcatenation(String spEL) {
+        List<String> tokens = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < spEL.length(); i++) {
+            char c = spEL.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '+' && !quoted) {
+                tokens.add(spEL.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        tokens.add(spEL.substring(start).trim());
+        return tokens;
+    }
+}
@@ -4,13 +4,23 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
-import com.google.common.util.concurrent.RateLimiter;
 import com.weiki.usercenterbackend.annotation.RateLimit;
 import com.weiki.usercenterbackend.common.Fallback;
 import com.weiki.usercenterbackend.config.RateLimitConfig;
 import com.weiki.usercenterbackend.exception.RateLimitException;
+import com.weiki.usercenterbackend.filter.RequestArrivalFilter;
 import com.weiki.usercenterbackend.metrics.RateLimitMetrics;
+import com.weiki.usercenterbackend.ratelimit.AdaptiveConcurrencyLimiter;
+import com.weiki.usercenterbackend.ratelimit.AdaptiveLimiterRegistry;
+import com.weiki.usercenterbackend.ratelimit.ClusterMembership;
+import com.weiki.usercenterbackend.ratelimit.LocalRateLimiter;
+import com.weiki.usercenterbackend.ratelimit.PriorityAdmissionController;
+import com.weiki.usercenterbackend.ratelimit.RateLimitHeaders;
+import com.weiki.usercenterbackend.ratelimit.RateLimitStatus;
+import com.weiki.usercenterbackend.service.DistributedRateLimiter;
 import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import io.micrometer.core.instrument.Timer;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -23,15 +33,17 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -45,115 +57,165 @@ public class RateLimiterAspect implements ApplicationContextAware {
     
     private static final Logger logger = LoggerFactory.getLogger(RateLimiterAspect.class);
     
+    private static final String TYPE_GLOBAL = "GLOBAL";
+    private static final String TYPE_INTERFACE = "INTERFACE";
+    private static final String TYPE_USER = "USER";
+    private static final String TYPE_ADAPTIVE = "ADAPTIVE";
+    private static final String TYPE_ADMISSION = "ADMISSION";
+    
+    /**
+     * 没有令牌桶状态时的默认重试等待时间（毫秒）
+     */
+    private static final long DEFAULT_RETRY_AFTER_MS = 1000;
+    
+    /**
+     * 分布式全局限流的Redis键
+     */
+    private static final String GLOBAL_LIMIT_KEY = "GLOBAL";
+    
     /**
      * 全局限流器
      */
-    private RateLimiter globalRateLimiter;
+    private LocalRateLimiter globalRateLimiter;
     
     /**
-     * 接口级别限流器缓存
-     * key: 类名+方法名
-     * value: RateLimiter实例
+     * 全局限流器的等待时间指标，所有DEFAULT类型的接口共享
      */
-    private LoadingCache<String, RateLimiter> interfaceLimiterCache;
+    private final Timer globalWaitTimer;
     
     /**
      * 用户级别限流器缓存
      * key: 用户ID
      * value: RateLimiter实例
      */
-    private LoadingCache<String, RateLimiter> userLimiterCache;
+    private LoadingCache<String, LocalRateLimiter> userLimiterCache;
     
-    // 限流器版本控制，用于解决ABA问题
-    private static class VersionedRateLimiter {
-        final RateLimiter rateLimiter;
-        final long version;
-        
-        VersionedRateLimiter(RateLimiter rateLimiter, long version) {
-            this.rateLimiter = rateLimiter;
-            this.version = version;
-        }
-    }
+    /**
+     * 按Method实例身份索引的描述符快照，写时复制
+     * 代理每次传入的是同一个Method实例，命中时只做一次identityHashCode和引用比较，不调用Method.equals
+     */
+    private volatile IdentityHashMap<Method, LimiterDescriptor> descriptorsByIdentity = new IdentityHashMap<>();
     
-    // 接口限流器的版本控制
-    private final ConcurrentHashMap<String, AtomicReference<VersionedRateLimiter>> interfaceLimiterVersions = new ConcurrentHashMap<>();
+    /**
+     * 被拦截方法的限流描述符
+     * 首次调用时根据注解解析一次，之后的调用不再拼接方法名、查找限流器缓存或指标
+     * key: 方法（按equals比较），保证不同的Method实例对应同一个描述符和限流器，数量受@RateLimit注解的方法数限制
+     */
+    private final ConcurrentHashMap<Method, LimiterDescriptor> descriptors = new ConcurrentHashMap<>();
+    
+    /**
+     * 身份索引快照的最大条目数，代理传入的Method实例不稳定时不再继续复制
+     */
+    private static final int MAX_IDENTITY_DESCRIPTORS = 1024;
     
     private final RateLimitConfig rateLimitConfig;
     private final RateLimitMetrics rateLimitMetrics;
     private final JwtUtils jwtUtils;
+    private final PriorityAdmissionController admissionController;
+    private final AdaptiveLimiterRegistry adaptiveLimiterRegistry;
+    private final DistributedRateLimiter distributedRateLimiter;
+    private final ClusterMembership clusterMembership;
     private ApplicationContext applicationContext;
     
     @Autowired
-    public RateLimiterAspect(RateLimitConfig rateLimitConfig, RateLimitMetrics rateLimitMetrics, JwtUtils jwtUtils) {
+    public RateLimiterAspect(RateLimitConfig rateLimitConfig, RateLimitMetrics rateLimitMetrics, JwtUtils jwtUtils,
+                             PriorityAdmissionController admissionController,
+                             AdaptiveLimiterRegistry adaptiveLimiterRegistry,
+                             DistributedRateLimiter distributedRateLimiter,
+                             ClusterMembership clusterMembership) {
         this.rateLimitConfig = rateLimitConfig;
         this.rateLimitMetrics = rateLimitMetrics;
         this.jwtUtils = jwtUtils;
+        this.admissionController = admissionController;
+        this.adaptiveLimiterRegistry = adaptiveLimiterRegistry;
+        this.distributedRateLimiter = distributedRateLimiter;
+        this.clusterMembership = clusterMembership;
+        this.globalWaitTimer = rateLimitMetrics.getWaitTimeTimer(TYPE_GLOBAL, TYPE_GLOBAL);
         initGlobalRateLimiter();
         initLimiterCaches();
+        clusterMembership.addListener(this::onClusterSizeChanged);
     }
     
     /**
      * 初始化全局限流器
      */
     private void initGlobalRateLimiter() {
-        double globalQps = rateLimitConfig.getGlobalQps();
+        double globalQps = getLocalRate(rateLimitConfig.getGlobalQps());
         long warmupPeriod = rateLimitConfig.getGlobalWarmupPeriod();
         
         if (warmupPeriod > 0) {
             // 创建带预热的限流器
-            globalRateLimiter = RateLimiter.create(globalQps, warmupPeriod, TimeUnit.SECONDS);
+            globalRateLimiter = LocalRateLimiter.create(globalQps, warmupPeriod, TimeUnit.SECONDS);
         } else {
             // 创建普通限流器
-            globalRateLimiter = RateLimiter.create(globalQps);
+            globalRateLimiter = LocalRateLimiter.create(globalQps);
         }
+        rateLimitMetrics.registerAvailablePermits(TYPE_GLOBAL, TYPE_GLOBAL, globalRateLimiter);
         
         logger.info("全局限流器初始化完成: QPS={}, 预热时间={}s", globalQps, warmupPeriod);
     }
     
+    /**
+     * 计算本节点的本地限流速率
+     * 未启用分布式限流时，每个节点各自限流，按存活节点数均分配置的速率，使集群总速率与配置大致相同
+     *
+     * @param qps 配置的集群总速率
+     * @return 本节点速率
+     */
+    private double getLocalRate(double qps) {
+        if (rateLimitConfig.isDistributedLimitEnabled()) {
+            return qps;
+        }
+        return qps / clusterMembership.getClusterSize();
+    }
+    
+    /**
+     * 集群节点数变化时重新均分全局和接口级别限流器的速率，在心跳线程中执行
+     * setRate只调整令牌发放速率，已积累的令牌按比例保留，不影响正在等待的请求
+     *
+     * @param oldSize 变化前的节点数
+     * @param newSize 变化后的节点数
+     */
+    private void onClusterSizeChanged(int oldSize, int newSize) {
+        if (rateLimitConfig.isDistributedLimitEnabled()) {
+            return;
+        }
+        globalRateLimiter.setRate(getLocalRate(rateLimitConfig.getGlobalQps()));
+        for (LimiterDescriptor descriptor : descriptors.values()) {
+            if (descriptor.interfaceLimiter != null) {
+                descriptor.interfaceLimiter.setRate(getLocalRate(descriptor.qps));
+            }
+        }
+        logger.info("集群节点数变化 {} -> {}，本地限流速率已重新均分，全局QPS={}",
+                oldSize, newSize, globalRateLimiter.getRate());
+    }
+    
     /**
      * 初始化限流器缓存
      */
     private void initLimiterCaches() {
         // 创建移除监听器，用于在缓存项被移除时上报指标
-        RemovalListener<String, RateLimiter> removalListener = notification -> {
-            String key = notification.getKey();
-            RateLimiter limiter = notification.getValue();
-            String[] parts = key.split(":", 2);
-            String limiterType = parts.length > 1 ? parts[0] : "UNKNOWN";
-            String limitTarget = parts.length > 1 ? parts[1] : key;
+        RemovalListener<String, LocalRateLimiter> removalListener = notification -> {
+            String userId = notification.getKey();
+            LocalRateLimiter limiter = notification.getValue();
             
             // 移除时记录指标
-            rateLimitMetrics.recordRemoval(limiterType, limitTarget, limiter.getRate());
-            logger.debug("限流器已从缓存移除: type={}, target={}, reason={}", 
-                    limiterType, limitTarget, notification.getCause());
+            rateLimitMetrics.recordRemoval(TYPE_USER, userId, limiter.getRate());
+            logger.debug("限流器已从缓存移除: type={}, target={}, reason={}",
+                    TYPE_USER, userId, notification.getCause());
         };
         
-        // 接口级别限流器缓存
-        interfaceLimiterCache = CacheBuilder.newBuilder()
-                .expireAfterAccess(rateLimitConfig.getCacheExpireAfterAccess(), 
-                        rateLimitConfig.getCacheExpireTimeUnit())
-                .maximumSize(10000) // 设置最大缓存为10000个限流器
-                .removalListener(removalListener)
-                .recordStats()
-                .build(new CacheLoader<String, RateLimiter>() {
-                    @Override
-                    public RateLimiter load(String key) {
-                        // 默认使用注解上的配置，需要在调用时传入
-                        return RateLimiter.create(5.0);
-                    }
-                });
-        
         // 用户级别限流器缓存
         userLimiterCache = CacheBuilder.newBuilder()
                 .expireAfterAccess(30, TimeUnit.MINUTES) // 30分钟未访问自动失效
                 .maximumSize(10000) // 设置最大缓存为10000个限流器
                 .removalListener(removalListener)
                 .recordStats()
-                .build(new CacheLoader<String, RateLimiter>() {
+                .build(new CacheLoader<String, LocalRateLimiter>() {
                     @Override
-                    public RateLimiter load(String userId) {
+                    public LocalRateLimiter load(String userId) {
                         // 所有用户默认使用相同的QPS限制
-                        return RateLimiter.create(rateLimitConfig.getUserQps());
+                        return LocalRateLimiter.create(rateLimitConfig.getUserQps());
                     }
                 });
         
@@ -162,6 +224,7 @@ public class RateLimiterAspect implements ApplicationContextAware {
     
     /**
      * 切面: 拦截所有带有@RateLimit注解的方法
+     * 成功路径上只读取预先解析好的描述符，不拼接字符串、不创建临时对象
      *
      * @param joinPoint 切点
      * @param rateLimit 注解实例
@@ -170,70 +233,301 @@ public class RateLimiterAspect implements ApplicationContextAware {
      */
     @Around("@annotation(rateLimit)")
     public Object rateLimit(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
-        // 获取方法签名
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-        String className = method.getDeclaringClass().getName();
-        String methodName = method.getName();
-        String fullMethodName = className + "." + methodName;
+        // 获取方法对应的限流描述符
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        LimiterDescriptor descriptor = getDescriptor(method, rateLimit);
         
         // 记录开始时间
-        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         
-        // 获取限流类型
-        RateLimit.LimitType limitType = rateLimit.limitType();
-        boolean acquired = false;
-        String limitTarget = fullMethodName;
-        String limiterType;
+        // 先经过全局优先级准入控制，排队延迟从请求到达应用时算起；被丢弃的请求不消耗限流配额
+        if (!admissionController.tryAdmit(descriptor.priority, getSojournNanos(startNanos))) {
+            // 准入控制没有令牌桶状态，按默认时间重试
+            return handleRejection(joinPoint, descriptor, TYPE_ADMISSION, descriptor.fullMethodName, null, 0);
+        }
+        try {
+            // 自适应并发限流需要围绕方法执行测量RTT，单独处理
+            if (descriptor.limitType == RateLimit.LimitType.ADAPTIVE) {
+                return adaptiveRateLimit(joinPoint, descriptor, startNanos);
+            }
+            return tokenBucketRateLimit(joinPoint, descriptor, startNanos);
+        } finally {
+            admissionController.release();
+        }
+    }
+    
+    /**
+     * 令牌桶限流（全局、接口、用户级别），调用前已通过准入控制
+     *
+     * @param joinPoint 切点
+     * @param descriptor 限流描述符
+     * @param startNanos 进入切面的时间（纳秒）
+     * @return 方法执行结果
+     * @throws Throwable 执行异常
+     */
+    private Object tokenBucketRateLimit(ProceedingJoinPoint joinPoint, LimiterDescriptor descriptor,
+                                        long startNanos) throws Throwable {
+        
+        LocalRateLimiter limiter = null;
+        RateLimitStatus distributedStatus = null;
+        Timer waitTimer;
+        String userId = null;
         
         // 根据限流类型选择不同的限流策略
-        switch (limitType) {
+        switch (descriptor.limitType) {
             case USER:
                 // 用户级别限流
-                String userId = getUserIdFromRequest();
+                userId = getUserIdFromRequest();
                 if (userId != null) {
-                    limiterType = "USER";
-                    limitTarget = userId;
-                    acquired = acquireFromUserLimiter(userId, rateLimit);
+                    waitTimer = descriptor.waitTimer;
+                    limiter = getUserLimiter(userId);
                 } else {
                     // 如果未登录，回退到接口级别限流
-                    limiterType = "INTERFACE";
-                    acquired = acquireFromInterfaceLimiter(fullMethodName, rateLimit);
+                    waitTimer = descriptor.interfaceWaitTimer;
+                    limiter = descriptor.interfaceLimiter;
                 }
                 break;
-                
+            
             case INTERFACE:
                 // 接口级别限流
-                limiterType = "INTERFACE";
-                acquired = acquireFromInterfaceLimiter(fullMethodName, rateLimit);
+                waitTimer = descriptor.waitTimer;
+                limiter = descriptor.interfaceLimiter;
                 break;
-                
+            
             case DEFAULT:
             default:
                 // 全局默认限流
-                limiterType = "GLOBAL";
-                acquired = acquireFromGlobalLimiter(rateLimit);
+                waitTimer = globalWaitTimer;
+                if (rateLimitConfig.isDistributedLimitEnabled()) {
+                    // 由Redis在集群范围内统一计数，Redis不可用时熔断降级为本地限流
+                    distributedStatus = acquireFromDistributedLimiter(descriptor);
+                } else {
+                    limiter = globalRateLimiter;
+                }
                 break;
         }
-        
-        // 计算等待时间
-        long waitTime = System.currentTimeMillis() - startTime;
+        boolean acquired = distributedStatus != null
+                ? distributedStatus.isAllowed()
+                : limiter != null && acquireWithStrategy(limiter, descriptor);
         
         // 记录等待时间指标
-        rateLimitMetrics.recordWaitTime(limiterType, limitTarget, waitTime);
+        long waitNanos = System.nanoTime() - startNanos;
+        waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
         
-        // 如果成功获取令牌，执行原方法
         if (acquired) {
+            // 告知客户端剩余配额，必须在方法执行、响应提交之前设置
+            writeRateLimitHeaders(limiter, distributedStatus);
             return joinPoint.proceed();
         }
         
+        String limiterType;
+        String limitTarget;
+        if (descriptor.limitType == RateLimit.LimitType.DEFAULT) {
+            limiterType = TYPE_GLOBAL;
+            limitTarget = descriptor.fullMethodName;
+        } else if (userId != null) {
+            limiterType = TYPE_USER;
+            limitTarget = userId;
+        } else {
+            limiterType = TYPE_INTERFACE;
+            limitTarget = descriptor.fullMethodName;
+        }
+        
+        // 根据令牌桶的实际状态计算重试时间
+        RateLimitStatus status = distributedStatus;
+        if (status == null && limiter != null) {
+            status = limiter.getStatus(false);
+        }
+        return handleRejection(joinPoint, descriptor, limiterType, limitTarget, status,
+                TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+    
+    /**
+     * 计算请求已排队的时间：从请求到达过滤器链算起，不在Web请求中（或过滤器未记录）时从进入切面算起
+     *
+     * @param startNanos 进入切面的时间（纳秒）
+     * @return 排队时间（纳秒）
+     */
+    private long getSojournNanos(long startNanos) {
+        long arrivalNanos = startNanos;
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            Object arrival = attributes.getAttribute(RequestArrivalFilter.ARRIVAL_NANOS_ATTRIBUTE,
+                    RequestAttributes.SCOPE_REQUEST);
+            if (arrival instanceof Long) {
+                arrivalNanos = (Long) arrival;
+            }
+        }
+        return System.nanoTime() - arrivalNanos;
+    }
+    
+    /**
+     * 将限流器当前状态写入响应头，不在Web请求中时跳过
+     *
+     * @param limiter 放行本次请求的本地限流器
+     * @param status 分布式限流器返回的状态，本地限流时为null
+     */
+    private void writeRateLimitHeaders(LocalRateLimiter limiter, RateLimitStatus status) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return;
+        }
+        HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+        if (response != null && !response.isCommitted()) {
+            RateLimitHeaders.write(response, status != null ? status : limiter.getStatus(true));
+        }
+    }
+    
+    /**
+     * 获取方法的限流描述符，不存在则根据注解创建
+     *
+     * @param method 被拦截的方法
+     * @param rateLimit 注解配置
+     * @return 限流描述符
+     */
+    private LimiterDescriptor getDescriptor(Method method, RateLimit rateLimit) {
+        LimiterDescriptor descriptor = descriptorsByIdentity.get(method);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        descriptor = descriptors.computeIfAbsent(method, m -> createDescriptor(m, rateLimit));
+        publishIdentityDescriptor(method, descriptor);
+        return descriptor;
+    }
+    
+    /**
+     * 把Method实例加入身份索引快照，只在每个Method实例首次调用时执行
+     *
+     * @param method 被拦截的方法
+     * @param descriptor 限流描述符
+     */
+    private synchronized void publishIdentityDescriptor(Method method, LimiterDescriptor descriptor) {
+        IdentityHashMap<Method, LimiterDescriptor> current = descriptorsByIdentity;
+        if (current.containsKey(method) || current.size() >= MAX_IDENTITY_DESCRIPTORS) {
+            return;
+        }
+        IdentityHashMap<Method, LimiterDescriptor> updated = new IdentityHashMap<>(current);
+        updated.put(method, descriptor);
+        descriptorsByIdentity = updated;
+    }
+    
+    /**
+     * 根据注解创建限流描述符，同时创建接口级别限流器并注册等待时间指标
+     *
+     * @param method 被拦截的方法
+     * @param rateLimit 注解配置
+     * @return 限流描述符
+     */
+    private LimiterDescriptor createDescriptor(Method method, RateLimit rateLimit) {
+        LimiterDescriptor descriptor = new LimiterDescriptor(method, rateLimit);
+        switch (descriptor.limitType) {
+            case USER:
+                // 用户级别的等待时间按接口聚合，避免每个用户产生一条时间序列
+                descriptor.interfaceLimiter = createInterfaceLimiter(rateLimit);
+                rateLimitMetrics.registerAvailablePermits(TYPE_INTERFACE, descriptor.fullMethodName,
+                        descriptor.interfaceLimiter);
+                descriptor.waitTimer = rateLimitMetrics.getWaitTimeTimer(TYPE_USER, descriptor.fullMethodName);
+                descriptor.interfaceWaitTimer = rateLimitMetrics.getWaitTimeTimer(
+                        TYPE_INTERFACE, descriptor.fullMethodName);
+                break;
+            
+            case INTERFACE:
+                descriptor.interfaceLimiter = createInterfaceLimiter(rateLimit);
+                rateLimitMetrics.registerAvailablePermits(TYPE_INTERFACE, descriptor.fullMethodName,
+                        descriptor.interfaceLimiter);
+                descriptor.waitTimer = rateLimitMetrics.getWaitTimeTimer(TYPE_INTERFACE, descriptor.fullMethodName);
+                descriptor.interfaceWaitTimer = descriptor.waitTimer;
+                break;
+            
+            case ADAPTIVE:
+                descriptor.adaptiveLimiter = adaptiveLimiterRegistry.getEndpointLimiter(descriptor.fullMethodName);
+                break;
+            
+            case DEFAULT:
+            default:
+                break;
+        }
+        
+        logger.debug("创建限流描述符: {}, 类型={}, QPS={}, 预热时间={}, 优先级={}",
+                descriptor.fullMethodName, descriptor.limitType, rateLimit.qps(),
+                rateLimit.warmupPeriod() > 0 ? rateLimit.warmupPeriod() + " " + rateLimit.warmupUnit() : "无",
+                descriptor.priority);
+        return descriptor;
+    }
+    
+    /**
+     * 根据注解配置创建接口级别限流器
+     *
+     * @param rateLimit 注解配置
+     * @return 限流器实例
+     */
+    private LocalRateLimiter createInterfaceLimiter(RateLimit rateLimit) {
+        double qps = getLocalRate(rateLimit.qps());
+        if (rateLimit.warmupPeriod() > 0) {
+            // 带预热期的限流器
+            return LocalRateLimiter.create(qps, rateLimit.warmupPeriod(), rateLimit.warmupUnit());
+        }
+        // 标准限流器
+        return LocalRateLimiter.create(qps);
+    }
+    
+    /**
+     * 自适应并发限流，调用前已通过准入控制
+     * 同时受全局和接口级别的自适应限流器约束，并以方法执行耗时作为RTT样本调整并发上限
+     *
+     * @param joinPoint 切点
+     * @param descriptor 限流描述符
+     * @param startNanos 进入切面的时间（纳秒）
+     * @return 方法执行结果
+     * @throws Throwable 执行异常
+     */
+    private Object adaptiveRateLimit(ProceedingJoinPoint joinPoint, LimiterDescriptor descriptor,
+                                     long startNanos) throws Throwable {
+        AdaptiveConcurrencyLimiter globalLimiter = adaptiveLimiterRegistry.getGlobalLimiter();
+        AdaptiveConcurrencyLimiter endpointLimiter = descriptor.adaptiveLimiter;
+        
+        String limiterType = TYPE_ADAPTIVE;
+        String limitTarget = descriptor.fullMethodName;
+        if (endpointLimiter.tryAcquire()) {
+            if (globalLimiter.tryAcquire()) {
+                long proceedStart = System.nanoTime();
+                try {
+                    return joinPoint.proceed();
+                } finally {
+                    long rtt = System.nanoTime() - proceedStart;
+                    endpointLimiter.onComplete(rtt);
+                    globalLimiter.onComplete(rtt);
+                }
+            }
+            limitTarget = TYPE_GLOBAL;
+            endpointLimiter.onIgnore();
+        }
+        
+        long waitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return handleRejection(joinPoint, descriptor, limiterType, limitTarget, null, waitTime);
+    }
+    
+    /**
+     * 处理被限流的请求：优先执行降级逻辑，否则抛出限流异常
+     *
+     * @param joinPoint 切点
+     * @param descriptor 限流描述符
+     * @param limiterType 拒绝请求的限流器类型
+     * @param limitTarget 限流目标
+     * @param status 令牌桶状态，非令牌桶类限流器为null
+     * @param waitTime 等待时间（毫秒）
+     * @return 降级结果
+     */
+    private Object handleRejection(ProceedingJoinPoint joinPoint, LimiterDescriptor descriptor,
+                                   String limiterType, String limitTarget, RateLimitStatus status,
+                                   long waitTime) {
         // 限流失败，尝试执行降级逻辑
-        Class<?> fallbackClass = rateLimit.fallbackClass();
+        Class<?> fallbackClass = descriptor.fallbackClass;
         if (fallbackClass != void.class) {
             try {
                 Fallback fallback = (Fallback) applicationContext.getBean(fallbackClass);
                 Fallback.RateLimitInfo rateLimitInfo = new Fallback.RateLimitInfo(
-                        className, methodName, "限流触发", waitTime);
+                        descriptor.className, descriptor.methodName, "限流触发", waitTime);
                 return fallback.fallback(joinPoint, rateLimitInfo);
             } catch (BeansException e) {
                 logger.error("降级处理失败，无法获取降级实现类: {}", fallbackClass.getName(), e);
@@ -244,95 +538,54 @@ public class RateLimiterAspect implements ApplicationContextAware {
         rateLimitMetrics.incrementRejectedCount(limiterType, limitTarget);
         
         // 抛出限流异常
+        if (status != null) {
+            throw new RateLimitException("请求频率超过限制", status, limiterType, limitTarget);
+        }
         throw new RateLimitException(
                 "请求频率超过限制",
-                1000, // 建议1秒后重试
+                DEFAULT_RETRY_AFTER_MS, // 并发类限流没有令牌桶，建议1秒后重试
                 limiterType,
                 limitTarget
         );
     }
     
     /**
-     * 从全局限流器获取令牌
-     *
-     * @param rateLimit 注解配置
-     * @return 是否获取成功
-     */
-    private boolean acquireFromGlobalLimiter(RateLimit rateLimit) {
-        double qps = globalRateLimiter.getRate();
-        long timeout = rateLimit.timeout();
-        TimeUnit timeoutUnit = rateLimit.timeoutUnit();
-        
-        // 每次更新可用令牌数指标
-        rateLimitMetrics.updateAvailablePermits("GLOBAL", "GLOBAL", 
-                globalRateLimiter.getRate() - globalRateLimiter.acquire(0));
-        
-        return acquireWithStrategy(globalRateLimiter, timeout, timeoutUnit);
-    }
-    
-    /**
-     * 从接口级别限流器获取令牌
+     * 获取或创建用户级别限流器
      *
-     * @param key 缓存键 (类名.方法名)
-     * @param rateLimit 注解配置
-     * @return 是否获取成功
+     * @param userId 用户ID
+     * @return 限流器实例，创建失败返回null
      */
-    private boolean acquireFromInterfaceLimiter(String key, RateLimit rateLimit) {
+    private LocalRateLimiter getUserLimiter(String userId) {
         try {
-            // 加前缀，方便移除监听器区分限流器类型
-            String cacheKey = "INTERFACE:" + key;
-            
-            // 获取或创建限流器
-            RateLimiter limiter = getOrCreateInterfaceLimiter(cacheKey, rateLimit);
-            
-            // 更新指标
-            rateLimitMetrics.updateAvailablePermits("INTERFACE", key, 
-                    limiter.getRate() - limiter.acquire(0));
-            
-            // 根据配置选择获取令牌的策略
-            return acquireWithStrategy(limiter, rateLimit.timeout(), rateLimit.timeoutUnit());
+            return userLimiterCache.get(userId);
         } catch (ExecutionException e) {
-            logger.error("获取接口限流器失败: {}", key, e);
-            return false;
+            logger.error("获取用户限流器失败: {}", userId, e);
+            return null;
         }
     }
     
     /**
-     * 从用户级别限流器获取令牌
+     * 从分布式全局限流器获取令牌，令牌桶容量为 全局QPS * 突发倍率
      *
-     * @param userId 用户ID
-     * @param rateLimit 注解配置
-     * @return 是否获取成功
+     * @param descriptor 限流描述符，提供超时时间和单位
+     * @return 令牌桶状态
      */
-    private boolean acquireFromUserLimiter(String userId, RateLimit rateLimit) {
-        try {
-            // 加前缀，方便移除监听器区分限流器类型
-            String cacheKey = "USER:" + userId;
-            
-            // 获取或创建用户限流器
-            RateLimiter limiter = userLimiterCache.get(cacheKey);
-            
-            // 更新指标
-            rateLimitMetrics.updateAvailablePermits("USER", userId, 
-                    limiter.getRate() - limiter.acquire(0));
-            
-            // 根据配置选择获取令牌的策略
-            return acquireWithStrategy(limiter, rateLimit.timeout(), rateLimit.timeoutUnit());
-        } catch (ExecutionException e) {
-            logger.error("获取用户限流器失败: {}", userId, e);
-            return false;
-        }
+    private RateLimitStatus acquireFromDistributedLimiter(LimiterDescriptor descriptor) {
+        double qps = rateLimitConfig.getGlobalQps();
+        double maxPermits = Math.max(1, qps * rateLimitConfig.getBurstFactor());
+        return distributedRateLimiter.tryAcquireWithStatus(GLOBAL_LIMIT_KEY, maxPermits, qps,
+                descriptor.timeout, descriptor.timeoutUnit);
     }
     
     /**
      * 根据不同的策略从限流器获取令牌
      *
      * @param limiter 限流器实例
-     * @param timeout 超时时间
-     * @param timeoutUnit 超时时间单位
+     * @param descriptor 限流描述符，提供超时时间和单位
      * @return 是否获取成功
      */
-    private boolean acquireWithStrategy(RateLimiter limiter, long timeout, TimeUnit timeoutUnit) {
+    private boolean acquireWithStrategy(LocalRateLimiter limiter, LimiterDescriptor descriptor) {
+        long timeout = descriptor.timeout;
         // 根据timeout参数选择不同的获取令牌策略
         if (timeout < 0) {
             // 完全阻塞式获取令牌，直到成功
@@ -343,66 +596,8 @@ public class RateLimiterAspect implements ApplicationContextAware {
             return limiter.tryAcquire();
         } else {
             // 带超时的等待获取令牌
-            return limiter.tryAcquire(timeout, timeoutUnit);
-        }
-    }
-    
-    /**
-     * 获取或创建接口级别限流器
-     * 使用AtomicReference+版本号解决ABA问题的双重检查锁实现
-     *
-     * @param key 缓存键 (类名.方法名)
-     * @param rateLimit 注解配置
-     * @return 限流器实例
-     */
-    private RateLimiter getOrCreateInterfaceLimiter(String key, RateLimit rateLimit) 
-            throws ExecutionException {
-        // 首先尝试从缓存获取
-        RateLimiter limiter = interfaceLimiterCache.getIfPresent(key);
-        
-        if (limiter == null) {
-            // 获取或创建版本控制器
-            AtomicReference<VersionedRateLimiter> versionRef = interfaceLimiterVersions.computeIfAbsent(
-                key, k -> new AtomicReference<>(null)
-            );
-            
-            // 获取当前版本
-            VersionedRateLimiter current = versionRef.get();
-            long nextVersion = (current == null) ? 1 : current.version + 1;
-            
-            // 从注解获取配置
-            double qps = rateLimit.qps();
-            long warmupPeriod = rateLimit.warmupPeriod();
-            TimeUnit warmupUnit = rateLimit.warmupUnit();
-            
-            // 创建新的限流器
-            RateLimiter newLimiter;
-            if (warmupPeriod > 0) {
-                // 带预热期的限流器
-                newLimiter = RateLimiter.create(qps, warmupPeriod, warmupUnit);
-            } else {
-                // 标准限流器
-                newLimiter = RateLimiter.create(qps);
-            }
-            
-            // 创建带版本的限流器
-            VersionedRateLimiter newVersioned = new VersionedRateLimiter(newLimiter, nextVersion);
-            
-            // CAS更新，解决ABA问题
-            if (versionRef.compareAndSet(current, newVersioned)) {
-                // 放入缓存
-                interfaceLimiterCache.put(key, newLimiter);
-                limiter = newLimiter;
-                
-                logger.debug("创建接口限流器: {}, QPS={}, 预热时间={}, 版本={}",
-                    key, qps, warmupPeriod > 0 ? warmupPeriod + " " + warmupUnit : "无", nextVersion);
-            } else {
-                // 有其他线程已经创建了限流器，尝试再次获取
-                limiter = interfaceLimiterCache.get(key);
-            }
+            return limiter.tryAcquire(timeout, descriptor.timeoutUnit);
         }
-        
-        return limiter;
     }
     
     /**
@@ -411,22 +606,19 @@ public class RateLimiterAspect implements ApplicationContextAware {
      * @return 用户ID，未登录则返回null
      */
     private String getUserIdFromRequest() {
-        ServletRequestAttributes attributes = 
+        ServletRequestAttributes attributes =
                 (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
         
         if (attributes != null) {
             HttpServletRequest request = attributes.getRequest();
-            // 从请求头获取JWT
-            String token = request.getHeader("Authorization");
-            if (token != null && token.startsWith("Bearer ")) {
-                token = token.substring(7);
-                try {
-                    // 从JWT中解析用户ID
-                    Optional<String> userIdOpt = jwtUtils.getUserIdFromToken(token);
-                    return userIdOpt.orElse(null);
-                } catch (Exception e) {
-                    logger.debug("从JWT解析用户ID失败", e);
+            try {
+                // 复用认证过滤器已验证的令牌，过滤器放行的路径在这里解析一次并保存到请求属性
+                Optional<VerifiedToken> verified = jwtUtils.getVerifiedToken(request);
+                if (verified.isPresent() && verified.get().getUserId() != null) {
+                    return String.valueOf(verified.get().getUserId());
                 }
+            } catch (Exception e) {
+                logger.debug("从JWT解析用户ID失败", e);
             }
         }
         
@@ -437,4 +629,48 @@ public class RateLimiterAspect implements ApplicationContextAware {
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 限流描述符
+     * 保存一个被拦截方法限流所需的全部信息：注解配置、方法名、限流器和预注册的指标
+     */
+    private static final class LimiterDescriptor {
+        final String className;
+        final String methodName;
+        final String fullMethodName;
+        final RateLimit.LimitType limitType;
+        final double qps;
+        final long timeout;
+        final TimeUnit timeoutUnit;
+        final int priority;
+        final Class<?> fallbackClass;
+        
+        /**
+         * 接口级别限流器，INTERFACE类型以及USER类型未登录时使用
+         */
+        LocalRateLimiter interfaceLimiter;
+        
+        /**
+         * 接口级别自适应限流器，仅ADAPTIVE类型使用
+         */
+        AdaptiveConcurrencyLimiter adaptiveLimiter;
+        
+        /**
+         * 本类型的等待时间指标，以及回退到接口级别限流时的等待时间指标
+         */
+        Timer waitTimer;
+        Timer interfaceWaitTimer;
+        
+        LimiterDescriptor(Method method, RateLimit rateLimit) {
+            this.className = method.getDeclaringClass().getName();
+            this.methodName = method.getName();
+            this.fullMethodName = className + "." + methodName;
+            this.limitType = rateLimit.limitType();
+            this.qps = rateLimit.qps();
+            this.timeout = rateLimit.timeout();
+            this.timeoutUnit = rateLimit.timeoutUnit();
+            this.priority = rateLimit.priority();
+            this.fallbackClass = rateLimit.fallbackClass();
+        }
+    }
+}
\ No newline at end of file
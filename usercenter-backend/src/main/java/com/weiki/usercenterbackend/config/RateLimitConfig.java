@@ -11,7 +11,7 @@ import java.util.concurrent.TimeUnit;
  */
 @Configuration
 public class RateLimitConfig {
-
+    
     /**
      * 全局默认限流QPS
      */
@@ -51,6 +51,8 @@ public class RateLimitConfig {
     
     /**
      * 是否启用分布式限流
+     * 开启后DEFAULT类型的接口由Redis在集群范围内统一计数，每个请求增加一次Redis调用；
+     * 默认关闭，各节点按存活节点数均分速率，在本地限流
      */
     @Value("${rate.limit.distributed.enabled:false}")
     private boolean distributedLimitEnabled;
@@ -68,6 +70,189 @@ public class RateLimitConfig {
     @Value("${rate.limit.burst.factor:2.0}")
     private double burstFactor;
     
+    /**
+     * 是否启用基于优先级的准入控制（过载时优先丢弃低优先级请求）
+     */
+    @Value("${rate.limit.admission.enabled:true}")
+    private boolean admissionEnabled;
+    
+    /**
+     * 准入控制共享的最大并发请求数
+     */
+    @Value("${rate.limit.admission.concurrency:200}")
+    private int admissionMaxConcurrency;
+    
+    /**
+     * 准入控制共享的QPS预算
+     */
+    @Value("${rate.limit.admission.qps:1000}")
+    private int admissionQps;
+    
+    /**
+     * 为高优先级请求预留的容量比例
+     * 例如：0.3表示最低优先级的请求最多只能使用70%的并发和QPS预算
+     */
+    @Value("${rate.limit.admission.reserved.ratio:0.3}")
+    private double admissionReservedRatio;
+    
+    /**
+     * 受保护的优先级，大于等于该值的请求不会因排队延迟被丢弃
+     */
+    @Value("${rate.limit.admission.protected.priority:8}")
+    private int admissionProtectedPriority;
+    
+    /**
+     * CoDel目标排队延迟（毫秒）
+     */
+    @Value("${rate.limit.admission.codel.target:5}")
+    private long admissionCodelTarget;
+    
+    /**
+     * CoDel观测窗口（毫秒）
+     */
+    @Value("${rate.limit.admission.codel.interval:100}")
+    private long admissionCodelInterval;
+    
+    /**
+     * 自适应限流器的初始并发上限
+     */
+    @Value("${rate.limit.adaptive.initial:20}")
+    private int adaptiveInitialLimit;
+    
+    /**
+     * 自适应限流器的最小并发上限
+     */
+    @Value("${rate.limit.adaptive.min:5}")
+    private int adaptiveMinLimit;
+    
+    /**
+     * 接口级别自适应限流器的最大并发上限
+     */
+    @Value("${rate.limit.adaptive.max:200}")
+    private int adaptiveMaxLimit;
+    
+    /**
+     * 全局自适应限流器的最大并发上限
+     */
+    @Value("${rate.limit.adaptive.global.max:1000}")
+    private int adaptiveGlobalMaxLimit;
+    
+    /**
+     * 可容忍的RTT升高倍数，短期RTT超过长期RTT的该倍数后开始收缩并发上限
+     */
+    @Value("${rate.limit.adaptive.tolerance:1.5}")
+    private double adaptiveRttTolerance;
+    
+    /**
+     * 自适应限流器采样窗口（毫秒）
+     */
+    @Value("${rate.limit.adaptive.window:1000}")
+    private long adaptiveWindow;
+    
+    /**
+     * 采样窗口内最少样本数，样本不足时不调整上限
+     */
+    @Value("${rate.limit.adaptive.samples:10}")
+    private int adaptiveMinWindowSamples;
+    
+    /**
+     * 集群节点数，未启用集群成员注册或尚未获取到存活节点数时使用，
+     * 本地限流时每个节点按 全局QPS/节点数 限流
+     */
+    @Value("${rate.limit.distributed.cluster-size:1}")
+    private int distributedClusterSize;
+    
+    /**
+     * 是否启用集群成员注册，启用后按存活节点数均分本地限流速率
+     */
+    @Value("${rate.limit.membership.enabled:false}")
+    private boolean membershipEnabled;
+    
+    /**
+     * 节点心跳间隔（毫秒）
+     */
+    @Value("${rate.limit.membership.heartbeat:5000}")
+    private long membershipHeartbeat;
+    
+    /**
+     * 节点心跳过期时间（毫秒），超过该时间未心跳的节点视为下线
+     */
+    @Value("${rate.limit.membership.ttl:15000}")
+    private long membershipTtl;
+    
+    /**
+     * 分布式限流单次Redis调用的最长等待时间（毫秒），超时计为失败并降级为本地限流
+     * 应接近熔断器的慢调用阈值，而不是Redis客户端的连接超时
+     */
+    @Value("${rate.limit.distributed.call-timeout:250}")
+    private long distributedCallTimeout;
+    
+    /**
+     * 执行分布式限流Redis调用的线程数
+     */
+    @Value("${rate.limit.distributed.call-threads:4}")
+    private int distributedCallThreads;
+    
+    /**
+     * 等待执行的分布式限流Redis调用上限，超过后直接降级为本地限流
+     */
+    @Value("${rate.limit.distributed.call-queue-capacity:64}")
+    private int distributedCallQueueCapacity;
+    
+    /**
+     * 熔断器滑动窗口调用次数
+     */
+    @Value("${rate.limit.distributed.breaker.window:50}")
+    private int breakerWindowSize;
+    
+    /**
+     * 熔断器窗口内最少调用次数，不足时不判断是否熔断
+     */
+    @Value("${rate.limit.distributed.breaker.min-calls:10}")
+    private int breakerMinimumCalls;
+    
+    /**
+     * 熔断器失败率阈值（百分比）
+     */
+    @Value("${rate.limit.distributed.breaker.failure-rate:50}")
+    private double breakerFailureRateThreshold;
+    
+    /**
+     * 熔断器慢调用阈值（毫秒）
+     */
+    @Value("${rate.limit.distributed.breaker.slow-call:200}")
+    private long breakerSlowCall;
+    
+    /**
+     * 熔断器慢调用率阈值（百分比）
+     */
+    @Value("${rate.limit.distributed.breaker.slow-call-rate:80}")
+    private double breakerSlowCallRateThreshold;
+    
+    /**
+     * 熔断器打开状态持续时间（毫秒），之后进入半开状态探测Redis
+     */
+    @Value("${rate.limit.distributed.breaker.open:5000}")
+    private long breakerOpenDuration;
+    
+    /**
+     * 熔断器半开状态放行的探测调用数
+     */
+    @Value("${rate.limit.distributed.breaker.half-open-probes:3}")
+    private int breakerHalfOpenProbes;
+    
+    /**
+     * 用户级别指标只导出被拒绝次数最多的前K个用户，其余用户合并为other
+     */
+    @Value("${rate.limit.metrics.top-k:20}")
+    private int metricsTopK;
+    
+    /**
+     * 用户级别热点统计窗口（毫秒），每个窗口结束时刷新导出的前K个用户
+     */
+    @Value("${rate.limit.metrics.window:60000}")
+    private long metricsWindow;
+    
     /**
      * 获取全局默认QPS
      */
@@ -131,6 +316,216 @@ public class RateLimitConfig {
         return burstFactor;
     }
     
+    /**
+     * 是否启用优先级准入控制
+     */
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+    
+    /**
+     * 获取准入控制最大并发数
+     */
+    public int getAdmissionMaxConcurrency() {
+        return admissionMaxConcurrency;
+    }
+    
+    /**
+     * 获取准入控制QPS预算
+     */
+    public int getAdmissionQps() {
+        return admissionQps;
+    }
+    
+    /**
+     * 获取为高优先级预留的容量比例
+     */
+    public double getAdmissionReservedRatio() {
+        return admissionReservedRatio;
+    }
+    
+    /**
+     * 获取受保护的优先级
+     */
+    public int getAdmissionProtectedPriority() {
+        return admissionProtectedPriority;
+    }
+    
+    /**
+     * 获取CoDel目标排队延迟（毫秒）
+     */
+    public long getAdmissionCodelTarget() {
+        return admissionCodelTarget;
+    }
+    
+    /**
+     * 获取CoDel观测窗口（毫秒）
+     */
+    public long getAdmissionCodelInterval() {
+        return admissionCodelInterval;
+    }
+    
+    /**
+     * 获取自适应限流器的初始并发上限
+     */
+    public int getAdaptiveInitialLimit() {
+        return adaptiveInitialLimit;
+    }
+    
+    /**
+     * 获取自适应限流器的最小并发上限
+     */
+    public int getAdaptiveMinLimit() {
+        return adaptiveMinLimit;
+    }
+    
+    /**
+     * 获取接口级别自适应限流器的最大并发上限
+     */
+    public int getAdaptiveMaxLimit() {
+        return adaptiveMaxLimit;
+    }
+    
+    /**
+     * 获取全局自适应限流器的最大并发上限
+     */
+    public int getAdaptiveGlobalMaxLimit() {
+        return adaptiveGlobalMaxLimit;
+    }
+    
+    /**
+     * 获取可容忍的RTT升高倍数
+     */
+    public double getAdaptiveRttTolerance() {
+        return adaptiveRttTolerance;
+    }
+    
+    /**
+     * 获取自适应限流器采样窗口（毫秒）
+     */
+    public long getAdaptiveWindow() {
+        return adaptiveWindow;
+    }
+    
+    /**
+     * 获取采样窗口内最少样本数
+     */
+    public int getAdaptiveMinWindowSamples() {
+        return adaptiveMinWindowSamples;
+    }
+    
+    /**
+     * 获取集群节点数
+     */
+    public int getDistributedClusterSize() {
+        return distributedClusterSize;
+    }
+    
+    /**
+     * 是否启用集群成员注册
+     */
+    public boolean isMembershipEnabled() {
+        return membershipEnabled;
+    }
+    
+    /**
+     * 获取节点心跳间隔（毫秒）
+     */
+    public long getMembershipHeartbeat() {
+        return membershipHeartbeat;
+    }
+    
+    /**
+     * 获取节点心跳过期时间（毫秒）
+     */
+    public long getMembershipTtl() {
+        return membershipTtl;
+    }
+    
+    /**
+     * 获取分布式限流单次Redis调用的最长等待时间（毫秒）
+     */
+    public long getDistributedCallTimeout() {
+        return distributedCallTimeout;
+    }
+    
+    /**
+     * 获取执行分布式限流Redis调用的线程数
+     */
+    public int getDistributedCallThreads() {
+        return distributedCallThreads;
+    }
+    
+    /**
+     * 获取等待执行的分布式限流Redis调用上限
+     */
+    public int getDistributedCallQueueCapacity() {
+        return distributedCallQueueCapacity;
+    }
+    
+    /**
+     * 获取熔断器滑动窗口调用次数
+     */
+    public int getBreakerWindowSize() {
+        return breakerWindowSize;
+    }
+    
+    /**
+     * 获取熔断器窗口内最少调用次数
+     */
+    public int getBreakerMinimumCalls() {
+        return breakerMinimumCalls;
+    }
+    
+    /**
+     * 获取熔断器失败率阈值（百分比）
+     */
+    public double getBreakerFailureRateThreshold() {
+        return breakerFailureRateThreshold;
+    }
+    
+    /**
+     * 获取熔断器慢调用阈值（毫秒）
+     */
+    public long getBreakerSlowCall() {
+        return breakerSlowCall;
+    }
+    
+    /**
+     * 获取熔断器慢调用率阈值（百分比）
+     */
+    public double getBreakerSlowCallRateThreshold() {
+        return breakerSlowCallRateThreshold;
+    }
+    
+    /**
+     * 获取熔断器打开状态持续时间（毫秒）
+     */
+    public long getBreakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+    
+    /**
+     * 获取熔断器半开状态放行的探测调用数
+     */
+    public int getBreakerHalfOpenProbes() {
+        return breakerHalfOpenProbes;
+    }
+    
+    /**
+     * 获取用户级别指标导出的热点用户数
+     */
+    public int getMetricsTopK() {
+        return metricsTopK;
+    }
+    
+    /**
+     * 获取用户级别热点统计窗口（毫秒）
+     */
+    public long getMetricsWindow() {
+        return metricsWindow;
+    }
+    
     /**
      * 获取缓存过期的时间单位
      */
@@ -24,9 +24,16 @@ public class RedissonConfig {
     @Value("${redisson.timeout}")
     private int timeout;
 
+    /**
+     * 看门狗超时时间（毫秒），未指定租期的锁每隔该时间的1/3续期一次
+     */
+    @Value("${redisson.lock-watchdog-timeout:30000}")
+    private long lockWatchdogTimeout;
+
     @Bean
     public RedissonClient redissonClient() {
         Config config = new Config();
+        config.setLockWatchdogTimeout(lockWatchdogTimeout);
         // 单节点模式配置
         config.useSingleServer()
                 .setAddress(address)
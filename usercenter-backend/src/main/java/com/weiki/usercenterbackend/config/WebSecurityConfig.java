@@ -1,11 +1,15 @@
 package com.weiki.usercenterbackend.config;
 
+import com.weiki.usercenterbackend.filter.ExcludedPathMatcher;
 import com.weiki.usercenterbackend.filter.JwtAuthenticationFilter;
+import com.weiki.usercenterbackend.filter.LoginUserFilter;
+import com.weiki.usercenterbackend.filter.RequestArrivalFilter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -30,6 +34,23 @@ import static com.weiki.usercenterbackend.constant.UserConstant.ADMIN_ROLE;
 public class WebSecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final LoginUserFilter loginUserFilter;
+    private final RequestArrivalFilter requestArrivalFilter;
+    private final ExcludedPathMatcher excludedPathMatcher;
+
+    /**
+     * 注册请求到达时间过滤器，排在所有过滤器之前
+     *
+     * @return FilterRegistrationBean
+     */
+    @Bean
+    public FilterRegistrationBean<RequestArrivalFilter> requestArrivalFilterRegistration() {
+        FilterRegistrationBean<RequestArrivalFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(requestArrivalFilter);
+        registrationBean.addUrlPatterns("/*");
+        registrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registrationBean;
+    }
 
     /**
      * 注册JWT认证过滤器
@@ -44,6 +65,20 @@ public class WebSecurityConfig {
         registrationBean.setOrder(1);
         return registrationBean;
     }
+
+    /**
+     * 注册登录态过滤器，/user/** 接口从令牌中读取登录用户
+     *
+     * @return FilterRegistrationBean
+     */
+    @Bean
+    public FilterRegistrationBean<LoginUserFilter> loginUserFilterRegistration() {
+        FilterRegistrationBean<LoginUserFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(loginUserFilter);
+        registrationBean.addUrlPatterns("/user/*");
+        registrationBean.setOrder(1);
+        return registrationBean;
+    }
     
     /**
      * Actuator安全配置
@@ -81,9 +116,15 @@ public class WebSecurityConfig {
             .antMatcher("/**")
             .authorizeRequests()
                 .antMatchers("/api/**").permitAll()
-                .antMatchers("/", "/swagger-ui/**", "/v3/api-docs/**", "/doc.html").permitAll()
+                .antMatchers("/").permitAll()
+                // 与JWT认证过滤器共用同一组排除路径
+                .requestMatchers(excludedPathMatcher).permitAll()
                 .anyRequest().permitAll()
                 .and()
+            // 登录态由JWT携带，不创建会话
+            .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
             .csrf().disable();
         
         return http.build();
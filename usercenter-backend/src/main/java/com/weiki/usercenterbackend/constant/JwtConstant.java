@@ -43,6 +43,36 @@ public class JwtConstant {
      * 令牌类型的claim名称
      */
     public static final String TOKEN_TYPE_CLAIM = "tokenType";
+
+    /**
+     * 用户角色的claim名称
+     */
+    public static final String USER_ROLE_CLAIM = "role";
+
+    /**
+     * 用户状态的claim名称
+     */
+    public static final String USER_STATUS_CLAIM = "status";
+
+    /**
+     * 刷新令牌所属令牌族的claim名称
+     */
+    public static final String REFRESH_FAMILY_CLAIM = "fid";
+
+    /**
+     * 浏览器端保存访问令牌的Cookie名称
+     */
+    public static final String TOKEN_COOKIE = "weiki_token";
+
+    /**
+     * 浏览器端保存刷新令牌的Cookie名称，只发送给刷新接口
+     */
+    public static final String REFRESH_TOKEN_COOKIE = "weiki_refresh_token";
+
+    /**
+     * 刷新令牌Cookie的路径
+     */
+    public static final String REFRESH_TOKEN_COOKIE_PATH = "/api/auth";
     
     /**
      * 访问令牌类型
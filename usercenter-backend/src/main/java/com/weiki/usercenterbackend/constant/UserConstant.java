@@ -5,11 +5,6 @@ package com.weiki.usercenterbackend.constant;
  */
 public interface UserConstant {
 
-    /**
-     * 用户登录态键
-     */
-    String USER_LOGIN_STATE = "userLoginState";
-
     /**
      * 普通用户角色
      */
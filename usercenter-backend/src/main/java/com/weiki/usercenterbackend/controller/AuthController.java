@@ -1,9 +1,11 @@
 package com.weiki.usercenterbackend.controller;
 
+import com.weiki.usercenterbackend.exception.JwtAuthenticationException;
 import com.weiki.usercenterbackend.model.dto.AuthRequestDTO;
 import com.weiki.usercenterbackend.model.dto.RefreshTokenRequestDTO;
 import com.weiki.usercenterbackend.model.dto.TokenDTO;
 import com.weiki.usercenterbackend.service.AuthService;
+import com.weiki.usercenterbackend.utils.JwtUtils;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +16,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 /**
@@ -26,6 +30,7 @@ import javax.validation.Valid;
 public class AuthController {
 
     private final AuthService authService;
+    private final JwtUtils jwtUtils;
 
     /**
      * 用户登录
@@ -42,14 +47,30 @@ public class AuthController {
 
     /**
      * 刷新令牌
+     * 请求体中没有刷新令牌时读取 /user/login 下发的Cookie，并以Cookie返回新令牌，响应体中不包含刷新令牌
      *
      * @param refreshTokenRequest 刷新令牌请求DTO
+     * @param request HTTP请求
+     * @param response HTTP响应
      * @return 新的令牌DTO
      */
     @PostMapping("/refresh")
     @ApiOperation("刷新令牌")
-    public ResponseEntity<TokenDTO> refreshToken(@Valid @RequestBody RefreshTokenRequestDTO refreshTokenRequest) {
-        TokenDTO tokenDTO = authService.refreshToken(refreshTokenRequest.getRefreshToken());
+    public ResponseEntity<TokenDTO> refreshToken(
+            @Valid @RequestBody(required = false) RefreshTokenRequestDTO refreshTokenRequest,
+            HttpServletRequest request, HttpServletResponse response) {
+        if (refreshTokenRequest != null) {
+            TokenDTO tokenDTO = authService.refreshToken(refreshTokenRequest.getRefreshToken());
+            return ResponseEntity.ok(tokenDTO);
+        }
+        String refreshToken = JwtUtils.getRefreshTokenFromRequest(request);
+        if (refreshToken == null) {
+            throw new JwtAuthenticationException("刷新令牌不能为空");
+        }
+        TokenDTO tokenDTO = authService.refreshToken(refreshToken);
+        jwtUtils.writeAccessToken(response, tokenDTO.getAccessToken());
+        jwtUtils.writeRefreshToken(response, tokenDTO.getRefreshToken());
+        tokenDTO.setRefreshToken(null);
         return ResponseEntity.ok(tokenDTO);
     }
 
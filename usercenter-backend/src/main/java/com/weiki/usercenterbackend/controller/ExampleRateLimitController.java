@@ -127,13 +127,26 @@ public class ExampleRateLimitController {
         return ResultUtils.success(data);
     }
     
+    /**
+     * 自适应并发限流
+     * 无需配置QPS，根据接口耗时自动调整允许的并发数
+     */
+    @GetMapping("/adaptive")
+    @RateLimit(limitType = RateLimit.LimitType.ADAPTIVE)
+    public BaseResponse<Map<String, Object>> adaptiveRateLimit() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("message", "自适应限流配置成功通过");
+        data.put("config", "根据请求RTT自动计算并发上限");
+        return ResultUtils.success(data);
+    }
+    
     /**
      * 支付接口 - 严格限流100 QPS (预热10秒)
-     * 生产环境关键接口示例
+     * 生产环境关键接口示例，最高优先级，过载时最后被丢弃
      */
     @RequestMapping(value = "/api/v1/payment", method = {RequestMethod.GET, RequestMethod.POST})
     @RateLimit(qps = 100.0, warmupPeriod = 10, warmupUnit = TimeUnit.SECONDS, 
-               timeout = 200, timeoutUnit = TimeUnit.MILLISECONDS)
+               timeout = 200, timeoutUnit = TimeUnit.MILLISECONDS, priority = 10)
     public BaseResponse<Map<String, Object>> paymentEndpoint() {
         Map<String, Object> data = new HashMap<>();
         data.put("message", "支付接口请求成功");
@@ -156,7 +169,7 @@ public class ExampleRateLimitController {
     
     /**
      * 用户付费级别限流（优先级演示）
-     * 付费用户优先级是免费用户的3倍（暂未启用）
+     * 付费用户优先级是免费用户的3倍，系统过载时免费用户请求先被丢弃
      */
     @GetMapping("/user/premium")
     @RateLimit(limitType = RateLimit.LimitType.USER, priority = 10)
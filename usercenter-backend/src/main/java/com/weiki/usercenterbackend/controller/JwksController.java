@@ -0,0 +1,50 @@
+package com.weiki.usercenterbackend.controller;
+
+import com.weiki.usercenterbackend.utils.JwtKeyRing;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWKS控制器，发布非对称签名的公钥，供网关和边车在本地验证令牌
+ * 路径不在 /api/* 下，不经过JWT认证过滤器
+ */
+@Api(tags = "JWKS接口")
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final JwtUtils jwtUtils;
+
+    /**
+     * 从Redis加载密钥环的间隔（毫秒），JWKS的缓存时间与之相同
+     */
+    @Value("${jwt.keys.reload-interval:60000}")
+    private long reloadIntervalMillis;
+
+    /**
+     * 获取全部有效公钥，对称签名模式下不发布任何密钥
+     *
+     * @return JWK Set
+     */
+    @GetMapping("/.well-known/jwks.json")
+    @ApiOperation("获取JWT公钥集合")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        JwtKeyRing keyRing = jwtUtils.getKeyRing();
+        if (keyRing == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(reloadIntervalMillis, TimeUnit.MILLISECONDS).cachePublic())
+                .body(keyRing.toJwks());
+    }
+}
@@ -5,6 +5,7 @@ import com.weiki.usercenterbackend.common.ErrorCode;
 import com.weiki.usercenterbackend.common.ResultUtils;
 import com.weiki.usercenterbackend.exception.BusinessException;
 import com.weiki.usercenterbackend.model.domain.User;
+import com.weiki.usercenterbackend.model.dto.TokenDTO;
 import com.weiki.usercenterbackend.model.request.UserLoginRequest;
 import com.weiki.usercenterbackend.model.request.UserPageRequest;
 import com.weiki.usercenterbackend.model.request.UserRegisterRequest;
@@ -14,7 +15,9 @@ import com.weiki.usercenterbackend.model.request.DeleteAccountRequest;
 import com.weiki.usercenterbackend.model.response.BaseResponse;
 import com.weiki.usercenterbackend.model.vo.PageVO;
 import com.weiki.usercenterbackend.model.vo.UserVO;
+import com.weiki.usercenterbackend.service.AuthService;
 import com.weiki.usercenterbackend.service.UserService;
+import com.weiki.usercenterbackend.utils.JwtUtils;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -26,13 +29,12 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import static com.weiki.usercenterbackend.constant.UserConstant.USER_LOGIN_STATE;
-
 /**
  * 用户接口
  */
@@ -45,16 +47,24 @@ public class UserController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private AuthService authService;
+
+    @Resource
+    private JwtUtils jwtUtils;
+
     /**
      * 用户注册
      *
      * @param userRegisterRequest
      * @param request
+     * @param response
      * @return
      */
     @PostMapping("/register")
     @ApiOperation(value = "用户注册", notes = "用户注册接口")
-    public BaseResponse<User> userRegister(@RequestBody UserRegisterRequest userRegisterRequest, HttpServletRequest request) {
+    public BaseResponse<User> userRegister(@RequestBody UserRegisterRequest userRegisterRequest, HttpServletRequest request,
+                                           HttpServletResponse response) {
         if (userRegisterRequest == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
@@ -65,6 +75,7 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User user = userService.userRegister(userAccount, userPassword, checkPassword, request);
+        issueLoginToken(user, response);
         return ResultUtils.success(user);
     }
 
@@ -73,11 +84,13 @@ public class UserController {
      *
      * @param userLoginRequest
      * @param request
+     * @param response
      * @return
      */
     @PostMapping("/login")
     @ApiOperation(value = "用户登录", notes = "用户登录接口")
-    public BaseResponse<User> userLogin(@RequestBody UserLoginRequest userLoginRequest, HttpServletRequest request) {
+    public BaseResponse<User> userLogin(@RequestBody UserLoginRequest userLoginRequest, HttpServletRequest request,
+                                        HttpServletResponse response) {
         if (userLoginRequest == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
@@ -87,6 +100,7 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User user = userService.userLogin(userAccount, userPassword, request);
+        issueLoginToken(user, response);
         return ResultUtils.success(user);
     }
 
@@ -94,15 +108,23 @@ public class UserController {
      * 用户注销
      *
      * @param request
+     * @param response
      * @return
      */
     @PostMapping("/logout")
     @ApiOperation(value = "用户注销", notes = "用户注销接口")
-    public BaseResponse<Integer> userLogout(HttpServletRequest request) {
+    public BaseResponse<Integer> userLogout(HttpServletRequest request, HttpServletResponse response) {
         if (request == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         int result = userService.userLogout(request);
+        // 撤销本设备的刷新令牌族
+        String refreshToken = JwtUtils.getRefreshTokenFromRequest(request);
+        if (refreshToken != null) {
+            authService.revokeRefreshToken(refreshToken);
+        }
+        jwtUtils.clearAccessToken(response);
+        jwtUtils.clearRefreshToken(response);
         return ResultUtils.success(result);
     }
 
@@ -115,14 +137,13 @@ public class UserController {
     @GetMapping("/current")
     @ApiOperation(value = "获取当前用户", notes = "获取当前登录用户的信息")
     public BaseResponse<User> getCurrentUser(HttpServletRequest request) {
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User currentUser = (User) userObj;
-        if (currentUser == null) {
+        User currentUser = userService.getLoginUser(request);
+        long userId = currentUser.getId();
+        // 令牌中只有ID、角色和状态，完整信息从用户缓存中读取
+        User user = userService.getByIdWithCache(userId);
+        if (user == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN);
         }
-        long userId = currentUser.getId();
-        // TODO 校验用户是否合法
-        User user = userService.getById(userId);
         User safetyUser = userService.getSafetyUser(user);
         return ResultUtils.success(safetyUser);
     }
@@ -208,7 +229,9 @@ public class UserController {
         String newPassword = passwordUpdateRequest.getNewPassword();
         String checkPassword = passwordUpdateRequest.getCheckPassword();
         
-        boolean result = userService.updatePassword(oldPassword, newPassword, checkPassword, request);
+        // 先确认登录态，未登录的请求不会进入按用户加锁的修改流程
+        User loginUser = userService.getLoginUser(request);
+        boolean result = userService.updatePassword(loginUser.getId(), oldPassword, newPassword, checkPassword, request);
         return ResultUtils.success(result);
     }
 
@@ -338,4 +361,18 @@ public class UserController {
         
         return ResultUtils.success(userVOList, extraInfo);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 签发携带用户ID、角色和状态的访问令牌，同时通过响应头和HttpOnly Cookie返回，
+     * 浏览器端无需改动即可随请求自动携带，服务端不再保存会话；
+     * 刷新令牌以只发送给 /api/auth 的Cookie下发，访问令牌到期前调用 /api/auth/refresh 换取新令牌
+     *
+     * @param user 登录用户
+     * @param response HTTP响应
+     */
+    private void issueLoginToken(User user, HttpServletResponse response) {
+        TokenDTO tokens = authService.issueTokens(user.getId(), user.getUserRole(), user.getUserStatus());
+        jwtUtils.writeAccessToken(response, tokens.getAccessToken());
+        jwtUtils.writeRefreshToken(response, tokens.getRefreshToken());
+    }
+}
@@ -1,5 +1,7 @@
 package com.weiki.usercenterbackend.exception;
 
+import com.weiki.usercenterbackend.ratelimit.RateLimitStatus;
+
 /**
  * 限流异常
  * 当接口被限流时抛出此异常
@@ -21,6 +23,11 @@ public class RateLimitException extends RuntimeException {
      */
     private final String limitTarget;
     
+    /**
+     * 拒绝请求时限流器的状态，非令牌桶类限流器（并发限流、准入控制）为null
+     */
+    private final RateLimitStatus status;
+    
     /**
      * 创建一个限流异常
      *
@@ -34,6 +41,23 @@ public class RateLimitException extends RuntimeException {
         this.retryAfterMs = retryAfterMs;
         this.limiterType = limiterType;
         this.limitTarget = limitTarget;
+        this.status = null;
+    }
+    
+    /**
+     * 根据限流器状态创建一个限流异常，重试时间取距离下一个令牌可用的时间
+     *
+     * @param message 异常消息
+     * @param status 限流器状态
+     * @param limiterType 限流器类型
+     * @param limitTarget 限流目标
+     */
+    public RateLimitException(String message, RateLimitStatus status, String limiterType, String limitTarget) {
+        super(message);
+        this.retryAfterMs = status.getRetryAfterMs();
+        this.limiterType = limiterType;
+        this.limitTarget = limitTarget;
+        this.status = status;
     }
     
     /**
@@ -72,4 +96,13 @@ public class RateLimitException extends RuntimeException {
     public String getLimitTarget() {
         return limitTarget;
     }
+    
+    /**
+     * 获取限流器状态
+     *
+     * @return 限流器状态，可能为null
+     */
+    public RateLimitStatus getStatus() {
+        return status;
+    }
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.weiki.usercenterbackend.exception;
 
 import com.weiki.usercenterbackend.model.response.BaseResponse;
 import com.weiki.usercenterbackend.model.response.ResultCode;
+import com.weiki.usercenterbackend.ratelimit.RateLimitHeaders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -26,7 +27,7 @@ public class RateLimitExceptionHandler {
     
     /**
      * 处理限流异常
-     * 返回标准JSON格式的错误响应并设置Retry-After响应头
+     * 返回标准JSON格式的错误响应并设置Retry-After和RateLimit-*响应头
      *
      * @param ex 限流异常
      * @param response HTTP响应对象
@@ -44,7 +45,12 @@ public class RateLimitExceptionHandler {
         long retryAfterSeconds = ex.getRetryAfterSeconds();
         
         // 方式1：使用秒数（更简单）
-        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setHeader(RateLimitHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        
+        // 令牌桶类限流器带有实际状态，输出标准RateLimit-*响应头
+        if (ex.getStatus() != null) {
+            RateLimitHeaders.write(response, ex.getStatus());
+        }
         
         // 方式2：使用HTTP日期格式（更规范）
         SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
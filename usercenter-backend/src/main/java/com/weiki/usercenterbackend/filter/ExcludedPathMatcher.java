@@ -0,0 +1,53 @@
+package com.weiki.usercenterbackend.filter;
+
+import com.weiki.usercenterbackend.utils.PathPrefixTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 不需要认证的请求路径
+ * 前缀列表由 jwt.excluded-paths 配置，启动时编译为字典树；
+ * JWT认证过滤器据此放行请求，安全配置也用同一个匹配器设置permitAll，两处不会不一致
+ */
+@Slf4j
+@Component
+public class ExcludedPathMatcher implements RequestMatcher {
+
+    private final List<String> prefixes;
+    private final PathPrefixTrie trie;
+
+    public ExcludedPathMatcher(@Value("${jwt.excluded-paths:/api/auth/login,/api/auth/register,/api/auth/refresh,"
+            + "/swagger-ui.html,/swagger-ui/,/v3/api-docs,/doc.html}") String[] prefixes) {
+        this.prefixes = Arrays.asList(prefixes);
+        this.trie = PathPrefixTrie.compile(this.prefixes);
+        log.info("不需要认证的路径前缀: {}", this.prefixes);
+    }
+
+    /**
+     * 判断路径是否不需要认证
+     *
+     * @param path 请求路径（servletPath）
+     * @return 是否以任意一个排除前缀开头
+     */
+    public boolean matches(String path) {
+        return path != null && trie.matches(path);
+    }
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        return matches(request.getServletPath());
+    }
+
+    /**
+     * 配置的路径前缀
+     */
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+}
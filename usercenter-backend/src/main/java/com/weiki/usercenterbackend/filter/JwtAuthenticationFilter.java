@@ -2,6 +2,8 @@ package com.weiki.usercenterbackend.filter;
 
 import com.weiki.usercenterbackend.constant.JwtConstant;
 import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.TokenBlacklist;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -13,8 +15,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -25,20 +25,9 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    /**
-     * 不需要认证的请求路径
-     */
-    private static final List<String> EXCLUDED_PATHS = Arrays.asList(
-            "/api/auth/login",
-            "/api/auth/register",
-            "/api/auth/refresh",
-            "/swagger-ui.html",
-            "/swagger-ui/",
-            "/v3/api-docs",
-            "/doc.html"
-    );
-
     private final JwtUtils jwtUtils;
+    private final TokenBlacklist tokenBlacklist;
+    private final ExcludedPathMatcher excludedPathMatcher;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -46,38 +35,43 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             // 如果是不需要认证的路径，直接放行
             String path = request.getServletPath();
-            if (isExcludedPath(path)) {
+            if (excludedPathMatcher.matches(path)) {
                 filterChain.doFilter(request, response);
                 return;
             }
 
-            // 从请求头获取JWT令牌
+            // 从请求头获取JWT令牌，验签和解析只做一次
             String token = getTokenFromRequest(request);
-            if (token != null && jwtUtils.validateToken(token)) {
+            Optional<VerifiedToken> verified = token != null ? jwtUtils.parseToken(token) : Optional.empty();
+            if (verified.isPresent()) {
+                VerifiedToken verifiedToken = verified.get();
                 // 确保令牌是访问令牌而不是刷新令牌
-                if (!jwtUtils.isAccessToken(token)) {
+                if (!verifiedToken.isAccessToken()) {
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                     response.getWriter().write("无效的令牌类型");
                     return;
                 }
 
+                // 检查令牌是否已注销，本地过滤器判定不在黑名单时不访问Redis
+                if (tokenBlacklist.isBlacklisted(verifiedToken)) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    response.getWriter().write("令牌已失效");
+                    return;
+                }
+
                 // 从令牌中获取用户ID
-                Optional<String> userIdStrOpt = jwtUtils.getUserIdFromToken(token);
-                if (userIdStrOpt.isPresent()) {
-                    try {
-                        // 将String类型的userId转换为Long类型
-                        Long userId = Long.parseLong(userIdStrOpt.get());
-                        // 将用户ID设置为请求属性，便于后续处理
-                        request.setAttribute("userId", userId);
-                        filterChain.doFilter(request, response);
-                        return;
-                    } catch (NumberFormatException e) {
-                        log.error("用户ID格式错误，无法转换为Long类型", e);
-                        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                        response.getWriter().write("用户ID格式错误");
-                        return;
-                    }
+                Long userId = verifiedToken.getUserId();
+                if (userId == null) {
+                    log.error("用户ID格式错误，无法转换为Long类型");
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    response.getWriter().write("用户ID格式错误");
+                    return;
                 }
+                // 将用户ID和已验证的令牌设置为请求属性，后续处理不再重复解析
+                request.setAttribute("userId", userId);
+                request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verifiedToken);
+                filterChain.doFilter(request, response);
+                return;
             }
 
             // 认证失败
@@ -90,16 +84,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
     }
 
-    /**
-     * 判断请求路径是否在排除列表中
-     *
-     * @param path 请求路径
-     * @return 是否在排除列表中
-     */
-    private boolean isExcludedPath(String path) {
-        return EXCLUDED_PATHS.stream().anyMatch(path::startsWith);
-    }
-
     /**
      * 从请求头获取JWT令牌
      *
@@ -0,0 +1,45 @@
+package com.weiki.usercenterbackend.filter;
+
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.TokenBlacklist;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * 登录态过滤器，用于 /user/** 接口
+ * 从请求头或Cookie中读取访问令牌，验证通过且未注销时把用户ID和已验证的令牌设置为请求属性；
+ * 不拦截未登录的请求，是否需要登录由各接口和@AuthCheck判断。登录态完全由令牌携带，服务端不保存会话；
+ * 访问令牌到期前由客户端通过 /api/auth/refresh 使用刷新令牌换取新令牌，过滤器不续签
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginUserFilter extends OncePerRequestFilter {
+
+    private final JwtUtils jwtUtils;
+    private final TokenBlacklist tokenBlacklist;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Optional<VerifiedToken> verified = jwtUtils.getVerifiedToken(request);
+        if (verified.isPresent()) {
+            VerifiedToken verifiedToken = verified.get();
+            if (verifiedToken.isAccessToken() && verifiedToken.getUserId() != null
+                    && !tokenBlacklist.isBlacklisted(verifiedToken)) {
+                request.setAttribute("userId", verifiedToken.getUserId());
+            } else {
+                request.removeAttribute(VerifiedToken.REQUEST_ATTRIBUTE);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
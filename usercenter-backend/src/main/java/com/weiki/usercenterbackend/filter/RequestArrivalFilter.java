@@ -0,0 +1,30 @@
+package com.weiki.usercenterbackend.filter;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求到达时间过滤器，在过滤器链最前面记录请求进入应用的时间（System.nanoTime）
+ * 准入控制以此计算请求的排队延迟，包含认证、加锁、限流等待等所有在执行接口之前花费的时间
+ */
+@Component
+public class RequestArrivalFilter extends OncePerRequestFilter {
+
+    /**
+     * 请求属性名，值为Long类型的纳秒时间戳
+     */
+    public static final String ARRIVAL_NANOS_ATTRIBUTE = RequestArrivalFilter.class.getName() + ".arrivalNanos";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        request.setAttribute(ARRIVAL_NANOS_ATTRIBUTE, System.nanoTime());
+        filterChain.doFilter(request, response);
+    }
+}
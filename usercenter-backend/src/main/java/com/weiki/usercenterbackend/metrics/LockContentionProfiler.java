@@ -0,0 +1,277 @@
+package com.weiki.usercenterbackend.metrics;
+
+import com.weiki.usercenterbackend.annotation.LockMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁竞争分析器
+ * 按锁前缀（锁键最后一个冒号之前的部分，如 weiki:lock:userRegister）统计等待时间和持有时间分布；
+ * 发生竞争（等待超过阈值或获取失败）的锁键按采样率记入Space-Saving热点统计，内存占用固定；
+ * 同时记录本节点当前持有的锁，供 /actuator/locks 端点查看
+ */
+@Component
+public class LockContentionProfiler {
+
+    private static final String RESULT_ACQUIRED = "acquired";
+    private static final String RESULT_FAILED = "failed";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 导出的竞争热点锁键数量
+     */
+    @Value("${lock.profiler.top-n:10}")
+    private int topN;
+
+    /**
+     * 等待超过该时间（毫秒）视为发生竞争
+     */
+    @Value("${lock.profiler.contended-threshold:1}")
+    private long contendedThresholdMillis;
+
+    /**
+     * 竞争事件的采样率，取值(0, 1]
+     */
+    @Value("${lock.profiler.sample-rate:1.0}")
+    private double sampleRate;
+
+    /**
+     * 热点统计窗口（毫秒）
+     */
+    @Value("${lock.profiler.window:300000}")
+    private long windowMillis;
+
+    /**
+     * 按锁前缀缓存的计时器，数量受锁前缀的数量限制
+     */
+    private final ConcurrentHashMap<String, Timer> waitTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> failedWaitTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> holdTimers = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点当前持有的锁，key为 线程ID + 锁键
+     */
+    private final ConcurrentHashMap<String, HeldLock> heldLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 当前窗口和上一个完整窗口的竞争热点，由this保护
+     */
+    private SpaceSavingTopK currentWindow;
+    private List<SpaceSavingTopK.Entry> previousWindow = Collections.emptyList();
+    private volatile long windowStart = System.currentTimeMillis();
+
+    @Autowired
+    public LockContentionProfiler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录一次获取锁的结果
+     *
+     * @param lockKey 锁键
+     * @param waitNanos 等待时间（纳秒）
+     * @param acquired 是否获取成功
+     */
+    public void recordAcquire(String lockKey, long waitNanos, boolean acquired) {
+        String prefix = prefixOf(lockKey);
+        if (acquired) {
+            waitTimers.computeIfAbsent(prefix, p -> waitTimer(p, RESULT_ACQUIRED))
+                    .record(waitNanos, TimeUnit.NANOSECONDS);
+        } else {
+            failedWaitTimers.computeIfAbsent(prefix, p -> waitTimer(p, RESULT_FAILED))
+                    .record(waitNanos, TimeUnit.NANOSECONDS);
+        }
+
+        boolean contended = !acquired || waitNanos >= TimeUnit.MILLISECONDS.toNanos(contendedThresholdMillis);
+        if (contended && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            recordContended(lockKey);
+        }
+    }
+
+    /**
+     * 记录本线程持有了锁
+     *
+     * @param lockKey 锁键
+     * @param mode 加锁模式，查询剩余租期时按模式选择锁对象
+     * @param permitId 信号量许可ID，其他模式为null
+     * @param leaseTime 租期，小于等于0表示看门狗续期
+     * @param unit 租期的时间单位
+     */
+    public void onLocked(String lockKey, LockMode mode, String permitId, long leaseTime, TimeUnit unit) {
+        Thread thread = Thread.currentThread();
+        long leaseMillis = leaseTime > 0 ? unit.toMillis(leaseTime) : -1;
+        heldLocks.compute(heldKey(thread, lockKey), (k, held) -> {
+            if (held == null) {
+                return new HeldLock(lockKey, mode, permitId, thread, leaseMillis);
+            }
+            held.holdCount++;
+            return held;
+        });
+    }
+
+    /**
+     * 记录本线程释放了锁
+     *
+     * @param lockKey 锁键
+     * @param holdNanos 持有时间（纳秒）
+     */
+    public void onUnlocked(String lockKey, long holdNanos) {
+        heldLocks.computeIfPresent(heldKey(Thread.currentThread(), lockKey),
+                (k, held) -> --held.holdCount > 0 ? held : null);
+        holdTimers.computeIfAbsent(prefixOf(lockKey), this::holdTimer).record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 获取本节点当前持有的锁快照
+     */
+    public List<HeldLock> getHeldLocks() {
+        return new ArrayList<>(heldLocks.values());
+    }
+
+    /**
+     * 获取竞争最激烈的锁键，优先返回上一个完整窗口的统计，尚无完整窗口时返回当前窗口
+     */
+    public synchronized List<SpaceSavingTopK.Entry> getContendedKeys() {
+        rotateIfExpired(System.currentTimeMillis());
+        if (!previousWindow.isEmpty() || currentWindow == null) {
+            return previousWindow;
+        }
+        return currentWindow.top(topN);
+    }
+
+    /**
+     * 竞争事件的采样率
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 锁前缀：锁键最后一个冒号之前的部分，动态部分（如用户账号）约定放在最后一段
+     */
+    static String prefixOf(String lockKey) {
+        int index = lockKey.lastIndexOf(':');
+        return index > 0 ? lockKey.substring(0, index) : lockKey;
+    }
+
+    private synchronized void recordContended(String lockKey) {
+        rotateIfExpired(System.currentTimeMillis());
+        if (currentWindow == null) {
+            // 计数器数量为导出数量的4倍，降低近似误差
+            currentWindow = new SpaceSavingTopK(Math.max(1, topN) * 4);
+        }
+        currentWindow.add(lockKey);
+    }
+
+    /**
+     * 窗口到期时保存快照并开始新窗口，必须持有this锁
+     */
+    private void rotateIfExpired(long now) {
+        if (now - windowStart < windowMillis) {
+            return;
+        }
+        previousWindow = currentWindow != null ? currentWindow.top(topN) : Collections.emptyList();
+        if (currentWindow != null) {
+            currentWindow.clear();
+        }
+        windowStart = now;
+    }
+
+    private Timer waitTimer(String prefix, String result) {
+        return Timer.builder("lock.wait.duration")
+                .tag("prefix", prefix)
+                .tag("result", result)
+                .description("分布式锁等待时间")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Timer holdTimer(String prefix) {
+        return Timer.builder("lock.hold.duration")
+                .tag("prefix", prefix)
+                .description("分布式锁持有时间")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String heldKey(Thread thread, String lockKey) {
+        return thread.getId() + "@" + lockKey;
+    }
+
+    /**
+     * 本节点持有中的锁
+     */
+    public static final class HeldLock {
+        private final String lockKey;
+        private final LockMode mode;
+        private final String permitId;
+        private final String threadName;
+        private final long threadId;
+        private final long acquiredAt;
+        private final long leaseMillis;
+
+        /**
+         * 重入次数，只在ConcurrentHashMap.compute中修改
+         */
+        private int holdCount = 1;
+
+        HeldLock(String lockKey, LockMode mode, String permitId, Thread thread, long leaseMillis) {
+            this.lockKey = lockKey;
+            this.mode = mode;
+            this.permitId = permitId;
+            this.threadName = thread.getName();
+            this.threadId = thread.getId();
+            this.acquiredAt = System.currentTimeMillis();
+            this.leaseMillis = leaseMillis;
+        }
+
+        public String getLockKey() {
+            return lockKey;
+        }
+
+        public LockMode getMode() {
+            return mode;
+        }
+
+        /**
+         * 信号量许可ID，其他模式为null
+         */
+        public String getPermitId() {
+            return permitId;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public long getAcquiredAt() {
+            return acquiredAt;
+        }
+
+        /**
+         * 加锁时指定的租期（毫秒），-1表示看门狗续期
+         */
+        public long getLeaseMillis() {
+            return leaseMillis;
+        }
+
+        public int getHoldCount() {
+            return holdCount;
+        }
+    }
+}
@@ -1,18 +1,51 @@
 package com.weiki.usercenterbackend.metrics;
 
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.ratelimit.LocalRateLimiter;
 import io.micrometer.core.instrument.*;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 限流器监控指标
  * 用于通过Prometheus监控限流器运行情况
+ *
+ * 用户级别的数据不以用户ID作为标签直接导出，否则每个触发限流的用户都会产生永久存在的时间序列。
+ * 用户被拒绝次数通过Space-Saving统计窗口内的前K个热点用户，其余用户合并为other，指标数量固定为K+1
  */
 @Component
 public class RateLimitMetrics {
     
+    /**
+     * 用户级别限流器类型
+     */
+    public static final String USER_TYPE = "USER";
+    
+    /**
+     * 非热点用户合并后的标签值
+     */
+    public static final String OTHER_TARGET = "other";
+    
+    /**
+     * 所有用户合并后的标签值
+     */
+    public static final String ALL_TARGET = "ALL";
+    
+    private static final String USER_TOP_REJECTED_METRIC = "http_requests_limiter_user_rejected_top";
+    
+    /**
+     * 热点统计计数器数量相对K的倍数，计数器越多近似误差越小
+     */
+    private static final int SKETCH_CAPACITY_FACTOR = 4;
+    
     private final MeterRegistry meterRegistry;
     
     /**
@@ -23,13 +56,52 @@ public class RateLimitMetrics {
     private final ConcurrentHashMap<String, Gauge> availablePermitsGauges = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Counter> removedCounters = new ConcurrentHashMap<>();
     
+    /**
+     * 所有用户被拒绝的总数
+     */
+    private final Counter userRejectedCounter;
+    
+    /**
+     * 当前窗口的热点用户统计
+     */
+    private final SpaceSavingTopK userRejections;
+    private final int topK;
+    private final long windowNanos;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    
+    /**
+     * 上一个窗口的统计结果，由指标读取
+     */
+    private volatile Map<String, Long> topUserRejections = Collections.emptyMap();
+    private volatile long otherUserRejections;
+    private volatile long snapshotTime = System.nanoTime();
+    
+    /**
+     * 当前导出的热点用户指标，由自身加锁保护
+     */
+    private final Map<String, Gauge> topUserGauges = new HashMap<>();
+    
     /**
      * 构造函数，注入MeterRegistry
      *
      * @param meterRegistry Micrometer注册表
+     * @param rateLimitConfig 限流配置
      */
-    public RateLimitMetrics(MeterRegistry meterRegistry) {
+    public RateLimitMetrics(MeterRegistry meterRegistry, RateLimitConfig rateLimitConfig) {
         this.meterRegistry = meterRegistry;
+        this.topK = Math.max(1, rateLimitConfig.getMetricsTopK());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, rateLimitConfig.getMetricsWindow()));
+        this.userRejections = new SpaceSavingTopK(topK * SKETCH_CAPACITY_FACTOR);
+        
+        this.userRejectedCounter = Counter.builder("http_requests_limiter_rejected_total")
+                .tag("type", USER_TYPE)
+                .tag("target", ALL_TARGET)
+                .description("API请求被限流拒绝总数")
+                .register(meterRegistry);
+        Gauge.builder(USER_TOP_REJECTED_METRIC, this, RateLimitMetrics::getOtherUserRejections)
+                .tag("target", OTHER_TARGET)
+                .description("上一统计窗口内用户被限流拒绝次数，只导出前K个用户")
+                .register(meterRegistry);
     }
     
     /**
@@ -40,7 +112,19 @@ public class RateLimitMetrics {
      * @param waitTimeMs 等待时间（毫秒）
      */
     public void recordWaitTime(String limiterType, String limitTarget, long waitTimeMs) {
-        Timer timer = waitTimeTimers.computeIfAbsent(
+        getWaitTimeTimer(limiterType, limitTarget).record(waitTimeMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 获取或创建限流器等待时间计时器
+     * 调用方可以缓存返回的计时器，避免每次记录时拼接键和查找缓存
+     *
+     * @param limiterType 限流器类型
+     * @param limitTarget 限流目标，必须是有限集合（如接口名），不能是用户ID
+     * @return 等待时间计时器
+     */
+    public Timer getWaitTimeTimer(String limiterType, String limitTarget) {
+        return waitTimeTimers.computeIfAbsent(
             getMetricKey(limiterType, limitTarget),
             key -> Timer.builder("http_requests_limiter_wait_time")
                 .tag("type", limiterType)
@@ -48,17 +132,21 @@ public class RateLimitMetrics {
                 .description("API请求获取令牌等待时间")
                 .register(meterRegistry)
         );
-        
-        timer.record(waitTimeMs, TimeUnit.MILLISECONDS);
     }
     
     /**
      * 记录被拒绝的请求数
+     * 用户级别只累加总数并计入热点统计，不按用户ID创建计数器
      *
      * @param limiterType 限流器类型
      * @param limitTarget 限流目标（接口/用户）
      */
     public void incrementRejectedCount(String limiterType, String limitTarget) {
+        if (USER_TYPE.equals(limiterType)) {
+            recordUserRejection(limitTarget);
+            return;
+        }
+        
         Counter counter = rejectedCounters.computeIfAbsent(
             getMetricKey(limiterType, limitTarget),
             key -> Counter.builder("http_requests_limiter_rejected_total")
@@ -72,19 +160,18 @@ public class RateLimitMetrics {
     }
     
     /**
-     * 记录限流器从缓存中移除的事件
+     * 记录限流器从缓存中移除的事件，并注销该限流目标的所有指标
      *
      * @param limiterType 限流器类型
      * @param limitTarget 限流目标（接口/用户）
      * @param rate 限流器的速率
      */
     public void recordRemoval(String limiterType, String limitTarget, double rate) {
+        // 只按类型计数，用户ID和速率都不适合作为标签
         Counter counter = removedCounters.computeIfAbsent(
-            getMetricKey(limiterType, limitTarget),
+            limiterType,
             key -> Counter.builder("http_requests_limiter_removed_total")
                 .tag("type", limiterType)
-                .tag("target", limitTarget)
-                .tag("rate", String.valueOf(rate))
                 .description("限流器从缓存中移除的总数")
                 .register(meterRegistry)
         );
@@ -93,29 +180,123 @@ public class RateLimitMetrics {
         
         // 移除相关的其他指标
         String key = getMetricKey(limiterType, limitTarget);
-        availablePermitsGauges.remove(key);
+        removeMeter(waitTimeTimers.remove(key));
+        removeMeter(rejectedCounters.remove(key));
+        removeMeter(availablePermitsGauges.remove(key));
     }
     
     /**
-     * 更新可用令牌数量
+     * 注册可用令牌数指标，采集时直接读取限流器的当前状态
+     * 用户级别不导出可用令牌数，避免每个用户产生一条时间序列
      *
      * @param limiterType 限流器类型
-     * @param limitTarget 限流目标（接口/用户）
-     * @param availablePermits 可用令牌数
+     * @param limitTarget 限流目标（接口/全局）
+     * @param limiter 本地限流器
      */
-    public void updateAvailablePermits(String limiterType, String limitTarget, Number availablePermits) {
+    public void registerAvailablePermits(String limiterType, String limitTarget, LocalRateLimiter limiter) {
+        if (USER_TYPE.equals(limiterType)) {
+            return;
+        }
         String key = getMetricKey(limiterType, limitTarget);
-        
-        // 如果已有此Gauge则更新，否则创建新的
-        if (!availablePermitsGauges.containsKey(key)) {
-            Gauge gauge = Gauge.builder("http_requests_limiter_available_permits", 
-                    () -> availablePermits.doubleValue())
+        availablePermitsGauges.computeIfAbsent(key, k -> Gauge.builder("http_requests_limiter_available_permits",
+                    limiter, LocalRateLimiter::getAvailablePermits)
                 .tag("type", limiterType)
                 .tag("target", limitTarget)
                 .description("API请求限流器可用令牌数")
-                .register(meterRegistry);
+                .register(meterRegistry));
+    }
+    
+    /**
+     * 记录一次用户被拒绝，窗口到期时刷新导出的热点用户
+     *
+     * @param userId 用户ID
+     */
+    private void recordUserRejection(String userId) {
+        userRejectedCounter.increment();
+        userRejections.add(userId);
+        
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+            rotateUserWindow();
+        }
+    }
+    
+    /**
+     * 结束当前统计窗口：导出前K个用户的被拒绝次数，注销跌出前K的用户指标
+     */
+    void rotateUserWindow() {
+        List<SpaceSavingTopK.Entry> top;
+        long total;
+        synchronized (userRejections) {
+            top = userRejections.top(topK);
+            total = userRejections.getTotal();
+            userRejections.clear();
+        }
+        
+        Map<String, Long> snapshot = new HashMap<>(top.size() * 2);
+        long topSum = 0;
+        for (SpaceSavingTopK.Entry entry : top) {
+            // 导出保证下界，替换时继承的误差计入other，避免高估某个用户
+            long guaranteed = entry.getCount() - entry.getError();
+            snapshot.put(entry.getKey(), guaranteed);
+            topSum += guaranteed;
+        }
+        
+        synchronized (topUserGauges) {
+            topUserRejections = snapshot;
+            otherUserRejections = Math.max(0, total - topSum);
+            snapshotTime = System.nanoTime();
             
-            availablePermitsGauges.put(key, gauge);
+            Iterator<Map.Entry<String, Gauge>> iterator = topUserGauges.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Gauge> entry = iterator.next();
+                if (!snapshot.containsKey(entry.getKey())) {
+                    meterRegistry.remove(entry.getValue());
+                    iterator.remove();
+                }
+            }
+            for (String userId : snapshot.keySet()) {
+                topUserGauges.computeIfAbsent(userId, id ->
+                    Gauge.builder(USER_TOP_REJECTED_METRIC, this, m -> m.getTopUserRejections(id))
+                        .tag("target", id)
+                        .description("上一统计窗口内用户被限流拒绝次数，只导出前K个用户")
+                        .register(meterRegistry));
+            }
+        }
+    }
+    
+    /**
+     * 获取热点用户在上一窗口内被拒绝的次数，窗口过期后返回0
+     */
+    double getTopUserRejections(String userId) {
+        if (isSnapshotStale()) {
+            return 0;
+        }
+        Long count = topUserRejections.get(userId);
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * 获取非热点用户在上一窗口内被拒绝的次数之和，窗口过期后返回0
+     */
+    double getOtherUserRejections() {
+        return isSnapshotStale() ? 0 : otherUserRejections;
+    }
+    
+    /**
+     * 之后一直没有用户被拒绝，就不会触发窗口刷新，此时上一窗口的结果不再代表当前状态
+     */
+    private boolean isSnapshotStale() {
+        return System.nanoTime() - snapshotTime > 2 * windowNanos;
+    }
+    
+    /**
+     * 从注册表中注销指标
+     */
+    private void removeMeter(Meter meter) {
+        if (meter != null) {
+            meterRegistry.remove(meter);
         }
     }
     
@@ -129,4 +310,4 @@ public class RateLimitMetrics {
     private String getMetricKey(String limiterType, String limitTarget) {
         return limiterType + ":" + limitTarget;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package com.weiki.usercenterbackend.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Space-Saving热点统计
+ * 只用固定数量的计数器近似统计出现次数最多的key：
+ * 计数器用满后，新key替换当前计数最小的计数器，并继承其计数作为误差上界，
+ * 因此真实次数超过 总次数/容量 的key一定会被保留
+ */
+public class SpaceSavingTopK {
+
+    private final int capacity;
+
+    /**
+     * 计数器，由this保护
+     */
+    private final HashMap<String, Entry> entries;
+
+    /**
+     * 窗口内记录的总次数，包括已被替换掉的key
+     */
+    private long total;
+
+    /**
+     * 创建热点统计
+     *
+     * @param capacity 计数器数量，应明显大于需要导出的K，以降低近似误差
+     */
+    public SpaceSavingTopK(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new HashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * 记录一次key出现
+     *
+     * @param key 统计对象，如用户ID
+     */
+    public synchronized void add(String key) {
+        total++;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.count++;
+            return;
+        }
+        if (entries.size() < capacity) {
+            entries.put(key, new Entry(key, 1, 0));
+            return;
+        }
+        // 计数器已满，替换计数最小的key
+        Entry min = null;
+        for (Entry candidate : entries.values()) {
+            if (min == null || candidate.count < min.count) {
+                min = candidate;
+            }
+        }
+        entries.remove(min.key);
+        entries.put(key, new Entry(key, min.count + 1, min.count));
+    }
+
+    /**
+     * 获取计数最大的前k个key，按计数降序排列
+     *
+     * @param k 数量
+     * @return 快照，调用方可以随意修改
+     */
+    public synchronized List<Entry> top(int k) {
+        List<Entry> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            result.add(new Entry(entry.key, entry.count, entry.error));
+        }
+        result.sort((a, b) -> Long.compare(b.count, a.count));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    /**
+     * 获取记录的总次数
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * 清空统计，开始新的窗口
+     */
+    public synchronized void clear() {
+        entries.clear();
+        total = 0;
+    }
+
+    /**
+     * 热点计数
+     */
+    public static final class Entry {
+        private final String key;
+        private long count;
+        private final long error;
+
+        Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 估计次数，不小于真实次数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 估计误差上界，真实次数不小于 count - error
+         */
+        public long getError() {
+            return error;
+        }
+    }
+}
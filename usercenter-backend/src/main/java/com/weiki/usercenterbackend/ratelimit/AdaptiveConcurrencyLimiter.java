@@ -0,0 +1,174 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发限流器
+ * 参考Gradient算法，根据请求RTT自动计算允许的并发数：
+ * 短期RTT相对长期RTT升高说明下游开始排队，按比例收缩并发上限；RTT平稳时缓慢放大上限
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 长期RTT的平滑因子，约等于取最近100个窗口的均值
+     */
+    private static final double LONG_RTT_SMOOTHING = 0.01;
+
+    /**
+     * 并发上限的平滑因子，避免单个窗口的抖动导致上限剧烈变化
+     */
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    /**
+     * 梯度下限，单次调整最多将上限缩小一半
+     */
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final long windowNanos;
+    private final int minWindowSamples;
+
+    /**
+     * 当前并发上限
+     */
+    private volatile double limit;
+
+    /**
+     * 当前并发数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 采样窗口状态，由sampleLock保护
+     */
+    private final Object sampleLock = new Object();
+    private long windowStart = System.nanoTime();
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private double longRtt;
+
+    /**
+     * 创建自适应并发限流器
+     *
+     * @param initialLimit 初始并发上限
+     * @param minLimit 最小并发上限
+     * @param maxLimit 最大并发上限
+     * @param rttTolerance 可容忍的RTT升高倍数，超过后开始收缩上限
+     * @param window 采样窗口长度
+     * @param windowUnit 采样窗口时间单位
+     * @param minWindowSamples 窗口内最少样本数，样本不足时不调整上限
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                                      long window, TimeUnit windowUnit, int minWindowSamples) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.rttTolerance = Math.max(1.0, rttTolerance);
+        this.windowNanos = windowUnit.toNanos(window);
+        this.minWindowSamples = Math.max(1, minWindowSamples);
+    }
+
+    /**
+     * 尝试占用一个并发名额（非阻塞）
+     * 返回true时调用方必须在请求结束后调用{@link #onComplete(long)}或{@link #onIgnore()}
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > (int) limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求完成，释放并发名额并记录RTT
+     *
+     * @param rttNanos 请求耗时（纳秒）
+     */
+    public void onComplete(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        synchronized (sampleLock) {
+            windowRttSum += rttNanos;
+            windowSamples++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, current);
+            if (now - windowStart >= windowNanos && windowSamples >= minWindowSamples) {
+                updateLimit((double) windowRttSum / windowSamples, windowMaxInFlight);
+                windowStart = now;
+                windowRttSum = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+            }
+        }
+    }
+
+    /**
+     * 释放并发名额但不记录RTT，用于另一个限流器拒绝后的回滚
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 根据窗口平均RTT计算新的并发上限
+     *
+     * @param shortRtt 窗口平均RTT
+     * @param maxInFlight 窗口内最大并发数
+     */
+    private void updateLimit(double shortRtt, int maxInFlight) {
+        // 计时精度不足时RTT可能为0，按1纳秒计算，避免除零得到NaN后上限变为0
+        shortRtt = Math.max(1.0, shortRtt);
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt = longRtt * (1 - LONG_RTT_SMOOTHING) + shortRtt * LONG_RTT_SMOOTHING;
+        }
+        // RTT大幅下降（如下游恢复）时让长期RTT尽快跟上，避免长时间维持过高的基准
+        if (longRtt / shortRtt > 2) {
+            longRtt = longRtt * 0.95;
+        }
+
+        double currentLimit = limit;
+        // 并发远未用满时RTT无法反映容量，只允许收缩不允许扩张
+        boolean appLimited = maxInFlight < currentLimit / 2;
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+        double queueSize = Math.sqrt(currentLimit);
+        double newLimit = currentLimit * gradient + queueSize;
+        if (appLimited && newLimit > currentLimit) {
+            return;
+        }
+        newLimit = currentLimit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * 获取当前并发上限
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 获取当前并发数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取长期RTT（毫秒）
+     */
+    public double getLongRttMillis() {
+        synchronized (sampleLock) {
+            return longRtt / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
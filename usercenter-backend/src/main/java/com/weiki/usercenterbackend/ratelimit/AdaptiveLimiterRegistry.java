@@ -0,0 +1,94 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发限流器注册表
+ * 维护一个全局限流器和每个接口各自的限流器，并将当前并发上限导出为指标
+ */
+@Component
+public class AdaptiveLimiterRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveLimiterRegistry.class);
+
+    private static final String GLOBAL_TARGET = "GLOBAL";
+
+    private final RateLimitConfig rateLimitConfig;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 全局自适应限流器，所有ADAPTIVE类型的接口共享
+     */
+    private final AdaptiveConcurrencyLimiter globalLimiter;
+
+    /**
+     * 接口级别自适应限流器
+     * key: 类名.方法名，数量受@RateLimit注解的方法数限制
+     */
+    private final ConcurrentHashMap<String, AdaptiveConcurrencyLimiter> endpointLimiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptiveLimiterRegistry(RateLimitConfig rateLimitConfig, MeterRegistry meterRegistry) {
+        this.rateLimitConfig = rateLimitConfig;
+        this.meterRegistry = meterRegistry;
+        this.globalLimiter = createLimiter(GLOBAL_TARGET, rateLimitConfig.getAdaptiveGlobalMaxLimit());
+    }
+
+    /**
+     * 获取全局自适应限流器
+     */
+    public AdaptiveConcurrencyLimiter getGlobalLimiter() {
+        return globalLimiter;
+    }
+
+    /**
+     * 获取或创建接口级别自适应限流器
+     *
+     * @param endpoint 类名.方法名
+     * @return 限流器实例
+     */
+    public AdaptiveConcurrencyLimiter getEndpointLimiter(String endpoint) {
+        AdaptiveConcurrencyLimiter limiter = endpointLimiters.get(endpoint);
+        if (limiter != null) {
+            return limiter;
+        }
+        return endpointLimiters.computeIfAbsent(endpoint,
+                key -> createLimiter(key, rateLimitConfig.getAdaptiveMaxLimit()));
+    }
+
+    /**
+     * 创建限流器并注册并发上限和当前并发数指标
+     */
+    private AdaptiveConcurrencyLimiter createLimiter(String target, int maxLimit) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                rateLimitConfig.getAdaptiveInitialLimit(),
+                rateLimitConfig.getAdaptiveMinLimit(),
+                maxLimit,
+                rateLimitConfig.getAdaptiveRttTolerance(),
+                rateLimitConfig.getAdaptiveWindow(),
+                TimeUnit.MILLISECONDS,
+                rateLimitConfig.getAdaptiveMinWindowSamples());
+
+        Gauge.builder("http_requests_adaptive_limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("target", target)
+                .description("自适应限流器当前允许的并发数")
+                .register(meterRegistry);
+        Gauge.builder("http_requests_adaptive_in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("target", target)
+                .description("自适应限流器当前并发数")
+                .register(meterRegistry);
+
+        logger.debug("创建自适应限流器: {}, 初始并发上限={}, 最大并发上限={}",
+                target, limiter.getLimit(), maxLimit);
+        return limiter;
+    }
+}
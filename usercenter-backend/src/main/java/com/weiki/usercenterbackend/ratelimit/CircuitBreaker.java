@@ -0,0 +1,220 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 熔断器
+ * 以最近N次调用为滑动窗口，失败率或慢调用率超过阈值时打开熔断，调用方直接走降级逻辑；
+ * 打开一段时间后进入半开状态，只放行少量探测调用，探测全部成功则关闭熔断，任意一次失败重新打开
+ */
+public class CircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /**
+         * 关闭：正常调用
+         */
+        CLOSED,
+        /**
+         * 打开：拒绝调用，走降级逻辑
+         */
+        OPEN,
+        /**
+         * 半开：放行少量探测调用
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 状态变化监听器
+     */
+    public interface TransitionListener {
+        void onTransition(State from, State to);
+    }
+
+    private static final byte OUTCOME_SUCCESS = 0;
+    private static final byte OUTCOME_SLOW = 1;
+    private static final byte OUTCOME_FAILURE = 2;
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final TransitionListener listener;
+
+    /**
+     * 以下状态由this保护
+     */
+    private State state = State.CLOSED;
+    private final byte[] window;
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+    private int windowSlowCalls;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    /**
+     * 创建熔断器
+     *
+     * @param windowSize 滑动窗口调用次数
+     * @param minimumCalls 窗口内最少调用次数，不足时不计算失败率
+     * @param failureRateThreshold 失败率阈值（百分比）
+     * @param slowCall 慢调用阈值
+     * @param slowCallRateThreshold 慢调用率阈值（百分比）
+     * @param open 打开状态持续时间
+     * @param halfOpenProbes 半开状态放行的探测调用数
+     * @param unit slowCall和open的时间单位
+     * @param listener 状态变化监听器，可以为null
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long slowCall,
+                          double slowCallRateThreshold, long open, int halfOpenProbes, TimeUnit unit,
+                          TransitionListener listener) {
+        this.window = new byte[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(window.length, minimumCalls));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = unit.toNanos(slowCall);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = unit.toNanos(open);
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.listener = listener;
+    }
+
+    /**
+     * 判断本次是否允许调用被保护的资源
+     * 返回true时调用方必须在调用结束后调用{@link #onSuccess(long)}或{@link #onError(long)}
+     *
+     * @return 是否允许调用
+     */
+    public boolean tryAcquirePermission() {
+        State from = null;
+        boolean permitted;
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                from = transitionTo(State.HALF_OPEN);
+            }
+            // 半开状态只放行有限的探测调用，其余调用继续走降级逻辑
+            permitted = probesIssued < halfOpenProbes;
+            if (permitted) {
+                probesIssued++;
+            }
+        }
+        fireTransition(from, State.HALF_OPEN);
+        return permitted;
+    }
+
+    /**
+     * 记录一次成功调用
+     *
+     * @param durationNanos 调用耗时（纳秒）
+     */
+    public void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallNanos ? OUTCOME_SLOW : OUTCOME_SUCCESS);
+    }
+
+    /**
+     * 记录一次失败调用
+     *
+     * @param durationNanos 调用耗时（纳秒）
+     */
+    public void onError(long durationNanos) {
+        record(OUTCOME_FAILURE);
+    }
+
+    /**
+     * 获取当前状态
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(byte outcome) {
+        State from = null;
+        State to = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                if (outcome != OUTCOME_SUCCESS) {
+                    // 探测失败，重新打开
+                    from = transitionTo(State.OPEN);
+                    to = State.OPEN;
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    from = transitionTo(State.CLOSED);
+                    to = State.CLOSED;
+                }
+            } else if (state == State.CLOSED) {
+                addToWindow(outcome);
+                if (windowCalls >= minimumCalls
+                        && (windowFailures * 100.0 / windowCalls >= failureRateThreshold
+                        || windowSlowCalls * 100.0 / windowCalls >= slowCallRateThreshold)) {
+                    from = transitionTo(State.OPEN);
+                    to = State.OPEN;
+                }
+            }
+            // OPEN状态下的迟到结果不影响状态
+        }
+        fireTransition(from, to);
+    }
+
+    private void addToWindow(byte outcome) {
+        if (windowCalls == window.length) {
+            // 窗口已满，淘汰最早的结果
+            byte evicted = window[windowIndex];
+            if (evicted == OUTCOME_FAILURE) {
+                windowFailures--;
+            } else if (evicted == OUTCOME_SLOW) {
+                windowSlowCalls--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = outcome;
+        windowIndex = (windowIndex + 1) % window.length;
+        if (outcome == OUTCOME_FAILURE) {
+            windowFailures++;
+        } else if (outcome == OUTCOME_SLOW) {
+            windowSlowCalls++;
+        }
+    }
+
+    /**
+     * 切换状态并重置对应的统计，必须持有this锁
+     *
+     * @return 切换前的状态
+     */
+    private State transitionTo(State to) {
+        State from = state;
+        state = to;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.HALF_OPEN) {
+            probesIssued = 0;
+            probesSucceeded = 0;
+        } else {
+            windowIndex = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+            windowSlowCalls = 0;
+        }
+        return from;
+    }
+
+    /**
+     * 在锁外通知监听器，避免监听器中的耗时操作阻塞调用方
+     */
+    private void fireTransition(State from, State to) {
+        if (from != null && to != null && from != to && listener != null) {
+            listener.onTransition(from, to);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群成员注册表
+ * 每个节点定时向Redis有序集合写入心跳（成员为节点ID，分数为Redis服务器时间），
+ * 并清理超过TTL未心跳的节点，集合大小即为存活节点数。使用Redis服务器时间避免各节点时钟偏差误删存活节点。
+ * 心跳在后台线程执行，请求路径上不访问Redis；Redis不可用时保留上一次的节点数
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+
+    /**
+     * 存活节点有序集合的Redis键
+     */
+    private static final String MEMBERS_KEY = "rate_limiter:members";
+
+    /**
+     * 节点数变化监听器
+     */
+    public interface MembershipListener {
+        void onClusterSizeChanged(int oldSize, int newSize);
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimitConfig rateLimitConfig;
+    private final String nodeId;
+    private final List<MembershipListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前存活节点数，只由心跳线程修改
+     */
+    private volatile int clusterSize;
+
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ClusterMembership(StringRedisTemplate redisTemplate, RateLimitConfig rateLimitConfig,
+                             MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.rateLimitConfig = rateLimitConfig;
+        // 进程名形如 pid@hostname，加上随机后缀区分同一主机上重启的进程
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":"
+                + UUID.randomUUID().toString().substring(0, 8);
+        this.clusterSize = Math.max(1, rateLimitConfig.getDistributedClusterSize());
+
+        Gauge.builder("rate_limiter_cluster_members", this, ClusterMembership::getClusterSize)
+                .description("集群存活节点数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动心跳线程
+     */
+    @PostConstruct
+    public void start() {
+        if (!rateLimitConfig.isMembershipEnabled()) {
+            logger.info("集群成员注册未启用，使用配置的集群节点数: {}", clusterSize);
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-membership");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0,
+                rateLimitConfig.getMembershipHeartbeat(), TimeUnit.MILLISECONDS);
+        logger.info("集群成员注册已启动: nodeId={}, 心跳间隔={}ms, 过期时间={}ms",
+                nodeId, rateLimitConfig.getMembershipHeartbeat(), rateLimitConfig.getMembershipTtl());
+    }
+
+    /**
+     * 停止心跳并注销本节点，使其他节点在下一次心跳时就能感知
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            redisTemplate.opsForZSet().remove(MEMBERS_KEY, nodeId);
+        } catch (RuntimeException e) {
+            logger.warn("注销集群节点失败，将在心跳过期后自动移除: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 执行一次心跳：写入本节点、清理过期节点并统计存活节点数
+     */
+    void heartbeat() {
+        try {
+            long ttl = rateLimitConfig.getMembershipTtl();
+            Long now = redisTemplate.execute((RedisCallback<Long>) RedisServerCommands::time);
+            if (now == null) {
+                return;
+            }
+            ZSetOperations<String, String> zSet = redisTemplate.opsForZSet();
+            zSet.add(MEMBERS_KEY, nodeId, now);
+            zSet.removeRangeByScore(MEMBERS_KEY, 0, now - ttl);
+            // 所有节点都下线后集合自动过期
+            redisTemplate.expire(MEMBERS_KEY, ttl * 2, TimeUnit.MILLISECONDS);
+            Long members = zSet.zCard(MEMBERS_KEY);
+            if (members != null) {
+                updateClusterSize((int) Math.max(1, members));
+            }
+        } catch (RuntimeException e) {
+            // 不重置为1，否则Redis故障时整个集群的总速率会放大为节点数倍
+            logger.warn("集群节点心跳失败，保留当前节点数{}: {}", clusterSize, e.getMessage());
+        }
+    }
+
+    private void updateClusterSize(int newSize) {
+        int oldSize = clusterSize;
+        if (oldSize == newSize) {
+            return;
+        }
+        clusterSize = newSize;
+        logger.info("集群存活节点数变化: {} -> {}", oldSize, newSize);
+        for (MembershipListener listener : listeners) {
+            try {
+                listener.onClusterSizeChanged(oldSize, newSize);
+            } catch (RuntimeException e) {
+                logger.error("集群节点数变化通知失败", e);
+            }
+        }
+    }
+
+    /**
+     * 注册节点数变化监听器，回调在心跳线程中执行
+     */
+    public void addListener(MembershipListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 获取当前存活节点数，至少为1
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * 获取本节点ID
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+}
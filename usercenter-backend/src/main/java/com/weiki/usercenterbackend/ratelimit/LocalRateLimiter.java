@@ -0,0 +1,290 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 本地令牌桶限流器
+ * 算法与Guava SmoothRateLimiter相同（平滑突发和平滑预热两种模式），但由本项目维护，
+ * 剩余令牌数、下一个令牌的发放时间等状态直接公开，用于RateLimit-*响应头和可用令牌数指标，
+ * 不依赖Guava的内部字段。
+ * 令牌按固定间隔发放，空闲时最多积累一个周期的令牌（突发模式为1秒的请求量）；
+ * 当前请求总是立即放行，所欠的等待时间由下一个请求承担。所有状态由this保护
+ */
+public final class LocalRateLimiter {
+
+    /**
+     * 预热模式下冷启动时的令牌间隔相对稳定间隔的倍数，与Guava一致
+     */
+    private static final double COLD_FACTOR = 3.0;
+
+    private final LongSupplier nanoClock;
+    private final LongConsumer sleeper;
+    private final long startNanos;
+
+    /**
+     * 预热时长（纳秒），0表示突发模式
+     */
+    private final long warmupNanos;
+
+    private double permitsPerSecond;
+    private double stableIntervalNanos;
+    private double maxPermits;
+    private double storedPermits;
+
+    /**
+     * 预热模式：令牌数超过该值时处于预热区，每个令牌的间隔随令牌数线性增大
+     */
+    private double thresholdPermits;
+    private double slope;
+
+    /**
+     * 下一个请求可以获取令牌的时间（相对startNanos）
+     */
+    private long nextFreeTicketNanos;
+
+    private LocalRateLimiter(double permitsPerSecond, long warmupNanos, LongSupplier nanoClock, LongConsumer sleeper) {
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        this.startNanos = nanoClock.getAsLong();
+        this.warmupNanos = warmupNanos;
+        setRate(permitsPerSecond);
+    }
+
+    /**
+     * 创建突发模式的限流器，空闲时最多积累1秒的令牌
+     *
+     * @param permitsPerSecond 每秒发放的令牌数
+     */
+    public static LocalRateLimiter create(double permitsPerSecond) {
+        return create(permitsPerSecond, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 创建预热模式的限流器，冷启动或长时间空闲后在预热期内逐步提升到目标速率
+     *
+     * @param permitsPerSecond 每秒发放的令牌数
+     * @param warmupPeriod 预热时长，0表示突发模式
+     * @param unit 预热时长单位
+     */
+    public static LocalRateLimiter create(double permitsPerSecond, long warmupPeriod, TimeUnit unit) {
+        return new LocalRateLimiter(permitsPerSecond, unit.toNanos(Math.max(0, warmupPeriod)), System::nanoTime,
+                nanos -> Uninterruptibles.sleepUninterruptibly(nanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * 使用指定时钟创建，用于测试
+     */
+    static LocalRateLimiter create(double permitsPerSecond, long warmupNanos, LongSupplier nanoClock,
+                                   LongConsumer sleeper) {
+        return new LocalRateLimiter(permitsPerSecond, warmupNanos, nanoClock, sleeper);
+    }
+
+    /**
+     * 调整速率，已积累的令牌按比例保留
+     *
+     * @param permitsPerSecond 每秒发放的令牌数
+     */
+    public synchronized void setRate(double permitsPerSecond) {
+        if (!(permitsPerSecond > 0.0)) {
+            throw new IllegalArgumentException("permitsPerSecond必须大于0: " + permitsPerSecond);
+        }
+        resync(now());
+        double oldMaxPermits = maxPermits;
+        this.permitsPerSecond = permitsPerSecond;
+        this.stableIntervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        if (warmupNanos == 0) {
+            maxPermits = permitsPerSecond;
+            storedPermits = oldMaxPermits == 0 ? 0 : storedPermits * maxPermits / oldMaxPermits;
+        } else {
+            double coldIntervalNanos = stableIntervalNanos * COLD_FACTOR;
+            thresholdPermits = 0.5 * warmupNanos / stableIntervalNanos;
+            maxPermits = thresholdPermits + 2.0 * warmupNanos / (stableIntervalNanos + coldIntervalNanos);
+            slope = (coldIntervalNanos - stableIntervalNanos) / (maxPermits - thresholdPermits);
+            // 新建的预热限流器处于冷状态
+            storedPermits = oldMaxPermits == 0 ? maxPermits : storedPermits * maxPermits / oldMaxPermits;
+        }
+    }
+
+    public synchronized double getRate() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * 获取一个令牌，必要时阻塞等待
+     */
+    public void acquire() {
+        long waitNanos;
+        synchronized (this) {
+            waitNanos = reserve(1, now());
+        }
+        sleep(waitNanos);
+    }
+
+    /**
+     * 立即获取一个令牌，不等待
+     *
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 立即获取指定数量的令牌，不等待
+     *
+     * @param permits 令牌数
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 在超时时间内可以获取令牌时预订并等待到发放时间，否则立即返回false
+     *
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        return tryAcquire(1, timeout, unit);
+    }
+
+    /**
+     * 在超时时间内可以获取令牌时预订指定数量的令牌并等待到发放时间，否则立即返回false
+     *
+     * @param permits 令牌数
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits必须大于0: " + permits);
+        }
+        long timeoutNanos = Math.max(0, unit.toNanos(timeout));
+        long waitNanos;
+        synchronized (this) {
+            long now = now();
+            if (nextFreeTicketNanos - timeoutNanos > now) {
+                return false;
+            }
+            waitNanos = reserve(permits, now);
+        }
+        sleep(waitNanos);
+        return true;
+    }
+
+    /**
+     * 当前可立即获取的令牌数，包括积累的令牌和下一个已到发放时间的令牌，不超过每秒限额
+     */
+    public synchronized double getAvailablePermits() {
+        long now = now();
+        if (nextFreeTicketNanos > now) {
+            return 0;
+        }
+        double stored = Math.min(maxPermits, storedPermits + (now - nextFreeTicketNanos) / coolDownIntervalNanos());
+        return Math.min(Math.max(1, permitsPerSecond), stored + 1);
+    }
+
+    /**
+     * 读取当前状态，剩余令牌数不超过每秒限额
+     *
+     * @param allowed 本次请求是否获取到令牌
+     * @return 状态快照
+     */
+    public synchronized RateLimitStatus getStatus(boolean allowed) {
+        long now = now();
+        long limit = Math.max(1, (long) Math.ceil(permitsPerSecond));
+        long waitNanos = Math.max(0, nextFreeTicketNanos - now);
+        double stored = storedPermits;
+        if (waitNanos == 0) {
+            stored = Math.min(maxPermits, stored + (now - nextFreeTicketNanos) / coolDownIntervalNanos());
+        }
+        long remaining = waitNanos > 0 ? 0 : Math.min(limit, (long) stored + 1);
+        long resetNanos = waitNanos + (long) ((maxPermits - stored) * coolDownIntervalNanos());
+        return new RateLimitStatus(allowed, limit, remaining, nanosToMillisCeil(waitNanos),
+                nanosToMillisCeil(resetNanos));
+    }
+
+    /**
+     * 预订令牌，返回需要等待的时间
+     */
+    private long reserve(int permits, long now) {
+        resync(now);
+        long momentAvailable = nextFreeTicketNanos;
+        double storedToSpend = Math.min(permits, storedPermits);
+        double freshPermits = permits - storedToSpend;
+        long waitNanos = (long) (storedPermitsToWaitTime(storedPermits, storedToSpend)
+                + freshPermits * stableIntervalNanos);
+        nextFreeTicketNanos = saturatedAdd(nextFreeTicketNanos, waitNanos);
+        storedPermits -= storedToSpend;
+        return Math.max(momentAvailable - now, 0);
+    }
+
+    /**
+     * 空闲期间按冷却间隔积累令牌
+     */
+    private void resync(long now) {
+        if (now > nextFreeTicketNanos) {
+            if (maxPermits > 0) {
+                storedPermits = Math.min(maxPermits,
+                        storedPermits + (now - nextFreeTicketNanos) / coolDownIntervalNanos());
+            }
+            nextFreeTicketNanos = now;
+        }
+    }
+
+    /**
+     * 使用积累的令牌需要付出的等待时间：突发模式为0，预热模式下处于预热区的令牌按梯形面积计算
+     */
+    private double storedPermitsToWaitTime(double stored, double permitsToTake) {
+        if (warmupNanos == 0) {
+            return 0;
+        }
+        double availableAboveThreshold = stored - thresholdPermits;
+        double nanos = 0;
+        if (availableAboveThreshold > 0) {
+            double aboveToTake = Math.min(availableAboveThreshold, permitsToTake);
+            double length = permitsToTime(availableAboveThreshold)
+                    + permitsToTime(availableAboveThreshold - aboveToTake);
+            nanos = aboveToTake * length / 2.0;
+            permitsToTake -= aboveToTake;
+        }
+        return nanos + stableIntervalNanos * permitsToTake;
+    }
+
+    private double permitsToTime(double permits) {
+        return stableIntervalNanos + permits * slope;
+    }
+
+    /**
+     * 积累一个令牌所需的时间：突发模式等于稳定间隔，预热模式下积满令牌正好需要预热时长
+     */
+    private double coolDownIntervalNanos() {
+        return warmupNanos == 0 ? stableIntervalNanos : warmupNanos / maxPermits;
+    }
+
+    private long now() {
+        return nanoClock.getAsLong() - startNanos;
+    }
+
+    private void sleep(long nanos) {
+        if (nanos > 0) {
+            sleeper.accept(nanos);
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long nanosToMillisCeil(long nanos) {
+        return nanos <= 0 ? 0 : (nanos + 999_999) / 1_000_000;
+    }
+}
@@ -0,0 +1,254 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于优先级的准入控制器
+ * 所有@RateLimit接口共享同一份并发和QPS预算，过载时优先丢弃低优先级请求：
+ * 1. 并发/QPS：优先级越低可用的预算越少，剩余部分作为高优先级的预留余量。
+ *    QPS预算是一个容量为1秒请求量的共享令牌桶，优先级越低，取令牌后桶内必须剩余的令牌越多
+ * 2. 排队延迟：参考CoDel，窗口内最小排队延迟持续超过目标值时，逐级提高丢弃阈值
+ */
+@Component
+public class PriorityAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriorityAdmissionController.class);
+
+    /**
+     * 最低优先级
+     */
+    public static final int MIN_PRIORITY = 1;
+
+    /**
+     * 最高优先级
+     */
+    public static final int MAX_PRIORITY = 10;
+
+    /**
+     * 拒绝原因
+     */
+    private static final String[] SHED_REASONS = {"concurrency", "qps", "codel"};
+    private static final int REASON_CONCURRENCY = 0;
+    private static final int REASON_QPS = 1;
+    private static final int REASON_CODEL = 2;
+
+    /**
+     * QPS令牌桶容量对应的时间，即桶满时允许1秒的请求量突发
+     */
+    private static final long QPS_BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+
+    /**
+     * 各优先级可使用的并发上限，下标为优先级
+     */
+    private final int[] concurrencyLimits = new int[MAX_PRIORITY + 1];
+
+    /**
+     * 各优先级取令牌后理论到达时间相对当前时间的上限（纳秒，不大于0），
+     * 即 -(为更高优先级预留的令牌数 × 令牌间隔)，下标为优先级
+     */
+    private final long[] qpsToleranceNanos = new long[MAX_PRIORITY + 1];
+
+    /**
+     * 当前正在执行的请求数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * QPS令牌桶（GCRA）：令牌间隔和理论到达时间，桶内令牌数 = (当前时间 - 理论到达时间) / 令牌间隔，
+     * 窗口和计数合并在一个值中，一次CAS完成判断和扣减
+     */
+    private final long qpsIntervalNanos;
+    private final AtomicLong qpsTheoreticalArrival = new AtomicLong(System.nanoTime() - QPS_BURST_NANOS);
+
+    /**
+     * CoDel状态：观测窗口起点、窗口内最小排队延迟、当前丢弃阈值（小于等于该值的优先级被丢弃，0表示不丢弃）
+     */
+    private final long codelTargetNanos;
+    private final long codelIntervalNanos;
+    private final int maxShedPriority;
+    private final AtomicLong codelWindowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong codelWindowMinSojourn = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicInteger shedCutoff = new AtomicInteger();
+
+    /**
+     * 按优先级预注册的指标
+     */
+    private final Counter[] admittedCounters = new Counter[MAX_PRIORITY + 1];
+    private final Counter[][] shedCounters = new Counter[MAX_PRIORITY + 1][SHED_REASONS.length];
+
+    @Autowired
+    public PriorityAdmissionController(RateLimitConfig rateLimitConfig, MeterRegistry meterRegistry) {
+        this.enabled = rateLimitConfig.isAdmissionEnabled();
+        this.codelTargetNanos = TimeUnit.MILLISECONDS.toNanos(rateLimitConfig.getAdmissionCodelTarget());
+        this.codelIntervalNanos = TimeUnit.MILLISECONDS.toNanos(rateLimitConfig.getAdmissionCodelInterval());
+        this.maxShedPriority = Math.max(0, Math.min(MAX_PRIORITY,
+                rateLimitConfig.getAdmissionProtectedPriority()) - 1);
+
+        double reservedRatio = Math.max(0, Math.min(1, rateLimitConfig.getAdmissionReservedRatio()));
+        this.qpsIntervalNanos = Math.max(1, QPS_BURST_NANOS / Math.max(1, rateLimitConfig.getAdmissionQps()));
+        for (int priority = MIN_PRIORITY; priority <= MAX_PRIORITY; priority++) {
+            // 优先级从1到10线性分配预算，最高优先级可使用全部预算
+            double share = 1 - reservedRatio * (MAX_PRIORITY - priority) / (MAX_PRIORITY - MIN_PRIORITY);
+            concurrencyLimits[priority] = Math.max(1, (int) (rateLimitConfig.getAdmissionMaxConcurrency() * share));
+            qpsToleranceNanos[priority] = -(long) ((1 - share) * QPS_BURST_NANOS);
+        }
+
+        registerMeters(meterRegistry);
+        logger.info("优先级准入控制初始化完成: enabled={}, 并发上限={}, QPS预算={}, 预留比例={}, 受保护优先级>={}",
+                enabled, rateLimitConfig.getAdmissionMaxConcurrency(), rateLimitConfig.getAdmissionQps(),
+                reservedRatio, maxShedPriority + 1);
+    }
+
+    /**
+     * 注册各优先级的准入/丢弃计数器以及全局状态指标
+     */
+    private void registerMeters(MeterRegistry meterRegistry) {
+        for (int priority = MIN_PRIORITY; priority <= MAX_PRIORITY; priority++) {
+            String priorityTag = String.valueOf(priority);
+            admittedCounters[priority] = Counter.builder("http_requests_admission_admitted_total")
+                    .tag("priority", priorityTag)
+                    .description("准入控制放行的请求总数")
+                    .register(meterRegistry);
+            for (int reason = 0; reason < SHED_REASONS.length; reason++) {
+                shedCounters[priority][reason] = Counter.builder("http_requests_admission_shed_total")
+                        .tag("priority", priorityTag)
+                        .tag("reason", SHED_REASONS[reason])
+                        .description("准入控制丢弃的请求总数")
+                        .register(meterRegistry);
+            }
+        }
+
+        Gauge.builder("http_requests_admission_in_flight", inFlight, AtomicInteger::get)
+                .description("当前正在执行的受限流请求数")
+                .register(meterRegistry);
+        Gauge.builder("http_requests_admission_shed_cutoff", shedCutoff, AtomicInteger::get)
+                .description("当前因排队延迟被丢弃的最高优先级，0表示未丢弃")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 尝试准入请求
+     * 返回true时调用方必须在请求结束后调用{@link #release()}
+     *
+     * @param priority 请求优先级(1-10)
+     * @param sojournNanos 请求到达应用后至今的排队时间（纳秒）
+     * @return 是否准入
+     */
+    public boolean tryAdmit(int priority, long sojournNanos) {
+        if (!enabled) {
+            return true;
+        }
+        int p = clampPriority(priority);
+        long now = System.nanoTime();
+
+        // 1. 排队延迟检查（CoDel）
+        if (p <= updateCodel(now, sojournNanos)) {
+            shedCounters[p][REASON_CODEL].increment();
+            return false;
+        }
+
+        // 2. 并发检查
+        if (inFlight.incrementAndGet() > concurrencyLimits[p]) {
+            inFlight.decrementAndGet();
+            shedCounters[p][REASON_CONCURRENCY].increment();
+            return false;
+        }
+
+        // 3. QPS检查
+        if (!tryAcquireQps(p, now)) {
+            inFlight.decrementAndGet();
+            shedCounters[p][REASON_QPS].increment();
+            return false;
+        }
+
+        admittedCounters[p].increment();
+        return true;
+    }
+
+    /**
+     * 释放准入时占用的并发名额
+     */
+    public void release() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 获取当前正在执行的请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取当前因排队延迟被丢弃的最高优先级
+     */
+    public int getShedCutoff() {
+        return shedCutoff.get();
+    }
+
+    /**
+     * 从共享令牌桶取一个令牌，取后桶内剩余令牌不能少于为更高优先级预留的数量
+     * 拒绝时不修改状态，没有窗口边界，任意1秒内的放行数不超过桶容量加1秒的补充量
+     */
+    private boolean tryAcquireQps(int priority, long now) {
+        long emptiest = now - QPS_BURST_NANOS;
+        while (true) {
+            long arrival = qpsTheoreticalArrival.get();
+            // 桶最多装满，长时间空闲不会积累超过容量的令牌
+            long next = (arrival - emptiest < 0 ? emptiest : arrival) + qpsIntervalNanos;
+            if (next - now > qpsToleranceNanos[priority]) {
+                return false;
+            }
+            if (qpsTheoreticalArrival.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 记录排队延迟并在窗口结束时调整丢弃阈值
+     * 窗口内最小延迟仍超过目标值说明存在持续排队而非瞬时突发，此时多丢弃一级优先级；
+     * 延迟恢复后逐级放开
+     *
+     * @return 当前丢弃阈值
+     */
+    private int updateCodel(long now, long sojournNanos) {
+        long min = codelWindowMinSojourn.get();
+        while (sojournNanos < min && !codelWindowMinSojourn.compareAndSet(min, sojournNanos)) {
+            min = codelWindowMinSojourn.get();
+        }
+
+        long windowStart = codelWindowStart.get();
+        if (now - windowStart >= codelIntervalNanos && codelWindowStart.compareAndSet(windowStart, now)) {
+            long windowMin = codelWindowMinSojourn.getAndSet(Long.MAX_VALUE);
+            int cutoff = shedCutoff.get();
+            if (windowMin > codelTargetNanos && cutoff < maxShedPriority) {
+                shedCutoff.set(cutoff + 1);
+                logger.warn("排队延迟持续超过目标值，开始丢弃优先级<={}的请求，窗口最小延迟={}ms",
+                        cutoff + 1, TimeUnit.NANOSECONDS.toMillis(windowMin));
+            } else if (windowMin <= codelTargetNanos && cutoff > 0) {
+                shedCutoff.set(cutoff - 1);
+            }
+        }
+        return shedCutoff.get();
+    }
+
+    private static int clampPriority(int priority) {
+        return Math.max(MIN_PRIORITY, Math.min(MAX_PRIORITY, priority));
+    }
+}
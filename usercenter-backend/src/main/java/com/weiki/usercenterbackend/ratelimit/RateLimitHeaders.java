@@ -0,0 +1,64 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 限流响应头
+ * 按IETF RateLimit header fields草案输出RateLimit-Limit、RateLimit-Remaining、RateLimit-Reset，
+ * 客户端据此精确退避，而不是盲目重试
+ */
+public final class RateLimitHeaders {
+
+    /**
+     * 每秒允许的请求数
+     */
+    public static final String LIMIT = "RateLimit-Limit";
+
+    /**
+     * 当前剩余可用的请求数
+     */
+    public static final String REMAINING = "RateLimit-Remaining";
+
+    /**
+     * 距离配额恢复满状态的秒数
+     */
+    public static final String RESET = "RateLimit-Reset";
+
+    /**
+     * 距离下一个令牌可用的秒数，仅在请求被拒绝时输出
+     */
+    public static final String RETRY_AFTER = "Retry-After";
+
+    /**
+     * 预先生成的小整数字符串，放行路径上输出响应头时不再为每个请求分配字符串
+     */
+    private static final String[] SMALL_VALUES = new String[1024];
+
+    static {
+        for (int i = 0; i < SMALL_VALUES.length; i++) {
+            SMALL_VALUES[i] = Integer.toString(i);
+        }
+    }
+
+    private RateLimitHeaders() {
+    }
+
+    /**
+     * 输出限流状态响应头
+     *
+     * @param response HTTP响应对象
+     * @param status 限流器状态
+     */
+    public static void write(HttpServletResponse response, RateLimitStatus status) {
+        response.setHeader(LIMIT, toHeaderValue(status.getLimit()));
+        response.setHeader(REMAINING, toHeaderValue(status.getRemaining()));
+        response.setHeader(RESET, toHeaderValue(status.getResetSeconds()));
+        if (!status.isAllowed()) {
+            response.setHeader(RETRY_AFTER, toHeaderValue(status.getRetryAfterSeconds()));
+        }
+    }
+
+    static String toHeaderValue(long value) {
+        return value >= 0 && value < SMALL_VALUES.length ? SMALL_VALUES[(int) value] : Long.toString(value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+/**
+ * 限流器状态快照
+ * 由限流引擎（本地令牌桶LocalRateLimiter或Redis Lua脚本）在获取令牌后返回，用于生成RateLimit-*和Retry-After响应头
+ */
+public final class RateLimitStatus {
+
+    /**
+     * 本次请求是否获取到令牌
+     */
+    private final boolean allowed;
+
+    /**
+     * 每秒允许的请求数
+     */
+    private final long limit;
+
+    /**
+     * 当前可立即获取的令牌数
+     */
+    private final long remaining;
+
+    /**
+     * 距离下一个令牌可用的时间（毫秒），令牌充足时为0
+     */
+    private final long retryAfterMs;
+
+    /**
+     * 距离令牌桶恢复满状态的时间（毫秒）
+     */
+    private final long resetMs;
+
+    public RateLimitStatus(boolean allowed, long limit, long remaining, long retryAfterMs, long resetMs) {
+        this.allowed = allowed;
+        this.limit = limit;
+        this.remaining = Math.max(0, Math.min(limit, remaining));
+        this.retryAfterMs = Math.max(0, retryAfterMs);
+        this.resetMs = Math.max(0, resetMs);
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    public long getResetMs() {
+        return resetMs;
+    }
+
+    /**
+     * 获取距离下一个令牌可用的时间（秒，向上取整），用于Retry-After响应头
+     */
+    public long getRetryAfterSeconds() {
+        return (retryAfterMs + 999) / 1000;
+    }
+
+    /**
+     * 获取距离令牌桶恢复满状态的时间（秒，向上取整），用于RateLimit-Reset响应头
+     */
+    public long getResetSeconds() {
+        return (resetMs + 999) / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitStatus{allowed=" + allowed + ", limit=" + limit + ", remaining=" + remaining
+                + ", retryAfterMs=" + retryAfterMs + ", resetMs=" + resetMs + "}";
+    }
+}
@@ -16,6 +16,16 @@ public interface AuthService {
      */
     TokenDTO login(String username, String password);
 
+    /**
+     * 为已验证身份的用户签发携带角色和状态的访问令牌，并为该设备创建新的刷新令牌族
+     *
+     * @param userId     用户ID
+     * @param userRole   用户角色
+     * @param userStatus 用户状态
+     * @return 令牌DTO
+     */
+    TokenDTO issueTokens(Long userId, Integer userRole, Integer userStatus);
+
     /**
      * 使用刷新令牌获取新的访问令牌
      *
@@ -32,6 +42,13 @@ public interface AuthService {
      */
     boolean validateToken(String token);
 
+    /**
+     * 撤销刷新令牌所属的令牌族，只影响该设备；令牌无效时忽略
+     *
+     * @param refreshToken 刷新令牌
+     */
+    void revokeRefreshToken(String refreshToken);
+
     /**
      * 注销用户令牌
      *
@@ -1,5 +1,8 @@
 package com.weiki.usercenterbackend.service;
 
+import com.weiki.usercenterbackend.annotation.LockMode;
+
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,10 +29,103 @@ public interface DistributedLockService {
      */
     void unlock(String key);
 
+    /**
+     * 批量获取锁，锁键去重并按字典序排序后依次获取，全部获取成功或全部不获取。
+     * 所有调用方按相同顺序加锁，多个批量操作之间不会互相死锁
+     *
+     * @param keys      锁的键
+     * @param waitTime  等待获取全部锁的时间
+     * @param leaseTime 持有锁的时间，小于等于0时与单个锁一样由看门狗续期
+     * @param unit      时间单位
+     * @return 是否获取到全部锁
+     */
+    boolean tryLockAll(Collection<String> keys, long waitTime, long leaseTime, TimeUnit unit);
+
+    /**
+     * 批量释放锁
+     *
+     * @param keys 锁的键
+     */
+    void unlockAll(Collection<String> keys);
+
+    /**
+     * 尝试获取读锁，读锁之间共享，与写锁互斥
+     *
+     * @param key       锁的键
+     * @param waitTime  等待获取锁的时间
+     * @param leaseTime 持有锁的时间，小于等于0表示看门狗续期
+     * @param unit      时间单位
+     * @return 是否获取到锁
+     */
+    boolean tryReadLock(String key, long waitTime, long leaseTime, TimeUnit unit);
+
+    /**
+     * 释放读锁
+     *
+     * @param key 锁的键
+     */
+    void unlockRead(String key);
+
+    /**
+     * 尝试获取写锁，与读锁和其他写锁互斥
+     *
+     * @param key       锁的键
+     * @param waitTime  等待获取锁的时间
+     * @param leaseTime 持有锁的时间，小于等于0表示看门狗续期
+     * @param unit      时间单位
+     * @return 是否获取到锁
+     */
+    boolean tryWriteLock(String key, long waitTime, long leaseTime, TimeUnit unit);
+
+    /**
+     * 释放写锁
+     *
+     * @param key 锁的键
+     */
+    void unlockWrite(String key);
+
+    /**
+     * 尝试获取信号量许可
+     *
+     * @param key       信号量的键
+     * @param permits   许可总数，信号量不存在时按该数量创建
+     * @param waitTime  等待获取许可的时间
+     * @param leaseTime 许可的租期，小于等于0时使用默认租期
+     * @param unit      时间单位
+     * @return 许可ID，用于释放许可；获取失败返回null
+     */
+    String tryAcquirePermit(String key, int permits, long waitTime, long leaseTime, TimeUnit unit);
+
+    /**
+     * 释放信号量许可
+     *
+     * @param key      信号量的键
+     * @param permitId 获取许可时返回的许可ID
+     */
+    void releasePermit(String key, String permitId);
+
     /**
      * 强制释放所有锁
      *
      * @param key 锁的键
      */
     void forceUnlock(String key);
-} 
\ No newline at end of file
+
+    /**
+     * 获取锁的剩余租期
+     *
+     * @param key 锁的键
+     * @return 剩余租期（毫秒），-1表示没有租期（看门狗续期）或锁未被持有
+     */
+    long getLockRemainingLeaseTime(String key);
+
+    /**
+     * 按加锁模式获取剩余租期：互斥锁、读锁、写锁查询对应的锁对象，信号量查询指定的许可
+     *
+     * @param key      锁的键
+     * @param mode     加锁模式
+     * @param permitId 信号量许可ID，其他模式忽略
+     * @return 剩余租期（毫秒），-1表示没有租期（看门狗续期）或锁未被持有
+     */
+    long getRemainingLeaseTime(String key, LockMode mode, String permitId);
+}
@@ -1,6 +1,15 @@
 package com.weiki.usercenterbackend.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.ratelimit.CircuitBreaker;
+import com.weiki.usercenterbackend.ratelimit.ClusterMembership;
+import com.weiki.usercenterbackend.ratelimit.LocalRateLimiter;
+import com.weiki.usercenterbackend.ratelimit.RateLimitStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,13 +21,28 @@ import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 分布式限流器
  * 使用Redis Lua脚本实现的分布式限流，作为本地限流的补充
+ *
+ * Redis调用由熔断器保护：失败率或慢调用率过高时熔断，期间降级为本地限流，
+ * 每个节点按 速率/集群节点数 限流，使整个集群的总速率与分布式限流大致相同。
+ * 熔断一段时间后放行少量请求探测Redis，探测成功后恢复分布式限流
+ *
+ * 熔断器只能在调用返回后记录结果，Redis挂起时请求线程会一直阻塞到客户端超时。
+ * 因此Lua脚本在专用的有界线程池中执行，请求线程最多等待call-timeout，超时计为失败并降级
  */
 @Service
 public class DistributedRateLimiter {
@@ -28,7 +52,8 @@ public class DistributedRateLimiter {
     /**
      * Redis Lua脚本
      */
-    private RedisScript<Long> rateLimiterScript;
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> rateLimiterScript;
     
     /**
      * Redis键前缀
@@ -40,14 +65,87 @@ public class DistributedRateLimiter {
      */
     private static final int BUCKET_EXPIRE_SECONDS = 10;
     
+    /**
+     * 熔断器名称，用作指标标签
+     */
+    private static final String BREAKER_NAME = "redis_rate_limiter";
+    
     private final RedisTemplate<String, Object> redisTemplate;
     private final RateLimitConfig rateLimitConfig;
+    private final MeterRegistry meterRegistry;
+    private final ClusterMembership clusterMembership;
+    
+    /**
+     * Redis调用熔断器
+     */
+    private final CircuitBreaker circuitBreaker;
+    
+    /**
+     * 降级时使用的本地限流器
+     * key: 限流键
+     * value: 速率为 rate/集群节点数 的RateLimiter实例
+     */
+    private final Cache<String, LocalRateLimiter> fallbackLimiters = CacheBuilder.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .maximumSize(1000)
+            .build();
+    
+    /**
+     * 执行Redis调用的线程池，队列满时直接降级
+     */
+    private final ThreadPoolExecutor redisExecutor;
+    
+    private final Counter fallbackOpenCounter;
+    private final Counter fallbackErrorCounter;
+    private final Counter fallbackTimeoutCounter;
     
     @Autowired
-    public DistributedRateLimiter(RedisTemplate<String, Object> redisTemplate, 
-                                  RateLimitConfig rateLimitConfig) {
+    public DistributedRateLimiter(RedisTemplate<String, Object> redisTemplate,
+                                  RateLimitConfig rateLimitConfig, MeterRegistry meterRegistry,
+                                  ClusterMembership clusterMembership) {
         this.redisTemplate = redisTemplate;
         this.rateLimitConfig = rateLimitConfig;
+        this.meterRegistry = meterRegistry;
+        this.clusterMembership = clusterMembership;
+        this.circuitBreaker = new CircuitBreaker(
+                rateLimitConfig.getBreakerWindowSize(),
+                rateLimitConfig.getBreakerMinimumCalls(),
+                rateLimitConfig.getBreakerFailureRateThreshold(),
+                rateLimitConfig.getBreakerSlowCall(),
+                rateLimitConfig.getBreakerSlowCallRateThreshold(),
+                rateLimitConfig.getBreakerOpenDuration(),
+                rateLimitConfig.getBreakerHalfOpenProbes(),
+                TimeUnit.MILLISECONDS,
+                this::onBreakerTransition);
+        int threads = Math.max(1, rateLimitConfig.getDistributedCallThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.redisExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, rateLimitConfig.getDistributedCallQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rate-limiter-redis-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        
+        Gauge.builder("rate_limiter_circuit_breaker_state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .tag("name", BREAKER_NAME)
+                .description("熔断器状态：0=关闭，1=打开，2=半开")
+                .register(meterRegistry);
+        this.fallbackOpenCounter = Counter.builder("rate_limiter_distributed_fallback_total")
+                .tag("reason", "open")
+                .description("分布式限流降级为本地限流的次数")
+                .register(meterRegistry);
+        this.fallbackErrorCounter = Counter.builder("rate_limiter_distributed_fallback_total")
+                .tag("reason", "error")
+                .description("分布式限流降级为本地限流的次数")
+                .register(meterRegistry);
+        this.fallbackTimeoutCounter = Counter.builder("rate_limiter_distributed_fallback_total")
+                .tag("reason", "timeout")
+                .description("分布式限流降级为本地限流的次数")
+                .register(meterRegistry);
+        
+        // 节点数变化后丢弃按旧节点数创建的降级限流器，下次降级时按新的节点数重新创建
+        clusterMembership.addListener((oldSize, newSize) -> fallbackLimiters.invalidateAll());
     }
     
     /**
@@ -55,14 +153,20 @@ public class DistributedRateLimiter {
      */
     @PostConstruct
     public void init() {
-        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        @SuppressWarnings("rawtypes")
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
         redisScript.setScriptSource(new ResourceScriptSource(
                 new ClassPathResource(rateLimitConfig.getDistributedLimitLuaPath())));
-        redisScript.setResultType(Long.class);
+        redisScript.setResultType(List.class);
         this.rateLimiterScript = redisScript;
         logger.info("分布式限流器初始化完成，Lua脚本路径: {}", rateLimitConfig.getDistributedLimitLuaPath());
     }
     
+    @PreDestroy
+    public void destroy() {
+        redisExecutor.shutdownNow();
+    }
+    
     /**
      * 尝试获取令牌（非阻塞）
      *
@@ -72,6 +176,18 @@ public class DistributedRateLimiter {
      * @return 是否获取到令牌
      */
     public boolean tryAcquire(String key, double maxPermits, double rate) {
+        return doTryAcquire(key, maxPermits, rate, 1, 0, TimeUnit.SECONDS).isAllowed();
+    }
+    
+    /**
+     * 尝试获取令牌（非阻塞），并返回令牌桶状态
+     *
+     * @param key 限流键
+     * @param maxPermits 最大令牌数（令牌桶容量）
+     * @param rate 令牌产生速率（每秒）
+     * @return 令牌桶状态，包含是否获取成功、剩余令牌数和下一个令牌的可用时间
+     */
+    public RateLimitStatus tryAcquireWithStatus(String key, double maxPermits, double rate) {
         return doTryAcquire(key, maxPermits, rate, 1, 0, TimeUnit.SECONDS);
     }
     
@@ -86,6 +202,21 @@ public class DistributedRateLimiter {
      * @return 是否获取到令牌
      */
     public boolean tryAcquire(String key, double maxPermits, double rate, long timeout, TimeUnit unit) {
+        return doTryAcquire(key, maxPermits, rate, 1, timeout, unit).isAllowed();
+    }
+    
+    /**
+     * 尝试获取令牌，带超时等待，并返回令牌桶状态
+     *
+     * @param key 限流键
+     * @param maxPermits 最大令牌数（令牌桶容量）
+     * @param rate 令牌产生速率（每秒）
+     * @param timeout 超时时间，0表示不等待，负数表示一直等待直到获取成功
+     * @param unit 时间单位
+     * @return 最后一次尝试时的令牌桶状态
+     */
+    public RateLimitStatus tryAcquireWithStatus(String key, double maxPermits, double rate,
+                                                long timeout, TimeUnit unit) {
         return doTryAcquire(key, maxPermits, rate, 1, timeout, unit);
     }
     
@@ -98,42 +229,33 @@ public class DistributedRateLimiter {
      * @param permits 需要的令牌数
      * @param timeout 超时时间
      * @param unit 时间单位
-     * @return 是否获取到令牌
+     * @return 最后一次尝试时的令牌桶状态
      */
-    private boolean doTryAcquire(String key, double maxPermits, double rate, int permits, 
-                                long timeout, TimeUnit unit) {
+    private RateLimitStatus doTryAcquire(String key, double maxPermits, double rate, int permits,
+                                         long timeout, TimeUnit unit) {
         if (!rateLimitConfig.isDistributedLimitEnabled()) {
             // 未启用分布式限流，直接返回成功
-            return true;
+            long limit = (long) Math.ceil(maxPermits);
+            return new RateLimitStatus(true, limit, limit, 0, 0);
         }
         
-        String redisKey = KEY_PREFIX + key;
         long now = System.currentTimeMillis();
         long ttl = unit.toMillis(timeout);
-        long deadline = now + ttl;
+        // 负数表示一直等待
+        long deadline = ttl < 0 ? Long.MAX_VALUE : now + ttl;
         
         // 第一次尝试获取令牌
-        Long result = executeLuaScript(redisKey, maxPermits, rate, permits, now);
-        
-        // 判断结果
-        if (result == 1) {
-            // 获取成功
-            return true;
-        } else if (ttl <= 0) {
-            // 获取失败且不等待
-            return false;
+        RateLimitStatus status = acquireOnce(key, maxPermits, rate, permits, now);
+        if (status.isAllowed() || ttl == 0) {
+            // 获取成功，或获取失败且不等待
+            return status;
         }
         
-        // 超时等待模式
+        // 超时等待模式：按脚本返回的下一个令牌可用时间休眠，而不是固定轮询
         try {
-            // 计算下次可以获取令牌的时间
-            long nextAvailableTime = Math.max(now + 100, now + (1000 / (int) rate) * permits);
-            
             while (now < deadline) {
-                long sleepTime = Math.min(nextAvailableTime - now, deadline - now);
-                if (sleepTime > 0) {
-                    Thread.sleep(sleepTime);
-                }
+                long sleepTime = Math.min(Math.max(1, status.getRetryAfterMs()), deadline - now);
+                Thread.sleep(sleepTime);
                 
                 now = System.currentTimeMillis();
                 if (now >= deadline) {
@@ -141,20 +263,117 @@ public class DistributedRateLimiter {
                 }
                 
                 // 再次尝试获取令牌
-                result = executeLuaScript(redisKey, maxPermits, rate, permits, now);
-                if (result == 1) {
-                    return true;
+                status = acquireOnce(key, maxPermits, rate, permits, now);
+                if (status.isAllowed()) {
+                    return status;
                 }
-                
-                // 更新下次尝试时间
-                nextAvailableTime = now + (1000 / (int) rate) * permits;
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.warn("等待获取令牌被中断", e);
         }
         
-        return false;
+        return status;
+    }
+    
+    /**
+     * 获取一次令牌：熔断器允许时执行Lua脚本，熔断、Redis调用失败或超时时降级为本地限流
+     *
+     * @param key 限流键
+     * @param maxPermits 最大令牌数
+     * @param rate 令牌产生速率
+     * @param permits 需要的令牌数
+     * @param now 当前时间戳
+     * @return 令牌桶状态
+     */
+    private RateLimitStatus acquireOnce(String key, double maxPermits, double rate, int permits, long now) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            fallbackOpenCounter.increment();
+            return acquireLocally(key, rate, permits);
+        }
+        
+        long start = System.nanoTime();
+        Future<RateLimitStatus> future = null;
+        try {
+            future = redisExecutor.submit(() -> executeLuaScript(KEY_PREFIX + key, maxPermits, rate, permits, now));
+            RateLimitStatus status = future.get(rateLimitConfig.getDistributedCallTimeout(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            return status;
+        } catch (TimeoutException e) {
+            // 挂起的调用留在线程池中直到客户端超时，请求线程不再等待
+            future.cancel(true);
+            circuitBreaker.onError(System.nanoTime() - start);
+            fallbackTimeoutCounter.increment();
+            logger.warn("分布式限流调用Redis超时，降级为本地限流: key={}, timeout={}ms",
+                    key, rateLimitConfig.getDistributedCallTimeout());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            circuitBreaker.onError(System.nanoTime() - start);
+            fallbackErrorCounter.increment();
+            logger.warn("等待分布式限流结果被中断，降级为本地限流: key={}", key);
+        } catch (ExecutionException | RejectedExecutionException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            circuitBreaker.onError(System.nanoTime() - start);
+            fallbackErrorCounter.increment();
+            logger.warn("分布式限流调用Redis失败，降级为本地限流: key={}, error={}", key, cause.getMessage());
+        }
+        return acquireLocally(key, rate, permits);
+    }
+    
+    /**
+     * 使用本地限流器获取令牌，速率按集群节点数均分
+     *
+     * @param key 限流键
+     * @param rate 集群总速率
+     * @param permits 需要的令牌数
+     * @return 本地限流器状态
+     */
+    private RateLimitStatus acquireLocally(String key, double rate, int permits) {
+        LocalRateLimiter limiter;
+        try {
+            limiter = fallbackLimiters.get(key, () -> LocalRateLimiter.create(getLocalRate(rate)));
+        } catch (ExecutionException e) {
+            // 创建限流器不会抛出受检异常，这里只是满足Cache接口
+            throw new IllegalStateException("创建本地降级限流器失败: " + key, e);
+        }
+        boolean allowed = limiter.tryAcquire(permits);
+        return limiter.getStatus(allowed);
+    }
+    
+    /**
+     * 计算单个节点的本地降级速率，按集群存活节点数均分
+     *
+     * @param rate 集群总速率
+     * @return 本节点速率
+     */
+    private double getLocalRate(double rate) {
+        return rate / clusterMembership.getClusterSize();
+    }
+    
+    /**
+     * 熔断器状态变化时记录日志和指标
+     */
+    private void onBreakerTransition(CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            logger.error("分布式限流熔断器打开，降级为本地限流: {} -> {}", from, to);
+        } else {
+            logger.info("分布式限流熔断器状态变化: {} -> {}", from, to);
+        }
+        Counter.builder("rate_limiter_circuit_breaker_transitions_total")
+                .tag("name", BREAKER_NAME)
+                .tag("from", from.name())
+                .tag("to", to.name())
+                .description("熔断器状态变化次数")
+                .register(meterRegistry)
+                .increment();
+    }
+    
+    /**
+     * 获取熔断器当前状态
+     */
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
     }
     
     /**
@@ -165,11 +384,22 @@ public class DistributedRateLimiter {
      * @param rate 令牌产生速率
      * @param permits 需要的令牌数
      * @param now 当前时间戳
-     * @return 执行结果：1=成功，0=失败
+     * @return 令牌桶状态
+     * @throws IllegalStateException 脚本返回空结果（如Redis连接异常时部分客户端返回null）
      */
-    private Long executeLuaScript(String key, double maxPermits, double rate, int permits, long now) {
+    private RateLimitStatus executeLuaScript(String key, double maxPermits, double rate, int permits, long now) {
         List<String> keys = Collections.singletonList(key);
-        return redisTemplate.execute(rateLimiterScript, keys, 
+        List<?> result = redisTemplate.execute(rateLimiterScript, keys,
                 maxPermits, rate, permits, now, BUCKET_EXPIRE_SECONDS);
+        if (result == null || result.size() < 4) {
+            throw new IllegalStateException("限流脚本返回结果异常: " + result);
+        }
+        // 脚本返回: {是否允许, 剩余令牌数, 距离下一个令牌可用的毫秒数, 距离令牌桶恢复满状态的毫秒数}
+        return new RateLimitStatus(
+                ((Number) result.get(0)).longValue() == 1,
+                (long) Math.ceil(maxPermits),
+                ((Number) result.get(1)).longValue(),
+                ((Number) result.get(2)).longValue(),
+                ((Number) result.get(3)).longValue());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.weiki.usercenterbackend.service;
+
+/**
+ * 密码哈希服务接口
+ * 存储格式带版本前缀，旧版本的哈希在用户登录时升级为当前版本
+ */
+public interface PasswordHashingService {
+
+    /**
+     * 用当前版本的算法计算密码哈希，每次使用新的随机盐
+     *
+     * @param rawPassword 明文密码
+     * @return 带版本前缀的密码哈希
+     */
+    String hash(String rawPassword);
+
+    /**
+     * 校验密码，支持所有历史版本的哈希
+     *
+     * @param rawPassword    明文密码
+     * @param storedPassword 数据库中保存的密码哈希
+     * @return 是否匹配
+     */
+    boolean matches(String rawPassword, String storedPassword);
+
+    /**
+     * 判断保存的哈希是否需要用当前版本重新计算
+     *
+     * @param storedPassword 数据库中保存的密码哈希
+     * @return 是否需要重新计算
+     */
+    boolean needsRehash(String storedPassword);
+}
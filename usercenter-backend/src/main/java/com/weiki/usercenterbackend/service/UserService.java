@@ -49,6 +49,16 @@ public interface UserService {
      */
     int userLogout(HttpServletRequest request);
 
+    /**
+     * 获取当前登录用户
+     * 用户ID取自访问令牌，角色和状态取自权限缓存，不使用令牌中可能已过时的声明
+     *
+     * @param request HTTP请求
+     * @return 当前登录用户
+     * @throws com.weiki.usercenterbackend.exception.BusinessException 未登录、用户已删除、禁用或封禁时抛出
+     */
+    User getLoginUser(HttpServletRequest request);
+
     /**
      * 根据ID获取用户
      * @param id
@@ -105,13 +115,15 @@ public interface UserService {
 
     /**
      * 更新用户密码
+     * @param userId 当前登录用户ID，由调用方通过getLoginUser获取，按用户加锁
      * @param oldPassword 旧密码
      * @param newPassword 新密码
      * @param checkPassword 确认密码
      * @param request HTTP请求
      * @return 是否成功
      */
-    boolean updatePassword(String oldPassword, String newPassword, String checkPassword, HttpServletRequest request);
+    boolean updatePassword(long userId, String oldPassword, String newPassword, String checkPassword,
+                           HttpServletRequest request);
     
     /**
      * 注销用户自己的账号
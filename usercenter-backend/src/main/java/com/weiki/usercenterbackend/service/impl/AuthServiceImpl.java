@@ -5,13 +5,21 @@ import com.weiki.usercenterbackend.exception.JwtAuthenticationException;
 import com.weiki.usercenterbackend.model.dto.TokenDTO;
 import com.weiki.usercenterbackend.service.AuthService;
 import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.TokenBlacklist;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * 认证服务实现类
@@ -22,25 +30,81 @@ import java.util.concurrent.TimeUnit;
 public class AuthServiceImpl implements AuthService {
 
     private final JwtUtils jwtUtils;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TokenBlacklist tokenBlacklist;
 
-    // Redis中存储黑名单令牌的前缀
-    private static final String TOKEN_BLACKLIST_PREFIX = "token:blacklist:";
-    // Redis中存储刷新令牌的前缀
+    // Redis中存储刷新令牌的前缀，每个用户一个哈希，字段为令牌族ID（每台设备一个）
     private static final String REFRESH_TOKEN_PREFIX = "token:refresh:";
 
+    private static final String LOGIN_SCRIPT = "scripts/refresh_token_login.lua";
+    private static final String ROTATE_SCRIPT = "scripts/refresh_token_rotate.lua";
+
+    // 轮换结果：成功、令牌族不存在、宽限期内重复提交、检测到重复使用
+    private static final long ROTATE_OK = 1L;
+    private static final long ROTATE_CONCURRENT = 2L;
+    private static final long ROTATE_REUSED = -1L;
+
+    /**
+     * 每个用户最多同时登录的设备数，超过时淘汰最久未刷新的设备
+     */
+    @Value("${jwt.refresh.max-devices:10}")
+    private int maxDevices;
+
+    /**
+     * 重复使用宽限期（毫秒），同一客户端并发刷新时后到的请求被拒绝但不撤销令牌族
+     */
+    @Value("${jwt.refresh.reuse-grace:2000}")
+    private long reuseGraceMillis;
+
+    private DefaultRedisScript<Long> loginScript;
+    private DefaultRedisScript<Long> rotateScript;
+
+    /**
+     * 加载刷新令牌的Lua脚本
+     */
+    @PostConstruct
+    public void init() {
+        loginScript = new DefaultRedisScript<>();
+        loginScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LOGIN_SCRIPT)));
+        loginScript.setResultType(Long.class);
+        rotateScript = new DefaultRedisScript<>();
+        rotateScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(ROTATE_SCRIPT)));
+        rotateScript.setResultType(Long.class);
+    }
+
     @Override
     public TokenDTO login(String username, String password) {
         // 注意：这里应调用用户服务验证用户名和密码
         // 为了简化示例，假设验证成功，并返回用户ID
         Long userId = getUserIdByUsernameAndPassword(username, password);
+        return issueTokens(userId, jwtUtils.generateAccessToken(userId));
+    }
 
-        // 生成访问令牌和刷新令牌
-        String accessToken = jwtUtils.generateAccessToken(userId);
-        String refreshToken = jwtUtils.generateRefreshToken(userId);
+    @Override
+    public TokenDTO issueTokens(Long userId, Integer userRole, Integer userStatus) {
+        return issueTokens(userId, jwtUtils.generateAccessToken(userId, userRole, userStatus));
+    }
 
-        // 将刷新令牌存储到Redis，有效期与令牌相同
-        storeRefreshToken(userId, refreshToken);
+    /**
+     * 为新设备创建刷新令牌族，与访问令牌一起返回
+     *
+     * @param userId      用户ID
+     * @param accessToken 已签发的访问令牌
+     * @return 令牌DTO
+     */
+    private TokenDTO issueTokens(Long userId, String accessToken) {
+        // 生成新令牌族的刷新令牌
+        String familyId = UUID.randomUUID().toString();
+        String jti = UUID.randomUUID().toString();
+        String refreshToken = jwtUtils.generateRefreshToken(userId, familyId, jti);
+
+        // 在用户的刷新令牌哈希中登记该设备，有效期与令牌相同
+        Long evicted = stringRedisTemplate.execute(loginScript, refreshTokenKeys(userId), familyId, jti,
+                String.valueOf(System.currentTimeMillis()), String.valueOf(JwtConstant.REFRESH_TOKEN_EXPIRATION),
+                String.valueOf(maxDevices));
+        if (evicted != null && evicted > 0) {
+            log.info("用户{}登录设备数超过上限，已淘汰{}个最久未使用的设备", userId, evicted);
+        }
 
         // 构建并返回令牌DTO
         return buildTokenDto(accessToken, refreshToken);
@@ -48,38 +112,42 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public TokenDTO refreshToken(String refreshToken) {
-        // 验证刷新令牌
-        if (!jwtUtils.validateToken(refreshToken) || !jwtUtils.isRefreshToken(refreshToken)) {
-            throw new JwtAuthenticationException("无效的刷新令牌");
-        }
+        // 验证刷新令牌，签名、类型和用户ID只解析一次
+        VerifiedToken verified = jwtUtils.parseToken(refreshToken)
+                .filter(VerifiedToken::isRefreshToken)
+                .orElseThrow(() -> new JwtAuthenticationException("无效的刷新令牌"));
 
         // 从刷新令牌中获取用户ID
-        Optional<String> userIdStrOpt = jwtUtils.getUserIdFromToken(refreshToken);
-        if (userIdStrOpt.isEmpty()) {
-            throw new JwtAuthenticationException("无法从刷新令牌中获取用户ID");
-        }
-        
-        Long userId;
-        try {
-            // 将String类型的userId转换为Long类型
-            userId = Long.parseLong(userIdStrOpt.get());
-        } catch (NumberFormatException e) {
-            log.error("用户ID格式错误，无法转换为Long类型", e);
+        Long userId = verified.getUserId();
+        if (userId == null) {
+            log.error("用户ID格式错误，无法转换为Long类型");
             throw new JwtAuthenticationException("令牌中的用户ID格式无效");
         }
         
-        // 验证Redis中是否存在此刷新令牌
-        String storedRefreshToken = getStoredRefreshToken(userId);
-        if (storedRefreshToken == null || !storedRefreshToken.equals(refreshToken)) {
+        // 旧版本签发的刷新令牌没有令牌族，需要重新登录
+        String familyId = verified.getFamilyId();
+        if (familyId == null || verified.getJti() == null) {
             throw new JwtAuthenticationException("刷新令牌已失效，请重新登录");
         }
 
-        // 生成新的访问令牌和刷新令牌
-        String newAccessToken = jwtUtils.generateAccessToken(userId);
-        String newRefreshToken = jwtUtils.generateRefreshToken(userId);
+        // 一次Lua调用完成比较并交换：只有族内最新的令牌才能轮换
+        String newJti = UUID.randomUUID().toString();
+        Long result = stringRedisTemplate.execute(rotateScript, refreshTokenKeys(userId), familyId, verified.getJti(),
+                newJti, String.valueOf(System.currentTimeMillis()), String.valueOf(JwtConstant.REFRESH_TOKEN_EXPIRATION),
+                String.valueOf(reuseGraceMillis));
+        if (result == null || result != ROTATE_OK) {
+            if (result != null && result == ROTATE_CONCURRENT) {
+                throw new JwtAuthenticationException("刷新令牌已被使用，请使用最新的刷新令牌");
+            }
+            if (result != null && result == ROTATE_REUSED) {
+                log.warn("检测到刷新令牌重复使用，已撤销令牌族: userId={}, familyId={}", userId, familyId);
+            }
+            throw new JwtAuthenticationException("刷新令牌已失效，请重新登录");
+        }
 
-        // 更新Redis中的刷新令牌
-        storeRefreshToken(userId, newRefreshToken);
+        // 生成新的访问令牌和同一令牌族的刷新令牌
+        String newAccessToken = jwtUtils.generateAccessToken(userId);
+        String newRefreshToken = jwtUtils.generateRefreshToken(userId, familyId, newJti);
 
         // 构建并返回令牌DTO
         return buildTokenDto(newAccessToken, newRefreshToken);
@@ -87,66 +155,49 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public boolean validateToken(String token) {
-        // 首先检查令牌是否在黑名单中
-        if (isTokenBlacklisted(token)) {
-            return false;
-        }
-        // 然后验证令牌的签名和有效期
-        return jwtUtils.validateToken(token);
+        // 先验证令牌的签名和有效期，再检查是否在黑名单中，本地过滤器判定不在黑名单时不访问Redis
+        return jwtUtils.parseToken(token)
+                .map(verified -> !tokenBlacklist.isBlacklisted(verified))
+                .orElse(false);
     }
 
     @Override
     public void logout(Long userId) {
-        // 从Redis中删除刷新令牌
+        // 从Redis中删除该用户所有设备的刷新令牌
         removeRefreshToken(userId);
         
         // 可以在这里添加将当前用户的访问令牌加入黑名单的逻辑
         // 但需要获取当前的访问令牌，该方法参数中没有提供
     }
 
-    /**
-     * 将令牌添加到黑名单
-     *
-     * @param token 令牌
-     * @param expirationTime 过期时间（毫秒）
-     */
-    private void addTokenToBlacklist(String token, long expirationTime) {
-        String blacklistKey = TOKEN_BLACKLIST_PREFIX + token;
-        redisTemplate.opsForValue().set(blacklistKey, "blacklisted", expirationTime, TimeUnit.MILLISECONDS);
-    }
-
-    /**
-     * 检查令牌是否在黑名单中
-     *
-     * @param token 令牌
-     * @return 是否在黑名单中
-     */
-    private boolean isTokenBlacklisted(String token) {
-        String blacklistKey = TOKEN_BLACKLIST_PREFIX + token;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(blacklistKey));
+    @Override
+    public void revokeRefreshToken(String refreshToken) {
+        jwtUtils.parseToken(refreshToken)
+                .filter(VerifiedToken::isRefreshToken)
+                .filter(verified -> verified.getUserId() != null && verified.getFamilyId() != null)
+                .ifPresent(verified -> stringRedisTemplate.opsForHash()
+                        .delete(REFRESH_TOKEN_PREFIX + verified.getUserId(), verified.getFamilyId()));
     }
 
     /**
-     * 存储刷新令牌到Redis
+     * 将令牌添加到黑名单，有效期到令牌过期为止
      *
-     * @param userId 用户ID
-     * @param refreshToken 刷新令牌
+     * @param token 已验证的令牌
      */
-    private void storeRefreshToken(Long userId, String refreshToken) {
-        String refreshTokenKey = REFRESH_TOKEN_PREFIX + userId;
-        redisTemplate.opsForValue().set(refreshTokenKey, refreshToken, JwtConstant.REFRESH_TOKEN_EXPIRATION, TimeUnit.MILLISECONDS);
+    private void addTokenToBlacklist(VerifiedToken token) {
+        tokenBlacklist.add(token);
+        // 已验证令牌缓存中的结果立即失效
+        jwtUtils.evictVerifiedToken(token.getToken());
     }
 
     /**
-     * 从Redis获取存储的刷新令牌
+     * 刷新令牌脚本的KEYS：用户的刷新令牌哈希
      *
      * @param userId 用户ID
-     * @return 刷新令牌
+     * @return 脚本的KEYS
      */
-    private String getStoredRefreshToken(Long userId) {
-        String refreshTokenKey = REFRESH_TOKEN_PREFIX + userId;
-        Object token = redisTemplate.opsForValue().get(refreshTokenKey);
-        return token != null ? token.toString() : null;
+    private List<String> refreshTokenKeys(Long userId) {
+        return Collections.singletonList(REFRESH_TOKEN_PREFIX + userId);
     }
 
     /**
@@ -156,7 +207,7 @@ public class AuthServiceImpl implements AuthService {
      */
     private void removeRefreshToken(Long userId) {
         String refreshTokenKey = REFRESH_TOKEN_PREFIX + userId;
-        redisTemplate.delete(refreshTokenKey);
+        stringRedisTemplate.delete(refreshTokenKey);
     }
 
     /**
@@ -1,39 +1,81 @@
 package com.weiki.usercenterbackend.service.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.weiki.usercenterbackend.annotation.LockMode;
 import com.weiki.usercenterbackend.service.DistributedLockService;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RReadWriteLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Redis分布式锁实现
+ *
+ * 锁对象（RLock）只是锁名的轻量包装，按锁键缓存在分段的Guava Cache中，闲置一段时间后淘汰，
+ * 首次使用某个锁键时不再经过全局监视器。本节点持有中的锁单独记录，保证解锁时使用加锁时的同一个锁对象
+ * （公平锁与非公平锁的解锁逻辑不同），不受缓存淘汰影响。
+ * leaseTime为-1时由Redisson看门狗定期续期，持有者存活期间锁不会过期，节点宕机后在看门狗超时后自动释放
+ * 批量锁基于RedissonMultiLock，按字典序逐个获取同样支持看门狗续期，各锁键可以分布在Redis Cluster的不同槽位；
+ * 读写锁基于RReadWriteLock，信号量基于RPermitExpirableSemaphore；信号量没有看门狗，许可总是带租期
  */
 @Service
 @Slf4j
 @ConditionalOnProperty(name = "spring.redis.enabled", havingValue = "true")
 public class DistributedLockServiceImpl implements DistributedLockService {
-
+    
     @Autowired
     private RedissonClient redissonClient;
     
     @Autowired(required = false)
     private MeterRegistry meterRegistry;
     
-    // 锁缓存，减少重复创建锁对象的开销
-    private final ConcurrentHashMap<String, RLock> lockMap = new ConcurrentHashMap<>();
+    /**
+     * 锁对象闲置淘汰时间（分钟）
+     */
+    @Value("${lock.handle.expire:10}")
+    private long handleExpireMinutes;
+    
+    /**
+     * 锁对象缓存最大数量
+     */
+    @Value("${lock.handle.maximum-size:10000}")
+    private long handleMaximumSize;
+    
+    /**
+     * 信号量许可的默认租期（毫秒），注解未指定租期时使用
+     */
+    @Value("${lock.semaphore.default-lease:30000}")
+    private long semaphoreDefaultLease;
+    
+    // 锁对象缓存，减少重复创建锁对象的开销，闲置后淘汰
+    private Cache<String, RLock> lockHandles;
+    private Cache<String, RReadWriteLock> readWriteLockHandles;
+    private Cache<String, RPermitExpirableSemaphore> semaphoreHandles;
     
-    // 锁计数器
-    private final ConcurrentHashMap<String, Integer> lockCounter = new ConcurrentHashMap<>();
+    // 本节点持有中的锁，value为加锁时使用的锁对象和重入次数，最后一次解锁后移除
+    private final ConcurrentHashMap<String, HeldLock> heldLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HeldLock> heldReadLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HeldLock> heldWriteLocks = new ConcurrentHashMap<>();
+    
+    // 本节点持有中的信号量许可，value为租期到期时间（System.nanoTime），释放许可时移除
+    private final ConcurrentHashMap<String, Long> permitDeadlines = new ConcurrentHashMap<>();
     
     // 监控指标
     private Counter lockAcquireSuccessCounter;
@@ -43,6 +85,10 @@ public class DistributedLockServiceImpl implements DistributedLockService {
     
     @PostConstruct
     public void init() {
+        lockHandles = newHandleCache();
+        readWriteLockHandles = newHandleCache();
+        semaphoreHandles = newHandleCache();
+        
         if (meterRegistry != null) {
             // 初始化监控指标
             lockAcquireSuccessCounter = Counter.builder("lock.acquire.success")
@@ -62,30 +108,200 @@ public class DistributedLockServiceImpl implements DistributedLockService {
                 .register(meterRegistry);
         }
     }
-
+    
     @Override
     public boolean tryLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit, boolean isFair) {
+        return tryLock(lockKey, heldLocks, waitTime, leaseTime, timeUnit,
+                () -> getLockHandle(lockKey, isFair));
+    }
+    
+    @Override
+    public void unlock(String lockKey) {
+        unlock(lockKey, heldLocks, lockHandles.getIfPresent(lockKey));
+    }
+    
+    @Override
+    public boolean tryLockAll(Collection<String> lockKeys, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        TreeSet<String> sortedKeys = new TreeSet<>(lockKeys);
+        if (sortedKeys.isEmpty()) {
+            return true;
+        }
         if (redissonClient == null) {
             log.error("Redisson客户端未初始化，无法使用分布式锁");
-            if (lockAcquireFailureCounter != null) {
-                lockAcquireFailureCounter.increment();
-            }
+            incrementFailure();
             return false;
         }
         
+        Timer.Sample sample = lockWaitTimer != null ? Timer.start() : null;
         try {
-            // 使用双重检查模式获取或创建锁对象
-            RLock lock = lockMap.get(lockKey);
-            if (lock == null) {
-                synchronized (this) {
-                    lock = lockMap.get(lockKey);
-                    if (lock == null) {
-                        lock = isFair ? redissonClient.getFairLock(lockKey) : redissonClient.getLock(lockKey);
-                        lockMap.put(lockKey, lock);
-                        log.debug("创建新的分布式锁对象: {}", lockKey);
+            // 按字典序排列锁对象，所有批量操作以相同顺序加锁，互相之间不会死锁
+            RLock[] locks = new RLock[sortedKeys.size()];
+            int index = 0;
+            for (String lockKey : sortedKeys) {
+                locks[index++] = getLockHandle(lockKey, false);
+            }
+            
+            // leaseTime为-1时每把锁都由看门狗续期；任意一把获取失败时已获取的锁全部释放
+            RLock multiLock = redissonClient.getMultiLock(locks);
+            if (!multiLock.tryLock(waitTime, leaseTime > 0 ? leaseTime : -1, timeUnit)) {
+                incrementFailure();
+                log.warn("批量获取分布式锁失败: {}, 等待时间: {}ms", sortedKeys, timeUnit.toMillis(waitTime));
+                return false;
+            }
+            
+            // 记录持有的锁对象，之后可以用unlock单独释放
+            index = 0;
+            for (String lockKey : sortedKeys) {
+                RLock lock = locks[index++];
+                heldLocks.compute(lockKey, (k, heldLock) -> {
+                    if (heldLock == null) {
+                        return new HeldLock(lock);
                     }
+                    heldLock.count++;
+                    return heldLock;
+                });
+            }
+            if (lockAcquireSuccessCounter != null) {
+                lockAcquireSuccessCounter.increment();
+            }
+            log.debug("批量获取分布式锁成功: {}", sortedKeys);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("批量获取分布式锁被中断: {}", sortedKeys, e);
+            incrementFailure();
+            return false;
+        } catch (Exception e) {
+            log.error("批量获取分布式锁异常: {}", sortedKeys, e);
+            incrementFailure();
+            return false;
+        } finally {
+            if (sample != null) {
+                sample.stop(lockWaitTimer);
+            }
+        }
+    }
+    
+    @Override
+    public void unlockAll(Collection<String> lockKeys) {
+        // 按加锁的相反顺序逐个解锁，与单独解锁一样先清除持有记录，再释放当前线程仍持有的锁
+        for (String lockKey : new TreeSet<>(lockKeys).descendingSet()) {
+            unlock(lockKey);
+        }
+    }
+    
+    @Override
+    public boolean tryReadLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        return tryLock(lockKey, heldReadLocks, waitTime, leaseTime, timeUnit,
+                () -> getReadWriteLockHandle(lockKey).readLock());
+    }
+    
+    @Override
+    public void unlockRead(String lockKey) {
+        RReadWriteLock readWriteLock = readWriteLockHandles.getIfPresent(lockKey);
+        unlock(lockKey, heldReadLocks, readWriteLock != null ? readWriteLock.readLock() : null);
+    }
+    
+    @Override
+    public boolean tryWriteLock(String lockKey, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        return tryLock(lockKey, heldWriteLocks, waitTime, leaseTime, timeUnit,
+                () -> getReadWriteLockHandle(lockKey).writeLock());
+    }
+    
+    @Override
+    public void unlockWrite(String lockKey) {
+        RReadWriteLock readWriteLock = readWriteLockHandles.getIfPresent(lockKey);
+        unlock(lockKey, heldWriteLocks, readWriteLock != null ? readWriteLock.writeLock() : null);
+    }
+    
+    @Override
+    public String tryAcquirePermit(String lockKey, int permits, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        if (redissonClient == null) {
+            log.error("Redisson客户端未初始化，无法使用分布式信号量");
+            incrementFailure();
+            return null;
+        }
+        
+        try {
+            RPermitExpirableSemaphore semaphore = semaphoreHandles.get(lockKey, () -> {
+                RPermitExpirableSemaphore created = redissonClient.getPermitExpirableSemaphore(lockKey);
+                // 只在信号量不存在时设置许可数量
+                created.trySetPermits(permits);
+                return created;
+            });
+            
+            Timer.Sample sample = lockWaitTimer != null ? Timer.start() : null;
+            // 信号量没有看门狗，未指定租期时使用默认租期，避免持有者宕机后许可永久丢失
+            long leaseMillis = leaseTime > 0 ? timeUnit.toMillis(leaseTime) : semaphoreDefaultLease;
+            String permitId = semaphore.tryAcquire(timeUnit.toMillis(waitTime), leaseMillis, TimeUnit.MILLISECONDS);
+            if (sample != null) {
+                sample.stop(lockWaitTimer);
+            }
+            
+            if (permitId != null) {
+                permitDeadlines.put(permitId, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMillis));
+                if (lockAcquireSuccessCounter != null) {
+                    lockAcquireSuccessCounter.increment();
                 }
+                log.debug("获取分布式信号量许可成功: {}, 许可ID: {}", lockKey, permitId);
+            } else {
+                incrementFailure();
+                log.warn("获取分布式信号量许可失败: {}, 等待时间: {}ms", lockKey, timeUnit.toMillis(waitTime));
             }
+            return permitId;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("获取分布式信号量许可被中断: {}", lockKey, e);
+            incrementFailure();
+            return null;
+        } catch (Exception e) {
+            log.error("获取分布式信号量许可异常: {}", lockKey, e);
+            incrementFailure();
+            return null;
+        }
+    }
+    
+    @Override
+    public void releasePermit(String lockKey, String permitId) {
+        permitDeadlines.remove(permitId);
+        RPermitExpirableSemaphore semaphore = semaphoreHandles.getIfPresent(lockKey);
+        if (semaphore == null) {
+            semaphore = redissonClient.getPermitExpirableSemaphore(lockKey);
+        }
+        try {
+            if (semaphore.tryRelease(permitId)) {
+                if (lockReleaseCounter != null) {
+                    lockReleaseCounter.increment();
+                }
+                log.debug("释放分布式信号量许可成功: {}, 许可ID: {}", lockKey, permitId);
+            } else {
+                log.warn("分布式信号量许可已过期或不存在: {}, 许可ID: {}", lockKey, permitId);
+            }
+        } catch (Exception e) {
+            log.error("释放分布式信号量许可异常: {}", lockKey, e);
+        }
+    }
+    
+    /**
+     * 获取锁，互斥锁、读锁和写锁共用
+     *
+     * @param lockKey 锁键
+     * @param held 对应模式的持有记录
+     * @param handle 锁对象的获取方式
+     * @return 是否获取到锁
+     */
+    private boolean tryLock(String lockKey, ConcurrentHashMap<String, HeldLock> held,
+                            long waitTime, long leaseTime, TimeUnit timeUnit, Callable<RLock> handle) {
+        if (redissonClient == null) {
+            log.error("Redisson客户端未初始化，无法使用分布式锁");
+            incrementFailure();
+            return false;
+        }
+        
+        try {
+            // 获取或创建锁对象，本节点已持有时使用同一个锁对象
+            HeldLock current = held.get(lockKey);
+            RLock lock = current != null ? current.lock : handle.call();
             
             // 使用计时器记录锁等待时间
             Timer.Sample sample = null;
@@ -93,21 +309,25 @@ public class DistributedLockServiceImpl implements DistributedLockService {
                 sample = Timer.start();
             }
             
-            // 尝试获取锁
-            boolean acquired = lock.tryLock(waitTime, leaseTime, timeUnit);
+            // 尝试获取锁，leaseTime为-1时启用看门狗自动续期
+            boolean acquired = lock.tryLock(waitTime, leaseTime > 0 ? leaseTime : -1, timeUnit);
             
             // 记录锁获取结果
             if (acquired) {
                 if (lockAcquireSuccessCounter != null) {
                     lockAcquireSuccessCounter.increment();
                 }
-                // 增加锁计数
-                lockCounter.compute(lockKey, (key, count) -> count == null ? 1 : count + 1);
+                // 记录持有的锁对象，增加锁计数
+                held.compute(lockKey, (key, heldLock) -> {
+                    if (heldLock == null) {
+                        return new HeldLock(lock);
+                    }
+                    heldLock.count++;
+                    return heldLock;
+                });
                 log.debug("获取分布式锁成功: {}", lockKey);
             } else {
-                if (lockAcquireFailureCounter != null) {
-                    lockAcquireFailureCounter.increment();
-                }
+                incrementFailure();
                 log.warn("获取分布式锁失败: {}, 等待时间: {}ms", lockKey, timeUnit.toMillis(waitTime));
             }
             
@@ -120,44 +340,55 @@ public class DistributedLockServiceImpl implements DistributedLockService {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.error("获取分布式锁被中断: {}", lockKey, e);
-            if (lockAcquireFailureCounter != null) {
-                lockAcquireFailureCounter.increment();
-            }
+            incrementFailure();
             return false;
         } catch (Exception e) {
             log.error("获取分布式锁异常: {}", lockKey, e);
-            if (lockAcquireFailureCounter != null) {
-                lockAcquireFailureCounter.increment();
-            }
+            incrementFailure();
             return false;
         }
     }
-
-    @Override
-    public void unlock(String lockKey) {
-        RLock lock = lockMap.get(lockKey);
-        if (lock != null && lock.isHeldByCurrentThread()) {
-            try {
-                // 减少锁计数
-                lockCounter.compute(lockKey, (key, count) -> {
-                    if (count == null || count <= 1) {
-                        return null; // 移除计数
-                    }
-                    return count - 1;
-                });
-                
-                // 释放锁
-                lock.unlock();
-                
-                if (lockReleaseCounter != null) {
-                    lockReleaseCounter.increment();
-                }
-                log.debug("释放分布式锁成功: {}", lockKey);
-            } catch (Exception e) {
-                log.error("释放分布式锁异常: {}", lockKey, e);
-            }
-        } else {
+    
+    /**
+     * 释放锁，互斥锁、读锁和写锁共用
+     * 租期已过期时Redisson中的锁已不属于当前线程，持有记录同样要减少计数，否则记录会一直残留
+     *
+     * @param lockKey 锁键
+     * @param held 对应模式的持有记录
+     * @param cached 没有持有记录时使用的缓存锁对象
+     */
+    private void unlock(String lockKey, ConcurrentHashMap<String, HeldLock> held, RLock cached) {
+        HeldLock current = held.get(lockKey);
+        RLock lock = current != null ? current.lock : cached;
+        
+        // 无论锁是否仍由当前线程持有，都先减少锁计数
+        held.computeIfPresent(lockKey, (key, heldLock) -> --heldLock.count > 0 ? heldLock : null);
+        
+        if (lock == null) {
             log.warn("尝试释放未持有的分布式锁: {}", lockKey);
+            return;
+        }
+        try {
+            if (!lock.isHeldByCurrentThread()) {
+                log.warn("分布式锁已不由当前线程持有，可能租期已过期: {}", lockKey);
+                return;
+            }
+            
+            // 释放锁
+            lock.unlock();
+            
+            if (lockReleaseCounter != null) {
+                lockReleaseCounter.increment();
+            }
+            log.debug("释放分布式锁成功: {}", lockKey);
+        } catch (Exception e) {
+            log.error("释放分布式锁异常: {}", lockKey, e);
+        }
+    }
+    
+    private void incrementFailure() {
+        if (lockAcquireFailureCounter != null) {
+            lockAcquireFailureCounter.increment();
         }
     }
     
@@ -167,7 +398,7 @@ public class DistributedLockServiceImpl implements DistributedLockService {
      * @return 锁数量
      */
     public int getLockCount() {
-        return lockMap.size();
+        return (int) lockHandles.size();
     }
     
     /**
@@ -177,7 +408,8 @@ public class DistributedLockServiceImpl implements DistributedLockService {
      * @return 使用次数
      */
     public int getLockUseCount(String lockKey) {
-        return lockCounter.getOrDefault(lockKey, 0);
+        HeldLock held = heldLocks.get(lockKey);
+        return held != null ? held.count : 0;
     }
     
     /**
@@ -187,7 +419,7 @@ public class DistributedLockServiceImpl implements DistributedLockService {
      * @return 是否持有
      */
     public boolean isLocked(String lockKey) {
-        RLock lock = lockMap.get(lockKey);
+        RLock lock = findLockHandle(lockKey);
         return lock != null && lock.isLocked();
     }
     
@@ -197,9 +429,37 @@ public class DistributedLockServiceImpl implements DistributedLockService {
      * @param lockKey 锁键
      * @return 剩余租期，-1表示锁不存在或没有获取到
      */
+    @Override
     public long getLockRemainingLeaseTime(String lockKey) {
-        RLock lock = lockMap.get(lockKey);
-        return lock != null ? lock.remainTimeToLive() : -1;
+        RLock lock = findLockHandle(lockKey);
+        // Redisson对不存在的锁返回-2，统一为-1
+        return lock != null ? Math.max(lock.remainTimeToLive(), -1) : -1;
+    }
+    
+    @Override
+    public long getRemainingLeaseTime(String lockKey, LockMode mode, String permitId) {
+        RLock lock;
+        switch (mode) {
+            case READ:
+                lock = findReadWriteLockHandle(lockKey, heldReadLocks, false);
+                break;
+            case WRITE:
+                lock = findReadWriteLockHandle(lockKey, heldWriteLocks, true);
+                break;
+            case SEMAPHORE:
+                // Redisson不提供单个许可的剩余租期，使用获取许可时记录的到期时间
+                Long deadline = permitId != null ? permitDeadlines.get(permitId) : null;
+                if (deadline == null) {
+                    return -1;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                return remainingNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(remainingNanos) : -1;
+            default:
+                HeldLock held = heldLocks.get(lockKey);
+                lock = held != null ? held.lock : lockHandles.getIfPresent(lockKey);
+        }
+        // Redisson对不存在的锁返回-2，统一为-1
+        return lock != null ? Math.max(lock.remainTimeToLive(), -1) : -1;
     }
     
     /**
@@ -209,12 +469,12 @@ public class DistributedLockServiceImpl implements DistributedLockService {
      * @return 是否成功
      */
     public void forceUnlock(String lockKey) {
-        RLock lock = lockMap.get(lockKey);
+        RLock lock = findLockHandle(lockKey);
         if (lock != null) {
             try {
                 boolean result = lock.forceUnlock();
                 if (result) {
-                    lockCounter.remove(lockKey);
+                    heldLocks.remove(lockKey);
                     log.warn("强制释放分布式锁: {}", lockKey);
                 }
             } catch (Exception e) {
@@ -224,4 +484,88 @@ public class DistributedLockServiceImpl implements DistributedLockService {
             log.warn("尝试释放不存在的分布式锁: {}", lockKey);
         }
     }
-} 
\ No newline at end of file
+    
+    private <V> Cache<String, V> newHandleCache() {
+        return CacheBuilder.newBuilder()
+                .expireAfterAccess(handleExpireMinutes, TimeUnit.MINUTES)
+                .maximumSize(handleMaximumSize)
+                .build();
+    }
+    
+    /**
+     * 获取或创建锁对象，由Guava Cache的分段锁保证同一个锁键只创建一次
+     * 
+     * @param lockKey 锁键
+     * @param isFair 是否公平锁
+     * @return 锁对象
+     */
+    private RLock getLockHandle(String lockKey, boolean isFair) throws ExecutionException {
+        return lockHandles.get(lockKey, () -> {
+            log.debug("创建新的分布式锁对象: {}", lockKey);
+            return isFair ? redissonClient.getFairLock(lockKey) : redissonClient.getLock(lockKey);
+        });
+    }
+    
+    /**
+     * 获取或创建读写锁对象
+     *
+     * @param lockKey 锁键
+     * @return 读写锁对象
+     */
+    private RReadWriteLock getReadWriteLockHandle(String lockKey) throws ExecutionException {
+        return readWriteLockHandles.get(lockKey, () -> redissonClient.getReadWriteLock(lockKey));
+    }
+    
+    /**
+     * 查找已有的锁对象，不创建新对象
+     * 
+     * @param lockKey 锁键
+     * @return 锁对象，不存在返回null
+     */
+    private RLock findLockHandle(String lockKey) {
+        HeldLock held = heldLocks.get(lockKey);
+        if (held == null) {
+            held = heldWriteLocks.get(lockKey);
+        }
+        if (held == null) {
+            held = heldReadLocks.get(lockKey);
+        }
+        return held != null ? held.lock : lockHandles.getIfPresent(lockKey);
+    }
+    
+    /**
+     * 查找已有的读锁或写锁对象，不创建新对象
+     *
+     * @param lockKey 锁键
+     * @param held 对应模式的持有记录
+     * @param write 是否写锁
+     * @return 锁对象，不存在返回null
+     */
+    private RLock findReadWriteLockHandle(String lockKey, ConcurrentHashMap<String, HeldLock> held, boolean write) {
+        HeldLock current = held.get(lockKey);
+        if (current != null) {
+            return current.lock;
+        }
+        RReadWriteLock readWriteLock = readWriteLockHandles.getIfPresent(lockKey);
+        if (readWriteLock == null) {
+            return null;
+        }
+        return write ? readWriteLock.writeLock() : readWriteLock.readLock();
+    }
+    
+    /**
+     * 本节点持有中的锁
+     */
+    private static class HeldLock {
+        final RLock lock;
+        
+        /**
+         * 本节点所有线程的加锁次数，只在ConcurrentHashMap.compute中修改
+         */
+        int count = 1;
+        
+        HeldLock(RLock lock) {
+            this.lock = lock;
+        }
+    }
+}
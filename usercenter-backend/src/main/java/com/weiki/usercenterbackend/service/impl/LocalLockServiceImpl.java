@@ -1,21 +1,38 @@
 package com.weiki.usercenterbackend.service.impl;
 
+import com.weiki.usercenterbackend.annotation.LockMode;
 import com.weiki.usercenterbackend.service.DistributedLockService;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * 基于本地JVM的锁服务实现
  * 当Redis不可用或未启用时，使用本地锁作为替代
+ *
+ * 锁表中的条目按引用计数管理：正在等待或持有锁的线程各占一个引用，最后一个引用释放时条目从锁表中移除，
+ * 锁表大小只与当前正在使用的锁键数量有关。租期到期由共享的时间轮统一处理，不再为每次加锁创建线程。
+ * 互斥锁、读写锁和信号量分别保存在各自的锁表中
  */
 @Service
 @Slf4j
@@ -24,34 +41,69 @@ import java.util.concurrent.locks.ReentrantLock;
 public class LocalLockServiceImpl implements DistributedLockService {
 
     /**
-     * 本地锁存储，使用ConcurrentHashMap保证线程安全
+     * 时间轮刻度（毫秒），租期到期的精度
      */
-    private final Map<String, LockInfo> localLocks = new ConcurrentHashMap<>();
+    private static final long TICK_MILLIS = 10;
+
+    /**
+     * 时间轮槽数，必须为2的幂
+     */
+    private static final int TICKS_PER_WHEEL = 512;
+
+    /**
+     * 锁条目引用计数的原子更新器
+     */
+    private static final AtomicIntegerFieldUpdater<RefCountedEntry> REFS =
+            AtomicIntegerFieldUpdater.newUpdater(RefCountedEntry.class, "refs");
+
+    private static final Supplier<LockEntry> FAIR_LOCK = () -> new LockEntry(true);
+    private static final Supplier<LockEntry> NONFAIR_LOCK = () -> new LockEntry(false);
+    private static final Supplier<ReadWriteEntry> READ_WRITE_LOCK = ReadWriteEntry::new;
+
+    /**
+     * 本地锁存储，只保存正在被等待或持有的锁
+     */
+    private final ConcurrentHashMap<String, LockEntry> localLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ReadWriteEntry> readWriteLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SemaphoreEntry> semaphores = new ConcurrentHashMap<>();
+
+    /**
+     * 信号量许可ID序号
+     */
+    private final AtomicLong permitSequence = new AtomicLong();
+
+    /**
+     * 所有锁共享的租期到期时间轮，守护线程在第一次使用时启动
+     */
+    private final Timer leaseTimer = new HashedWheelTimer(runnable -> {
+        Thread thread = new Thread(runnable, "local-lock-lease-timer");
+        thread.setDaemon(true);
+        return thread;
+    }, TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
 
     @Override
     public boolean tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, boolean isFair) {
         log.info("使用本地锁模式，尝试获取锁: {}", key);
-        
+
+        LockEntry entry = retain(localLocks, key, isFair ? FAIR_LOCK : NONFAIR_LOCK);
+        boolean acquired = false;
         try {
-            // 获取或创建锁
-            LockInfo lockInfo = localLocks.computeIfAbsent(key, k -> new LockInfo(new ReentrantLock(isFair)));
-            Lock lock = lockInfo.getLock();
-            
             // 尝试获取锁
-            boolean acquired = lock.tryLock(waitTime, unit);
+            int holdCount = entry.acquire(unit.toNanos(waitTime));
+            acquired = holdCount > 0;
             if (acquired) {
-                // 记录持有锁的线程ID
-                lockInfo.setHoldingThreadId(Thread.currentThread().getId());
                 log.debug("获取本地锁成功: {}", key);
-                
-                // 设置过期时间（如果有）
+                if (holdCount > 1) {
+                    // 重入加锁不占用新的引用，引用在最后一次解锁时释放
+                    release(localLocks, key, entry);
+                }
+                // 设置过期时间（如果有），重入加锁时重新计算租期
                 if (leaseTime > 0) {
-                    scheduleUnlock(key, leaseTime, unit);
+                    scheduleUnlock(key, entry, leaseTime, unit);
                 }
             } else {
                 log.warn("获取本地锁失败: {}", key);
             }
-            
             return acquired;
         } catch (InterruptedException e) {
             log.error("获取本地锁时被中断: {}", key, e);
@@ -60,72 +112,740 @@ public class LocalLockServiceImpl implements DistributedLockService {
         } catch (Exception e) {
             log.error("获取本地锁异常: {}", key, e);
             return false;
+        } finally {
+            if (!acquired) {
+                release(localLocks, key, entry);
+            }
         }
     }
 
     @Override
     public void unlock(String key) {
         log.debug("释放本地锁: {}", key);
-        LockInfo lockInfo = localLocks.get(key);
-        if (lockInfo != null && lockInfo.isHeldByCurrentThread()) {
-            try {
-                Lock lock = lockInfo.getLock();
-                lockInfo.setHoldingThreadId(-1); // 清除持有线程ID
-                lock.unlock();
-                log.debug("本地锁已释放: {}", key);
-            } catch (Exception e) {
-                log.error("释放本地锁异常: {}", key, e);
+        LockEntry entry = localLocks.get(key);
+        if (entry != null && entry.releaseByOwner()) {
+            release(localLocks, key, entry);
+            log.debug("本地锁已释放: {}", key);
+        }
+    }
+
+    @Override
+    public boolean tryLockAll(Collection<String> keys, long waitTime, long leaseTime, TimeUnit unit) {
+        // 按字典序加锁，避免批量操作之间互相死锁
+        TreeSet<String> sortedKeys = new TreeSet<>(keys);
+        List<String> acquired = new ArrayList<>(sortedKeys.size());
+        long leaseNanos = leaseTime > 0 ? unit.toNanos(leaseTime) : -1;
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        for (String key : sortedKeys) {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (!tryLock(key, remaining, leaseNanos, TimeUnit.NANOSECONDS, false)) {
+                // 任意一把锁获取失败时释放已获取的锁
+                for (int i = acquired.size() - 1; i >= 0; i--) {
+                    unlock(acquired.get(i));
+                }
+                log.warn("批量获取本地锁失败: {}", key);
+                return false;
+            }
+            acquired.add(key);
+        }
+        return true;
+    }
+
+    @Override
+    public void unlockAll(Collection<String> keys) {
+        for (String key : new TreeSet<>(keys).descendingSet()) {
+            unlock(key);
+        }
+    }
+
+    @Override
+    public boolean tryReadLock(String key, long waitTime, long leaseTime, TimeUnit unit) {
+        return tryReadWriteLock(key, false, waitTime, leaseTime, unit);
+    }
+
+    @Override
+    public void unlockRead(String key) {
+        unlockReadWrite(key, false);
+    }
+
+    @Override
+    public boolean tryWriteLock(String key, long waitTime, long leaseTime, TimeUnit unit) {
+        return tryReadWriteLock(key, true, waitTime, leaseTime, unit);
+    }
+
+    @Override
+    public void unlockWrite(String key) {
+        unlockReadWrite(key, true);
+    }
+
+    @Override
+    public String tryAcquirePermit(String key, int permits, long waitTime, long leaseTime, TimeUnit unit) {
+        SemaphoreEntry entry = retain(semaphores, key, () -> new SemaphoreEntry(permits));
+        String permitId = null;
+        try {
+            permitId = entry.acquire(Long.toHexString(permitSequence.incrementAndGet()), unit.toNanos(waitTime));
+            if (permitId == null) {
+                log.warn("获取本地信号量许可失败: {}", key);
+                return null;
+            }
+            log.debug("获取本地信号量许可成功: {}, 许可ID: {}", key, permitId);
+            // 本地信号量随进程退出释放，未指定租期时许可一直有效到被释放
+            if (leaseTime > 0) {
+                String id = permitId;
+                entry.scheduleLease(id, leaseTimer, expired -> {
+                    if (entry.release(id, expired)) {
+                        release(semaphores, key, entry);
+                        log.debug("本地信号量许可自动过期释放: {}, 许可ID: {}", key, id);
+                    }
+                }, leaseTime, unit);
+            }
+            return permitId;
+        } catch (InterruptedException e) {
+            log.error("获取本地信号量许可时被中断: {}", key, e);
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            // 每个许可占用一个引用，获取失败时释放
+            if (permitId == null) {
+                release(semaphores, key, entry);
             }
         }
     }
 
+    @Override
+    public void releasePermit(String key, String permitId) {
+        SemaphoreEntry entry = semaphores.get(key);
+        if (entry != null && entry.release(permitId, null)) {
+            release(semaphores, key, entry);
+            log.debug("本地信号量许可已释放: {}, 许可ID: {}", key, permitId);
+        }
+    }
+
     @Override
     public void forceUnlock(String key) {
         log.warn("强制释放本地锁: {}", key);
-        localLocks.remove(key);
-        log.debug("本地锁已强制移除: {}", key);
+        LockEntry entry = localLocks.get(key);
+        if (entry != null && entry.forceRelease(null)) {
+            release(localLocks, key, entry);
+            log.debug("本地锁已强制释放: {}", key);
+        }
+    }
+
+    @Override
+    public long getLockRemainingLeaseTime(String key) {
+        LockEntry entry = localLocks.get(key);
+        if (entry != null) {
+            return entry.remainingLeaseMillis();
+        }
+        ReadWriteEntry readWriteEntry = readWriteLocks.get(key);
+        return readWriteEntry != null ? readWriteEntry.remainingWriteLeaseMillis() : -1;
+    }
+
+    @Override
+    public long getRemainingLeaseTime(String key, LockMode mode, String permitId) {
+        switch (mode) {
+            case READ: {
+                ReadWriteEntry entry = readWriteLocks.get(key);
+                return entry != null ? entry.remainingReadLeaseMillis() : -1;
+            }
+            case WRITE: {
+                ReadWriteEntry entry = readWriteLocks.get(key);
+                return entry != null ? entry.remainingWriteLeaseMillis() : -1;
+            }
+            case SEMAPHORE: {
+                SemaphoreEntry entry = semaphores.get(key);
+                return entry != null && permitId != null ? entry.remainingLeaseMillis(permitId) : -1;
+            }
+            default: {
+                LockEntry entry = localLocks.get(key);
+                return entry != null ? entry.remainingLeaseMillis() : -1;
+            }
+        }
+    }
+
+    /**
+     * 当前锁表中的条目数，即正在被等待或持有的锁键数量
+     */
+    int getLockTableSize() {
+        return localLocks.size() + readWriteLocks.size() + semaphores.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseTimer.stop();
+    }
+
+    private boolean tryReadWriteLock(String key, boolean write, long waitTime, long leaseTime, TimeUnit unit) {
+        ReadWriteEntry entry = retain(readWriteLocks, key, READ_WRITE_LOCK);
+        boolean acquired = false;
+        try {
+            Thread current = Thread.currentThread();
+            long waitNanos = unit.toNanos(waitTime);
+            int holdCount = write ? entry.acquireWrite(waitNanos) : entry.acquireRead(waitNanos);
+            acquired = holdCount > 0;
+            if (!acquired) {
+                log.warn("获取本地{}锁失败: {}", write ? "写" : "读", key);
+                return false;
+            }
+            if (holdCount > 1) {
+                // 重入加锁不占用新的引用
+                release(readWriteLocks, key, entry);
+            }
+            if (leaseTime > 0) {
+                entry.scheduleLease(write, current, leaseTimer, expired -> {
+                    if (entry.forceRelease(write, current, expired)) {
+                        release(readWriteLocks, key, entry);
+                        log.debug("本地{}锁自动过期释放: {}", write ? "写" : "读", key);
+                    }
+                }, leaseTime, unit);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            log.error("获取本地{}锁时被中断: {}", write ? "写" : "读", key, e);
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (!acquired) {
+                release(readWriteLocks, key, entry);
+            }
+        }
+    }
+
+    private void unlockReadWrite(String key, boolean write) {
+        ReadWriteEntry entry = readWriteLocks.get(key);
+        if (entry != null && entry.releaseByOwner(write)) {
+            release(readWriteLocks, key, entry);
+            log.debug("本地{}锁已释放: {}", write ? "写" : "读", key);
+        }
+    }
+
+    /**
+     * 获取锁条目并增加引用计数，不存在则创建
+     * 条目存活时只做一次CAS；引用计数归零的条目已失效，不会再被复用，由新条目替换
+     */
+    private static <E extends RefCountedEntry> E retain(ConcurrentHashMap<String, E> table, String key,
+                                                        Supplier<E> factory) {
+        E created = null;
+        while (true) {
+            E entry = table.get(key);
+            if (entry != null && entry.tryRetain()) {
+                return entry;
+            }
+            if (created == null) {
+                created = factory.get();
+            }
+            if (entry == null ? table.putIfAbsent(key, created) == null
+                    : table.replace(key, entry, created)) {
+                return created;
+            }
+            // 其他线程同时创建或替换了条目，重新读取
+        }
+    }
+
+    /**
+     * 减少引用计数，最后一个引用释放时从锁表中移除
+     */
+    private static <E extends RefCountedEntry> void release(ConcurrentHashMap<String, E> table, String key, E entry) {
+        if (REFS.decrementAndGet(entry) == 0) {
+            table.remove(key, entry);
+        }
     }
 
     /**
      * 设置锁的自动释放
      */
-    private void scheduleUnlock(String key, long leaseTime, TimeUnit unit) {
-        // 创建一个线程在指定时间后释放锁
-        Thread unlockThread = new Thread(() -> {
-            try {
-                unit.sleep(leaseTime);
-                forceUnlock(key);
+    private void scheduleUnlock(String key, LockEntry entry, long leaseTime, TimeUnit unit) {
+        entry.scheduleLease(leaseTimer, expired -> {
+            if (entry.forceRelease(expired)) {
+                release(localLocks, key, entry);
                 log.debug("本地锁自动过期释放: {}", key);
-            } catch (InterruptedException e) {
-                log.error("本地锁自动释放被中断: {}", key, e);
-                Thread.currentThread().interrupt();
             }
-        });
-        unlockThread.setDaemon(true);
-        unlockThread.start();
+        }, leaseTime, unit);
     }
 
     /**
-     * 锁信息内部类，包装Lock实例并记录持有者线程ID
+     * 按引用计数管理的锁表条目
+     * 不直接把ReentrantLock作为业务锁，因为租期到期时需要由时间轮线程替持有者释放锁；
+     * ReentrantLock只作为互斥量保护条目状态，等待者在条件队列上等待
      */
-    private static class LockInfo {
-        private final Lock lock;
-        private volatile long holdingThreadId = -1;
+    @SuppressWarnings("serial")
+    private abstract static class RefCountedEntry extends ReentrantLock {
 
-        public LockInfo(Lock lock) {
-            this.lock = lock;
+        /**
+         * 引用计数，归零后条目失效
+         */
+        volatile int refs;
+
+        /**
+         * 等待锁释放的条件队列，第一次发生竞争时创建
+         */
+        private Condition released;
+
+        /**
+         * 新建的条目已被创建者持有一个引用
+         */
+        RefCountedEntry(boolean fair) {
+            super(fair);
+            this.refs = 1;
         }
 
-        public Lock getLock() {
-            return lock;
+        /**
+         * 引用计数大于0时加1
+         *
+         * @return 条目是否仍然有效
+         */
+        boolean tryRetain() {
+            for (int current = refs; current > 0; current = refs) {
+                if (REFS.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+            return false;
         }
 
-        public boolean isHeldByCurrentThread() {
-            return holdingThreadId == Thread.currentThread().getId();
+        /**
+         * 等待锁释放，必须持有条目自身的锁
+         *
+         * @return 剩余等待时间
+         */
+        long awaitReleased(long nanos) throws InterruptedException {
+            if (released == null) {
+                released = newCondition();
+            }
+            return released.awaitNanos(nanos);
+        }
+
+        /**
+         * 唤醒等待者，必须持有条目自身的锁
+         *
+         * @param all 是否唤醒全部等待者，写锁释放后可能有多个读者同时获取
+         */
+        void signalReleased(boolean all) {
+            if (released == null) {
+                return;
+            }
+            if (all) {
+                released.signalAll();
+            } else {
+                released.signal();
+            }
         }
+    }
 
-        public void setHoldingThreadId(long threadId) {
-            this.holdingThreadId = threadId;
+    /**
+     * 互斥锁条目
+     */
+    @SuppressWarnings("serial")
+    private static class LockEntry extends RefCountedEntry {
+
+        /**
+         * 以下状态由条目自身的锁保护
+         */
+        private Thread owner;
+        private int holdCount;
+        private Timeout lease;
+        private long leaseDeadline;
+
+        LockEntry(boolean fair) {
+            super(fair);
+        }
+
+        /**
+         * 获取锁
+         *
+         * @param waitNanos 最长等待时间
+         * @return 获取成功后的重入次数，获取失败返回0
+         */
+        int acquire(long waitNanos) throws InterruptedException {
+            Thread current = Thread.currentThread();
+            lockInterruptibly();
+            try {
+                long remaining = waitNanos;
+                while (owner != null && owner != current) {
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+                    remaining = awaitReleased(remaining);
+                }
+                owner = current;
+                return ++holdCount;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 替换当前租期，在锁内提交，保证到期任务执行时能看到自己对应的租期
+         */
+        void scheduleLease(Timer timer, TimerTask task, long leaseTime, TimeUnit unit) {
+            lock();
+            try {
+                if (lease != null) {
+                    lease.cancel();
+                }
+                lease = timer.newTimeout(task, leaseTime, unit);
+                leaseDeadline = System.nanoTime() + unit.toNanos(leaseTime);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 当前租期的剩余时间（毫秒），没有持有者或没有租期时返回-1
+         */
+        long remainingLeaseMillis() {
+            lock();
+            try {
+                if (owner == null || lease == null || lease.isExpired()) {
+                    return -1;
+                }
+                return Math.max(0, TimeUnit.NANOSECONDS.toMillis(leaseDeadline - System.nanoTime()));
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 持有者解锁一次
+         *
+         * @return 是否完全释放了锁（重入次数归零）
+         */
+        boolean releaseByOwner() {
+            lock();
+            try {
+                if (owner != Thread.currentThread()) {
+                    // 锁已因租期到期或强制解锁被释放
+                    return false;
+                }
+                if (--holdCount > 0) {
+                    return false;
+                }
+                clearOwner();
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 不论持有者是谁都释放锁
+         *
+         * @param expired 到期的租期，非null时只有该租期仍然有效才释放，避免旧的租期释放新持有者的锁
+         * @return 是否释放了锁
+         */
+        boolean forceRelease(Timeout expired) {
+            lock();
+            try {
+                if (owner == null || (expired != null && lease != expired)) {
+                    return false;
+                }
+                clearOwner();
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        private void clearOwner() {
+            owner = null;
+            holdCount = 0;
+            if (lease != null) {
+                lease.cancel();
+                lease = null;
+            }
+            signalReleased(false);
+        }
+    }
+
+    /**
+     * 读写锁条目，与Redisson读写锁的语义一致：读锁之间共享，写锁独占；
+     * 持有写锁的线程可以再获取读锁（降级），持有读锁的线程获取写锁会一直等待到超时
+     */
+    @SuppressWarnings("serial")
+    private static class ReadWriteEntry extends RefCountedEntry {
+
+        /**
+         * 以下状态由条目自身的锁保护
+         */
+        private Thread writer;
+        private Hold writeHold;
+        private Map<Thread, Hold> readers;
+
+        ReadWriteEntry() {
+            super(false);
+        }
+
+        /**
+         * 获取写锁
+         *
+         * @return 获取成功后的重入次数，获取失败返回0
+         */
+        int acquireWrite(long waitNanos) throws InterruptedException {
+            Thread current = Thread.currentThread();
+            lockInterruptibly();
+            try {
+                long remaining = waitNanos;
+                // 写锁重入时不检查读锁，持有写锁的线程可能同时持有读锁
+                while (writer != current && (writer != null || (readers != null && !readers.isEmpty()))) {
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+                    remaining = awaitReleased(remaining);
+                }
+                if (writer == null) {
+                    writer = current;
+                    writeHold = new Hold();
+                }
+                return ++writeHold.count;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 获取读锁
+         *
+         * @return 获取成功后当前线程的读锁重入次数，获取失败返回0
+         */
+        int acquireRead(long waitNanos) throws InterruptedException {
+            Thread current = Thread.currentThread();
+            lockInterruptibly();
+            try {
+                long remaining = waitNanos;
+                while (writer != null && writer != current) {
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+                    remaining = awaitReleased(remaining);
+                }
+                if (readers == null) {
+                    readers = new HashMap<>();
+                }
+                return ++readers.computeIfAbsent(current, thread -> new Hold()).count;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 替换持有者读锁或写锁的租期
+         */
+        void scheduleLease(boolean write, Thread holder, Timer timer, TimerTask task, long leaseTime, TimeUnit unit) {
+            lock();
+            try {
+                Hold hold = holdOf(write, holder);
+                if (hold != null) {
+                    hold.schedule(timer, task, leaseTime, unit);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        long remainingWriteLeaseMillis() {
+            lock();
+            try {
+                return writeHold != null ? writeHold.remainingLeaseMillis() : -1;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 读锁的剩余租期，即最后一个到期的读锁持有者的剩余时间，有持有者没有租期时返回-1
+         */
+        long remainingReadLeaseMillis() {
+            lock();
+            try {
+                if (readers == null || readers.isEmpty()) {
+                    return -1;
+                }
+                long remaining = 0;
+                for (Hold hold : readers.values()) {
+                    long leaseMillis = hold.remainingLeaseMillis();
+                    if (leaseMillis < 0) {
+                        return -1;
+                    }
+                    remaining = Math.max(remaining, leaseMillis);
+                }
+                return remaining;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 持有者解锁一次
+         *
+         * @return 是否完全释放了当前线程的读锁或写锁
+         */
+        boolean releaseByOwner(boolean write) {
+            Thread current = Thread.currentThread();
+            lock();
+            try {
+                Hold hold = holdOf(write, current);
+                if (hold == null || --hold.count > 0) {
+                    return false;
+                }
+                clear(write, current, hold);
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 租期到期时释放持有者的读锁或写锁，只有该租期仍然有效才释放
+         */
+        boolean forceRelease(boolean write, Thread holder, Timeout expired) {
+            lock();
+            try {
+                Hold hold = holdOf(write, holder);
+                if (hold == null || hold.lease != expired) {
+                    return false;
+                }
+                clear(write, holder, hold);
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        private Hold holdOf(boolean write, Thread holder) {
+            if (write) {
+                return writer == holder ? writeHold : null;
+            }
+            return readers != null ? readers.get(holder) : null;
+        }
+
+        private void clear(boolean write, Thread holder, Hold hold) {
+            hold.cancel();
+            if (write) {
+                writer = null;
+                writeHold = null;
+            } else {
+                readers.remove(holder);
+            }
+            // 写锁释放后所有读者都可以继续，最后一个读锁释放后写者可以继续
+            if (write || readers.isEmpty()) {
+                signalReleased(true);
+            }
+        }
+    }
+
+    /**
+     * 信号量条目，每个许可有独立的ID和租期
+     */
+    @SuppressWarnings("serial")
+    private static class SemaphoreEntry extends RefCountedEntry {
+
+        /**
+         * 以下状态由条目自身的锁保护
+         */
+        private int available;
+        private final Map<String, Hold> issued = new HashMap<>();
+
+        SemaphoreEntry(int permits) {
+            super(false);
+            this.available = permits;
+        }
+
+        /**
+         * 获取一个许可
+         *
+         * @param permitId 分配给该许可的ID
+         * @return 获取成功返回许可ID，失败返回null
+         */
+        String acquire(String permitId, long waitNanos) throws InterruptedException {
+            lockInterruptibly();
+            try {
+                long remaining = waitNanos;
+                while (available <= 0) {
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    remaining = awaitReleased(remaining);
+                }
+                available--;
+                issued.put(permitId, new Hold());
+                return permitId;
+            } finally {
+                unlock();
+            }
+        }
+
+        long remainingLeaseMillis(String permitId) {
+            lock();
+            try {
+                Hold hold = issued.get(permitId);
+                return hold != null ? hold.remainingLeaseMillis() : -1;
+            } finally {
+                unlock();
+            }
+        }
+
+        void scheduleLease(String permitId, Timer timer, TimerTask task, long leaseTime, TimeUnit unit) {
+            lock();
+            try {
+                Hold hold = issued.get(permitId);
+                if (hold != null) {
+                    hold.schedule(timer, task, leaseTime, unit);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 释放许可
+         *
+         * @param expired 到期的租期，非null时只有该租期仍然有效才释放
+         * @return 是否释放了许可
+         */
+        boolean release(String permitId, Timeout expired) {
+            lock();
+            try {
+                Hold hold = issued.get(permitId);
+                if (hold == null || (expired != null && hold.lease != expired)) {
+                    return false;
+                }
+                issued.remove(permitId);
+                hold.cancel();
+                available++;
+                signalReleased(false);
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+    /**
+     * 读锁、写锁或信号量许可的持有状态，由所属条目的锁保护
+     */
+    private static class Hold {
+        int count;
+        Timeout lease;
+        long leaseDeadline;
+
+        void schedule(Timer timer, TimerTask task, long leaseTime, TimeUnit unit) {
+            cancel();
+            lease = timer.newTimeout(task, leaseTime, unit);
+            leaseDeadline = System.nanoTime() + unit.toNanos(leaseTime);
+        }
+
+        long remainingLeaseMillis() {
+            if (lease == null || lease.isExpired()) {
+                return -1;
+            }
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(leaseDeadline - System.nanoTime()));
+        }
+
+        void cancel() {
+            if (lease != null) {
+                lease.cancel();
+                lease = null;
+            }
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,207 @@
+package com.weiki.usercenterbackend.service.impl;
+
+import com.weiki.usercenterbackend.exception.RateLimitException;
+import com.weiki.usercenterbackend.service.PasswordHashingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希服务实现
+ *
+ * 存储格式：
+ * v1 - "v1$" + BCrypt哈希，BCrypt自带每个密码独立的随机盐和代价因子；
+ * v0 - 无前缀的32位十六进制MD5(固定盐 + 密码)，仅用于校验旧数据，登录成功后升级为v1。
+ *
+ * BCrypt每次计算耗时数十毫秒，全部在专用的有界线程池中执行，调用线程只等待结果：
+ * 线程数不超过CPU核数，队列满时立即拒绝并返回429，登录高峰不会占满请求线程的CPU，其他接口不受影响
+ */
+@Service
+@Slf4j
+public class PasswordHashingServiceImpl implements PasswordHashingService {
+
+    /**
+     * 当前版本的前缀
+     */
+    static final String V1_PREFIX = "v1$";
+
+    /**
+     * v0版本MD5使用的固定盐
+     */
+    private static final String LEGACY_SALT = "weiki";
+
+    /**
+     * 拒绝时返回的限流器类型和限流目标
+     */
+    private static final String LIMITER_TYPE = "password-hashing";
+    private static final String LIMIT_TARGET = "password";
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * BCrypt代价因子，调高后已有的哈希在下次登录时按新代价重新计算
+     */
+    @Value("${password.hashing.strength:10}")
+    private int strength;
+
+    /**
+     * 哈希线程数，0表示使用CPU核数
+     */
+    @Value("${password.hashing.threads:0}")
+    private int threads;
+
+    /**
+     * 等待执行的哈希任务上限，超过后拒绝请求
+     */
+    @Value("${password.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * 调用线程等待哈希结果的最长时间（毫秒）
+     */
+    @Value("${password.hashing.timeout:5000}")
+    private long timeoutMillis;
+
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 账号不存在时用于校验的哈希，使响应时间与密码错误时一致
+     */
+    private String dummyHash;
+
+    private Counter rejectedCounter;
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        encoder = new BCryptPasswordEncoder(strength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        dummyHash = encoder.encode("dummy-password");
+
+        if (meterRegistry != null) {
+            Gauge.builder("password.hashing.queue.size", executor, e -> e.getQueue().size())
+                    .description("等待执行的密码哈希任务数")
+                    .register(meterRegistry);
+            Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .description("正在执行的密码哈希任务数")
+                    .register(meterRegistry);
+            rejectedCounter = Counter.builder("password.hashing.rejected")
+                    .description("队列已满或等待超时而被拒绝的密码哈希任务数")
+                    .register(meterRegistry);
+            waitTimer = Timer.builder("password.hashing.wait")
+                    .description("调用线程等待密码哈希结果的时间，包括排队时间")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String hash(String rawPassword) {
+        return V1_PREFIX + execute(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(String rawPassword, String storedPassword) {
+        if (storedPassword == null) {
+            // 账号不存在，同样执行一次BCrypt
+            execute(() -> encoder.matches(rawPassword, dummyHash));
+            return false;
+        }
+        if (storedPassword.startsWith(V1_PREFIX)) {
+            String bcrypt = storedPassword.substring(V1_PREFIX.length());
+            return execute(() -> encoder.matches(rawPassword, bcrypt));
+        }
+        // v0：MD5很快，直接在调用线程计算，按常量时间比较
+        String legacy = DigestUtils.md5DigestAsHex((LEGACY_SALT + rawPassword).getBytes(StandardCharsets.UTF_8));
+        return MessageDigest.isEqual(legacy.getBytes(StandardCharsets.US_ASCII),
+                storedPassword.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public boolean needsRehash(String storedPassword) {
+        if (storedPassword == null || !storedPassword.startsWith(V1_PREFIX)) {
+            return true;
+        }
+        return encoder.upgradeEncoding(storedPassword.substring(V1_PREFIX.length()));
+    }
+
+    /**
+     * 等待执行的哈希任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 在哈希线程池中执行任务并等待结果
+     *
+     * @throws RateLimitException 队列已满或等待超时
+     */
+    private <T> T execute(Callable<T> task) {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw rejected("队列已满");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw rejected("等待超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待密码哈希结果时被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("密码哈希计算失败", e.getCause());
+        } finally {
+            if (waitTimer != null) {
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private RateLimitException rejected(String reason) {
+        if (rejectedCounter != null) {
+            rejectedCounter.increment();
+        }
+        log.warn("密码哈希任务被拒绝: {}, 排队任务数={}", reason, executor.getQueue().size());
+        return new RateLimitException("密码校验请求过多，请稍后重试", 1000, LIMITER_TYPE, LIMIT_TARGET);
+    }
+}
@@ -8,7 +8,12 @@ import com.weiki.usercenterbackend.model.domain.User;
 import com.weiki.usercenterbackend.model.request.UserUpdateRequest;
 import com.weiki.usercenterbackend.model.vo.PageVO;
 import com.weiki.usercenterbackend.service.DistributedLockService;
+import com.weiki.usercenterbackend.service.PasswordHashingService;
 import com.weiki.usercenterbackend.service.UserService;
+import com.weiki.usercenterbackend.utils.AuthorizationCache;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.TokenBlacklist;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +25,6 @@ import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.DigestUtils;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -33,7 +37,6 @@ import java.util.stream.Collectors;
 import java.text.SimpleDateFormat;
 
 import static com.weiki.usercenterbackend.constant.UserConstant.DEFAULT_ROLE;
-import static com.weiki.usercenterbackend.constant.UserConstant.USER_LOGIN_STATE;
 import static com.weiki.usercenterbackend.constant.UserConstant.ADMIN_ROLE;
 
 /**
@@ -55,6 +58,18 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private DistributedLockService distributedLockService;
     
+    @Autowired
+    private JwtUtils jwtUtils;
+    
+    @Autowired
+    private TokenBlacklist tokenBlacklist;
+    
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    
+    @Autowired
+    private AuthorizationCache authorizationCache;
+    
     // 用户缓存前缀
     private static final String USER_CACHE_KEY_PREFIX = "user:";
     
@@ -70,11 +85,6 @@ public class UserServiceImpl implements UserService {
         // 内部空类
     }
 
-    /**
-     * 盐值，混淆密码
-     */
-    private static final String SALT = "weiki";
-
     /**
      * 根据用户账号生成默认用户名
      * 
@@ -86,7 +96,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @DistributedLock(lockKey = "'userRegister:' + #userAccount", waitTime = 5000, leaseTime = 30000)
+    @DistributedLock(lockKey = "'userRegister:' + #userAccount", waitTime = 5000)
     public User userRegister(String userAccount, String userPassword, String checkPassword, HttpServletRequest request) {
         // 1. 校验
         if (StringUtils.isAnyBlank(userAccount, userPassword, checkPassword)) {
@@ -125,7 +135,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // 2. 加密
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+        String encryptPassword = passwordHashingService.hash(userPassword);
 
         // 3. 插入数据
         User user = new User();
@@ -142,13 +152,8 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "注册失败，数据库错误");
         }
 
-        // 4. 用户脱敏
-        User safetyUser = getSafetyUser(user);
-        
-        // 5. 记录用户的登录态
-        request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
-        
-        return safetyUser;
+        // 4. 用户脱敏，登录态由控制器签发的访问令牌携带，服务端不保存会话
+        return getSafetyUser(user);
     }
 
     @Override
@@ -170,17 +175,15 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(ErrorCode.LOGIN_ERROR);
         }
 
-        // 2. 加密
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
-        // 查询用户是否存在
+        // 2. 查询用户并校验密码，账号不存在时同样计算一次哈希
         User user = userMapper.selectByUserAccount(userAccount);
-        if (user == null) {
+        if (!passwordHashingService.matches(userPassword, user != null ? user.getUserPassword() : null)) {
             log.info("user login failed, userAccount cannot match userPassword");
             throw new BusinessException(ErrorCode.LOGIN_ERROR);
         }
-        if (!user.getUserPassword().equals(encryptPassword)) {
-            log.info("user login failed, userAccount cannot match userPassword");
-            throw new BusinessException(ErrorCode.LOGIN_ERROR);
+        // 旧版本的密码哈希升级为当前版本
+        if (passwordHashingService.needsRehash(user.getUserPassword())) {
+            rehashPassword(user, userPassword);
         }
         
         // 检查用户是否为管理员，管理员不受封禁限制
@@ -206,19 +209,32 @@ public class UserServiceImpl implements UserService {
                     user.setIsBanned(0);
                     user.setUnbanDate(null);
                     userMapper.updateById(user);
+                    authorizationCache.invalidate(user.getId());
                 }
             }
         } else {
             log.info("管理员登录，跳过封禁检查");
         }
         
-        // 3. 用户脱敏
-        User safetyUser = getSafetyUser(user);
-
-        // 4. 记录用户的登录态
-        request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
+        // 3. 用户脱敏，登录态由控制器签发的访问令牌携带，服务端不保存会话
+        return getSafetyUser(user);
+    }
 
-        return safetyUser;
+    /**
+     * 用当前版本的算法重新计算密码哈希，失败不影响本次登录，下次登录时再升级
+     *
+     * @param user        已通过密码校验的用户
+     * @param rawPassword 明文密码
+     */
+    private void rehashPassword(User user, String rawPassword) {
+        try {
+            // updateById总是写入unban_date，因此在查询出的完整记录上更新
+            user.setUserPassword(passwordHashingService.hash(rawPassword));
+            userMapper.updateById(user);
+            log.info("用户密码哈希已升级: userId={}", user.getId());
+        } catch (RuntimeException e) {
+            log.warn("升级用户密码哈希失败: userId={}, {}", user.getId(), e.getMessage());
+        }
     }
 
     /**
@@ -256,8 +272,8 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public int userLogout(HttpServletRequest request) {
-        // 移除登录态
-        request.getSession().removeAttribute(USER_LOGIN_STATE);
+        // 注销当前访问令牌
+        revokeLoginToken(request);
         return 1;
     }
 
@@ -280,6 +296,7 @@ public class UserServiceImpl implements UserService {
         // 2. 清除缓存
         String cacheKey = USER_CACHE_KEY_PREFIX + id;
         redisTemplate.delete(cacheKey);
+        authorizationCache.invalidate(id);
         
         return result > 0;
     }
@@ -299,14 +316,13 @@ public class UserServiceImpl implements UserService {
         }
         
         // 3. 校验密码是否正确
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
-        if (!user.getUserPassword().equals(encryptPassword)) {
+        if (!passwordHashingService.matches(userPassword, user.getUserPassword())) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "密码错误");
         }
         
         // 4. 校验当前登录用户是否为要删除的账号
         User loginUser = getLoginUser(request);
-        if (loginUser == null || !loginUser.getUserAccount().equals(userAccount)) {
+        if (!loginUser.getId().equals(user.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH, "无权限操作");
         }
         
@@ -317,25 +333,52 @@ public class UserServiceImpl implements UserService {
         // 6. 清除缓存
         String cacheKey = USER_CACHE_KEY_PREFIX + userId;
         redisTemplate.delete(cacheKey);
+        authorizationCache.invalidate(userId);
         
-        // 7. 清除登录状态
-        request.getSession().removeAttribute(USER_LOGIN_STATE);
+        // 7. 注销当前访问令牌
+        revokeLoginToken(request);
         
         return result > 0;
     }
 
+    @Override
+    public User getLoginUser(HttpServletRequest request) {
+        // 登录态过滤器验证通过的令牌
+        Object attribute = request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE);
+        if (!(attribute instanceof VerifiedToken)) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN);
+        }
+        VerifiedToken token = (VerifiedToken) attribute;
+        if (token.getUserId() == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN);
+        }
+        // 角色和状态以短期缓存的数据库数据为准，令牌签发后用户被删除、禁用、封禁或降级时最迟在一个缓存周期后生效
+        AuthorizationCache.Authorization authorization = authorizationCache.get(token.getUserId());
+        if (!authorization.exists()) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN);
+        }
+        if (!authorization.isActive()) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户状态异常");
+        }
+        User loginUser = new User();
+        loginUser.setId(token.getUserId());
+        loginUser.setUserRole(authorization.getUserRole());
+        loginUser.setUserStatus(authorization.getUserStatus());
+        return loginUser;
+    }
+
     /**
-     * 获取当前登录用户
+     * 将当前访问令牌加入黑名单，令牌过期前不能再使用
+     *
      * @param request HTTP请求
-     * @return 当前登录用户
      */
-    private User getLoginUser(HttpServletRequest request) {
-        // 从session中获取用户信息
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        if (userObj == null) {
-            throw new BusinessException(ErrorCode.NOT_LOGIN);
+    private void revokeLoginToken(HttpServletRequest request) {
+        Object attribute = request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE);
+        if (attribute instanceof VerifiedToken) {
+            VerifiedToken token = (VerifiedToken) attribute;
+            tokenBlacklist.add(token);
+            jwtUtils.evictVerifiedToken(token.getToken());
         }
-        return (User) userObj;
     }
 
     @Override
@@ -349,19 +392,15 @@ public class UserServiceImpl implements UserService {
         log.info("更新用户请求: {}", updateRequest);
         
         // 获取当前登录用户
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User currentUser = (User) userObj;
-        if (currentUser == null) {
-            throw new BusinessException(ErrorCode.NOT_LOGIN);
-        }
+        User currentUser = getLoginUser(request);
         
-        log.info("当前登录用户: {}, 角色: {}", currentUser.getUserAccount(), currentUser.getUserRole());
+        log.info("当前登录用户: {}, 角色: {}", currentUser.getId(), currentUser.getUserRole());
         
         // 要修改的用户ID
         Long userId;
         
-        // 管理员可以修改任何用户信息
-        boolean isAdmin = currentUser.getUserRole() == ADMIN_ROLE;
+        // 管理员可以修改任何用户信息，角色取自权限缓存而非令牌
+        boolean isAdmin = currentUser.getUserRole() != null && currentUser.getUserRole() == ADMIN_ROLE;
         
         if (isAdmin && updateRequest.getId() != null) {
             // 如果是管理员且指定了用户ID，则修改指定用户的信息
@@ -405,12 +444,6 @@ public class UserServiceImpl implements UserService {
         // 更新用户
         int result = userMapper.updateById(user);
         
-        // 如果是修改当前登录用户的信息，更新session中的用户信息
-        if (result > 0 && userId.equals(currentUser.getId())) {
-            User safetyUser = getSafetyUser(user);
-            request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
-        }
-        
         // 清除缓存
         String cacheKey = USER_CACHE_KEY_PREFIX + userId;
         redisTemplate.delete(cacheKey);
@@ -450,8 +483,9 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @DistributedLock(lockKey = "'updatePassword:' + #request.getSession().getAttribute('USER_LOGIN_STATE').id", waitTime = 5000, leaseTime = 30000)
-    public boolean updatePassword(String oldPassword, String newPassword, String checkPassword, HttpServletRequest request) {
+    @DistributedLock(lockKey = "'updatePassword:' + #userId", waitTime = 5000)
+    public boolean updatePassword(long userId, String oldPassword, String newPassword, String checkPassword,
+                                  HttpServletRequest request) {
         // 校验参数
         if (StringUtils.isAnyBlank(oldPassword, newPassword, checkPassword)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数为空");
@@ -464,36 +498,27 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "两次输入的新密码不一致");
         }
         
-        // 获取当前登录用户
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User currentUser = (User) userObj;
-        if (currentUser == null) {
-            throw new BusinessException(ErrorCode.NOT_LOGIN);
-        }
-        
         // 查询用户信息
-        Long userId = currentUser.getId();
         User user = userMapper.selectById(userId);
         if (user == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户不存在");
         }
         
         // 校验旧密码
-        String encryptOldPassword = DigestUtils.md5DigestAsHex((SALT + oldPassword).getBytes());
-        if (!encryptOldPassword.equals(user.getUserPassword())) {
+        if (!passwordHashingService.matches(oldPassword, user.getUserPassword())) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "旧密码错误");
         }
         
         // 加密新密码
-        String encryptNewPassword = DigestUtils.md5DigestAsHex((SALT + newPassword).getBytes());
+        String encryptNewPassword = passwordHashingService.hash(newPassword);
         
         // 更新用户密码
         user.setUserPassword(encryptNewPassword);
         int result = userMapper.updateById(user);
         
-        // 清除登录状态，让用户重新登录
+        // 注销当前访问令牌，让用户重新登录
         if (result > 0) {
-            request.getSession().removeAttribute(USER_LOGIN_STATE);
+            revokeLoginToken(request);
         }
         
         return result > 0;
@@ -576,6 +601,8 @@ public class UserServiceImpl implements UserService {
         } catch (Exception e) {
             log.warn("清除用户缓存出错", e);
         }
+        // 所有节点立即按新的封禁状态校验权限
+        authorizationCache.invalidate(userId);
         
         return result > 0;
     }
@@ -628,6 +655,8 @@ public class UserServiceImpl implements UserService {
         } catch (Exception e) {
             log.warn("清除用户缓存出错", e);
         }
+        // 所有节点立即按新的封禁状态校验权限
+        authorizationCache.invalidate(userId);
         
         return result > 0;
     }
@@ -0,0 +1,193 @@
+package com.weiki.usercenterbackend.utils;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.weiki.usercenterbackend.mapper.UserMapper;
+import com.weiki.usercenterbackend.model.domain.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 权限判定缓存
+ * 按用户ID在本地缓存从数据库读取的角色、状态和封禁信息，缓存时间很短（默认5秒），
+ * 权限校验只需一次本地查找，不信任访问令牌中可能已过时的角色和状态。
+ * 封禁、解封、删除等修改后立即失效本地缓存，并通过Redis发布订阅通知其他节点；
+ * 消息丢失时由缓存过期兜底，变更最迟在一个缓存周期后生效
+ */
+@Slf4j
+@Component
+public class AuthorizationCache {
+
+    /**
+     * 失效通知频道，消息格式为 节点ID|用户ID
+     */
+    static final String CHANNEL = "auth:decision:invalidate";
+
+    private final UserMapper userMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * 权限信息缓存时间（毫秒）
+     */
+    @Value("${cache.auth.decision.expire:5000}")
+    private long expireMillis;
+
+    /**
+     * 缓存的最大用户数
+     */
+    @Value("${cache.auth.decision.maximum-size:10000}")
+    private long maximumSize;
+
+    private LoadingCache<Long, Authorization> authorizations;
+
+    @Autowired
+    public AuthorizationCache(UserMapper userMapper, StringRedisTemplate redisTemplate,
+                              RedisMessageListenerContainer listenerContainer, MeterRegistry meterRegistry) {
+        this.userMapper = userMapper;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 创建缓存并订阅失效通知
+     */
+    @PostConstruct
+    public void init() {
+        authorizations = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(CacheLoader.from(this::load));
+        GuavaCacheMetrics.monitor(meterRegistry, authorizations, "auth.decisions");
+        listenerContainer.addMessageListener((message, pattern) -> onMessage(message), new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 获取用户当前的权限信息，缓存未命中时查询数据库
+     *
+     * @param userId 用户ID
+     * @return 权限信息，用户不存在时isActive()为false
+     */
+    public Authorization get(long userId) {
+        try {
+            return authorizations.getUnchecked(userId);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 用户的角色、状态或封禁信息变更后调用，失效本节点缓存并通知其他节点
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(long userId) {
+        authorizations.invalidate(userId);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, instanceId + "|" + userId);
+        } catch (RuntimeException e) {
+            // 其他节点在缓存过期后读取到最新数据
+            log.warn("发布权限缓存失效消息失败: userId={}, {}", userId, e.getMessage());
+        }
+    }
+
+    private Authorization load(Long userId) {
+        User user = userMapper.selectById(userId);
+        if (user == null) {
+            return Authorization.NOT_FOUND;
+        }
+        boolean banned = user.getIsBanned() != null && user.getIsBanned() == 1;
+        long bannedUntil = banned ? (user.getUnbanDate() != null ? user.getUnbanDate().getTime() : Long.MAX_VALUE) : 0;
+        return new Authorization(true, user.getUserRole(), user.getUserStatus(), bannedUntil);
+    }
+
+    /**
+     * 处理其他节点发布的失效通知
+     */
+    private void onMessage(Message message) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 2);
+        if (parts.length != 2 || instanceId.equals(parts[0])) {
+            return;
+        }
+        try {
+            authorizations.invalidate(Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            log.warn("无效的权限缓存失效消息: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用户的权限信息
+     */
+    public static final class Authorization {
+
+        static final Authorization NOT_FOUND = new Authorization(false, null, null, 0);
+
+        private final boolean exists;
+        private final Integer userRole;
+        private final Integer userStatus;
+
+        /**
+         * 封禁截止时间戳（毫秒），0表示未封禁，Long.MAX_VALUE表示永久封禁
+         */
+        private final long bannedUntil;
+
+        Authorization(boolean exists, Integer userRole, Integer userStatus, long bannedUntil) {
+            this.exists = exists;
+            this.userRole = userRole;
+            this.userStatus = userStatus;
+            this.bannedUntil = bannedUntil;
+        }
+
+        public Integer getUserRole() {
+            return userRole;
+        }
+
+        public Integer getUserStatus() {
+            return userStatus;
+        }
+
+        /**
+         * 用户是否存在，已删除的用户为false
+         */
+        public boolean exists() {
+            return exists;
+        }
+
+        /**
+         * 用户存在、状态正常且当前未被封禁
+         */
+        public boolean isActive() {
+            return exists && userStatus != null && userStatus == 0 && !isBanned();
+        }
+
+        /**
+         * 当前是否处于封禁期内，封禁到期后即使数据库尚未自动解封也视为未封禁
+         */
+        public boolean isBanned() {
+            return bannedUntil > System.currentTimeMillis();
+        }
+    }
+}
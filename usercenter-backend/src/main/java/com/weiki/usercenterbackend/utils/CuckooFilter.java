@@ -0,0 +1,189 @@
+package com.weiki.usercenterbackend.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 布谷鸟过滤器，支持删除的近似集合
+ * 每个元素由64位哈希得到16位指纹和两个候选桶，每个桶4个槽位，容量为预期元素数的2倍左右；
+ * 查询只读两个桶，误判率约为 8/65536。返回false时元素一定不在集合中，返回true时需要再确认。
+ * 同一元素可以插入多次，删除次数与插入次数相同才会移除。
+ * 插入时挪动指纹期间查询可能短暂找不到已有元素，因此读使用乐观读并在冲突时加读锁重试
+ */
+public final class CuckooFilter {
+
+    private static final int SLOTS_PER_BUCKET = 4;
+
+    /**
+     * 插入时挪动指纹的最大次数，超过后视为已满
+     */
+    private static final int MAX_KICKS = 500;
+
+    private final short[] table;
+    private final int bucketMask;
+    private final StampedLock lock = new StampedLock();
+    private int size;
+
+    /**
+     * @param expectedItems 预期元素数量
+     */
+    public CuckooFilter(int expectedItems) {
+        // 负载因子按0.5计算，桶数取2的幂以便用位运算求第二个桶
+        int buckets = Integer.highestOneBit(Math.max(1, expectedItems * 2 / SLOTS_PER_BUCKET - 1)) << 1;
+        this.table = new short[buckets * SLOTS_PER_BUCKET];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * 添加元素
+     *
+     * @param hash 元素的64位哈希
+     * @return 过滤器已满时返回false，此时过滤器内容不变
+     */
+    public boolean add(long hash) {
+        short fingerprint = fingerprint(hash);
+        int bucket = (int) hash & bucketMask;
+        long stamp = lock.writeLock();
+        try {
+            int alternate = alternate(bucket, fingerprint);
+            if (insertIntoBucket(bucket, fingerprint) || insertIntoBucket(alternate, fingerprint)) {
+                size++;
+                return true;
+            }
+            // 两个桶都满，随机踢出一个指纹到它的另一个桶，记录路径以便失败时回滚
+            int[] path = new int[MAX_KICKS];
+            short[] evicted = new short[MAX_KICKS];
+            int current = ThreadLocalRandom.current().nextBoolean() ? bucket : alternate;
+            short carried = fingerprint;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = current * SLOTS_PER_BUCKET + ThreadLocalRandom.current().nextInt(SLOTS_PER_BUCKET);
+                path[kick] = slot;
+                evicted[kick] = table[slot];
+                table[slot] = carried;
+                carried = evicted[kick];
+                current = alternate(current, carried);
+                if (insertIntoBucket(current, carried)) {
+                    size++;
+                    return true;
+                }
+            }
+            for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+                table[path[kick]] = evicted[kick];
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 判断元素是否可能在集合中
+     *
+     * @param hash 元素的64位哈希
+     * @return false表示一定不在集合中
+     */
+    public boolean mightContain(long hash) {
+        short fingerprint = fingerprint(hash);
+        int bucket = (int) hash & bucketMask;
+        int alternate = alternate(bucket, fingerprint);
+        long stamp = lock.tryOptimisticRead();
+        boolean found = bucketContains(bucket, fingerprint) || bucketContains(alternate, fingerprint);
+        if (lock.validate(stamp)) {
+            return found;
+        }
+        stamp = lock.readLock();
+        try {
+            return bucketContains(bucket, fingerprint) || bucketContains(alternate, fingerprint);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 删除一次先前添加的元素
+     *
+     * @param hash 元素的64位哈希
+     * @return 是否找到并删除
+     */
+    public boolean remove(long hash) {
+        short fingerprint = fingerprint(hash);
+        int bucket = (int) hash & bucketMask;
+        long stamp = lock.writeLock();
+        try {
+            if (removeFromBucket(bucket, fingerprint)
+                    || removeFromBucket(alternate(bucket, fingerprint), fingerprint)) {
+                size--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 当前元素数量
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 槽位总数
+     */
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * 指纹取哈希的高16位，0表示空槽，因此不使用0
+     */
+    private static short fingerprint(long hash) {
+        short fingerprint = (short) (hash >>> 48);
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    /**
+     * 第二个桶 = 当前桶 ^ hash(指纹)，对任意一个候选桶计算都能得到另一个
+     */
+    private int alternate(int bucket, short fingerprint) {
+        return (bucket ^ (fingerprint * 0x5bd1e995)) & bucketMask;
+    }
+
+    private boolean insertIntoBucket(int bucket, short fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bucketContains(int bucket, short fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (table[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeFromBucket(int bucket, short fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (table[i] == fingerprint) {
+                table[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+}
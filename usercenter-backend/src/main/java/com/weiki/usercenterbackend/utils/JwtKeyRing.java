@@ -0,0 +1,288 @@
+package com.weiki.usercenterbackend.utils;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 非对称签名密钥环，按kid索引
+ * 签名使用已生效（activateAt不晚于当前时间）的最新密钥，验签按令牌头中的kid查找公钥。
+ * 新密钥先加入密钥环、延迟生效，保证所有节点和网关在它被用于签名之前已经拿到公钥；
+ * 旧密钥在被替换后继续保留，直到用它签名的令牌全部过期。
+ * 节点间共享时公钥和私钥分开保存，私钥只以密钥加密密钥（AES-GCM）加密后的形式离开本进程
+ */
+public final class JwtKeyRing {
+
+    private static final String KEY_WRAP_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * 按生效时间升序排列的密钥，整体替换
+     */
+    private volatile List<SigningKey> keys = Collections.emptyList();
+    private volatile Map<String, SigningKey> keysById = Collections.emptyMap();
+
+    /**
+     * 用新的密钥集合替换当前密钥环
+     */
+    public void replace(Collection<SigningKey> newKeys) {
+        List<SigningKey> sorted = new ArrayList<>(newKeys);
+        sorted.sort(Comparator.comparingLong(SigningKey::getActivateAt));
+        Map<String, SigningKey> index = new HashMap<>();
+        for (SigningKey key : sorted) {
+            index.put(key.getKid(), key);
+        }
+        keysById = index;
+        keys = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * 当前用于签名的密钥：持有私钥的已生效密钥中最新的一个，全部未生效时使用最早的一个
+     *
+     * @param now 当前时间戳（毫秒）
+     * @return 签名密钥，没有可签名的密钥时返回null
+     */
+    public SigningKey currentSigningKey(long now) {
+        List<SigningKey> snapshot = keys;
+        SigningKey earliest = null;
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            SigningKey key = snapshot.get(i);
+            if (key.getPrivateKey() == null) {
+                continue;
+            }
+            if (key.getActivateAt() <= now) {
+                return key;
+            }
+            earliest = key;
+        }
+        return earliest;
+    }
+
+    /**
+     * 按kid查找验签密钥
+     */
+    public SigningKey getKey(String kid) {
+        return kid != null ? keysById.get(kid) : null;
+    }
+
+    /**
+     * 全部密钥，按生效时间升序
+     */
+    public List<SigningKey> getKeys() {
+        return keys;
+    }
+
+    /**
+     * 以JWK Set（RFC 7517）格式导出全部公钥
+     */
+    public Map<String, Object> toJwks() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (SigningKey key : keys) {
+            jwks.add(key.toJwk());
+        }
+        return Collections.singletonMap("keys", jwks);
+    }
+
+    /**
+     * 生成新的签名密钥
+     *
+     * @param algorithm 非对称签名算法
+     * @param activateAt 生效时间戳（毫秒）
+     */
+    public static SigningKey generate(SignatureAlgorithm algorithm, long activateAt) {
+        KeyPair keyPair = Keys.keyPairFor(algorithm);
+        String kid = UUID.randomUUID().toString().replace("-", "");
+        return new SigningKey(kid, algorithm, keyPair.getPublic(), keyPair.getPrivate(), activateAt);
+    }
+
+    /**
+     * 签名密钥，私钥无法解密时只用于验签
+     */
+    public static final class SigningKey {
+        private final String kid;
+        private final SignatureAlgorithm algorithm;
+        private final PublicKey publicKey;
+        private final PrivateKey privateKey;
+        private final long activateAt;
+
+        SigningKey(String kid, SignatureAlgorithm algorithm, PublicKey publicKey, PrivateKey privateKey,
+                   long activateAt) {
+            this.kid = kid;
+            this.algorithm = algorithm;
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+            this.activateAt = activateAt;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public SignatureAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        /**
+         * 私钥，只用于验签的密钥为null
+         */
+        public PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+
+        public long getActivateAt() {
+            return activateAt;
+        }
+
+        /**
+         * 序列化公开部分为 算法|生效时间|公钥(X.509)，用于在节点间共享和发布JWKS
+         */
+        public String serializePublicKey() {
+            return algorithm.getValue() + "|" + activateAt + "|"
+                    + Base64.getEncoder().encodeToString(publicKey.getEncoded());
+        }
+
+        /**
+         * 用密钥加密密钥加密私钥(PKCS#8)，kid作为附加认证数据，密文不能被换到其他kid下使用
+         *
+         * @param keyEncryptionKey AES密钥加密密钥
+         * @return Base64(IV + 密文)
+         */
+        public String encryptPrivateKey(SecretKey keyEncryptionKey) {
+            try {
+                byte[] iv = new byte[GCM_IV_LENGTH];
+                RANDOM.nextBytes(iv);
+                Cipher cipher = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+                cipher.init(Cipher.ENCRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+                cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+                byte[] encrypted = cipher.doFinal(privateKey.getEncoded());
+                return Base64.getEncoder().encodeToString(
+                        ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("加密签名私钥失败: " + kid, e);
+            }
+        }
+
+        /**
+         * 是否为旧格式 算法|生效时间|公钥|私钥(PKCS#8明文)
+         */
+        public static boolean isLegacyFormat(String value) {
+            return value.split("\\|").length == 4;
+        }
+
+        /**
+         * 解析serializePublicKey()的结果，并用密钥加密密钥解密对应的私钥。
+         * 兼容旧格式中的明文私钥，以便迁移为加密存储
+         *
+         * @param kid 密钥ID
+         * @param value 公开部分
+         * @param encryptedPrivateKey encryptPrivateKey()的结果，为null时只解析公钥
+         * @param keyEncryptionKey AES密钥加密密钥
+         * @throws IllegalArgumentException 格式错误、密钥无法解析或私钥解密失败
+         */
+        public static SigningKey parse(String kid, String value, String encryptedPrivateKey,
+                                       SecretKey keyEncryptionKey) {
+            String[] parts = value.split("\\|");
+            if (parts.length != 3 && parts.length != 4) {
+                throw new IllegalArgumentException("签名密钥格式错误: " + kid);
+            }
+            SignatureAlgorithm algorithm = SignatureAlgorithm.forName(parts[0]);
+            try {
+                KeyFactory keyFactory = KeyFactory.getInstance(algorithm.getFamilyName().equals("ECDSA")
+                        ? "EC" : algorithm.getFamilyName());
+                Base64.Decoder decoder = Base64.getDecoder();
+                PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(decoder.decode(parts[2])));
+                byte[] pkcs8 = null;
+                if (encryptedPrivateKey != null) {
+                    pkcs8 = decryptPrivateKey(kid, decoder.decode(encryptedPrivateKey), keyEncryptionKey);
+                } else if (parts.length == 4) {
+                    pkcs8 = decoder.decode(parts[3]);
+                }
+                PrivateKey privateKey = pkcs8 != null
+                        ? keyFactory.generatePrivate(new PKCS8EncodedKeySpec(pkcs8)) : null;
+                return new SigningKey(kid, algorithm, publicKey, privateKey, Long.parseLong(parts[1]));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("签名密钥无法解析: " + kid, e);
+            }
+        }
+
+        private static byte[] decryptPrivateKey(String kid, byte[] wrapped, SecretKey keyEncryptionKey)
+                throws GeneralSecurityException {
+            if (wrapped.length <= GCM_IV_LENGTH) {
+                throw new IllegalArgumentException("签名私钥密文格式错误: " + kid);
+            }
+            Cipher cipher = Cipher.getInstance(KEY_WRAP_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(GCM_TAG_BITS, wrapped, 0,
+                    GCM_IV_LENGTH));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            return cipher.doFinal(wrapped, GCM_IV_LENGTH, wrapped.length - GCM_IV_LENGTH);
+        }
+
+        /**
+         * 导出公钥的JWK（RFC 7518）
+         */
+        public Map<String, Object> toJwk() {
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            if (publicKey instanceof ECPublicKey) {
+                ECPublicKey ecKey = (ECPublicKey) publicKey;
+                int fieldSize = ecKey.getParams().getCurve().getField().getFieldSize();
+                int length = (fieldSize + 7) / 8;
+                jwk.put("kty", "EC");
+                jwk.put("crv", "P-" + fieldSize);
+                jwk.put("x", base64Url(ecKey.getW().getAffineX(), length));
+                jwk.put("y", base64Url(ecKey.getW().getAffineY(), length));
+            } else if (publicKey instanceof RSAPublicKey) {
+                RSAPublicKey rsaKey = (RSAPublicKey) publicKey;
+                jwk.put("kty", "RSA");
+                jwk.put("n", base64Url(rsaKey.getModulus(), (rsaKey.getModulus().bitLength() + 7) / 8));
+                jwk.put("e", base64Url(rsaKey.getPublicExponent(), (rsaKey.getPublicExponent().bitLength() + 7) / 8));
+            }
+            jwk.put("kid", kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", algorithm.getValue());
+            return jwk;
+        }
+
+        /**
+         * 无符号大端定长编码后做Base64URL
+         */
+        private static String base64Url(BigInteger value, int length) {
+            byte[] bytes = value.toByteArray();
+            byte[] fixed = new byte[length];
+            int copy = Math.min(bytes.length, length);
+            System.arraycopy(bytes, bytes.length - copy, fixed, length - copy, copy);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+        }
+    }
+}
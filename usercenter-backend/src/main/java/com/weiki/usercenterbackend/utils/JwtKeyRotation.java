@@ -0,0 +1,327 @@
+package com.weiki.usercenterbackend.utils;
+
+import com.weiki.usercenterbackend.constant.JwtConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT签名密钥轮换
+ * 非对称签名模式下，集群共享的密钥环保存在Redis中，各节点定时加载：
+ * 哈希 jwt:keys 只保存公钥（字段为kid），用于验签和发布JWKS；
+ * 哈希 jwt:keys:private 保存用 jwt.keys.encryption-key 加密（AES-GCM）后的私钥，Redis中不出现私钥明文。
+ * 最新密钥超过轮换周期后，由抢到轮换锁的节点生成新密钥，生效时间推迟两个加载周期，
+ * 使所有节点和通过JWKS缓存公钥的网关在新密钥被用于签名之前都已拿到公钥；
+ * 被替换的密钥再保留一个刷新令牌有效期后删除。旧版本以明文保存的私钥在持有轮换锁时迁移为加密存储。
+ * 本节点只使用从Redis加载的密钥签名，加载完成前签发令牌失败。对称签名模式下不启动
+ */
+@Slf4j
+@Component
+public class JwtKeyRotation {
+
+    /**
+     * 密钥环的Redis键
+     */
+    static final String KEYS_KEY = "jwt:keys";
+
+    /**
+     * 加密后私钥的Redis键
+     */
+    static final String PRIVATE_KEYS_KEY = "jwt:keys:private";
+
+    /**
+     * 轮换锁的Redis键，保证同一时间只有一个节点生成新密钥
+     */
+    static final String ROTATION_LOCK_KEY = "jwt:keys:rotation";
+
+    private static final String RELEASE_LOCK_SCRIPT = "scripts/release_lock.lua";
+
+    private final StringRedisTemplate redisTemplate;
+    private final JwtUtils jwtUtils;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * 密钥轮换周期（毫秒）
+     */
+    @Value("${jwt.keys.rotation-interval:86400000}")
+    private long rotationIntervalMillis;
+
+    /**
+     * 从Redis加载密钥环的间隔（毫秒），网关缓存JWKS的时间不应超过该值
+     */
+    @Value("${jwt.keys.reload-interval:60000}")
+    private long reloadIntervalMillis;
+
+    /**
+     * 私钥的密钥加密密钥，Base64编码的128/192/256位AES密钥，应来自挂载的密钥文件或环境变量
+     */
+    @Value("${jwt.keys.encryption-key:}")
+    private String encryptionKey;
+
+    /**
+     * 尚未加载到可用签名密钥时的重试间隔（毫秒），如其他节点正在生成首个密钥或Redis暂不可用
+     */
+    @Value("${jwt.keys.retry-interval:1000}")
+    private long retryIntervalMillis;
+
+    /**
+     * 启动时等待加载到可用签名密钥的最长时间（毫秒），超时后继续启动，加载完成前签发令牌失败
+     */
+    @Value("${jwt.keys.startup-timeout:10000}")
+    private long startupTimeoutMillis;
+
+    private SecretKey keyEncryptionKey;
+    private DefaultRedisScript<Long> releaseLockScript;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public JwtKeyRotation(StringRedisTemplate redisTemplate, JwtUtils jwtUtils) {
+        this.redisTemplate = redisTemplate;
+        this.jwtUtils = jwtUtils;
+    }
+
+    /**
+     * 同步加载密钥环，直到拿到可用的签名密钥或超时，再启动定时加载和轮换
+     */
+    @PostConstruct
+    public void start() {
+        if (jwtUtils.getKeyRing() == null) {
+            return;
+        }
+        keyEncryptionKey = parseEncryptionKey(encryptionKey);
+        releaseLockScript = new DefaultRedisScript<>();
+        releaseLockScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(RELEASE_LOCK_SCRIPT)));
+        releaseLockScript.setResultType(Long.class);
+        refresh();
+        long deadline = System.currentTimeMillis() + startupTimeoutMillis;
+        while (!hasSigningKey() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(retryIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            refresh();
+        }
+        if (!hasSigningKey()) {
+            log.error("启动时未能从Redis加载JWT签名密钥，加载完成前无法签发令牌");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwt-key-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleRefresh();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 安排下一次加载，还没有可用签名密钥时按重试间隔加载
+     */
+    private void scheduleRefresh() {
+        long delay = hasSigningKey() ? reloadIntervalMillis : retryIntervalMillis;
+        try {
+            scheduler.schedule(() -> {
+                refresh();
+                scheduleRefresh();
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已停止
+        }
+    }
+
+    private boolean hasSigningKey() {
+        return jwtUtils.getKeyRing().currentSigningKey(System.currentTimeMillis()) != null;
+    }
+
+    /**
+     * 加载密钥环，必要时轮换、迁移旧格式并清理过期密钥
+     */
+    void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            JwtKeyRing keyRing = jwtUtils.getKeyRing();
+            List<String> legacyKids = new ArrayList<>();
+            List<JwtKeyRing.SigningKey> keys = load(legacyKids);
+            if ((needsRotation(keys, now) || !legacyKids.isEmpty()) && tryLockRotation()) {
+                try {
+                    // 拿到锁后重新读取，避免重复轮换
+                    legacyKids.clear();
+                    keys = load(legacyKids);
+                    migrate(keys, legacyKids);
+                    if (needsRotation(keys, now)) {
+                        // 第一个密钥立即生效，之后的密钥等所有节点加载后再生效
+                        long activateAt = keys.isEmpty() ? now : now + reloadIntervalMillis * 2;
+                        JwtKeyRing.SigningKey key = JwtKeyRing.generate(jwtUtils.getSignatureAlgorithm(), activateAt);
+                        store(key);
+                        keys.add(key);
+                        log.info("已生成新的JWT签名密钥: kid={}, 生效时间={}", key.getKid(), activateAt);
+                    }
+                    prune(keys, now);
+                } finally {
+                    releaseRotationLock();
+                }
+            }
+            if (keys.stream().anyMatch(key -> key.getPrivateKey() != null)) {
+                keyRing.replace(keys);
+            } else if (!keys.isEmpty()) {
+                log.error("无法解密任何JWT签名私钥，请检查jwt.keys.encryption-key是否与集群其他节点一致");
+                if (!hasSigningKey()) {
+                    // 本节点还不能签名，先加载公钥用于验签
+                    keyRing.replace(keys);
+                }
+            }
+        } catch (RuntimeException e) {
+            // 保留当前密钥环，下一个周期重试
+            log.warn("加载JWT签名密钥环失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读取公钥和加密后的私钥
+     *
+     * @param legacyKids 输出参数，收集仍以明文保存私钥的kid
+     */
+    private List<JwtKeyRing.SigningKey> load(List<String> legacyKids) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(KEYS_KEY);
+        Map<Object, Object> privateKeys = entries.isEmpty()
+                ? Collections.emptyMap() : redisTemplate.opsForHash().entries(PRIVATE_KEYS_KEY);
+        List<JwtKeyRing.SigningKey> keys = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String kid = entry.getKey().toString();
+            String value = entry.getValue().toString();
+            Object encrypted = privateKeys.get(kid);
+            try {
+                keys.add(JwtKeyRing.SigningKey.parse(kid, value,
+                        encrypted != null ? encrypted.toString() : null, keyEncryptionKey));
+                if (JwtKeyRing.SigningKey.isLegacyFormat(value)) {
+                    legacyKids.add(kid);
+                }
+            } catch (IllegalArgumentException e) {
+                log.error("无法解析JWT签名密钥: {}", e.getMessage());
+                if (encrypted != null && !JwtKeyRing.SigningKey.isLegacyFormat(value)) {
+                    // 私钥无法解密时仍保留公钥用于验签
+                    try {
+                        keys.add(JwtKeyRing.SigningKey.parse(kid, value, null, null));
+                    } catch (IllegalArgumentException ignored) {
+                        // 公钥同样无法解析，跳过该密钥
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 先写入加密后的私钥，再发布公钥，其他节点看到公钥时私钥一定已经存在
+     */
+    private void store(JwtKeyRing.SigningKey key) {
+        redisTemplate.opsForHash().put(PRIVATE_KEYS_KEY, key.getKid(), key.encryptPrivateKey(keyEncryptionKey));
+        redisTemplate.opsForHash().put(KEYS_KEY, key.getKid(), key.serializePublicKey());
+    }
+
+    /**
+     * 把旧格式中的明文私钥改为加密存储
+     */
+    private void migrate(List<JwtKeyRing.SigningKey> keys, List<String> legacyKids) {
+        for (JwtKeyRing.SigningKey key : keys) {
+            if (legacyKids.contains(key.getKid()) && key.getPrivateKey() != null) {
+                store(key);
+                log.info("已将JWT签名私钥迁移为加密存储: kid={}", key.getKid());
+            }
+        }
+    }
+
+    /**
+     * 密钥环为空，或最新密钥的生效时间已超过轮换周期
+     */
+    private boolean needsRotation(List<JwtKeyRing.SigningKey> keys, long now) {
+        long newest = Long.MIN_VALUE;
+        for (JwtKeyRing.SigningKey key : keys) {
+            newest = Math.max(newest, key.getActivateAt());
+        }
+        return keys.isEmpty() || now - newest >= rotationIntervalMillis;
+    }
+
+    /**
+     * 删除被替换超过一个刷新令牌有效期的密钥，用它签名的令牌都已过期
+     */
+    private void prune(List<JwtKeyRing.SigningKey> keys, long now) {
+        long retireBefore = now - JwtConstant.REFRESH_TOKEN_EXPIRATION;
+        List<JwtKeyRing.SigningKey> retired = new ArrayList<>();
+        for (JwtKeyRing.SigningKey key : keys) {
+            for (JwtKeyRing.SigningKey other : keys) {
+                if (other.getActivateAt() > key.getActivateAt() && other.getActivateAt() < retireBefore) {
+                    retired.add(key);
+                    break;
+                }
+            }
+        }
+        for (JwtKeyRing.SigningKey key : retired) {
+            redisTemplate.opsForHash().delete(KEYS_KEY, key.getKid());
+            redisTemplate.opsForHash().delete(PRIVATE_KEYS_KEY, key.getKid());
+            keys.remove(key);
+            log.info("已删除过期的JWT签名密钥: kid={}", key.getKid());
+        }
+    }
+
+    private boolean tryLockRotation() {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(ROTATION_LOCK_KEY, instanceId, reloadIntervalMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 只有锁仍属于本节点时才删除，轮换耗时超过锁的有效期时不会误删其他节点的锁
+     */
+    private void releaseRotationLock() {
+        redisTemplate.execute(releaseLockScript, Collections.singletonList(ROTATION_LOCK_KEY), instanceId);
+    }
+
+    /**
+     * 解析密钥加密密钥
+     *
+     * @throws IllegalStateException 未配置或不是合法的AES密钥
+     */
+    static SecretKey parseEncryptionKey(String encoded) {
+        if (!StringUtils.hasText(encoded)) {
+            throw new IllegalStateException("非对称签名需要配置jwt.keys.encryption-key，用于加密保存在Redis中的私钥");
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(encoded.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("jwt.keys.encryption-key不是合法的Base64编码", e);
+        }
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+            throw new IllegalStateException("jwt.keys.encryption-key必须是128/192/256位的AES密钥");
+        }
+        return new SecretKeySpec(bytes, "AES");
+    }
+}
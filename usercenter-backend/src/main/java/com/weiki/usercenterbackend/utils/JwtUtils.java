@@ -1,26 +1,48 @@
 package com.weiki.usercenterbackend.utils;
 
 import com.weiki.usercenterbackend.constant.JwtConstant;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT工具类，用于生成和验证JWT令牌
@@ -47,13 +69,91 @@ public class JwtUtils {
      */
     private static SecretKey SECRET_KEY;
 
+    /**
+     * 签名算法：HS256等对称算法使用jwt.secret；ES256/ES384/ES512/RS256等非对称算法使用按kid索引的密钥环，
+     * 网关等其他服务通过JWKS端点获取公钥即可在本地验签
+     */
+    @Value("${jwt.algorithm:HS256}")
+    private String algorithm;
+
+    private SignatureAlgorithm signatureAlgorithm;
+
+    /**
+     * 非对称签名的密钥环，对称算法时为null
+     */
+    private JwtKeyRing keyRing;
+
+    /**
+     * 令牌解析器，构建后不可变、线程安全，所有请求共用
+     * 每次调用Jwts.parserBuilder().build()都要重新查找JSON反序列化器，开销远大于验签本身
+     */
+    private JwtParser jwtParser;
+
+    /**
+     * 已验证令牌缓存的最大数量，0表示不缓存
+     */
+    @Value("${jwt.cache.maximum-size:10000}")
+    private long cacheMaximumSize;
+
+    /**
+     * 已验证令牌的最长缓存时间（秒），令牌过期后即使未到缓存时间也不再使用
+     */
+    @Value("${jwt.cache.expire:300}")
+    private long cacheExpireSeconds;
+
+    /**
+     * 令牌Cookie是否只通过HTTPS发送，仅本地HTTP调试时关闭
+     */
+    @Value("${jwt.cookie.secure:true}")
+    private boolean cookieSecure;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 已验证令牌缓存，key为令牌的SHA-256摘要
+     * 同一个访问令牌在有效期内会被反复使用，命中缓存时跳过验签和JSON解析
+     */
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     /**
      * 初始化密钥
      */
     @PostConstruct
     public void init() {
-        SECRET_KEY = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        logger.info("JWT工具类初始化完成");
+        signatureAlgorithm = SignatureAlgorithm.forName(algorithm != null ? algorithm : "HS256");
+        if (signatureAlgorithm.isHmac()) {
+            SECRET_KEY = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+            jwtParser = Jwts.parserBuilder()
+                    .setSigningKey(SECRET_KEY)
+                    .build();
+        } else {
+            // 密钥环由JwtKeyRotation从Redis加载，加载前不签发令牌，避免使用其他节点无法验签的本地密钥
+            keyRing = new JwtKeyRing();
+            jwtParser = Jwts.parserBuilder()
+                    .setSigningKeyResolver(new KeyRingResolver(keyRing))
+                    .build();
+        }
+        if (cacheMaximumSize > 0) {
+            verifiedTokens = CacheBuilder.newBuilder()
+                    .maximumSize(cacheMaximumSize)
+                    .expireAfterWrite(cacheExpireSeconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                // 导出命中、未命中、淘汰次数和缓存大小
+                GuavaCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified.tokens");
+            }
+        }
+        logger.info("JWT工具类初始化完成，签名算法: {}", signatureAlgorithm.getValue());
     }
 
     /**
@@ -63,7 +163,23 @@ public class JwtUtils {
      * @return 访问令牌
      */
     public String generateAccessToken(Long userId) {
-        return generateToken(userId, JwtConstant.ACCESS_TOKEN_TYPE, JwtConstant.ACCESS_TOKEN_EXPIRATION);
+        return generateToken(userId, JwtConstant.ACCESS_TOKEN_TYPE, JwtConstant.ACCESS_TOKEN_EXPIRATION,
+                Collections.emptyMap());
+    }
+
+    /**
+     * 生成携带用户角色和状态的访问令牌，鉴权时直接读取声明，不需要服务端会话
+     *
+     * @param userId     用户ID
+     * @param userRole   用户角色
+     * @param userStatus 用户状态
+     * @return 访问令牌
+     */
+    public String generateAccessToken(Long userId, Integer userRole, Integer userStatus) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtConstant.USER_ROLE_CLAIM, userRole);
+        claims.put(JwtConstant.USER_STATUS_CLAIM, userStatus);
+        return generateToken(userId, JwtConstant.ACCESS_TOKEN_TYPE, JwtConstant.ACCESS_TOKEN_EXPIRATION, claims);
     }
 
     /**
@@ -73,7 +189,23 @@ public class JwtUtils {
      * @return 刷新令牌
      */
     public String generateRefreshToken(Long userId) {
-        return generateToken(userId, JwtConstant.REFRESH_TOKEN_TYPE, JwtConstant.REFRESH_TOKEN_EXPIRATION);
+        return generateToken(userId, JwtConstant.REFRESH_TOKEN_TYPE, JwtConstant.REFRESH_TOKEN_EXPIRATION,
+                Collections.emptyMap());
+    }
+
+    /**
+     * 生成属于某个令牌族的刷新令牌，每次登录（每台设备）创建一个令牌族，刷新时在族内轮换
+     *
+     * @param userId   用户ID
+     * @param familyId 令牌族ID
+     * @param jti      令牌唯一标识，服务端按它判断令牌是否为族内最新
+     * @return 刷新令牌
+     */
+    public String generateRefreshToken(Long userId, String familyId, String jti) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtConstant.REFRESH_FAMILY_CLAIM, familyId);
+        claims.put(Claims.ID, jti);
+        return generateToken(userId, JwtConstant.REFRESH_TOKEN_TYPE, JwtConstant.REFRESH_TOKEN_EXPIRATION, claims);
     }
 
     /**
@@ -82,26 +214,237 @@ public class JwtUtils {
      * @param userId     用户ID
      * @param tokenType  令牌类型
      * @param expiration 过期时间
+     * @param extraClaims 附加声明
      * @return JWT令牌
      */
-    private String generateToken(Long userId, String tokenType, long expiration) {
+    private String generateToken(Long userId, String tokenType, long expiration, Map<String, Object> extraClaims) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
 
-        Map<String, Object> claims = new HashMap<>();
+        Map<String, Object> claims = new HashMap<>(extraClaims);
         claims.put(JwtConstant.USER_ID_CLAIM, userId);
         claims.put(JwtConstant.TOKEN_TYPE_CLAIM, tokenType);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setClaims(claims)
+                .setId(extraClaims.containsKey(Claims.ID)
+                        ? extraClaims.get(Claims.ID).toString() : UUID.randomUUID().toString())
                 .setSubject(String.valueOf(userId))
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .setIssuer(JwtConstant.ISSUER)
-                .signWith(SECRET_KEY)
+                .setIssuer(JwtConstant.ISSUER);
+        if (keyRing == null) {
+            return builder.signWith(SECRET_KEY).compact();
+        }
+        JwtKeyRing.SigningKey signingKey = keyRing.currentSigningKey(now.getTime());
+        if (signingKey == null) {
+            throw new IllegalStateException("JWT签名密钥尚未从Redis加载，暂时无法签发令牌");
+        }
+        return builder.setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
+                .signWith(signingKey.getPrivateKey(), signingKey.getAlgorithm())
                 .compact();
     }
 
+    /**
+     * 非对称签名的密钥环，对称算法时为null
+     */
+    public JwtKeyRing getKeyRing() {
+        return keyRing;
+    }
+
+    /**
+     * 配置的签名算法，轮换时生成的新密钥使用该算法
+     */
+    public SignatureAlgorithm getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * 验证令牌的签名和有效期，并解析出声明
+     *
+     * @param token JWT令牌
+     * @return 已验证的令牌，验证失败返回空
+     */
+    public Optional<VerifiedToken> parseToken(String token) {
+        if (verifiedTokens == null || token == null) {
+            return verifyToken(token);
+        }
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            // 缓存的有效期不超过令牌本身的过期时间
+            if (cached.getExpiresAt() > System.currentTimeMillis() && cached.getToken().equals(token)) {
+                return Optional.of(cached);
+            }
+            verifiedTokens.invalidate(digest);
+        }
+        Optional<VerifiedToken> verified = verifyToken(token);
+        verified.ifPresent(verifiedToken -> verifiedTokens.put(digest, verifiedToken));
+        return verified;
+    }
+
+    /**
+     * 从已验证令牌缓存中移除令牌，令牌加入黑名单时调用
+     *
+     * @param token JWT令牌
+     */
+    public void evictVerifiedToken(String token) {
+        if (verifiedTokens != null && token != null) {
+            verifiedTokens.invalidate(digest(token));
+        }
+    }
+
+    /**
+     * 令牌的SHA-256摘要，每个字节对应一个字符，作为缓存key
+     */
+    static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return new String(hash, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 验证签名和有效期并解析声明，不经过缓存
+     */
+    private Optional<VerifiedToken> verifyToken(String token) {
+        try {
+            return Optional.of(new VerifiedToken(token, getClaimsFromToken(token)));
+        } catch (SignatureException e) {
+            log.error("无效的JWT签名: {}", e.getMessage());
+        } catch (MalformedJwtException e) {
+            log.error("无效的JWT令牌: {}", e.getMessage());
+        } catch (ExpiredJwtException e) {
+            log.error("JWT令牌已过期: {}", e.getMessage());
+        } catch (UnsupportedJwtException e) {
+            log.error("不支持的JWT令牌: {}", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.error("JWT claims字符串为空: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 获取请求携带的已验证令牌
+     * 优先读取请求属性中已解析的结果；尚未解析时（如过滤器放行的路径）解析请求头或Cookie中的令牌并保存到请求属性，
+     * 同一个请求只验签一次
+     *
+     * @param request HTTP请求
+     * @return 已验证的令牌，未携带令牌或验证失败返回空
+     */
+    public Optional<VerifiedToken> getVerifiedToken(HttpServletRequest request) {
+        Object cached = request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE);
+        if (cached instanceof VerifiedToken) {
+            return Optional.of((VerifiedToken) cached);
+        }
+        String token = getTokenFromRequest(request);
+        if (token == null) {
+            return Optional.empty();
+        }
+        Optional<VerifiedToken> verified = parseToken(token);
+        verified.ifPresent(verifiedToken -> request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verifiedToken));
+        return verified;
+    }
+
+    /**
+     * 读取请求携带的令牌：优先读取Authorization请求头，浏览器端没有设置请求头时读取登录时下发的Cookie
+     *
+     * @param request HTTP请求
+     * @return 令牌，未携带时返回null
+     */
+    public static String getTokenFromRequest(HttpServletRequest request) {
+        String bearerToken = request.getHeader(JwtConstant.TOKEN_HEADER);
+        if (bearerToken != null && bearerToken.startsWith(JwtConstant.TOKEN_PREFIX)) {
+            return bearerToken.substring(JwtConstant.TOKEN_PREFIX.length());
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (JwtConstant.TOKEN_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 下发访问令牌：写入Authorization响应头，并以HttpOnly Cookie保存到浏览器，Cookie有效期与令牌一致
+     *
+     * @param response    HTTP响应
+     * @param accessToken 访问令牌
+     */
+    public void writeAccessToken(HttpServletResponse response, String accessToken) {
+        response.setHeader(JwtConstant.TOKEN_HEADER, JwtConstant.TOKEN_PREFIX + accessToken);
+        writeTokenCookie(response, accessToken, Duration.ofMillis(JwtConstant.ACCESS_TOKEN_EXPIRATION));
+    }
+
+    /**
+     * 删除浏览器保存的访问令牌Cookie，属性与下发时一致，否则浏览器不会删除
+     *
+     * @param response HTTP响应
+     */
+    public void clearAccessToken(HttpServletResponse response) {
+        writeTokenCookie(response, "", Duration.ZERO);
+    }
+
+    /**
+     * 以HttpOnly Cookie下发刷新令牌，只在请求刷新接口时由浏览器携带
+     *
+     * @param response     HTTP响应
+     * @param refreshToken 刷新令牌
+     */
+    public void writeRefreshToken(HttpServletResponse response, String refreshToken) {
+        writeRefreshTokenCookie(response, refreshToken, Duration.ofMillis(JwtConstant.REFRESH_TOKEN_EXPIRATION));
+    }
+
+    /**
+     * 删除浏览器保存的刷新令牌Cookie
+     *
+     * @param response HTTP响应
+     */
+    public void clearRefreshToken(HttpServletResponse response) {
+        writeRefreshTokenCookie(response, "", Duration.ZERO);
+    }
+
+    /**
+     * 读取浏览器携带的刷新令牌Cookie
+     *
+     * @param request HTTP请求
+     * @return 刷新令牌，未携带时返回null
+     */
+    public static String getRefreshTokenFromRequest(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (JwtConstant.REFRESH_TOKEN_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeTokenCookie(HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(JwtConstant.TOKEN_COOKIE, value)
+                .httpOnly(true)
+                .secure(cookieSecure)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private void writeRefreshTokenCookie(HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(JwtConstant.REFRESH_TOKEN_COOKIE, value)
+                .httpOnly(true)
+                .secure(cookieSecure)
+                .sameSite("Strict")
+                .path(JwtConstant.REFRESH_TOKEN_COOKIE_PATH)
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
     /**
      * 从JWT Token中解析获取用户ID
      *
@@ -110,11 +453,7 @@ public class JwtUtils {
      */
     public Optional<String> getUserIdFromToken(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = getClaimsFromToken(token);
             
             Object userId = claims.get(USER_ID_CLAIM);
             if (userId != null) {
@@ -166,24 +505,7 @@ public class JwtUtils {
      * @return 验证结果
      */
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (SignatureException e) {
-            log.error("无效的JWT签名: {}", e.getMessage());
-        } catch (MalformedJwtException e) {
-            log.error("无效的JWT令牌: {}", e.getMessage());
-        } catch (ExpiredJwtException e) {
-            log.error("JWT令牌已过期: {}", e.getMessage());
-        } catch (UnsupportedJwtException e) {
-            log.error("不支持的JWT令牌: {}", e.getMessage());
-        } catch (IllegalArgumentException e) {
-            log.error("JWT claims字符串为空: {}", e.getMessage());
-        }
-        return false;
+        return parseToken(token).isPresent();
     }
 
     /**
@@ -211,10 +533,29 @@ public class JwtUtils {
      * @return Claims
      */
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * 按令牌头中的kid从密钥环查找公钥，并要求令牌头中的算法与密钥一致
+     */
+    private static final class KeyRingResolver extends SigningKeyResolverAdapter {
+        private final JwtKeyRing keyRing;
+
+        KeyRingResolver(JwtKeyRing keyRing) {
+            this.keyRing = keyRing;
+        }
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            JwtKeyRing.SigningKey key = keyRing.getKey(header.getKeyId());
+            if (key == null) {
+                throw new SignatureException("未知的签名密钥: " + header.getKeyId());
+            }
+            if (!key.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+                throw new SignatureException("签名算法与密钥不匹配: " + header.getAlgorithm());
+            }
+            return key.getPublicKey();
+        }
     }
-} 
\ No newline at end of file
+}
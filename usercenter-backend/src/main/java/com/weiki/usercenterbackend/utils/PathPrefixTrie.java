@@ -0,0 +1,119 @@
+package com.weiki.usercenterbackend.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 路径前缀字典树，判断路径是否以任意一个前缀开头
+ * 启动时编译，之后只读，可以在多个线程间共享。
+ * 只有一个子节点的链压缩为一段字符串（基数树），每个节点的子节点按首字符排序存放在数组中，
+ * 匹配时逐段比较、按首字符二分查找，遇到前缀终点即返回；耗时与前缀数量无关，且不分配对象
+ */
+public final class PathPrefixTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final PathPrefixTrie[] NO_CHILDREN = new PathPrefixTrie[0];
+
+    /**
+     * 进入此节点前需要匹配的字符串，根节点为空
+     */
+    private final String segment;
+
+    /**
+     * 子节点段的首字符（升序）和对应的子节点
+     */
+    private final char[] keys;
+    private final PathPrefixTrie[] children;
+
+    /**
+     * 是否有前缀在此节点结束
+     */
+    private final boolean terminal;
+
+    private PathPrefixTrie(String segment, char[] keys, PathPrefixTrie[] children, boolean terminal) {
+        this.segment = segment;
+        this.keys = keys;
+        this.children = children;
+        this.terminal = terminal;
+    }
+
+    /**
+     * 编译前缀集合，空字符串和null被忽略
+     *
+     * @param prefixes 路径前缀
+     * @return 字典树
+     */
+    public static PathPrefixTrie compile(Collection<String> prefixes) {
+        Builder root = new Builder();
+        for (String prefix : prefixes) {
+            if (prefix == null || prefix.isEmpty()) {
+                continue;
+            }
+            Builder node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+            }
+            node.terminal = true;
+        }
+        return root.build(new StringBuilder());
+    }
+
+    /**
+     * 判断路径是否以任意一个前缀开头
+     *
+     * @param path 请求路径
+     * @return 是否匹配
+     */
+    public boolean matches(String path) {
+        PathPrefixTrie node = this;
+        int offset = 0;
+        while (offset < path.length()) {
+            int index = Arrays.binarySearch(node.keys, path.charAt(offset));
+            if (index < 0) {
+                return false;
+            }
+            node = node.children[index];
+            if (!path.startsWith(node.segment, offset)) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            offset += node.segment.length();
+        }
+        return false;
+    }
+
+    /**
+     * 构建期间的可变节点
+     */
+    private static final class Builder {
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+        private boolean terminal;
+
+        /**
+         * @param segment 从父节点到此节点的字符，此节点沿唯一子节点向下合并时继续追加
+         */
+        PathPrefixTrie build(StringBuilder segment) {
+            // 前缀在此结束时更长的前缀不会再被用到
+            if (terminal || children.isEmpty()) {
+                return new PathPrefixTrie(segment.toString(), NO_KEYS, NO_CHILDREN, terminal);
+            }
+            if (children.size() == 1 && segment.length() > 0) {
+                Map.Entry<Character, Builder> only = children.firstEntry();
+                return only.getValue().build(segment.append(only.getKey().charValue()));
+            }
+            char[] keys = new char[children.size()];
+            PathPrefixTrie[] nodes = new PathPrefixTrie[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build(new StringBuilder().append(entry.getKey().charValue()));
+                i++;
+            }
+            return new PathPrefixTrie(segment.toString(), keys, nodes, false);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.weiki.usercenterbackend.utils;
+
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌黑名单
+ * Redis中以令牌的jti（旧令牌没有jti时为令牌的SHA-256）为键保存黑名单，过期时间与令牌相同；
+ * 本地用布谷鸟过滤器镜像全部黑名单条目，过滤器判定不在黑名单中时不访问Redis，只有可能命中时才查询Redis确认。
+ * 各节点加入黑名单后通过Redis发布订阅同步，条目到期后从过滤器中删除，并定期从Redis全量重建过滤器以弥补丢失的消息。
+ * 过滤器尚未完成同步或已满时每次都查询Redis
+ */
+@Slf4j
+@Component
+public class TokenBlacklist {
+
+    /**
+     * Redis中黑名单的键前缀
+     */
+    static final String KEY_PREFIX = "token:blacklist:";
+
+    /**
+     * 黑名单同步频道，消息格式为 节点ID|过期时间戳|令牌标识
+     */
+    static final String CHANNEL = "token:blacklist:sync";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Counter filteredCounter;
+    private final Counter redisCounter;
+
+    /**
+     * 是否启用本地过滤器，关闭后每次都查询Redis
+     */
+    @Value("${jwt.blacklist.filter-enabled:true}")
+    private boolean filterEnabled;
+
+    /**
+     * 过滤器预期容纳的黑名单条目数
+     */
+    @Value("${jwt.blacklist.expected-items:100000}")
+    private int expectedItems;
+
+    /**
+     * 从Redis全量重建过滤器的间隔（毫秒）
+     */
+    @Value("${jwt.blacklist.resync-interval:300000}")
+    private long resyncIntervalMillis;
+
+    /**
+     * 删除过滤器中到期条目的间隔（毫秒）
+     */
+    @Value("${jwt.blacklist.purge-interval:10000}")
+    private long purgeIntervalMillis;
+
+    /**
+     * 本地镜像，为null时表示不可用，由this保护写入
+     */
+    private volatile Mirror mirror;
+
+    /**
+     * 重建期间收到的条目，重建完成后补充到新镜像中，由this保护
+     */
+    private List<Entry> pendingDuringResync;
+
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public TokenBlacklist(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+                          MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.filteredCounter = Counter.builder("token.blacklist.checks")
+                .tag("result", "filtered")
+                .description("本地过滤器判定不在黑名单中、未查询Redis的次数")
+                .register(meterRegistry);
+        this.redisCounter = Counter.builder("token.blacklist.checks")
+                .tag("result", "redis")
+                .description("查询Redis确认黑名单的次数")
+                .register(meterRegistry);
+        Gauge.builder("token.blacklist.filter.size", this, TokenBlacklist::getFilterSize)
+                .description("本地过滤器中的黑名单条目数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 订阅同步频道并启动重建和清理任务
+     */
+    @PostConstruct
+    public void start() {
+        if (!filterEnabled) {
+            log.info("令牌黑名单本地过滤器未启用，每次校验都查询Redis");
+            return;
+        }
+        listenerContainer.addMessageListener((message, pattern) -> onMessage(message), new ChannelTopic(CHANNEL));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-blacklist-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::resync, 0, resyncIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalMillis, purgeIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 将令牌加入黑名单直到令牌过期，并通知其他节点
+     *
+     * @param token 已验证的令牌
+     */
+    public void add(VerifiedToken token) {
+        long ttl = token.getExpiresAt() - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+        String id = idOf(token);
+        redisTemplate.opsForValue().set(KEY_PREFIX + id, "1", ttl, TimeUnit.MILLISECONDS);
+        onEntry(new Entry(hash(id), token.getExpiresAt()));
+        try {
+            redisTemplate.convertAndSend(CHANNEL, instanceId + "|" + token.getExpiresAt() + "|" + id);
+        } catch (RuntimeException e) {
+            // 其他节点在下一次重建时同步
+            log.warn("发布令牌黑名单同步消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 判断令牌是否在黑名单中，本地过滤器判定不在时不访问Redis
+     *
+     * @param token 已验证的令牌
+     * @return 是否在黑名单中
+     */
+    public boolean isBlacklisted(VerifiedToken token) {
+        String id = idOf(token);
+        Mirror current = mirror;
+        if (current != null && !current.filter.mightContain(hash(id))) {
+            filteredCounter.increment();
+            return false;
+        }
+        redisCounter.increment();
+        return Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + id));
+    }
+
+    /**
+     * 本地过滤器中的条目数，过滤器不可用时为-1
+     */
+    public int getFilterSize() {
+        Mirror current = mirror;
+        return current != null ? current.filter.size() : -1;
+    }
+
+    /**
+     * 令牌在黑名单中的标识：jti，旧令牌没有jti时使用令牌的SHA-256
+     */
+    static String idOf(VerifiedToken token) {
+        if (token.getJti() != null) {
+            return token.getJti();
+        }
+        return Hashing.sha256().hashString(token.getToken(), StandardCharsets.US_ASCII).toString();
+    }
+
+    private static long hash(String id) {
+        return Hashing.murmur3_128().hashString(id, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * 处理其他节点发布的黑名单条目
+     */
+    private void onMessage(Message message) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+        try {
+            onEntry(new Entry(hash(parts[2]), Long.parseLong(parts[1])));
+        } catch (NumberFormatException e) {
+            log.warn("无效的令牌黑名单同步消息: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void onEntry(Entry entry) {
+        if (pendingDuringResync != null) {
+            pendingDuringResync.add(entry);
+        }
+        Mirror current = mirror;
+        if (current != null && !current.add(entry)) {
+            // 过滤器已满，在下一次按实际数量重建之前每次都查询Redis
+            log.warn("令牌黑名单过滤器已满，暂时改为每次查询Redis");
+            mirror = null;
+        }
+    }
+
+    /**
+     * 从Redis全量重建本地过滤器
+     */
+    void resync() {
+        synchronized (this) {
+            pendingDuringResync = new ArrayList<>();
+        }
+        try {
+            List<Entry> entries = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    String key = cursor.next();
+                    Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+                    if (ttl != null && ttl > 0) {
+                        entries.add(new Entry(hash(key.substring(KEY_PREFIX.length())), now + ttl));
+                    }
+                }
+            }
+            Mirror fresh = new Mirror(Math.max(expectedItems, entries.size() * 2));
+            for (Entry entry : entries) {
+                if (!fresh.add(entry)) {
+                    throw new IllegalStateException("令牌黑名单过滤器容量不足: " + entries.size());
+                }
+            }
+            synchronized (this) {
+                for (Entry entry : pendingDuringResync) {
+                    fresh.add(entry);
+                }
+                mirror = fresh;
+            }
+            log.debug("令牌黑名单过滤器已重建，条目数: {}", entries.size());
+        } catch (RuntimeException e) {
+            // 保留当前镜像，尚未同步过时继续查询Redis
+            log.warn("重建令牌黑名单过滤器失败: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                pendingDuringResync = null;
+            }
+        }
+    }
+
+    /**
+     * 删除过滤器中已到期的条目
+     */
+    void purgeExpired() {
+        Mirror current = mirror;
+        if (current != null) {
+            current.purge(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 黑名单条目：令牌标识的哈希和过期时间
+     */
+    private static final class Entry {
+        private final long hash;
+        private final long expiresAt;
+
+        Entry(long hash, long expiresAt) {
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 过滤器和按过期时间排序的条目，每个条目到期时从过滤器中删除一次
+     */
+    private static final class Mirror {
+        private final CuckooFilter filter;
+        private final PriorityQueue<Entry> expiries = new PriorityQueue<>(Comparator.comparingLong(e -> e.expiresAt));
+
+        Mirror(int expectedItems) {
+            this.filter = new CuckooFilter(expectedItems);
+        }
+
+        synchronized boolean add(Entry entry) {
+            if (!filter.add(entry.hash)) {
+                return false;
+            }
+            expiries.add(entry);
+            return true;
+        }
+
+        synchronized void purge(long now) {
+            while (!expiries.isEmpty() && expiries.peek().expiresAt <= now) {
+                filter.remove(expiries.poll().hash);
+            }
+        }
+    }
+}
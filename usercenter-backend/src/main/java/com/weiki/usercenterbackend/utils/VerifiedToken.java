@@ -0,0 +1,129 @@
+package com.weiki.usercenterbackend.utils;
+
+import com.weiki.usercenterbackend.constant.JwtConstant;
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+
+/**
+ * 已验证签名和有效期的JWT令牌
+ * 每个请求只解析一次，保存在请求属性中，过滤器、限流切面等后续处理直接读取。
+ * 同一个令牌的解析结果会被缓存并在多个请求之间共享，使用方不能修改其中的声明
+ */
+public final class VerifiedToken {
+
+    /**
+     * 保存已验证令牌的请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = VerifiedToken.class.getName();
+
+    private final String token;
+    private final Claims claims;
+    private final Long userId;
+    private final String tokenType;
+    private final Integer userRole;
+    private final Integer userStatus;
+    private final long expiresAt;
+
+    VerifiedToken(String token, Claims claims) {
+        this.token = token;
+        this.claims = claims;
+        this.userId = parseUserId(claims.get(JwtConstant.USER_ID_CLAIM));
+        this.tokenType = claims.get(JwtConstant.TOKEN_TYPE_CLAIM, String.class);
+        Object role = claims.get(JwtConstant.USER_ROLE_CLAIM);
+        this.userRole = role instanceof Number ? ((Number) role).intValue() : null;
+        Object status = claims.get(JwtConstant.USER_STATUS_CLAIM);
+        this.userStatus = status instanceof Number ? ((Number) status).intValue() : null;
+        Date expiration = claims.getExpiration();
+        this.expiresAt = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * 原始令牌字符串
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * 令牌中的全部声明
+     */
+    public Claims getClaims() {
+        return claims;
+    }
+
+    /**
+     * 用户ID，声明缺失或格式错误时为null
+     */
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * 令牌唯一标识（jti），旧版本签发的令牌没有该声明时为null
+     */
+    public String getJti() {
+        return claims.getId();
+    }
+
+    /**
+     * 签发时的用户角色，未携带该声明时为null
+     */
+    public Integer getUserRole() {
+        return userRole;
+    }
+
+    /**
+     * 签发时的用户状态，未携带该声明时为null
+     */
+    public Integer getUserStatus() {
+        return userStatus;
+    }
+
+    /**
+     * 刷新令牌所属的令牌族ID，访问令牌和旧版本的刷新令牌为null
+     */
+    public String getFamilyId() {
+        return claims.get(JwtConstant.REFRESH_FAMILY_CLAIM, String.class);
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public boolean isAccessToken() {
+        return JwtConstant.ACCESS_TOKEN_TYPE.equals(tokenType);
+    }
+
+    public boolean isRefreshToken() {
+        return JwtConstant.REFRESH_TOKEN_TYPE.equals(tokenType);
+    }
+
+    /**
+     * 过期时间
+     */
+    public Date getExpiration() {
+        return claims.getExpiration();
+    }
+
+    /**
+     * 过期时间戳（毫秒），没有过期时间时为Long.MAX_VALUE
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    private static Long parseUserId(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 -- ARGV[3]: 请求的令牌数
 -- ARGV[4]: 当前时间戳(毫秒)
 -- ARGV[5]: 令牌桶过期时间(秒)
+-- 返回: {是否允许(1/0), 剩余令牌数, 距离下一个令牌可用的毫秒数, 距离令牌桶恢复满状态的毫秒数}
 
 -- 获取令牌桶当前状态
 local bucket = redis.call('hmget', KEYS[1], 'last_tokens', 'last_refreshed')
@@ -25,9 +26,15 @@ if last_tokens == nil or last_refreshed == nil then
     last_refreshed = now
 end
 
+-- 各节点的时间戳在发起调用时生成，网络延迟不同会导致较早的时间戳较晚到达。
+-- 不允许时间回退，否则last_refreshed被改回较早的时间，同一段时间的令牌会被重复计入
+if now < last_refreshed then
+    now = last_refreshed
+end
+
 -- 计算当前令牌数
 -- 公式: 上次令牌数 + 生成速率 * 经过时间(毫秒) / 1000
-local delta = math.max(0, now - last_refreshed)
+local delta = now - last_refreshed
 local current_tokens = math.min(capacity, last_tokens + (rate * delta / 1000))
 
 -- 判断是否有足够的令牌
@@ -40,13 +47,17 @@ if allowed then
     
     -- 更新令牌桶
     redis.call('hmset', KEYS[1], 'last_tokens', current_tokens, 'last_refreshed', now)
-    -- 设置过期时间
-    redis.call('expire', KEYS[1], ttl)
-    
-    return 1 -- 允许请求
-else
-    -- 无需更新，仅设置过期时间
-    redis.call('expire', KEYS[1], ttl)
-    
-    return 0 -- 拒绝请求
-end 
\ No newline at end of file
+end
+-- 设置过期时间
+redis.call('expire', KEYS[1], ttl)
+
+-- 计算令牌桶状态，供调用方生成RateLimit-*和Retry-After响应头
+-- Redis会把Lua数字截断为整数，这里先向上取整避免把等待时间算短
+local retry_after = 0
+if not allowed then
+    retry_after = math.ceil((requested - current_tokens) * 1000 / rate)
+end
+local reset = math.ceil((capacity - current_tokens) * 1000 / rate)
+
+-- 1=允许请求，0=拒绝请求
+return {allowed and 1 or 0, math.floor(current_tokens), retry_after, reset}
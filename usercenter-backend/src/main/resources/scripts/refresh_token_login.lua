@@ -0,0 +1,44 @@
+-- 登录时为新设备创建刷新令牌族
+-- 用户的刷新令牌保存在一个哈希中，字段为令牌族ID，值为 当前jti|上一个jti|最近轮换时间
+-- 参数:
+-- KEYS[1]: 用户的刷新令牌哈希
+-- ARGV[1]: 令牌族ID
+-- ARGV[2]: 刷新令牌的jti
+-- ARGV[3]: 当前时间戳(毫秒)
+-- ARGV[4]: 刷新令牌有效期(毫秒)
+-- ARGV[5]: 每个用户最多保留的设备数
+-- 返回: 被淘汰的设备数
+
+-- 旧版本以字符串保存单个刷新令牌，直接覆盖
+local keyType = redis.call('type', KEYS[1])['ok']
+if keyType ~= 'hash' and keyType ~= 'none' then
+    redis.call('del', KEYS[1])
+end
+
+redis.call('hset', KEYS[1], ARGV[1], ARGV[2] .. '||' .. ARGV[3])
+
+-- 超过设备数上限时淘汰最久未刷新的令牌族
+local evicted = 0
+local maxDevices = tonumber(ARGV[5])
+while redis.call('hlen', KEYS[1]) > maxDevices do
+    local entries = redis.call('hgetall', KEYS[1])
+    local oldestField = nil
+    local oldestTime = nil
+    for i = 1, #entries, 2 do
+        if entries[i] ~= ARGV[1] then
+            local rotatedAt = tonumber(string.match(entries[i + 1], '|(%d+)$')) or 0
+            if oldestTime == nil or rotatedAt < oldestTime then
+                oldestField = entries[i]
+                oldestTime = rotatedAt
+            end
+        end
+    end
+    if oldestField == nil then
+        break
+    end
+    redis.call('hdel', KEYS[1], oldestField)
+    evicted = evicted + 1
+end
+
+redis.call('pexpire', KEYS[1], ARGV[4])
+return evicted
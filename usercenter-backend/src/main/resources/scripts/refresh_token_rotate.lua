@@ -0,0 +1,35 @@
+-- 原子轮换刷新令牌（比较并交换），检测重复使用
+-- 值的格式为 当前jti|上一个jti|最近轮换时间
+-- 参数:
+-- KEYS[1]: 用户的刷新令牌哈希
+-- ARGV[1]: 令牌族ID
+-- ARGV[2]: 请求携带的刷新令牌jti
+-- ARGV[3]: 新刷新令牌的jti
+-- ARGV[4]: 当前时间戳(毫秒)
+-- ARGV[5]: 刷新令牌有效期(毫秒)
+-- ARGV[6]: 重复使用宽限期(毫秒)
+-- 返回: 1轮换成功；0令牌族不存在；2宽限期内重复提交了上一个令牌，拒绝但保留令牌族；-1检测到重复使用，已撤销令牌族
+
+if redis.call('type', KEYS[1])['ok'] ~= 'hash' then
+    return 0
+end
+local value = redis.call('hget', KEYS[1], ARGV[1])
+if not value then
+    return 0
+end
+
+local current, previous, rotatedAt = string.match(value, '^([^|]*)|([^|]*)|(%d+)$')
+if current == ARGV[2] then
+    redis.call('hset', KEYS[1], ARGV[1], ARGV[3] .. '|' .. current .. '|' .. ARGV[4])
+    redis.call('pexpire', KEYS[1], ARGV[5])
+    return 1
+end
+
+-- 同一客户端并发刷新时，后到的请求携带的是刚被轮换掉的令牌
+if previous == ARGV[2] and tonumber(ARGV[4]) - tonumber(rotatedAt) <= tonumber(ARGV[6]) then
+    return 2
+end
+
+-- 已轮换掉的令牌再次出现，视为令牌泄露，撤销整个令牌族
+redis.call('hdel', KEYS[1], ARGV[1])
+return -1
@@ -0,0 +1,9 @@
+-- 释放简单互斥锁：只有锁的值仍是自己的持有者标识时才删除，避免锁过期后误删其他节点重新获取的锁
+-- 参数:
+-- KEYS[1]: 锁键
+-- ARGV[1]: 持有者标识
+-- 返回: 1已释放；0锁已过期或被其他持有者获取
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('del', KEYS[1])
+end
+return 0
@@ -0,0 +1,83 @@
+package com.weiki.usercenterbackend.aop;
+
+import com.weiki.usercenterbackend.annotation.DistributedLock;
+import com.weiki.usercenterbackend.service.impl.UserServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分布式锁键解析器测试类
+ */
+public class LockKeyResolverTest {
+
+    /**
+     * 常量和参数引用拼接的表达式走模板，结果与SpEL一致
+     */
+    @Test
+    public void testTemplateFastPath() throws Exception {
+        Method method = Locked.class.getMethod("register", String.class, String.class);
+        assertNotNull(LockKeyResolver.parseTemplate("weiki:lock:", method.getAnnotation(DistributedLock.class).lockKey(),
+                new String[]{"userAccount", "password"}));
+
+        LockKeyResolver resolver = LockKeyResolver.forMethod(method);
+        assertEquals("weiki:lock:userRegister:alice", resolver.resolve(new Object[]{"alice", "secret"}));
+        assertEquals("weiki:lock:userRegister:null", resolver.resolve(new Object[]{null, "secret"}));
+    }
+
+    /**
+     * 含方法调用的表达式编译后多次求值，参数不同时结果随之变化
+     */
+    @Test
+    public void testCompiledExpression() throws Exception {
+        LockKeyResolver resolver = LockKeyResolver.forMethod(Locked.class.getMethod("update", String.class));
+        for (int i = 0; i < 3; i++) {
+            assertEquals("weiki:lock:update:BOB" + i, resolver.resolve(new Object[]{"bob" + i}));
+        }
+    }
+
+    /**
+     * 未指定锁键时使用类名+方法名，表达式引用不存在的参数时回退到默认锁键
+     */
+    @Test
+    public void testDefaultKey() throws Exception {
+        assertEquals("weiki:lock:Locked:plain",
+                LockKeyResolver.forMethod(Locked.class.getMethod("plain")).resolve(new Object[0]));
+        assertEquals("weiki:lock:Locked:missing",
+                LockKeyResolver.forMethod(Locked.class.getMethod("missing", String.class)).resolve(new Object[]{"x"}));
+    }
+
+    /**
+     * 修改密码按调用方已确认的用户ID加锁，不依赖请求属性
+     */
+    @Test
+    public void testUpdatePasswordKeyedByUserId() throws Exception {
+        LockKeyResolver resolver = LockKeyResolver.forMethod(UserServiceImpl.class.getMethod("updatePassword",
+                long.class, String.class, String.class, String.class, HttpServletRequest.class));
+        assertEquals("weiki:lock:updatePassword:5",
+                resolver.resolve(new Object[]{5L, "old", "new", "new", new MockHttpServletRequest()}));
+    }
+
+    public static class Locked {
+
+        @DistributedLock(lockKey = "'userRegister:' + #userAccount")
+        public void register(String userAccount, String password) {
+        }
+
+        @DistributedLock(lockKey = "'update:' + #name.toUpperCase()")
+        public void update(String name) {
+        }
+
+        @DistributedLock
+        public void plain() {
+        }
+
+        @DistributedLock(lockKey = "#unknown.length()")
+        public void missing(String name) {
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.weiki.usercenterbackend.aop;
+
+import com.weiki.usercenterbackend.annotation.RateLimit;
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.exception.RateLimitException;
+import com.weiki.usercenterbackend.filter.RequestArrivalFilter;
+import com.weiki.usercenterbackend.metrics.RateLimitMetrics;
+import com.weiki.usercenterbackend.ratelimit.AdaptiveLimiterRegistry;
+import com.weiki.usercenterbackend.ratelimit.ClusterMembership;
+import com.weiki.usercenterbackend.ratelimit.LocalRateLimiter;
+import com.weiki.usercenterbackend.ratelimit.PriorityAdmissionController;
+import com.weiki.usercenterbackend.service.DistributedRateLimiter;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 限流切面测试类
+ */
+public class RateLimiterAspectTest {
+
+    private PriorityAdmissionController admissionController;
+    private RateLimiterAspect aspect;
+    private ProceedingJoinPoint joinPoint;
+    private RateLimit rateLimit;
+
+    @BeforeEach
+    public void setUp() throws Throwable {
+        RateLimitConfig config = new RateLimitConfig();
+        ReflectionTestUtils.setField(config, "globalQps", 1.0);
+        ReflectionTestUtils.setField(config, "userQps", 1.0);
+        ReflectionTestUtils.setField(config, "metricsTopK", 10);
+        ReflectionTestUtils.setField(config, "metricsWindow", 60000L);
+        ClusterMembership clusterMembership = mock(ClusterMembership.class);
+        when(clusterMembership.getClusterSize()).thenReturn(1);
+        admissionController = mock(PriorityAdmissionController.class);
+        aspect = new RateLimiterAspect(config, new RateLimitMetrics(new SimpleMeterRegistry(), config),
+                mock(JwtUtils.class), admissionController, mock(AdaptiveLimiterRegistry.class),
+                mock(DistributedRateLimiter.class), clusterMembership);
+
+        Method method = Endpoints.class.getMethod("list");
+        rateLimit = method.getAnnotation(RateLimit.class);
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(method);
+        joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.proceed()).thenReturn("ok");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * 准入控制在取令牌之前执行，被丢弃的请求不消耗限流配额
+     */
+    @Test
+    public void testShedRequestKeepsToken() throws Throwable {
+        LocalRateLimiter globalLimiter = (LocalRateLimiter) ReflectionTestUtils.getField(aspect, "globalRateLimiter");
+        when(admissionController.tryAdmit(anyInt(), anyLong())).thenReturn(false);
+        RateLimitException e = assertThrows(RateLimitException.class, () -> aspect.rateLimit(joinPoint, rateLimit));
+        assertEquals("ADMISSION", e.getLimiterType());
+        verify(joinPoint, never()).proceed();
+        verify(admissionController, never()).release();
+
+        when(admissionController.tryAdmit(anyInt(), anyLong())).thenReturn(true);
+        assertTrue(globalLimiter.tryAcquire(), "被丢弃的请求不应取走令牌");
+    }
+
+    /**
+     * 取令牌失败时释放准入名额；成功时执行方法后释放
+     */
+    @Test
+    public void testAdmissionReleasedOnEveryPath() throws Throwable {
+        when(admissionController.tryAdmit(anyInt(), anyLong())).thenReturn(true);
+        assertEquals("ok", aspect.rateLimit(joinPoint, rateLimit));
+        assertThrows(RateLimitException.class, () -> aspect.rateLimit(joinPoint, rateLimit));
+        verify(joinPoint, times(1)).proceed();
+        verify(admissionController, times(2)).release();
+    }
+
+    /**
+     * 排队延迟从过滤器记录的请求到达时间算起
+     */
+    @Test
+    public void testSojournMeasuredFromArrival() throws Throwable {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(RequestArrivalFilter.ARRIVAL_NANOS_ATTRIBUTE,
+                System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        when(admissionController.tryAdmit(anyInt(), anyLong())).thenReturn(true);
+
+        aspect.rateLimit(joinPoint, rateLimit);
+        ArgumentCaptor<Long> sojourn = ArgumentCaptor.forClass(Long.class);
+        verify(admissionController).tryAdmit(eq(rateLimit.priority()), sojourn.capture());
+        assertTrue(sojourn.getValue() >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    public static class Endpoints {
+
+        @RateLimit
+        public String list() {
+            return "ok";
+        }
+    }
+}
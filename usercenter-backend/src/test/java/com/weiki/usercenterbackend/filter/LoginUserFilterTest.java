@@ -0,0 +1,76 @@
+package com.weiki.usercenterbackend.filter;
+
+import com.weiki.usercenterbackend.constant.JwtConstant;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.TokenBlacklist;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 登录态过滤器测试类
+ */
+public class LoginUserFilterTest {
+
+    private JwtUtils jwtUtils;
+    private TokenBlacklist tokenBlacklist;
+    private LoginUserFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyWithAtLeast256BitsForHmacSha256");
+        jwtUtils.init();
+        tokenBlacklist = mock(TokenBlacklist.class);
+        filter = new LoginUserFilter(jwtUtils, tokenBlacklist);
+    }
+
+    /**
+     * 有效的访问令牌设置请求属性，过滤器不签发新令牌
+     */
+    @Test
+    public void testValidTokenSetsAttributes() throws Exception {
+        MockHttpServletRequest request = requestWithToken(jwtUtils.generateAccessToken(1L, 0, 0));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(1L, request.getAttribute("userId"));
+        assertTrue(request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE) instanceof VerifiedToken);
+        assertNull(response.getHeader(JwtConstant.TOKEN_HEADER));
+        assertNull(response.getHeader(HttpHeaders.SET_COOKIE));
+    }
+
+    /**
+     * 已注销的令牌和刷新令牌不能作为登录态
+     */
+    @Test
+    public void testRevokedOrRefreshTokenIgnored() throws Exception {
+        String accessToken = jwtUtils.generateAccessToken(1L, 0, 0);
+        when(tokenBlacklist.isBlacklisted(any(VerifiedToken.class))).thenReturn(true);
+        MockHttpServletRequest revoked = requestWithToken(accessToken);
+        filter.doFilter(revoked, new MockHttpServletResponse(), new MockFilterChain());
+        assertNull(revoked.getAttribute("userId"));
+        assertNull(revoked.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE));
+
+        when(tokenBlacklist.isBlacklisted(any(VerifiedToken.class))).thenReturn(false);
+        MockHttpServletRequest refresh = requestWithToken(jwtUtils.generateRefreshToken(1L));
+        filter.doFilter(refresh, new MockHttpServletResponse(), new MockFilterChain());
+        assertNull(refresh.getAttribute("userId"));
+        assertNull(refresh.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE));
+    }
+
+    private static MockHttpServletRequest requestWithToken(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/current");
+        request.addHeader(JwtConstant.TOKEN_HEADER, JwtConstant.TOKEN_PREFIX + token);
+        return request;
+    }
+}
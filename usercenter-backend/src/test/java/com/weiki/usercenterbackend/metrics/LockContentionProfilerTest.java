@@ -0,0 +1,76 @@
+package com.weiki.usercenterbackend.metrics;
+
+import com.weiki.usercenterbackend.annotation.LockMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分布式锁竞争分析器测试类
+ */
+public class LockContentionProfilerTest {
+
+    private MeterRegistry meterRegistry;
+    private LockContentionProfiler profiler;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        profiler = new LockContentionProfiler(meterRegistry);
+        ReflectionTestUtils.setField(profiler, "topN", 2);
+        ReflectionTestUtils.setField(profiler, "contendedThresholdMillis", 1L);
+        ReflectionTestUtils.setField(profiler, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(profiler, "windowMillis", 3600_000L);
+    }
+
+    /**
+     * 计时器按锁前缀聚合，不同用户的锁键不会产生新的指标；只有发生竞争的锁键进入热点统计
+     */
+    @Test
+    public void testTimersPerPrefixAndContendedKeys() {
+        for (int i = 0; i < 100; i++) {
+            profiler.recordAcquire("weiki:lock:userRegister:user" + i, 0, true);
+        }
+        for (int i = 0; i < 5; i++) {
+            profiler.recordAcquire("weiki:lock:userRegister:hot", TimeUnit.MILLISECONDS.toNanos(20), true);
+        }
+        profiler.recordAcquire("weiki:lock:userRegister:warm", TimeUnit.MILLISECONDS.toNanos(20), false);
+
+        assertEquals(1, meterRegistry.find("lock.wait.duration").tag("result", "acquired").timers().size());
+        assertEquals(105, meterRegistry.get("lock.wait.duration")
+                .tags("prefix", "weiki:lock:userRegister", "result", "acquired").timer().count());
+        assertEquals(1, meterRegistry.get("lock.wait.duration").tag("result", "failed").timer().count());
+
+        List<SpaceSavingTopK.Entry> contended = profiler.getContendedKeys();
+        assertEquals(2, contended.size());
+        assertEquals("weiki:lock:userRegister:hot", contended.get(0).getKey());
+        assertEquals(5, contended.get(0).getCount());
+        assertEquals("weiki:lock:userRegister:warm", contended.get(1).getKey());
+    }
+
+    /**
+     * 重入加锁只在完全释放后从持有列表中移除
+     */
+    @Test
+    public void testHeldLocksTrackReentrancy() {
+        String key = "weiki:lock:updateUser:1";
+        profiler.onLocked(key, LockMode.EXCLUSIVE, null, -1, TimeUnit.MILLISECONDS);
+        profiler.onLocked(key, LockMode.EXCLUSIVE, null, 30, TimeUnit.SECONDS);
+        assertEquals(1, profiler.getHeldLocks().size());
+        assertEquals(2, profiler.getHeldLocks().get(0).getHoldCount());
+        assertEquals(-1, profiler.getHeldLocks().get(0).getLeaseMillis());
+
+        profiler.onUnlocked(key, TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(1, profiler.getHeldLocks().size());
+        profiler.onUnlocked(key, TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(profiler.getHeldLocks().isEmpty());
+        assertEquals(2, meterRegistry.get("lock.hold.duration").tag("prefix", "weiki:lock:updateUser").timer().count());
+    }
+}
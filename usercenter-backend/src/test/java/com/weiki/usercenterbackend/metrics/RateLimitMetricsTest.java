@@ -0,0 +1,107 @@
+package com.weiki.usercenterbackend.metrics;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.ratelimit.LocalRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 限流指标测试类
+ */
+public class RateLimitMetricsTest {
+
+    private static final String TOP_METRIC = "http_requests_limiter_user_rejected_top";
+
+    private MeterRegistry meterRegistry;
+    private RateLimitMetrics rateLimitMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        RateLimitConfig config = new RateLimitConfig();
+        ReflectionTestUtils.setField(config, "metricsTopK", 3);
+        // 窗口足够长，只通过rotateUserWindow手动结束窗口
+        ReflectionTestUtils.setField(config, "metricsWindow", 3600_000L);
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitMetrics = new RateLimitMetrics(meterRegistry, config);
+    }
+
+    /**
+     * 大量不同用户被拒绝时，导出的用户指标数量不超过K+1
+     */
+    @Test
+    public void testUserMetricsCardinalityIsBounded() {
+        for (int i = 0; i < 1000; i++) {
+            rateLimitMetrics.incrementRejectedCount("USER", "user-" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            rateLimitMetrics.incrementRejectedCount("USER", "hot");
+        }
+        rateLimitMetrics.rotateUserWindow();
+
+        assertEquals(4, meterRegistry.find(TOP_METRIC).gauges().size(), "只应导出前3个用户和other");
+        assertEquals(1, meterRegistry.find("http_requests_limiter_rejected_total").counters().size());
+        assertEquals(1050, meterRegistry.get("http_requests_limiter_rejected_total")
+                .tag("target", RateLimitMetrics.ALL_TARGET).counter().count());
+        assertEquals(50, meterRegistry.get(TOP_METRIC).tag("target", "hot").gauge().value());
+    }
+
+    /**
+     * 跌出前K的用户指标会从注册表中注销
+     */
+    @Test
+    public void testDroppedUsersAreRemoved() {
+        rateLimitMetrics.incrementRejectedCount("USER", "old");
+        rateLimitMetrics.rotateUserWindow();
+        assertNotNull(meterRegistry.find(TOP_METRIC).tag("target", "old").gauge());
+
+        for (int i = 0; i < 3; i++) {
+            rateLimitMetrics.incrementRejectedCount("USER", "new-" + i);
+        }
+        rateLimitMetrics.rotateUserWindow();
+
+        assertNull(meterRegistry.find(TOP_METRIC).tag("target", "old").gauge(), "跌出前K的用户指标应该被注销");
+        Gauge other = meterRegistry.get(TOP_METRIC).tag("target", RateLimitMetrics.OTHER_TARGET).gauge();
+        assertEquals(0, other.value());
+    }
+
+    /**
+     * 可用令牌数指标读取限流器的实时状态，移除限流器时一并注销
+     */
+    @Test
+    public void testAvailablePermitsGaugeReadsLimiter() {
+        LocalRateLimiter limiter = LocalRateLimiter.create(1);
+        rateLimitMetrics.registerAvailablePermits("INTERFACE", "api", limiter);
+        assertEquals(1, meterRegistry.get("http_requests_limiter_available_permits").gauge().value());
+        assertTrue(limiter.tryAcquire());
+        assertEquals(0, meterRegistry.get("http_requests_limiter_available_permits").gauge().value());
+
+        rateLimitMetrics.recordRemoval("INTERFACE", "api", 10.0);
+        assertNull(meterRegistry.find("http_requests_limiter_available_permits").gauge());
+    }
+
+    /**
+     * Space-Saving保留出现次数超过 总次数/容量 的热点
+     */
+    @Test
+    public void testSpaceSavingKeepsHeavyHitters() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(8);
+        for (int i = 0; i < 500; i++) {
+            topK.add("noise-" + i);
+            if (i % 5 == 0) {
+                topK.add("heavy");
+            }
+        }
+        List<SpaceSavingTopK.Entry> top = topK.top(1);
+        assertEquals("heavy", top.get(0).getKey());
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 100);
+        assertEquals(600, topK.getTotal());
+    }
+}
@@ -0,0 +1,90 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应并发限流器测试类
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW_RTT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 并发达到上限后拒绝新请求
+     */
+    @Test
+    public void testRejectWhenLimitReached() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                2, 1, 10, 1.5, 0, TimeUnit.MILLISECONDS, 1);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire(), "超过并发上限应该被拒绝");
+
+        limiter.onIgnore();
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    /**
+     * RTT平稳且并发用满时上限逐步放大
+     */
+    @Test
+    public void testLimitGrowsWithStableRtt() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                10, 1, 100, 1.5, 0, TimeUnit.MILLISECONDS, 1);
+        for (int i = 0; i < 50; i++) {
+            saturateAndComplete(limiter, FAST_RTT);
+        }
+        assertTrue(limiter.getLimit() > 10, "RTT平稳时上限应该增长，实际为: " + limiter.getLimit());
+    }
+
+    /**
+     * 下游变慢导致RTT升高时上限收缩
+     */
+    @Test
+    public void testLimitShrinksWhenRttRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                50, 1, 100, 1.5, 0, TimeUnit.MILLISECONDS, 1);
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, FAST_RTT);
+        }
+        int before = limiter.getLimit();
+        // 长期RTT会逐渐适应新的基准，这里只观察下游刚变慢时的反应
+        saturateAndComplete(limiter, SLOW_RTT);
+        assertTrue(limiter.getLimit() < before,
+                "RTT升高后上限应该收缩，之前: " + before + "，之后: " + limiter.getLimit());
+    }
+
+    /**
+     * RTT为0（计时精度不足）时上限保持有效，不会变为0而拒绝全部请求
+     */
+    @Test
+    public void testZeroRttKeepsLimitValid() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                10, 1, 100, 1.5, 0, TimeUnit.MILLISECONDS, 1);
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, 0);
+        }
+        assertTrue(limiter.getLimit() >= 10, "RTT为0时上限不应收缩，实际为: " + limiter.getLimit());
+        saturateAndComplete(limiter, FAST_RTT);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    /**
+     * 占满当前并发上限，然后以相同RTT完成所有请求
+     */
+    private void saturateAndComplete(AdaptiveConcurrencyLimiter limiter, long rtt) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.onComplete(rtt);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器测试类
+ */
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final List<String> transitions = new ArrayList<>();
+
+    private CircuitBreaker newBreaker(long openMillis) {
+        return new CircuitBreaker(10, 4, 50, 100, 80, openMillis, 2, TimeUnit.MILLISECONDS,
+                (from, to) -> transitions.add(from + "->" + to));
+    }
+
+    /**
+     * 失败率超过阈值后打开熔断，拒绝调用
+     */
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = newBreaker(60_000);
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "调用次数不足时不应熔断");
+
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(List.of("CLOSED->OPEN"), transitions);
+    }
+
+    /**
+     * 慢调用率超过阈值后打开熔断
+     */
+    @Test
+    public void testOpensOnSlowCalls() {
+        CircuitBreaker breaker = newBreaker(60_000);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(SLOW);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * 打开一段时间后进入半开状态，只放行有限的探测调用，探测全部成功后关闭
+     */
+    @Test
+    public void testHalfOpenProbesThenCloses() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker(50);
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(FAST);
+        }
+        TimeUnit.MILLISECONDS.sleep(80);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission(), "探测名额用完后应继续拒绝");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    /**
+     * 探测失败后重新打开
+     */
+    @Test
+    public void testFailedProbeReopens() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker(50);
+        for (int i = 0; i < 4; i++) {
+            breaker.onError(FAST);
+        }
+        TimeUnit.MILLISECONDS.sleep(80);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+}
@@ -0,0 +1,80 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 集群成员注册表测试类
+ */
+public class ClusterMembershipTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private StringRedisTemplate redisTemplate;
+    private ZSetOperations<String, String> zSet;
+    private ClusterMembership membership;
+    private final List<String> changes = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        RateLimitConfig config = new RateLimitConfig();
+        ReflectionTestUtils.setField(config, "distributedClusterSize", 1);
+        ReflectionTestUtils.setField(config, "membershipTtl", 15_000L);
+
+        redisTemplate = mock(StringRedisTemplate.class);
+        zSet = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(NOW);
+
+        membership = new ClusterMembership(redisTemplate, config, new SimpleMeterRegistry());
+        membership.addListener((oldSize, newSize) -> changes.add(oldSize + "->" + newSize));
+    }
+
+    /**
+     * 心跳写入本节点、清理过期节点，并在节点数变化时通知监听器
+     */
+    @Test
+    public void testHeartbeatUpdatesClusterSize() {
+        when(zSet.zCard(anyString())).thenReturn(3L);
+
+        membership.heartbeat();
+
+        verify(zSet).add("rate_limiter:members", membership.getNodeId(), NOW);
+        verify(zSet).removeRangeByScore("rate_limiter:members", 0, NOW - 15_000L);
+        assertEquals(3, membership.getClusterSize());
+
+        // 节点数不变时不重复通知
+        membership.heartbeat();
+        assertEquals(List.of("1->3"), changes);
+    }
+
+    /**
+     * Redis不可用时保留上一次的节点数
+     */
+    @Test
+    public void testKeepsLastSizeWhenRedisFails() {
+        when(zSet.zCard(anyString())).thenReturn(4L);
+        membership.heartbeat();
+
+        when(zSet.zCard(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        membership.heartbeat();
+
+        assertEquals(4, membership.getClusterSize());
+        assertEquals(List.of("1->4"), changes);
+    }
+}
@@ -0,0 +1,142 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.service.DistributedRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分布式限流器降级测试类
+ */
+public class DistributedRateLimiterTest {
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private MeterRegistry meterRegistry;
+    private DistributedRateLimiter limiter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        RateLimitConfig config = new RateLimitConfig();
+        ReflectionTestUtils.setField(config, "distributedLimitEnabled", true);
+        ReflectionTestUtils.setField(config, "distributedLimitLuaPath", "scripts/rate_limiter.lua");
+        ReflectionTestUtils.setField(config, "distributedClusterSize", 2);
+        ReflectionTestUtils.setField(config, "distributedCallTimeout", 100L);
+        ReflectionTestUtils.setField(config, "distributedCallThreads", 2);
+        ReflectionTestUtils.setField(config, "distributedCallQueueCapacity", 4);
+        ReflectionTestUtils.setField(config, "breakerWindowSize", 10);
+        ReflectionTestUtils.setField(config, "breakerMinimumCalls", 2);
+        ReflectionTestUtils.setField(config, "breakerFailureRateThreshold", 50.0);
+        ReflectionTestUtils.setField(config, "breakerSlowCall", 1000L);
+        ReflectionTestUtils.setField(config, "breakerSlowCallRateThreshold", 100.0);
+        ReflectionTestUtils.setField(config, "breakerOpenDuration", 60_000L);
+        ReflectionTestUtils.setField(config, "breakerHalfOpenProbes", 1);
+
+        redisTemplate = mock(RedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        ClusterMembership membership = new ClusterMembership(mock(StringRedisTemplate.class), config, meterRegistry);
+        limiter = new DistributedRateLimiter(redisTemplate, config, meterRegistry, membership);
+        limiter.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        limiter.destroy();
+    }
+
+    /**
+     * 脚本返回null时不抛出空指针，而是降级为本地限流
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNullResultFallsBackToLocal() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any())).thenReturn(null);
+
+        RateLimitStatus status = limiter.tryAcquireWithStatus("api", 20, 20);
+        assertTrue(status.isAllowed());
+        // 本地降级速率为 20 / 2个节点
+        assertEquals(10, status.getLimit());
+    }
+
+    /**
+     * Redis持续失败时熔断，之后不再调用Redis
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBreakerOpensAndSkipsRedis() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("api", 20, 20);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, limiter.getCircuitBreakerState());
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), anyList(), (Object[]) any());
+        assertEquals(1, meterRegistry.get("rate_limiter_circuit_breaker_transitions_total")
+                .tag("to", "OPEN").counter().count());
+        assertEquals(3, meterRegistry.get("rate_limiter_distributed_fallback_total")
+                .tag("reason", "open").counter().count());
+    }
+
+    /**
+     * Redis正常时使用脚本返回的令牌桶状态
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUsesScriptResult() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any()))
+                .thenReturn(List.of(0L, 0L, 150L, 2000L));
+
+        RateLimitStatus status = limiter.tryAcquireWithStatus("api", 20, 20);
+        assertFalse(status.isAllowed());
+        assertEquals(150, status.getRetryAfterMs());
+        assertEquals(CircuitBreaker.State.CLOSED, limiter.getCircuitBreakerState());
+    }
+
+    /**
+     * Redis挂起时请求线程只等待call-timeout，超时计为失败，连续超时后熔断
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHungRedisTimesOutAndOpensBreaker() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.of(1L, 19L, 0L, 0L);
+        });
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                long start = System.nanoTime();
+                RateLimitStatus status = limiter.tryAcquireWithStatus("api", 20, 20);
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue(elapsedMillis < 1000, "请求线程不应等待Redis客户端超时: " + elapsedMillis + "ms");
+                assertTrue(status.isAllowed());
+                assertEquals(10, status.getLimit(), "超时后应使用本地降级限流器");
+            }
+
+            assertEquals(CircuitBreaker.State.OPEN, limiter.getCircuitBreakerState());
+            assertEquals(2, meterRegistry.get("rate_limiter_distributed_fallback_total")
+                    .tag("reason", "timeout").counter().count());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地令牌桶限流器测试类
+ */
+public class LocalRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private LocalRateLimiter newLimiter(double qps, long warmupNanos) {
+        return LocalRateLimiter.create(qps, warmupNanos, clock::get, clock::addAndGet);
+    }
+
+    /**
+     * 长时间空闲后剩余令牌数不超过每秒限额，并随获取递减
+     */
+    @Test
+    public void testRemainingCappedAtLimit() {
+        LocalRateLimiter limiter = newLimiter(5, 0);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        RateLimitStatus idle = limiter.getStatus(true);
+        assertEquals(5, idle.getLimit());
+        assertEquals(5, idle.getRemaining(), "剩余令牌数不应超过限额");
+        assertEquals(5.0, limiter.getAvailablePermits());
+
+        assertTrue(limiter.tryAcquire());
+        assertEquals(5, limiter.getStatus(true).getRemaining(), "积累的令牌加上下一个令牌仍为5");
+        assertTrue(limiter.tryAcquire(4));
+        assertEquals(1, limiter.getStatus(true).getRemaining());
+    }
+
+    /**
+     * 令牌耗尽后拒绝请求，并给出下一个令牌的等待时间
+     */
+    @Test
+    public void testRetryAfterWhenExhausted() {
+        LocalRateLimiter limiter = newLimiter(2, 0);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        RateLimitStatus rejected = limiter.getStatus(false);
+        assertFalse(rejected.isAllowed());
+        assertEquals(0, rejected.getRemaining());
+        assertEquals(1, rejected.getRetryAfterSeconds());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire(1, 1, TimeUnit.SECONDS), "超时时间内可等待下一个令牌");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), clock.get());
+    }
+
+    /**
+     * 预热模式冷启动时发放间隔大于稳定间隔，积满后才恢复冷状态
+     */
+    @Test
+    public void testWarmupStartsCold() {
+        LocalRateLimiter limiter = newLimiter(10, TimeUnit.SECONDS.toNanos(1));
+        long start = clock.get();
+        limiter.acquire();
+        limiter.acquire();
+        long coldInterval = clock.get() - start;
+        assertTrue(coldInterval > TimeUnit.MILLISECONDS.toNanos(100),
+                "冷启动时的令牌间隔应大于稳定间隔: " + coldInterval);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+        }
+        long before = clock.get();
+        limiter.acquire();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), clock.get() - before, "预热结束后按稳定间隔发放");
+    }
+
+    /**
+     * 调整速率后限额随之变化
+     */
+    @Test
+    public void testSetRate() {
+        LocalRateLimiter limiter = newLimiter(5, 0);
+        limiter.setRate(20);
+        assertEquals(20.0, limiter.getRate());
+        assertEquals(20, limiter.getStatus(true).getLimit());
+        assertThrows(IllegalArgumentException.class, () -> limiter.setRate(0));
+    }
+}
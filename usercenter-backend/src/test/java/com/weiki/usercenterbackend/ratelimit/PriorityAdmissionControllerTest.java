@@ -0,0 +1,125 @@
+package com.weiki.usercenterbackend.ratelimit;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 优先级准入控制测试类
+ */
+public class PriorityAdmissionControllerTest {
+
+    private RateLimitConfig rateLimitConfig;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        rateLimitConfig = new RateLimitConfig();
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionEnabled", true);
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionMaxConcurrency", 10);
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionQps", 1000);
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionReservedRatio", 0.3);
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionProtectedPriority", 8);
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionCodelTarget", 5L);
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionCodelInterval", 0L);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /**
+     * 并发接近上限时，低优先级先被拒绝，高优先级仍可使用预留余量
+     */
+    @Test
+    public void testReservedHeadroomForHighPriority() {
+        PriorityAdmissionController controller = new PriorityAdmissionController(rateLimitConfig, meterRegistry);
+
+        // 最低优先级最多占用70%的并发
+        int admittedLow = 0;
+        while (controller.tryAdmit(1, 0)) {
+            admittedLow++;
+        }
+        assertEquals(7, admittedLow, "优先级1最多只能使用70%的并发预算");
+
+        // 最高优先级可以使用剩余的预留余量
+        assertTrue(controller.tryAdmit(10, 0));
+        assertTrue(controller.tryAdmit(10, 0));
+        assertTrue(controller.tryAdmit(10, 0));
+        assertFalse(controller.tryAdmit(10, 0), "总并发不能超过上限");
+
+        controller.release();
+        assertEquals(9, controller.getInFlight());
+        assertEquals(1.0, meterRegistry.get("http_requests_admission_shed_total")
+                .tag("priority", "1").tag("reason", "concurrency").counter().count());
+    }
+
+    /**
+     * QPS令牌桶同样为高优先级预留余量，拒绝不消耗令牌
+     */
+    @Test
+    public void testQpsBucketReservesHeadroom() {
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionQps", 10);
+        PriorityAdmissionController controller = new PriorityAdmissionController(rateLimitConfig, meterRegistry);
+
+        int admittedLow = 0;
+        while (controller.tryAdmit(1, 0)) {
+            controller.release();
+            admittedLow++;
+        }
+        assertEquals(7, admittedLow, "优先级1最多只能使用70%的QPS预算");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(controller.tryAdmit(10, 0));
+            controller.release();
+        }
+        assertFalse(controller.tryAdmit(10, 0), "令牌桶已空");
+        assertEquals(1.0, meterRegistry.get("http_requests_admission_shed_total")
+                .tag("priority", "10").tag("reason", "qps").counter().count());
+    }
+
+    /**
+     * 排队延迟持续超过目标值时逐级丢弃低优先级，受保护的优先级不受影响
+     */
+    @Test
+    public void testCodelShedsLowPriorityFirst() {
+        PriorityAdmissionController controller = new PriorityAdmissionController(rateLimitConfig, meterRegistry);
+        long slow = TimeUnit.MILLISECONDS.toNanos(50);
+
+        // 持续高延迟，阈值逐步升高直到受保护优先级以下
+        for (int i = 0; i < 20; i++) {
+            if (controller.tryAdmit(10, slow)) {
+                controller.release();
+            }
+        }
+        assertEquals(7, controller.getShedCutoff());
+        assertFalse(controller.tryAdmit(3, slow), "免费用户请求应被丢弃");
+        assertTrue(controller.tryAdmit(8, slow), "受保护优先级不应因排队延迟被丢弃");
+        controller.release();
+
+        // 延迟恢复后逐级放开
+        for (int i = 0; i < 20; i++) {
+            if (controller.tryAdmit(10, 0)) {
+                controller.release();
+            }
+        }
+        assertEquals(0, controller.getShedCutoff());
+        assertTrue(controller.tryAdmit(1, 0));
+    }
+
+    /**
+     * 关闭准入控制时所有请求直接放行
+     */
+    @Test
+    public void testDisabled() {
+        ReflectionTestUtils.setField(rateLimitConfig, "admissionEnabled", false);
+        PriorityAdmissionController controller = new PriorityAdmissionController(rateLimitConfig, meterRegistry);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(controller.tryAdmit(1, TimeUnit.SECONDS.toNanos(1)));
+        }
+        assertEquals(0, controller.getInFlight());
+    }
+}
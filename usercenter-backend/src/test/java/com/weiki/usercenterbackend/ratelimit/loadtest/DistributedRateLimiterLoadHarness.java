@@ -0,0 +1,282 @@
+package com.weiki.usercenterbackend.ratelimit.loadtest;
+
+import com.weiki.usercenterbackend.config.RateLimitConfig;
+import com.weiki.usercenterbackend.ratelimit.ClusterMembership;
+import com.weiki.usercenterbackend.service.DistributedRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式限流器压测工具
+ * 启动N个模拟节点（各自独立的DistributedRateLimiter和熔断器），每个节点M个线程不间断地争抢同一个限流键，
+ * 所有节点共享一个进程内的Redis替身。统计实际放行速率与配置速率的偏差、单次限流判断的p50/p99延迟和Redis命令吞吐量。
+ *
+ * 参数通过系统属性配置，例如：
+ * mvn test -Dtest=DistributedRateLimiterLoadTest -Dloadtest.nodes=4 -Dloadtest.threads=16 -Dloadtest.duration=10000
+ */
+public final class DistributedRateLimiterLoadHarness {
+
+    private static final String LUA_PATH = "scripts/rate_limiter.lua";
+    private static final String LIMIT_KEY = "loadtest";
+
+    /**
+     * 每个线程最多保留的延迟样本数，超过后不再记录
+     */
+    private static final int MAX_SAMPLES_PER_THREAD = 1 << 20;
+
+    private DistributedRateLimiterLoadHarness() {
+    }
+
+    /**
+     * 压测参数
+     */
+    public static final class Options {
+        int nodes = 2;
+        int threadsPerNode = 4;
+        double rate = 500;
+        double capacity = 500;
+        long durationMillis = 2000;
+        long rttMicros = 100;
+
+        /**
+         * 以默认值为基础，读取loadtest.*系统属性
+         */
+        public static Options fromSystemProperties() {
+            Options options = new Options();
+            options.nodes = Integer.getInteger("loadtest.nodes", options.nodes);
+            options.threadsPerNode = Integer.getInteger("loadtest.threads", options.threadsPerNode);
+            options.rate = Double.parseDouble(System.getProperty("loadtest.rate", String.valueOf(options.rate)));
+            options.capacity = Double.parseDouble(
+                    System.getProperty("loadtest.capacity", String.valueOf(options.capacity)));
+            options.durationMillis = Long.getLong("loadtest.duration", options.durationMillis);
+            options.rttMicros = Long.getLong("loadtest.rtt-micros", options.rttMicros);
+            return options;
+        }
+    }
+
+    /**
+     * 压测结果
+     */
+    public static final class Report {
+        final Options options;
+        final long attempts;
+        final long admitted;
+        final long elapsedNanos;
+        final long redisCommands;
+        final double fallbacks;
+        final long p50Nanos;
+        final long p99Nanos;
+
+        Report(Options options, long attempts, long admitted, long elapsedNanos, long redisCommands,
+               double fallbacks, long p50Nanos, long p99Nanos) {
+            this.options = options;
+            this.attempts = attempts;
+            this.admitted = admitted;
+            this.elapsedNanos = elapsedNanos;
+            this.redisCommands = redisCommands;
+            this.fallbacks = fallbacks;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        double elapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        /**
+         * 理论放行数：初始满桶的令牌加上压测期间生成的令牌
+         */
+        public double expectedAdmitted() {
+            return options.capacity + options.rate * elapsedSeconds();
+        }
+
+        /**
+         * 实际放行数与理论放行数之比，1.0表示完全准确
+         */
+        public double accuracy() {
+            return admitted / expectedAdmitted();
+        }
+
+        public double admittedRate() {
+            return admitted / elapsedSeconds();
+        }
+
+        public double redisOpsPerSecond() {
+            return redisCommands / elapsedSeconds();
+        }
+
+        public double getFallbacks() {
+            return fallbacks;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("节点数=%d, 每节点线程数=%d, 配置速率=%.0f/s, 桶容量=%.0f, 模拟RTT=%dus, 时长=%.2fs%n"
+                            + "  尝试次数=%d, 放行数=%d, 理论放行数=%.0f, 准确度=%.4f, 放行速率=%.1f/s%n"
+                            + "  判断延迟 p50=%.1fus p99=%.1fus, Redis命令=%.0f ops/s, 降级次数=%.0f",
+                    options.nodes, options.threadsPerNode, options.rate, options.capacity, options.rttMicros,
+                    elapsedSeconds(), attempts, admitted, expectedAdmitted(), accuracy(), admittedRate(),
+                    p50Nanos / 1e3, p99Nanos / 1e3, redisOpsPerSecond(), fallbacks);
+        }
+    }
+
+    /**
+     * 执行一次压测
+     */
+    public static Report run(Options options) throws InterruptedException {
+        FakeRedisTemplate redis = new FakeRedisTemplate(options.rttMicros);
+        DefaultRedisScript<?> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_PATH)));
+        redis.registerScript(script, new RateLimiterScriptEmulator());
+
+        List<SimpleMeterRegistry> registries = new ArrayList<>();
+        List<DistributedRateLimiter> nodes = new ArrayList<>();
+        for (int i = 0; i < options.nodes; i++) {
+            RateLimitConfig config = nodeConfig(options);
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            ClusterMembership membership = new ClusterMembership(new StringRedisTemplate(), config, registry);
+            DistributedRateLimiter limiter = new DistributedRateLimiter(redis, config, registry, membership);
+            limiter.init();
+            registries.add(registry);
+            nodes.add(limiter);
+        }
+
+        int threadCount = options.nodes * options.threadsPerNode;
+        Worker[] workers = new Worker[threadCount];
+        CountDownLatch ready = new CountDownLatch(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(nodes.get(i / options.threadsPerNode), options, ready, start);
+            threads[i] = new Thread(workers[i], "loadtest-" + i);
+            threads[i].start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.MILLISECONDS.toNanos(options.durationMillis);
+        for (Worker worker : workers) {
+            worker.deadline = deadline;
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long attempts = 0;
+        long admitted = 0;
+        int sampleCount = 0;
+        for (Worker worker : workers) {
+            attempts += worker.attempts;
+            admitted += worker.admitted;
+            sampleCount += worker.sampleCount;
+        }
+        long[] samples = new long[sampleCount];
+        int offset = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.samples, 0, samples, offset, worker.sampleCount);
+            offset += worker.sampleCount;
+        }
+        Arrays.sort(samples);
+
+        double fallbacks = 0;
+        for (SimpleMeterRegistry registry : registries) {
+            for (Counter counter : registry.find("rate_limiter_distributed_fallback_total").counters()) {
+                fallbacks += counter.count();
+            }
+        }
+
+        return new Report(options, attempts, admitted, elapsed, redis.getCommandCount(), fallbacks,
+                percentile(samples, 0.50), percentile(samples, 0.99));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    /**
+     * 模拟节点的配置：启用分布式限流，熔断阈值足够宽松，压测期间不应熔断
+     */
+    private static RateLimitConfig nodeConfig(Options options) {
+        RateLimitConfig config = new RateLimitConfig();
+        ReflectionTestUtils.setField(config, "distributedLimitEnabled", true);
+        ReflectionTestUtils.setField(config, "distributedLimitLuaPath", LUA_PATH);
+        ReflectionTestUtils.setField(config, "distributedClusterSize", options.nodes);
+        ReflectionTestUtils.setField(config, "distributedCallTimeout", 1000L);
+        ReflectionTestUtils.setField(config, "distributedCallThreads", options.threadsPerNode);
+        ReflectionTestUtils.setField(config, "distributedCallQueueCapacity", options.threadsPerNode);
+        ReflectionTestUtils.setField(config, "breakerWindowSize", 100);
+        ReflectionTestUtils.setField(config, "breakerMinimumCalls", 100);
+        ReflectionTestUtils.setField(config, "breakerFailureRateThreshold", 50.0);
+        ReflectionTestUtils.setField(config, "breakerSlowCall", 1000L);
+        ReflectionTestUtils.setField(config, "breakerSlowCallRateThreshold", 100.0);
+        ReflectionTestUtils.setField(config, "breakerOpenDuration", 5000L);
+        ReflectionTestUtils.setField(config, "breakerHalfOpenProbes", 3);
+        return config;
+    }
+
+    /**
+     * 压测线程：不间断地以非阻塞方式获取令牌，记录每次判断的耗时
+     */
+    private static final class Worker implements Runnable {
+        private final DistributedRateLimiter limiter;
+        private final Options options;
+        private final CountDownLatch ready;
+        private final CountDownLatch start;
+        private long[] samples = new long[4096];
+        private volatile long deadline;
+        private int sampleCount;
+        private long attempts;
+        private long admitted;
+
+        Worker(DistributedRateLimiter limiter, Options options, CountDownLatch ready, CountDownLatch start) {
+            this.limiter = limiter;
+            this.options = options;
+            this.ready = ready;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            ready.countDown();
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long end = deadline;
+            long now = System.nanoTime();
+            while (now < end) {
+                boolean allowed = limiter.tryAcquire(LIMIT_KEY, options.capacity, options.rate);
+                long after = System.nanoTime();
+                attempts++;
+                if (allowed) {
+                    admitted++;
+                }
+                if (sampleCount == samples.length && samples.length < MAX_SAMPLES_PER_THREAD) {
+                    samples = Arrays.copyOf(samples, samples.length * 2);
+                }
+                if (sampleCount < samples.length) {
+                    samples[sampleCount++] = after - now;
+                }
+                now = after;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.weiki.usercenterbackend.ratelimit.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分布式限流器压测
+ * 依赖真实时间且耗时数秒，默认的mvn test不执行；设置任意loadtest.*系统属性时才运行，例如：
+ * mvn test -Dtest=DistributedRateLimiterLoadTest -Dloadtest.duration=2000
+ */
+@Slf4j
+@EnabledIf("loadTestRequested")
+public class DistributedRateLimiterLoadTest {
+
+    /**
+     * 多节点并发争抢同一个限流键时，实际放行数应与令牌桶理论值一致
+     */
+    @Test
+    public void testAdmittedRateMatchesConfiguredRate() throws InterruptedException {
+        DistributedRateLimiterLoadHarness.Report report = DistributedRateLimiterLoadHarness.run(
+                DistributedRateLimiterLoadHarness.Options.fromSystemProperties());
+        log.info("分布式限流压测结果: {}", report);
+
+        assertEquals(0, report.getFallbacks(), "压测期间不应降级为本地限流");
+        assertTrue(report.accuracy() > 0.95 && report.accuracy() < 1.05,
+                "放行数与理论值的偏差应在5%以内，实际准确度: " + report.accuracy());
+    }
+
+    static boolean loadTestRequested() {
+        return System.getProperties().stringPropertyNames().stream().anyMatch(name -> name.startsWith("loadtest."));
+    }
+}
@@ -0,0 +1,135 @@
+package com.weiki.usercenterbackend.ratelimit.loadtest;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的Redis替身，只支持EVAL
+ * 脚本按SHA1注册为Java实现，所有脚本在同一把锁内串行执行，与Redis单线程执行Lua脚本的原子性一致。
+ * 参数按Redis收到的形式转换为字符串，往返网络延迟在锁外模拟，不占用"Redis"的执行时间
+ */
+public class FakeRedisTemplate extends RedisTemplate<String, Object> {
+
+    /**
+     * 脚本的Java实现
+     */
+    public interface ScriptHandler {
+        Object eval(FakeRedisTemplate redis, List<String> keys, List<String> args);
+    }
+
+    private final Map<String, ScriptHandler> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * 以下数据只在执行脚本时访问，由this保护
+     */
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private final Map<String, Long> expireAt = new HashMap<>();
+
+    private final AtomicLong commands = new AtomicLong();
+    private final long halfRttNanos;
+
+    /**
+     * @param rttMicros 模拟的客户端到Redis的往返延迟（微秒）
+     */
+    public FakeRedisTemplate(long rttMicros) {
+        this.halfRttNanos = TimeUnit.MICROSECONDS.toNanos(rttMicros) / 2;
+    }
+
+    /**
+     * 注册脚本实现
+     *
+     * @param script 脚本，按其SHA1匹配EVAL/EVALSHA调用
+     * @param handler Java实现
+     */
+    public void registerScript(RedisScript<?> script, ScriptHandler handler) {
+        scripts.put(script.getSha1(), handler);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        ScriptHandler handler = scripts.get(script.getSha1());
+        if (handler == null) {
+            throw new InvalidDataAccessApiUsageException("NOSCRIPT No matching script: " + script.getSha1());
+        }
+        List<String> argList = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            argList.add(String.valueOf(arg));
+        }
+
+        pause();
+        Object result;
+        synchronized (this) {
+            commands.incrementAndGet();
+            result = handler.eval(this, keys, argList);
+        }
+        pause();
+        return (T) result;
+    }
+
+    /**
+     * 已执行的命令数（每次EVAL计为一次）
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * HMGET，只能在脚本实现中调用
+     */
+    public List<String> hmget(String key, String... fields) {
+        Map<String, String> hash = liveHash(key);
+        List<String> values = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            values.add(hash == null ? null : hash.get(field));
+        }
+        return values;
+    }
+
+    /**
+     * HMSET，只能在脚本实现中调用
+     */
+    public void hmset(String key, Map<String, String> values) {
+        Map<String, String> hash = liveHash(key);
+        if (hash == null) {
+            hash = new HashMap<>();
+            hashes.put(key, hash);
+        }
+        hash.putAll(values);
+    }
+
+    /**
+     * EXPIRE，只能在脚本实现中调用
+     */
+    public void expire(String key, long seconds) {
+        if (liveHash(key) != null) {
+            expireAt.put(key, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds));
+        }
+    }
+
+    private Map<String, String> liveHash(String key) {
+        Long deadline = expireAt.get(key);
+        if (deadline != null && deadline <= System.currentTimeMillis()) {
+            hashes.remove(key);
+            expireAt.remove(key);
+            return null;
+        }
+        return hashes.get(key);
+    }
+
+    private void pause() {
+        if (halfRttNanos > 0) {
+            LockSupport.parkNanos(halfRttNanos);
+        }
+    }
+}
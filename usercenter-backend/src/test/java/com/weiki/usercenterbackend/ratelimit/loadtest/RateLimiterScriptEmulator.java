@@ -0,0 +1,76 @@
+package com.weiki.usercenterbackend.ratelimit.loadtest;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * scripts/rate_limiter.lua 的Java实现，逐行对应原脚本
+ * 与Redis中的行为保持一致：HMSET写入的数字按Lua的%.14g格式转为字符串，返回值中的数字按Redis规则截断为整数
+ */
+public class RateLimiterScriptEmulator implements FakeRedisTemplate.ScriptHandler {
+
+    private static final MathContext LUA_NUMBER_FORMAT = new MathContext(14);
+
+    @Override
+    public Object eval(FakeRedisTemplate redis, List<String> keys, List<String> args) {
+        String key = keys.get(0);
+        List<String> bucket = redis.hmget(key, "last_tokens", "last_refreshed");
+        Double lastTokens = toNumber(bucket.get(0));
+        Double lastRefreshed = toNumber(bucket.get(1));
+
+        double capacity = toNumber(args.get(0));
+        double rate = toNumber(args.get(1));
+        double requested = toNumber(args.get(2));
+        double now = toNumber(args.get(3));
+        long ttl = toNumber(args.get(4)).longValue();
+
+        if (lastTokens == null || lastRefreshed == null) {
+            lastTokens = capacity;
+            lastRefreshed = now;
+        }
+
+        if (now < lastRefreshed) {
+            now = lastRefreshed;
+        }
+
+        double delta = now - lastRefreshed;
+        double currentTokens = Math.min(capacity, lastTokens + (rate * delta / 1000));
+
+        boolean allowed = currentTokens >= requested;
+        if (allowed) {
+            currentTokens = currentTokens - requested;
+            Map<String, String> values = new HashMap<>();
+            values.put("last_tokens", toLuaString(currentTokens));
+            values.put("last_refreshed", toLuaString(now));
+            redis.hmset(key, values);
+        }
+        redis.expire(key, ttl);
+
+        double retryAfter = 0;
+        if (!allowed) {
+            retryAfter = Math.ceil((requested - currentTokens) * 1000 / rate);
+        }
+        double reset = Math.ceil((capacity - currentTokens) * 1000 / rate);
+
+        return Arrays.asList(allowed ? 1L : 0L, (long) Math.floor(currentTokens), (long) retryAfter, (long) reset);
+    }
+
+    private static Double toNumber(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String toLuaString(double value) {
+        return new BigDecimal(value).round(LUA_NUMBER_FORMAT).stripTrailingZeros().toPlainString();
+    }
+}
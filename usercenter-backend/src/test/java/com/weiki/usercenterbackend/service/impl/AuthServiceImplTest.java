@@ -0,0 +1,121 @@
+package com.weiki.usercenterbackend.service.impl;
+
+import com.weiki.usercenterbackend.exception.JwtAuthenticationException;
+import com.weiki.usercenterbackend.model.dto.TokenDTO;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.TokenBlacklist;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 认证服务测试类
+ */
+public class AuthServiceImplTest {
+
+    private StringRedisTemplate redisTemplate;
+    private JwtUtils jwtUtils;
+    private AuthServiceImpl authService;
+
+    @BeforeEach
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyWithAtLeast256BitsForHmacSha256");
+        jwtUtils.init();
+        authService = new AuthServiceImpl(jwtUtils, redisTemplate, mock(TokenBlacklist.class));
+        ReflectionTestUtils.setField(authService, "maxDevices", 10);
+        ReflectionTestUtils.setField(authService, "reuseGraceMillis", 2000L);
+        authService.init();
+    }
+
+    /**
+     * 刷新令牌在族内轮换，每次刷新只执行一次脚本；新令牌属于同一令牌族，jti与脚本中写入的一致
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRefreshRotatesWithinFamilyInOneCall() {
+        List<Object[]> calls = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any())).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            calls.add(Arrays.copyOfRange(arguments, 2, arguments.length));
+            return calls.size() == 1 ? 0L : 1L;
+        });
+        TokenDTO login = authService.login("user", "password");
+        VerifiedToken first = jwtUtils.parseToken(login.getRefreshToken()).orElseThrow(AssertionError::new);
+
+        TokenDTO refreshed = authService.refreshToken(login.getRefreshToken());
+        VerifiedToken second = jwtUtils.parseToken(refreshed.getRefreshToken()).orElseThrow(AssertionError::new);
+        assertEquals(first.getFamilyId(), second.getFamilyId());
+        assertNotEquals(first.getJti(), second.getJti());
+
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), eq(Collections.singletonList("token:refresh:1")),
+                (Object[]) any());
+        // 轮换脚本参数：令牌族、提交的jti、新jti
+        assertArrayEquals(new Object[]{first.getFamilyId(), first.getJti(), second.getJti()},
+                Arrays.copyOf(calls.get(1), 3));
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    /**
+     * 脚本检测到重复使用或并发提交时拒绝刷新
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReusedRefreshTokenRejected() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any())).thenReturn(0L, -1L, 2L);
+        String refreshToken = authService.login("user", "password").getRefreshToken();
+
+        JwtAuthenticationException reused = assertThrows(JwtAuthenticationException.class,
+                () -> authService.refreshToken(refreshToken));
+        assertEquals("刷新令牌已失效，请重新登录", reused.getMessage());
+        JwtAuthenticationException concurrent = assertThrows(JwtAuthenticationException.class,
+                () -> authService.refreshToken(refreshToken));
+        assertEquals("刷新令牌已被使用，请使用最新的刷新令牌", concurrent.getMessage());
+
+        // 没有令牌族的旧刷新令牌不访问Redis
+        assertThrows(JwtAuthenticationException.class, () -> authService.refreshToken(jwtUtils.generateRefreshToken(1L)));
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), anyList(), (Object[]) any());
+    }
+
+    /**
+     * /user/login 签发的令牌属于新的令牌族，注销时只撤销该令牌族
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIssueAndRevokeTokenFamily() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), (Object[]) any())).thenReturn(0L);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+
+        TokenDTO tokens = authService.issueTokens(5L, 1, 0);
+        VerifiedToken access = jwtUtils.parseToken(tokens.getAccessToken()).orElseThrow(AssertionError::new);
+        assertEquals(1, access.getUserRole());
+        VerifiedToken refresh = jwtUtils.parseToken(tokens.getRefreshToken()).orElseThrow(AssertionError::new);
+        assertTrue(refresh.isRefreshToken());
+        verify(redisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList("token:refresh:5")),
+                (Object[]) any());
+
+        authService.revokeRefreshToken(tokens.getRefreshToken());
+        verify(hashOperations).delete("token:refresh:5", refresh.getFamilyId());
+        // 访问令牌不能用于撤销令牌族
+        authService.revokeRefreshToken(tokens.getAccessToken());
+        verify(hashOperations, times(1)).delete(anyString(), any());
+    }
+}
@@ -0,0 +1,148 @@
+package com.weiki.usercenterbackend.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.RedissonMultiLock;
+import org.redisson.api.RLock;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis分布式锁服务测试类
+ */
+public class DistributedLockServiceImplTest {
+
+    private RedissonClient redissonClient;
+    private DistributedLockServiceImpl lockService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        redissonClient = mock(RedissonClient.class);
+        lockService = new DistributedLockServiceImpl();
+        ReflectionTestUtils.setField(lockService, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(lockService, "handleExpireMinutes", 10L);
+        ReflectionTestUtils.setField(lockService, "handleMaximumSize", 2L);
+        lockService.init();
+    }
+
+    /**
+     * 未指定租期时以-1调用Redisson，启用看门狗续期
+     */
+    @Test
+    public void testWatchdogModePassesMinusOne() throws InterruptedException {
+        RLock lock = mockLock();
+        when(redissonClient.getLock("lock:a")).thenReturn(lock);
+
+        assertTrue(lockService.tryLock("lock:a", 100, -1, TimeUnit.MILLISECONDS, false));
+        verify(lock).tryLock(100, -1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 锁对象缓存有容量上限，持有中的锁被淘汰出缓存后仍用加锁时的锁对象解锁
+     */
+    @Test
+    public void testHeldLockSurvivesHandleEviction() throws InterruptedException {
+        RLock fairLock = mockLock();
+        when(redissonClient.getFairLock("lock:held")).thenReturn(fairLock);
+        when(redissonClient.getLock(anyString())).thenAnswer(invocation -> mockLock());
+
+        assertTrue(lockService.tryLock("lock:held", 0, -1, TimeUnit.MILLISECONDS, true));
+        for (int i = 0; i < 10; i++) {
+            String key = "lock:other:" + i;
+            lockService.tryLock(key, 0, -1, TimeUnit.MILLISECONDS, false);
+            lockService.unlock(key);
+        }
+        assertTrue(lockService.getLockCount() <= 2, "锁对象缓存不应超过容量上限");
+        assertEquals(1, lockService.getLockUseCount("lock:held"));
+
+        lockService.unlock("lock:held");
+        verify(fairLock).unlock();
+        assertEquals(0, lockService.getLockUseCount("lock:held"));
+    }
+
+    /**
+     * 租期过期后解锁仍清除持有记录，不再调用Redisson解锁
+     */
+    @Test
+    public void testExpiredLeaseStillClearsHeldEntry() throws InterruptedException {
+        RLock lock = mockLock();
+        when(redissonClient.getLock("lock:expired")).thenReturn(lock);
+
+        assertTrue(lockService.tryLock("lock:expired", 0, 100, TimeUnit.MILLISECONDS, false));
+        assertEquals(1, lockService.getLockUseCount("lock:expired"));
+
+        when(lock.isHeldByCurrentThread()).thenReturn(false);
+        lockService.unlock("lock:expired");
+        assertEquals(0, lockService.getLockUseCount("lock:expired"));
+        verify(lock, never()).unlock();
+    }
+
+    /**
+     * 信号量第一次使用时设置许可数量，未指定租期时使用默认租期
+     */
+    @Test
+    public void testSemaphoreUsesDefaultLease() throws InterruptedException {
+        ReflectionTestUtils.setField(lockService, "semaphoreDefaultLease", 30000L);
+        RPermitExpirableSemaphore semaphore = mock(RPermitExpirableSemaphore.class);
+        when(redissonClient.getPermitExpirableSemaphore("lock:semaphore")).thenReturn(semaphore);
+        when(semaphore.tryAcquire(anyLong(), anyLong(), any(TimeUnit.class))).thenReturn("permit-1");
+        when(semaphore.tryRelease("permit-1")).thenReturn(true);
+
+        assertEquals("permit-1", lockService.tryAcquirePermit("lock:semaphore", 3, 100, -1, TimeUnit.MILLISECONDS));
+        lockService.tryAcquirePermit("lock:semaphore", 3, 100, -1, TimeUnit.MILLISECONDS);
+        verify(semaphore, times(1)).trySetPermits(3);
+        verify(semaphore, times(2)).tryAcquire(100, 30000, TimeUnit.MILLISECONDS);
+
+        lockService.releasePermit("lock:semaphore", "permit-1");
+        verify(semaphore).tryRelease("permit-1");
+    }
+
+    /**
+     * 批量加锁按字典序依次获取，未指定租期时每把锁都以-1调用Redisson启用看门狗，成功后可以逐个解锁
+     */
+    @Test
+    public void testLockAllSortsKeysAndKeepsWatchdog() throws InterruptedException {
+        List<String> order = new ArrayList<>();
+        when(redissonClient.getLock(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            RLock lock = mockLock();
+            when(lock.tryLock(anyLong(), anyLong(), any(TimeUnit.class))).thenAnswer(call -> {
+                order.add(name);
+                assertEquals(-1L, (long) call.getArgument(1), "批量锁未指定租期时应启用看门狗");
+                return true;
+            });
+            return lock;
+        });
+        when(redissonClient.getMultiLock((RLock[]) any())).thenAnswer(invocation ->
+                new RedissonMultiLock(Arrays.copyOf(invocation.getArguments(), invocation.getArguments().length,
+                        RLock[].class)));
+
+        assertTrue(lockService.tryLockAll(Arrays.asList("lock:user:3", "lock:user:1", "lock:user:2", "lock:user:1"),
+                100, -1, TimeUnit.MILLISECONDS));
+
+        assertEquals(Arrays.asList("lock:user:1", "lock:user:2", "lock:user:3"), order);
+        assertEquals(1, lockService.getLockUseCount("lock:user:2"));
+
+        lockService.unlock("lock:user:2");
+        assertEquals(0, lockService.getLockUseCount("lock:user:2"));
+        lockService.unlockAll(Arrays.asList("lock:user:1", "lock:user:3"));
+        assertEquals(0, lockService.getLockUseCount("lock:user:1"));
+    }
+
+    private RLock mockLock() throws InterruptedException {
+        RLock lock = mock(RLock.class);
+        when(lock.tryLock(anyLong(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        when(lock.isHeldByCurrentThread()).thenReturn(true);
+        return lock;
+    }
+}
@@ -0,0 +1,182 @@
+package com.weiki.usercenterbackend.service.impl;
+
+import com.weiki.usercenterbackend.annotation.LockMode;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地锁服务测试类
+ */
+public class LocalLockServiceImplTest {
+
+    private final LocalLockServiceImpl lockService = new LocalLockServiceImpl();
+
+    @AfterEach
+    public void tearDown() {
+        lockService.shutdown();
+    }
+
+    /**
+     * 锁释放后条目从锁表中移除，大量不同的锁键不会让锁表无限增长
+     */
+    @Test
+    public void testLockTableStaysEmptyAfterRelease() {
+        for (int i = 0; i < 1000; i++) {
+            String key = "lock:user:" + i;
+            assertTrue(lockService.tryLock(key, 0, -1, TimeUnit.MILLISECONDS, false));
+            lockService.unlock(key);
+        }
+        assertEquals(0, lockService.getLockTableSize());
+    }
+
+    /**
+     * 同一线程可以重入，其他线程在完全释放前无法获取
+     */
+    @Test
+    public void testReentrantAndExclusive() throws Exception {
+        String key = "lock:reentrant";
+        assertTrue(lockService.tryLock(key, 0, -1, TimeUnit.MILLISECONDS, false));
+        assertTrue(lockService.tryLock(key, 0, -1, TimeUnit.MILLISECONDS, false));
+
+        lockService.unlock(key);
+        assertFalse(tryLockInOtherThread(key, 0), "重入一次解锁一次后锁仍被持有");
+
+        lockService.unlock(key);
+        assertTrue(tryLockInOtherThread(key, 0));
+        assertEquals(0, lockService.getLockTableSize());
+    }
+
+    /**
+     * 租期到期后由时间轮释放锁，原持有者之后的解锁不影响新的持有者
+     */
+    @Test
+    public void testLeaseExpiry() throws Exception {
+        String key = "lock:lease";
+        assertTrue(lockService.tryLock(key, 0, 50, TimeUnit.MILLISECONDS, false));
+
+        // 等待线程在租期到期后获取到锁
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            boolean acquired = lockService.tryLock(key, 2, -1, TimeUnit.SECONDS, false);
+            if (acquired) {
+                lockService.unlock(key);
+            }
+            return acquired;
+        });
+        assertTrue(waiter.get(3, TimeUnit.SECONDS));
+
+        // 过期后的解锁是空操作，时间轮线程释放原持有者的引用后锁表为空
+        lockService.unlock(key);
+        Awaitility.await().atMost(1, TimeUnit.SECONDS)
+                .untilAsserted(() -> assertEquals(0, lockService.getLockTableSize()));
+    }
+
+    /**
+     * 读锁之间共享，写锁与读锁互斥；全部释放后锁表为空
+     */
+    @Test
+    public void testReadWriteLock() throws Exception {
+        String key = "lock:rw";
+        assertTrue(lockService.tryReadLock(key, 0, -1, TimeUnit.MILLISECONDS));
+        assertTrue(CompletableFuture.supplyAsync(() -> {
+            boolean acquired = lockService.tryReadLock(key, 0, -1, TimeUnit.MILLISECONDS);
+            if (acquired) {
+                lockService.unlockRead(key);
+            }
+            return acquired;
+        }).get(5, TimeUnit.SECONDS), "读锁之间不应互斥");
+        assertFalse(CompletableFuture.supplyAsync(() -> lockService.tryWriteLock(key, 0, -1, TimeUnit.MILLISECONDS))
+                .get(5, TimeUnit.SECONDS), "持有读锁时不能获取写锁");
+
+        lockService.unlockRead(key);
+        assertTrue(lockService.tryWriteLock(key, 0, -1, TimeUnit.MILLISECONDS));
+        // 持有写锁的线程可以再获取读锁，同时持有读写锁时仍可以重入写锁
+        assertTrue(lockService.tryReadLock(key, 0, -1, TimeUnit.MILLISECONDS));
+        assertTrue(lockService.tryWriteLock(key, 0, -1, TimeUnit.MILLISECONDS));
+        lockService.unlockWrite(key);
+        lockService.unlockRead(key);
+        lockService.unlockWrite(key);
+        assertEquals(0, lockService.getLockTableSize());
+    }
+
+    /**
+     * 信号量最多发放permits个许可，释放后可以再次获取
+     */
+    @Test
+    public void testSemaphorePermits() {
+        String key = "lock:semaphore";
+        String first = lockService.tryAcquirePermit(key, 2, 0, -1, TimeUnit.MILLISECONDS);
+        String second = lockService.tryAcquirePermit(key, 2, 0, -1, TimeUnit.MILLISECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotEquals(first, second);
+        assertNull(lockService.tryAcquirePermit(key, 2, 0, -1, TimeUnit.MILLISECONDS));
+
+        lockService.releasePermit(key, first);
+        // 重复释放同一个许可不会多出许可
+        lockService.releasePermit(key, first);
+        String third = lockService.tryAcquirePermit(key, 2, 0, -1, TimeUnit.MILLISECONDS);
+        assertNotNull(third);
+        assertNull(lockService.tryAcquirePermit(key, 2, 0, -1, TimeUnit.MILLISECONDS));
+
+        lockService.releasePermit(key, second);
+        lockService.releasePermit(key, third);
+        assertEquals(0, lockService.getLockTableSize());
+    }
+
+    /**
+     * 剩余租期按加锁模式查询：信号量按许可查询，读锁不返回写锁的租期
+     */
+    @Test
+    public void testRemainingLeaseByMode() {
+        String key = "lock:lease";
+        String permitId = lockService.tryAcquirePermit(key, 1, 0, 30, TimeUnit.SECONDS);
+        long remaining = lockService.getRemainingLeaseTime(key, LockMode.SEMAPHORE, permitId);
+        assertTrue(remaining > 20_000 && remaining <= 30_000, "信号量许可的剩余租期: " + remaining);
+        assertEquals(-1, lockService.getRemainingLeaseTime(key, LockMode.EXCLUSIVE, null));
+        lockService.releasePermit(key, permitId);
+        assertEquals(-1, lockService.getRemainingLeaseTime(key, LockMode.SEMAPHORE, permitId));
+
+        assertTrue(lockService.tryReadLock(key, 0, 10, TimeUnit.SECONDS));
+        remaining = lockService.getRemainingLeaseTime(key, LockMode.READ, null);
+        assertTrue(remaining > 0 && remaining <= 10_000, "读锁的剩余租期: " + remaining);
+        assertEquals(-1, lockService.getRemainingLeaseTime(key, LockMode.WRITE, null));
+        lockService.unlockRead(key);
+    }
+
+    /**
+     * 批量加锁全部成功或全部失败，失败时已获取的锁被释放
+     */
+    @Test
+    public void testLockAllIsAllOrNothing() throws Exception {
+        assertTrue(lockService.tryLock("lock:user:2", 0, -1, TimeUnit.MILLISECONDS, false));
+        assertFalse(CompletableFuture.supplyAsync(() -> lockService.tryLockAll(
+                Arrays.asList("lock:user:3", "lock:user:1", "lock:user:2"), 0, -1, TimeUnit.MILLISECONDS))
+                .get(5, TimeUnit.SECONDS));
+        assertTrue(tryLockInOtherThread("lock:user:1", 0), "失败时应释放已获取的锁");
+
+        lockService.unlock("lock:user:2");
+        List<String> keys = Arrays.asList("lock:user:3", "lock:user:1", "lock:user:2");
+        assertTrue(lockService.tryLockAll(keys, 0, -1, TimeUnit.MILLISECONDS));
+        assertFalse(tryLockInOtherThread("lock:user:3", 0));
+        lockService.unlockAll(keys);
+        assertEquals(0, lockService.getLockTableSize());
+    }
+
+    private boolean tryLockInOtherThread(String key, long waitMillis) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            boolean acquired = lockService.tryLock(key, waitMillis, -1, TimeUnit.MILLISECONDS, false);
+            if (acquired) {
+                lockService.unlock(key);
+            }
+            return acquired;
+        }).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,93 @@
+package com.weiki.usercenterbackend.service.impl;
+
+import com.weiki.usercenterbackend.exception.RateLimitException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 密码哈希服务测试类
+ */
+public class PasswordHashingServiceImplTest {
+
+    private PasswordHashingServiceImpl hashingService;
+
+    @BeforeEach
+    public void setUp() {
+        hashingService = new PasswordHashingServiceImpl();
+        ReflectionTestUtils.setField(hashingService, "strength", 4);
+        ReflectionTestUtils.setField(hashingService, "threads", 1);
+        ReflectionTestUtils.setField(hashingService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(hashingService, "timeoutMillis", 5000L);
+        hashingService.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        hashingService.destroy();
+    }
+
+    /**
+     * 旧的MD5哈希可以校验并需要升级，新哈希带版本前缀且每次盐不同
+     */
+    @Test
+    public void testLegacyHashMigratesToVersionedFormat() {
+        String legacy = DigestUtils.md5DigestAsHex(("weiki" + "password123").getBytes());
+        assertTrue(hashingService.matches("password123", legacy));
+        assertFalse(hashingService.matches("password124", legacy));
+        assertTrue(hashingService.needsRehash(legacy));
+
+        String hash = hashingService.hash("password123");
+        assertTrue(hash.startsWith(PasswordHashingServiceImpl.V1_PREFIX));
+        assertNotEquals(hash, hashingService.hash("password123"));
+        assertTrue(hashingService.matches("password123", hash));
+        assertFalse(hashingService.matches("password124", hash));
+        assertFalse(hashingService.needsRehash(hash));
+        assertFalse(hashingService.matches("password123", null));
+
+        // 调高代价因子后旧哈希需要升级
+        ReflectionTestUtils.setField(hashingService, "strength", 5);
+        hashingService.init();
+        assertTrue(hashingService.needsRehash(hash));
+    }
+
+    /**
+     * 线程和队列都被占满时立即拒绝，不阻塞调用线程
+     */
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(hashingService, "executor");
+        CountDownLatch release = new CountDownLatch(1);
+        // 占用唯一的线程和唯一的队列位置
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> { });
+        assertEquals(1, hashingService.getQueueSize());
+
+        assertThrows(RateLimitException.class, () -> hashingService.hash("password123"));
+
+        release.countDown();
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            assertTrue(caller.submit(() -> hashingService.matches("password123", hashingService.hash("password123")))
+                    .get(5, TimeUnit.SECONDS));
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+}
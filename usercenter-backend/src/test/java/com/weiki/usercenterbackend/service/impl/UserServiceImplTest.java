@@ -0,0 +1,114 @@
+package com.weiki.usercenterbackend.service.impl;
+
+import com.weiki.usercenterbackend.common.ErrorCode;
+import com.weiki.usercenterbackend.exception.BusinessException;
+import com.weiki.usercenterbackend.mapper.UserMapper;
+import com.weiki.usercenterbackend.model.domain.User;
+import com.weiki.usercenterbackend.model.request.UserUpdateRequest;
+import com.weiki.usercenterbackend.utils.AuthorizationCache;
+import com.weiki.usercenterbackend.utils.JwtUtils;
+import com.weiki.usercenterbackend.utils.VerifiedToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户服务测试类
+ */
+public class UserServiceImplTest {
+
+    private JwtUtils jwtUtils;
+    private UserMapper userMapper;
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyWithAtLeast256BitsForHmacSha256");
+        jwtUtils.init();
+        userMapper = mock(UserMapper.class);
+        AuthorizationCache authorizationCache = new AuthorizationCache(userMapper, mock(StringRedisTemplate.class),
+                mock(RedisMessageListenerContainer.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(authorizationCache, "expireMillis", 60000L);
+        ReflectionTestUtils.setField(authorizationCache, "maximumSize", 100L);
+        authorizationCache.init();
+        userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "authorizationCache", authorizationCache);
+    }
+
+    /**
+     * 登录用户的ID取自令牌，角色和状态取自数据库：令牌签发后被降级的管理员按普通用户处理
+     */
+    @Test
+    public void testGetLoginUserUsesCurrentRole() {
+        when(userMapper.selectById(1L)).thenReturn(user(1L, 0));
+        User loginUser = userService.getLoginUser(requestWithToken(jwtUtils.generateAccessToken(1L, 1, 0)));
+        assertEquals(1L, loginUser.getId());
+        assertEquals(0, loginUser.getUserRole());
+        assertEquals(0, loginUser.getUserStatus());
+    }
+
+    /**
+     * 没有已验证的令牌或用户已删除时视为未登录，用户被封禁时拒绝访问
+     */
+    @Test
+    public void testGetLoginUserRejectsMissingDeletedOrBannedUser() {
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> userService.getLoginUser(new MockHttpServletRequest()));
+        assertEquals(ErrorCode.NOT_LOGIN.getCode(), e.getCode());
+
+        MockHttpServletRequest deleted = requestWithToken(jwtUtils.generateAccessToken(2L, 0, 0));
+        e = assertThrows(BusinessException.class, () -> userService.getLoginUser(deleted));
+        assertEquals(ErrorCode.NOT_LOGIN.getCode(), e.getCode());
+
+        User banned = user(3L, 0);
+        banned.setIsBanned(1);
+        when(userMapper.selectById(3L)).thenReturn(banned);
+        MockHttpServletRequest bannedRequest = requestWithToken(jwtUtils.generateAccessToken(3L, 0, 0));
+        e = assertThrows(BusinessException.class, () -> userService.getLoginUser(bannedRequest));
+        assertEquals(ErrorCode.NO_AUTH.getCode(), e.getCode());
+    }
+
+    /**
+     * 令牌中仍是管理员但已被降级的用户不能修改他人信息
+     */
+    @Test
+    public void testDemotedAdminCannotUpdateOthers() {
+        when(userMapper.selectById(1L)).thenReturn(user(1L, 0));
+        when(userMapper.selectById(2L)).thenReturn(user(2L, 0));
+        UserUpdateRequest updateRequest = new UserUpdateRequest();
+        updateRequest.setId(2L);
+        updateRequest.setUsername("changed");
+
+        MockHttpServletRequest request = requestWithToken(jwtUtils.generateAccessToken(1L, 1, 0));
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> userService.updateUser(updateRequest, request));
+        assertEquals(ErrorCode.NO_AUTH.getCode(), e.getCode());
+        verify(userMapper, never()).updateById(any(User.class));
+    }
+
+    private MockHttpServletRequest requestWithToken(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        VerifiedToken verifiedToken = jwtUtils.parseToken(token).orElseThrow(AssertionError::new);
+        request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verifiedToken);
+        return request;
+    }
+
+    private static User user(long id, int role) {
+        User user = new User();
+        user.setId(id);
+        user.setUserRole(role);
+        user.setUserStatus(0);
+        return user;
+    }
+}
@@ -0,0 +1,84 @@
+package com.weiki.usercenterbackend.utils;
+
+import com.weiki.usercenterbackend.mapper.UserMapper;
+import com.weiki.usercenterbackend.model.domain.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 权限判定缓存测试类
+ */
+public class AuthorizationCacheTest {
+
+    private UserMapper userMapper;
+    private StringRedisTemplate redisTemplate;
+    private AuthorizationCache authorizationCache;
+    private MessageListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        userMapper = mock(UserMapper.class);
+        redisTemplate = mock(StringRedisTemplate.class);
+        RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+        authorizationCache = new AuthorizationCache(userMapper, redisTemplate, listenerContainer,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(authorizationCache, "expireMillis", 60000L);
+        ReflectionTestUtils.setField(authorizationCache, "maximumSize", 100L);
+        authorizationCache.init();
+
+        ArgumentCaptor<MessageListener> captor = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(captor.capture(), any(Topic.class));
+        listener = captor.getValue();
+    }
+
+    /**
+     * 缓存期内只查询一次数据库；本节点修改后立即失效并通知其他节点，收到其他节点的通知后重新读取
+     */
+    @Test
+    public void testBanVisibleAfterInvalidation() {
+        User admin = new User();
+        admin.setId(1L);
+        admin.setUserRole(1);
+        admin.setUserStatus(0);
+        when(userMapper.selectById(1L)).thenReturn(admin);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(authorizationCache.get(1L).isActive());
+        }
+        verify(userMapper, times(1)).selectById(1L);
+
+        // 封禁后，未失效前仍使用缓存
+        admin.setIsBanned(1);
+        assertTrue(authorizationCache.get(1L).isActive());
+        authorizationCache.invalidate(1L);
+        verify(redisTemplate).convertAndSend(eq(AuthorizationCache.CHANNEL), anyString());
+        assertFalse(authorizationCache.get(1L).isActive());
+        assertEquals(1, authorizationCache.get(1L).getUserRole());
+
+        // 其他节点发布的解封通知
+        admin.setIsBanned(0);
+        listener.onMessage(new DefaultMessage(AuthorizationCache.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "other-node|1".getBytes(StandardCharsets.UTF_8)), null);
+        assertTrue(authorizationCache.get(1L).isActive());
+        verify(userMapper, times(3)).selectById(1L);
+
+        // 不存在的用户
+        assertFalse(authorizationCache.get(2L).isActive());
+    }
+}
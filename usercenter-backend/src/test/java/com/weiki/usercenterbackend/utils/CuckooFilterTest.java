@@ -0,0 +1,69 @@
+package com.weiki.usercenterbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 布谷鸟过滤器测试类
+ */
+public class CuckooFilterTest {
+
+    /**
+     * 已添加的元素一定能查到，删除后不再命中，未添加的元素误判率很低
+     */
+    @Test
+    public void testNoFalseNegativesAndDelete() {
+        CuckooFilter filter = new CuckooFilter(10000);
+        Random random = new Random(42);
+        long[] hashes = new long[10000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            assertTrue(filter.add(hashes[i]));
+        }
+        for (long hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100, "误判次数过多: " + falsePositives);
+
+        for (long hash : hashes) {
+            assertTrue(filter.remove(hash));
+        }
+        assertEquals(0, filter.size());
+        assertFalse(filter.mightContain(hashes[0]));
+    }
+
+    /**
+     * 同一元素添加两次需要删除两次；容量耗尽时添加失败且不影响已有元素
+     */
+    @Test
+    public void testDuplicatesAndOverflow() {
+        CuckooFilter filter = new CuckooFilter(16);
+        assertTrue(filter.add(7L));
+        assertTrue(filter.add(7L));
+        assertTrue(filter.remove(7L));
+        assertTrue(filter.mightContain(7L));
+        assertTrue(filter.remove(7L));
+        assertFalse(filter.mightContain(7L));
+
+        Random random = new Random(1);
+        long[] added = new long[filter.capacity() * 2];
+        int count = 0;
+        for (long hash = random.nextLong(); filter.add(hash); hash = random.nextLong()) {
+            added[count++] = hash;
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContain(added[i]));
+        }
+        assertEquals(count, filter.size());
+    }
+}
@@ -0,0 +1,145 @@
+package com.weiki.usercenterbackend.utils;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * JWT签名密钥轮换测试类
+ */
+public class JwtKeyRotationTest {
+
+    private static final String ENCRYPTION_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final Map<String, Map<Object, Object>> hashes = new HashMap<>();
+    private StringRedisTemplate redisTemplate;
+    private JwtUtils jwtUtils;
+    private JwtKeyRotation rotation;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        when(hashOperations.entries(anyString())).thenAnswer(invocation ->
+                new HashMap<>(hashes.getOrDefault(invocation.<String>getArgument(0), Collections.emptyMap())));
+        doAnswer(invocation -> hashes.computeIfAbsent(invocation.getArgument(0), k -> new HashMap<>())
+                .put(invocation.getArgument(1), invocation.getArgument(2)))
+                .when(hashOperations).put(anyString(), any(), any());
+
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "algorithm", "ES256");
+        jwtUtils.init();
+        rotation = new JwtKeyRotation(redisTemplate, jwtUtils);
+        ReflectionTestUtils.setField(rotation, "rotationIntervalMillis", 86_400_000L);
+        ReflectionTestUtils.setField(rotation, "reloadIntervalMillis", 60_000L);
+        ReflectionTestUtils.setField(rotation, "encryptionKey", ENCRYPTION_KEY);
+        ReflectionTestUtils.setField(rotation, "retryIntervalMillis", 10L);
+        ReflectionTestUtils.setField(rotation, "startupTimeoutMillis", 1000L);
+    }
+
+    /**
+     * Redis中的jwt:keys只有公钥，私钥加密保存；轮换锁按持有者标识比较后删除
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPrivateKeysAreEncryptedInRedis() {
+        rotation.start();
+        rotation.stop();
+
+        Map<Object, Object> publicKeys = hashes.get(JwtKeyRotation.KEYS_KEY);
+        assertEquals(1, publicKeys.size());
+        String kid = publicKeys.keySet().iterator().next().toString();
+        JwtKeyRing.SigningKey signingKey = jwtUtils.getKeyRing().getKey(kid);
+        assertNotNull(signingKey, "生成的密钥应加入本节点的密钥环");
+        String pkcs8 = Base64.getEncoder().encodeToString(signingKey.getPrivateKey().getEncoded());
+        assertEquals(signingKey.serializePublicKey(), publicKeys.get(kid));
+        assertFalse(hashes.get(JwtKeyRotation.PRIVATE_KEYS_KEY).get(kid).toString().contains(pkcs8),
+                "Redis中不应出现私钥明文");
+
+        verify(redisTemplate, never()).delete(JwtKeyRotation.ROTATION_LOCK_KEY);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(JwtKeyRotation.ROTATION_LOCK_KEY)),
+                eq(ReflectionTestUtils.getField(rotation, "instanceId")));
+    }
+
+    /**
+     * 旧格式的明文私钥迁移为加密存储，密钥本身保持不变
+     */
+    @Test
+    public void testLegacyPlaintextKeyIsMigrated() {
+        JwtKeyRing.SigningKey legacy = JwtKeyRing.generate(SignatureAlgorithm.ES256, 0);
+        String pkcs8 = Base64.getEncoder().encodeToString(legacy.getPrivateKey().getEncoded());
+        hashes.put(JwtKeyRotation.KEYS_KEY, new HashMap<>(Map.of(legacy.getKid(),
+                "ES256|" + System.currentTimeMillis() + "|"
+                        + Base64.getEncoder().encodeToString(legacy.getPublicKey().getEncoded()) + "|" + pkcs8)));
+
+        rotation.start();
+        rotation.stop();
+
+        assertEquals(legacy.serializePublicKey().split("\\|")[2],
+                hashes.get(JwtKeyRotation.KEYS_KEY).get(legacy.getKid()).toString().split("\\|")[2]);
+        assertFalse(JwtKeyRing.SigningKey.isLegacyFormat(
+                hashes.get(JwtKeyRotation.KEYS_KEY).get(legacy.getKid()).toString()));
+        assertTrue(hashes.get(JwtKeyRotation.PRIVATE_KEYS_KEY).containsKey(legacy.getKid()));
+        assertEquals(1, hashes.get(JwtKeyRotation.KEYS_KEY).size(), "迁移不应触发轮换");
+    }
+
+    /**
+     * 其他节点持有轮换锁时，本节点在加载到共享密钥前不签发令牌，启动时重试直到加载完成
+     */
+    @Test
+    public void testWaitsForSharedKeyInsteadOfSigningLocally() {
+        SecretKey keyEncryptionKey = JwtKeyRotation.parseEncryptionKey(ENCRYPTION_KEY);
+        JwtKeyRing.SigningKey shared = JwtKeyRing.generate(SignatureAlgorithm.ES256, 0);
+        // 轮换锁被其他节点抢到，其他节点随后写入首个密钥
+        when(redisTemplate.opsForValue().setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> {
+                    hashes.put(JwtKeyRotation.PRIVATE_KEYS_KEY,
+                            new HashMap<>(Map.of(shared.getKid(), shared.encryptPrivateKey(keyEncryptionKey))));
+                    hashes.put(JwtKeyRotation.KEYS_KEY,
+                            new HashMap<>(Map.of(shared.getKid(), shared.serializePublicKey())));
+                    return false;
+                });
+        assertThrows(IllegalStateException.class, () -> jwtUtils.generateAccessToken(1L));
+
+        rotation.start();
+        rotation.stop();
+
+        JwtKeyRing.SigningKey signingKey = jwtUtils.getKeyRing().currentSigningKey(System.currentTimeMillis());
+        assertNotNull(signingKey);
+        assertEquals(shared.getKid(), signingKey.getKid());
+        assertEquals(shared.getKid(), Jwts.parserBuilder().setSigningKey(shared.getPublicKey()).build()
+                .parseClaimsJws(jwtUtils.generateAccessToken(1L)).getHeader().getKeyId());
+    }
+
+    /**
+     * 未配置密钥加密密钥时非对称签名拒绝启动
+     */
+    @Test
+    public void testMissingEncryptionKeyFailsFast() {
+        ReflectionTestUtils.setField(rotation, "encryptionKey", "");
+        assertThrows(IllegalStateException.class, rotation::start);
+    }
+}
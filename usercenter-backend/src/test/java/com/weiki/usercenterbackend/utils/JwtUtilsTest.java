@@ -0,0 +1,181 @@
+package com.weiki.usercenterbackend.utils;
+
+import com.google.common.cache.Cache;
+import com.weiki.usercenterbackend.constant.JwtConstant;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import javax.servlet.http.Cookie;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JWT工具类测试类
+ */
+public class JwtUtilsTest {
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyWithAtLeast256BitsForHmacSha256");
+        jwtUtils.init();
+    }
+
+    /**
+     * 一次解析得到用户ID和令牌类型，篡改后的令牌验证失败
+     */
+    @Test
+    public void testParseToken() {
+        String accessToken = jwtUtils.generateAccessToken(10001L);
+        VerifiedToken verified = jwtUtils.parseToken(accessToken).orElseThrow(AssertionError::new);
+        assertEquals(10001L, verified.getUserId());
+        assertTrue(verified.isAccessToken());
+        assertFalse(verified.isRefreshToken());
+
+        assertTrue(jwtUtils.parseToken(jwtUtils.generateRefreshToken(10001L)).orElseThrow(AssertionError::new)
+                .isRefreshToken());
+        assertFalse(jwtUtils.parseToken(accessToken.substring(0, accessToken.length() - 2)).isPresent());
+    }
+
+    /**
+     * 请求中的令牌只解析一次，之后从请求属性中读取
+     */
+    @Test
+    public void testVerifiedTokenCachedOnRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(JwtConstant.TOKEN_HEADER, JwtConstant.TOKEN_PREFIX + jwtUtils.generateAccessToken(7L));
+
+        Optional<VerifiedToken> first = jwtUtils.getVerifiedToken(request);
+        assertTrue(first.isPresent());
+        assertSame(first.get(), request.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE));
+        assertSame(first.get(), jwtUtils.getVerifiedToken(request).orElse(null));
+
+        assertFalse(jwtUtils.getVerifiedToken(new MockHttpServletRequest()).isPresent());
+    }
+
+    /**
+     * 登录令牌携带角色和状态，浏览器端通过Cookie携带令牌
+     */
+    @Test
+    public void testLoginTokenClaimsFromCookie() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(JwtConstant.TOKEN_COOKIE, jwtUtils.generateAccessToken(8L, 1, 0)));
+
+        VerifiedToken verified = jwtUtils.getVerifiedToken(request).orElseThrow(AssertionError::new);
+        assertEquals(8L, verified.getUserId());
+        assertEquals(1, verified.getUserRole());
+        assertEquals(0, verified.getUserStatus());
+        assertNull(jwtUtils.parseToken(jwtUtils.generateAccessToken(8L)).orElseThrow(AssertionError::new).getUserRole());
+    }
+
+    /**
+     * 令牌Cookie只通过HTTPS发送，删除时使用相同的属性
+     */
+    @Test
+    public void testTokenCookieAttributes() {
+        ReflectionTestUtils.setField(jwtUtils, "cookieSecure", true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jwtUtils.writeAccessToken(response, "token");
+        jwtUtils.clearAccessToken(response);
+
+        List<String> cookies = response.getHeaders(HttpHeaders.SET_COOKIE);
+        assertEquals(2, cookies.size());
+        for (String cookie : cookies) {
+            assertTrue(cookie.contains("Path=/"));
+            assertTrue(cookie.contains("Secure"));
+            assertTrue(cookie.contains("HttpOnly"));
+            assertTrue(cookie.contains("SameSite=Lax"));
+        }
+        assertTrue(cookies.get(1).contains("Max-Age=0"));
+    }
+
+    /**
+     * 同一个令牌命中已验证令牌缓存，加入黑名单后立即失效，缓存不超过令牌本身的过期时间
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testVerifiedTokenCache() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtUtils cached = new JwtUtils();
+        ReflectionTestUtils.setField(cached, "jwtSecret", "testSecretKeyWithAtLeast256BitsForHmacSha256");
+        ReflectionTestUtils.setField(cached, "cacheMaximumSize", 100L);
+        ReflectionTestUtils.setField(cached, "cacheExpireSeconds", 300L);
+        ReflectionTestUtils.setField(cached, "meterRegistry", meterRegistry);
+        cached.init();
+
+        String accessToken = cached.generateAccessToken(10001L);
+        VerifiedToken first = cached.parseToken(accessToken).orElseThrow(AssertionError::new);
+        assertSame(first, cached.parseToken(accessToken).orElse(null));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "jwt.verified.tokens", "result", "hit")
+                .functionCounter().count());
+
+        cached.evictVerifiedToken(accessToken);
+        assertNotSame(first, cached.parseToken(accessToken).orElse(null));
+
+        // 缓存条目不会超过令牌本身的过期时间
+        Cache<String, VerifiedToken> verifiedTokens =
+                (Cache<String, VerifiedToken>) ReflectionTestUtils.getField(cached, "verifiedTokens");
+        VerifiedToken stale = new VerifiedToken(accessToken, Jwts.claims()
+                .setExpiration(new Date(System.currentTimeMillis() - 1000)));
+        verifiedTokens.put(JwtUtils.digest(accessToken), stale);
+        assertNotSame(stale, cached.parseToken(accessToken).orElse(null));
+    }
+
+    /**
+     * 非对称签名的令牌带有kid，按kid从密钥环查找公钥验签；密钥可序列化后在其他节点还原，并以JWK发布
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAsymmetricKeyRing() {
+        JwtUtils es256 = new JwtUtils();
+        ReflectionTestUtils.setField(es256, "algorithm", "ES256");
+        es256.init();
+        // 从Redis加载密钥环之前不签发令牌
+        assertThrows(IllegalStateException.class, () -> es256.generateAccessToken(10001L));
+        es256.getKeyRing().replace(Collections.singletonList(JwtKeyRing.generate(SignatureAlgorithm.ES256, 0)));
+
+        String accessToken = es256.generateAccessToken(10001L);
+        JwtKeyRing.SigningKey signingKey = es256.getKeyRing().currentSigningKey(System.currentTimeMillis());
+        assertEquals(signingKey.getKid(), Jwts.parserBuilder().setSigningKey(signingKey.getPublicKey()).build()
+                .parseClaimsJws(accessToken).getHeader().getKeyId());
+        assertEquals(10001L, es256.parseToken(accessToken).orElseThrow(AssertionError::new).getUserId());
+
+        // 其他节点还原同一个密钥后可以验签；密钥环中没有该kid时验签失败
+        JwtUtils other = new JwtUtils();
+        ReflectionTestUtils.setField(other, "algorithm", "ES256");
+        other.init();
+        assertFalse(other.parseToken(accessToken).isPresent());
+        SecretKey keyEncryptionKey = JwtKeyRotation.parseEncryptionKey(
+                Base64.getEncoder().encodeToString(new byte[32]));
+        other.getKeyRing().replace(Collections.singletonList(JwtKeyRing.SigningKey.parse(signingKey.getKid(),
+                signingKey.serializePublicKey(), signingKey.encryptPrivateKey(keyEncryptionKey), keyEncryptionKey)));
+        assertTrue(other.parseToken(accessToken).isPresent());
+
+        // 使用对称密钥的令牌不能通过非对称验签
+        assertFalse(es256.parseToken(jwtUtils.generateAccessToken(10001L)).isPresent());
+
+        Map<String, Object> jwk = ((List<Map<String, Object>>) es256.getKeyRing().toJwks().get("keys")).get(0);
+        assertEquals("EC", jwk.get("kty"));
+        assertEquals("P-256", jwk.get("crv"));
+        assertEquals(signingKey.getKid(), jwk.get("kid"));
+        assertEquals(43, ((String) jwk.get("x")).length());
+    }
+}
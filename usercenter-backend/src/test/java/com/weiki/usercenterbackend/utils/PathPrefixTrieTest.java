@@ -0,0 +1,31 @@
+package com.weiki.usercenterbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 路径前缀字典树测试类
+ */
+public class PathPrefixTrieTest {
+
+    /**
+     * 匹配结果与逐个startsWith一致，包括前缀互相包含和空前缀
+     */
+    @Test
+    public void testMatchesSameAsStartsWith() {
+        List<String> prefixes = Arrays.asList("/api/auth/login", "/api/auth/register", "/swagger-ui/",
+                "/swagger-ui.html", "/doc.html", "/api/auth", "", null);
+        PathPrefixTrie trie = PathPrefixTrie.compile(prefixes);
+        List<String> paths = Arrays.asList("/api/auth/login", "/api/auth/loginx", "/api/auth", "/api/aut",
+                "/api/user/current", "/swagger-ui", "/swagger-ui/index.html", "/swagger-ui.html", "/doc.htm", "", "/");
+        for (String path : paths) {
+            boolean expected = prefixes.stream().anyMatch(p -> p != null && !p.isEmpty() && path.startsWith(p));
+            assertEquals(expected, trie.matches(path), path);
+        }
+        assertFalse(PathPrefixTrie.compile(Arrays.asList()).matches("/api/auth/login"));
+    }
+}
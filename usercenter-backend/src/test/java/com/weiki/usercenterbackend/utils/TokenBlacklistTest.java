@@ -0,0 +1,74 @@
+package com.weiki.usercenterbackend.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 令牌黑名单测试类
+ */
+public class TokenBlacklistTest {
+
+    private StringRedisTemplate redisTemplate;
+    private MeterRegistry meterRegistry;
+    private TokenBlacklist tokenBlacklist;
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+        meterRegistry = new SimpleMeterRegistry();
+        tokenBlacklist = new TokenBlacklist(redisTemplate, mock(RedisMessageListenerContainer.class), meterRegistry);
+        ReflectionTestUtils.setField(tokenBlacklist, "expectedItems", 1000);
+
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyWithAtLeast256BitsForHmacSha256");
+        jwtUtils.init();
+    }
+
+    /**
+     * 过滤器同步前每次查询Redis；同步后不在黑名单中的令牌不访问Redis，加入黑名单的令牌查询Redis确认
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisConsultedOnlyOnPossibleHit() {
+        VerifiedToken token = jwtUtils.parseToken(jwtUtils.generateAccessToken(1L)).orElseThrow(AssertionError::new);
+        VerifiedToken revoked = jwtUtils.parseToken(jwtUtils.generateAccessToken(2L)).orElseThrow(AssertionError::new);
+        String revokedKey = TokenBlacklist.KEY_PREFIX + revoked.getJti();
+        when(redisTemplate.hasKey(revokedKey)).thenReturn(true);
+
+        assertFalse(tokenBlacklist.isBlacklisted(token));
+        verify(redisTemplate).hasKey(TokenBlacklist.KEY_PREFIX + token.getJti());
+
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(mock(Cursor.class));
+        tokenBlacklist.resync();
+        assertEquals(0, tokenBlacklist.getFilterSize());
+
+        tokenBlacklist.add(revoked);
+        verify(redisTemplate.opsForValue()).set(eq(revokedKey), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(redisTemplate).convertAndSend(eq(TokenBlacklist.CHANNEL), anyString());
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(tokenBlacklist.isBlacklisted(token));
+        }
+        assertTrue(tokenBlacklist.isBlacklisted(revoked));
+        verify(redisTemplate, times(1)).hasKey(TokenBlacklist.KEY_PREFIX + token.getJti());
+        assertEquals(10.0, meterRegistry.get("token.blacklist.checks").tag("result", "filtered").counter().count());
+    }
+}